@@ -74,6 +74,10 @@ public class MetricsConstant {
   public static final String QC_LOOKUPS = "qc_lookups";
   public static final String QC_VALID_HITS = "qc_valid_hits";
   public static final String QC_PENDING_HITS = "qc_pending_hits";
+  // Lookups which found neither a valid nor a pending entry.
+  public static final String QC_MISSES = "qc_misses";
+  // Queries answered by applying a residual filter/project to a cached superset result.
+  public static final String QC_PARTIAL_HITS = "qc_partial_hits";
   public static final String QC_PENDING_FAILS = "qc_pending_fails";
   public static final String QC_PENDING_FAILS_WAIT_TIME = "qc_pending_fails_wait_time";
   public static final String QC_PENDING_SUCCESS_WAIT_TIME = "qc_pending_success_wait_time";
@@ -83,4 +87,7 @@ public class MetricsConstant {
   public static final String QC_REJECTED_TOO_LARGE = "qc_rejected_too_large";
   public static final String QC_TOTAL_ENTRIES_ADDED = "qc_total_entries_added";
 
+  // Bytes of native vector map join hash table storage currently held off the Java heap.
+  public static final String VECTOR_MAPJOIN_OFF_HEAP_BYTES = "vector_mapjoin_off_heap_bytes";
+
 }
\ No newline at end of file
@@ -358,14 +358,23 @@ private static void populateLlapDaemonVarsSet(Set<String> llapDaemonVarsSetLocal
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_ALLOCATOR_ARENA_COUNT.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_MEMORY_MAX_SIZE.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_ALLOCATOR_DIRECT.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_ALLOCATOR_EVICTION_HEADROOM.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_CACHE_PERSISTENCE_PATH.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_CACHE_PERSISTENCE_VALIDATE_FILEIDS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_USE_LRFU.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_LRFU_LAMBDA.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_LRFU_BP_WRAPPER_SIZE.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_USE_TINYLFU.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_TINYLFU_WINDOW_RATIO.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_CACHE_ALLOW_SYNTHETIC_FILEID.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_USE_FILEID_PATH.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_DECODING_METRICS_PERCENTILE_INTERVALS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_ORC_ENABLE_TIME_COUNTERS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_THREADPOOL_SIZE.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_ORC_PREFETCH_ENABLED.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_ORC_PREFETCH_THREADS.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_ORC_PREFETCH_QUERY_MAX_SIZE.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_DECODED_CACHE_MAX_SIZE.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_KERBEROS_PRINCIPAL.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_KERBEROS_KEYTAB_FILE.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_ZKSM_ZK_CONNECTION_STRING.varname);
@@ -397,6 +406,12 @@ private static void populateLlapDaemonVarsSet(Set<String> llapDaemonVarsSetLocal
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_DOWNLOAD_PERMANENT_FNS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_WAIT_QUEUE_SIZE.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_WAIT_QUEUE_COMPARATOR_CLASS_NAME.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_BOOST.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_SHORT_TASKS.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_NUMA_AWARE_ENABLED.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_NUMA_NODES.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_NUMA_PIN_THREADS.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_FRAGMENT_PROFILER_INTERVAL_MS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_ENABLE_PREEMPTION.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_PREEMPTION_METRICS_INTERVALS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_WEB_PORT.varname);
@@ -3980,6 +3995,16 @@ public static enum ConfVars {
          "This flag should be set to true to enable vector map join hash tables to\n" +
          "use max / max filtering for integer join queries using MapJoin.\n" +
          "The default value is false."),
+    HIVE_VECTORIZATION_MAPJOIN_NATIVE_BLOOM_FILTER_ENABLED("hive.vectorized.execution.mapjoin.native.bloom.filter.enabled", false,
+         "This flag should be set to true to build a Bloom filter of the small table keys when loading\n" +
+         "native fast vector map join hash tables for inner and left semi joins.  Big table keys the\n" +
+         "filter rejects skip the hash table lookup, which helps selective joins against large small tables.\n" +
+         "The default value is false."),
+    HIVE_VECTORIZATION_MAPJOIN_NATIVE_BATCH_LOOKUP_ENABLED("hive.vectorized.execution.mapjoin.native.batch.lookup.enabled", false,
+         "This flag should be set to true to probe the native vector map join hash table with all the\n" +
+         "distinct keys of a batch at once for inner joins.  The probes of several keys are interleaved so\n" +
+         "their memory accesses overlap, which helps when the hash table is much larger than the CPU caches.\n" +
+         "The default value is false."),
     HIVE_VECTORIZATION_MAPJOIN_NATIVE_OVERFLOW_REPEATED_THRESHOLD("hive.vectorized.execution.mapjoin.overflow.repeated.threshold", -1,
          "The number of small table rows for a match in vector map join hash tables\n" +
          "where we use the repeated field optimization in overflow vectorized row batch for join queries using MapJoin.\n" +
@@ -3988,6 +4013,15 @@ public static enum ConfVars {
          "This flag should be set to true to enable use of native fast vector map join hash tables in\n" +
          "queries using MapJoin.\n" +
          "The default value is false."),
+    HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_HASHTABLE_OFFHEAP_ENABLED("hive.vectorized.execution.mapjoin.native.fast.hashtable.offheap.enabled", false,
+         "This flag should be set to true to move the keys and values of native fast vector map join hash\n" +
+         "maps off the Java heap once they are loaded.  Hash tables shared by the LLAP executors of a query\n" +
+         "then no longer add to full GC times.  The memory is released when the query completes.\n" +
+         "Only used in LLAP daemons.\n" +
+         "The default value is false."),
+    HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_HASHTABLE_OFFHEAP_MMAP_PATH("hive.vectorized.execution.mapjoin.native.fast.hashtable.offheap.mmap.path", "",
+         "When set, the off-heap native fast vector map join hash map storage is memory mapped from (deleted)\n" +
+         "files in this directory instead of being allocated as direct buffers."),
     HIVE_VECTORIZATION_GROUPBY_CHECKINTERVAL("hive.vectorized.groupby.checkinterval", 100000,
         "Number of entries added to the group by aggregation hash before a recomputation of average entry size is performed."),
     HIVE_VECTORIZATION_GROUPBY_MAXENTRIES("hive.vectorized.groupby.maxentries", 1000000,
@@ -3995,10 +4029,33 @@ public static enum ConfVars {
         "Exceeding this will trigger a flush irrelevant of memory pressure condition."),
     HIVE_VECTORIZATION_GROUPBY_FLUSH_PERCENT("hive.vectorized.groupby.flush.percent", (float) 0.1,
         "Percent of entries in the group by aggregation hash flushed when the memory threshold is exceeded."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED("hive.vectorized.groupby.spill.enabled", false,
+        "Whether vectorized GROUP BY hash aggregation spills to local disk instead of flushing partial\n" +
+        "results when the memory threshold is exceeded.  Once the hash table is full, rows of keys\n" +
+        "already in memory keep being aggregated and rows of new keys are written to hash partitioned\n" +
+        "spill files that are re-aggregated at the end of the input.  Not used with grouping sets."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS("hive.vectorized.groupby.spill.partitions", 16,
+        "Number of hash partitions (rounded up to a power of 2) the spilled vectorized GROUP BY rows\n" +
+        "are written to."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_MAX_LEVEL("hive.vectorized.groupby.spill.max.level", 3,
+        "Maximum number of times spilled vectorized GROUP BY rows may be re-partitioned and spilled\n" +
+        "again.  Beyond it, partial results are flushed early as when spilling is disabled."),
+    HIVE_VECTORIZATION_GROUPBY_NATIVE_ENABLED("hive.vectorized.execution.groupby.native.enabled", true,
+        "This flag should be set to true to enable the native (fast) hash tables for vectorized\n" +
+        "GROUP BY hash aggregation.  Long, string and multi-key keys are kept in open addressing\n" +
+        "primitive arrays instead of a HashMap of key wrappers.  Not used with grouping sets."),
+    HIVE_VECTORIZATION_GROUPBY_NATIVE_INITIAL_CAPACITY("hive.vectorized.execution.groupby.native.initial.capacity",
+        4096,
+        "Initial number of slots of the native vectorized GROUP BY hash table."),
     HIVE_VECTORIZATION_REDUCESINK_NEW_ENABLED("hive.vectorized.execution.reducesink.new.enabled", true,
         "This flag should be set to true to enable the new vectorization\n" +
         "of queries using ReduceSink.\ni" +
         "The default value is true."),
+    HIVE_VECTORIZATION_REDUCESINK_TOPN_FILTER_MAX("hive.vectorized.execution.reducesink.topn.filter.max",
+        10000,
+        "The largest LIMIT for which the native vectorized ReduceSink of an ORDER BY ... LIMIT query\n" +
+        "drops rows that cannot be in the top N before serializing them, using a heap of the first\n" +
+        "key column values. Set to 0 to disable."),
     HIVE_VECTORIZATION_USE_VECTORIZED_INPUT_FILE_FORMAT("hive.vectorized.use.vectorized.input.format", true,
         "This flag should be set to true to enable vectorizing with vectorized input file format capable SerDe.\n" +
         "The default value is true."),
@@ -4298,6 +4355,15 @@ public static enum ConfVars {
     LLAP_ALLOCATOR_MAPPED_PATH("hive.llap.io.allocator.mmap.path", "/tmp",
         new WritableDirectoryValidator(),
         "The directory location for mapping NVDIMM/NVMe flash storage into the ORC low-level cache."),
+    LLAP_IO_CACHE_PERSISTENCE_PATH("hive.llap.io.cache.persistence.path", "",
+        "Local directory (preferably on SSD) where LLAP writes the contents of the low-level data\n" +
+        "cache and the metadata cache when the daemon shuts down, and reads them back when it\n" +
+        "starts, so that a restarted daemon does not begin with a cold cache. Empty disables it."),
+    LLAP_IO_CACHE_PERSISTENCE_VALIDATE_FILEIDS("hive.llap.io.cache.persistence.validate.fileids",
+        true,
+        "Whether to check, when restoring the persisted LLAP cache, that the files identified by\n" +
+        "HDFS file IDs still exist, and to drop the entries of files that do not. Synthetic file\n" +
+        "IDs include the file length and modification time, so changed files never match them."),
     LLAP_ALLOCATOR_DISCARD_METHOD("hive.llap.io.allocator.discard.method", "both",
         new StringSet("freelist", "brute", "both"),
         "Which method to use to force-evict blocks to deal with fragmentation:\n" +
@@ -4310,6 +4376,12 @@ public static enum ConfVars {
         "Fragmentation can lead to some cases where more eviction has to happen to accommodate allocations\n" +
             " This configuration puts a limit on how many bytes to force evict before using Allocator Discard method."
             + " Higher values will allow allocator more flexibility and will lead to better caching."),
+    LLAP_ALLOCATOR_EVICTION_HEADROOM("hive.llap.io.allocator.eviction.headroom", "0Mb",
+        new SizeValidator(),
+        "The amount of free memory per allocator arena that a background thread keeps available\n" +
+        "by evicting from the cache ahead of time, so that IO threads mostly allocate from free\n" +
+        "blocks instead of evicting themselves. The total is capped at a quarter of the cache.\n" +
+        "0 disables background eviction."),
     LLAP_TRACK_CACHE_USAGE("hive.llap.io.track.cache.usage", true,
          "Whether to tag LLAP cache contents, mapping them to Hive entities (paths for\n" +
          "partitions and tables) for reporting."),
@@ -4324,6 +4396,16 @@ public static enum ConfVars {
     LLAP_LRFU_BP_WRAPPER_SIZE("hive.llap.io.lrfu.bp.wrapper.size", 64, "thread local queue "
         + "used to amortize the lock contention, the idea hear is to try locking as soon we reach max size / 2 "
         + "and block when max queue size reached"),
+    LLAP_USE_TINYLFU("hive.llap.io.use.tinylfu", false,
+        "Whether ORC low-level cache should use the W-TinyLFU cache policy. New buffers enter a\n" +
+        "small LRU admission window; when space is needed, a buffer leaving the window only\n" +
+        "replaces a buffer of the main (segmented LRU) region if it was accessed more often,\n" +
+        "according to a count-min sketch of buffer access frequencies. This keeps large scans\n" +
+        "from flushing frequently used data out of the cache. Takes precedence over\n" +
+        "hive.llap.io.use.lrfu."),
+    LLAP_TINYLFU_WINDOW_RATIO("hive.llap.io.tinylfu.window.ratio", 0.01f,
+        "Fraction of the cache used for the admission window of the W-TinyLFU cache policy.\n" +
+        "Must be in [0, 1]."),
     LLAP_CACHE_ALLOW_SYNTHETIC_FILEID("hive.llap.cache.allow.synthetic.fileid", true,
         "Whether LLAP cache should use synthetic file ID if real one is not available. Systems\n" +
         "like HDFS, Isilon, etc. provide a unique file/inode ID. On other FSes (e.g. local\n" +
@@ -4357,7 +4439,8 @@ public static enum ConfVars {
         "be a power of two between " + LLAP_ALLOCATOR_MIN_ALLOC + " and\n" +
         LLAP_ALLOCATOR_MAX_ALLOC + "."),
     LLAP_IO_ENCODE_VECTOR_SERDE_ENABLED("hive.llap.io.encode.vector.serde.enabled", true,
-        "Whether LLAP should use vectorized SerDe reader to read text data when re-encoding."),
+        "Whether LLAP should use vectorized SerDe reader to read text data when re-encoding.\n" +
+        "Applies to LazySimpleSerDe and JsonSerDe tables with primitive columns."),
     LLAP_IO_ENCODE_VECTOR_SERDE_ASYNC_ENABLED("hive.llap.io.encode.vector.serde.async.enabled",
         true,
         "Whether LLAP should use async mode in vectorized SerDe reader to read text data."),
@@ -4417,6 +4500,21 @@ public static enum ConfVars {
         "hive.llap.queue.metrics.percentiles.intervals"),
     LLAP_IO_THREADPOOL_SIZE("hive.llap.io.threadpool.size", 10,
         "Specify the number of threads to use for low-level IO thread pool."),
+    LLAP_IO_ORC_PREFETCH_ENABLED("hive.llap.io.orc.prefetch.enabled", false,
+        "Whether LLAP IO should read the needed column streams of the next ORC stripe\n" +
+        "asynchronously while the current stripe is being decoded, so that the reader does not\n" +
+        "wait for the storage at every stripe boundary. Useful for high-latency storage."),
+    LLAP_IO_ORC_PREFETCH_THREADS("hive.llap.io.orc.prefetch.threads", 4,
+        "The number of threads used by LLAP IO to prefetch ORC stripes."),
+    LLAP_IO_ORC_PREFETCH_QUERY_MAX_SIZE("hive.llap.io.orc.prefetch.query.max.size", "256Mb",
+        new SizeValidator(),
+        "The maximum amount of IO memory that the prefetched ORC stripes of a single query can\n" +
+        "use on an LLAP daemon. Stripes are read synchronously when it is exceeded."),
+    LLAP_IO_DECODED_CACHE_MAX_SIZE("hive.llap.io.decoded.cache.size", "0Mb", new SizeValidator(),
+        "The maximum size of the on-heap cache of decoded ORC column vectors in LLAP IO.\n" +
+        "The cache keeps the decoded primitive columns of the row groups that are read, so\n" +
+        "that hot tables are not decoded from the data cache again on every scan.\n" +
+        "0 disables it."),
     LLAP_USE_KERBEROS("hive.llap.kerberos.enabled", true,
         "If LLAP is configured for Kerberos authentication. This could be useful when cluster\n" +
         "is kerberized, but LLAP is not."),
@@ -4536,6 +4634,26 @@ public static enum ConfVars {
     LLAP_DAEMON_NUM_EXECUTORS("hive.llap.daemon.num.executors", 4,
       "Number of executors to use in LLAP daemon; essentially, the number of tasks that can be\n" +
       "executed in parallel.", "llap.daemon.num.executors"),
+    LLAP_DAEMON_NUMA_AWARE_ENABLED("hive.llap.daemon.numa.aware.enabled", false,
+      "Whether to assign each executor and IO elevator thread to a home NUMA node, round-robin.\n" +
+      "The LLAP IO allocator starts the allocations of a thread in a home arena of its node (arena\n" +
+      "i belongs to node i modulo the node count), and the cache metrics count the hits on the\n" +
+      "other arenas. The arena memory is placed by the OS on first touch; see\n" +
+      "hive.llap.daemon.numa.pin.threads."),
+    LLAP_DAEMON_NUMA_NODES("hive.llap.daemon.numa.nodes", 0,
+      "The number of NUMA nodes for hive.llap.daemon.numa.aware.enabled. 0 means the nodes are\n" +
+      "read from /sys/devices/system/node on Linux; there is only one node when they cannot be."),
+    LLAP_DAEMON_NUMA_PIN_THREADS("hive.llap.daemon.numa.pin.threads", false,
+      "Whether to also pin the threads to the CPUs of their home node, as listed in\n" +
+      "/sys/devices/system/node, using taskset. Linux only. The threads started by a pinned\n" +
+      "thread (e.g. the task threads of an executor) inherit its CPUs."),
+    LLAP_DAEMON_FRAGMENT_PROFILER_INTERVAL_MS("hive.llap.daemon.fragment.profiler.interval.ms",
+      "0ms", new TimeValidator(TimeUnit.MILLISECONDS),
+      "How often to sample the state of the executor and IO elevator threads of the running\n" +
+      "fragments, together with the IO stage (read, decompress, allocate, decode, consume) they\n" +
+      "are in. The live profiles are shown on the /profile page of the daemon web UI and in JMX;\n" +
+      "at the end of a fragment, its samples are added to the LlapFragmentProfile counters.\n" +
+      "If it's set to 0, then the profiler is disabled."),
     LLAP_MAPJOIN_MEMORY_OVERSUBSCRIBE_FACTOR("hive.llap.mapjoin.memory.oversubscribe.factor", 0.2f,
       "Fraction of memory from hive.auto.convert.join.noconditionaltask.size that can be over subscribed\n" +
         "by queries running in LLAP mode. This factor has to be from 0.0 to 1.0. Default is 20% over subscription.\n"),
@@ -4673,8 +4791,22 @@ public static enum ConfVars {
       "hive.llap.daemon.wait.queue.comparator.class.name",
       "org.apache.hadoop.hive.llap.daemon.impl.comparator.ShortestJobFirstComparator",
       "The priority comparator to use for LLAP scheduler priority queue. The built-in options\n" +
-      "are org.apache.hadoop.hive.llap.daemon.impl.comparator.ShortestJobFirstComparator and\n" +
-      ".....FirstInFirstOutComparator", "llap.daemon.wait.queue.comparator.class.name"),
+      "are org.apache.hadoop.hive.llap.daemon.impl.comparator.ShortestJobFirstComparator,\n" +
+      ".....FirstInFirstOutComparator and .....FairShareComparator. The latter shares the\n" +
+      "executors between the queries in proportion to their weights, using the average fragment\n" +
+      "running time of each query as the cost of its fragments.",
+      "llap.daemon.wait.queue.comparator.class.name"),
+    LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_BOOST(
+      "hive.llap.daemon.task.scheduler.fair.share.boost", 4.0f,
+      "The weight of guaranteed fragments and fragments of short queries (see\n" +
+      "hive.llap.daemon.task.scheduler.fair.share.short.tasks) in the fair share comparator,\n" +
+      "relative to the weight 1 of the other fragments.",
+      "llap.daemon.task.scheduler.fair.share.boost"),
+    LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_SHORT_TASKS(
+      "hive.llap.daemon.task.scheduler.fair.share.short.tasks", 10,
+      "Fragments with at most this many pending tasks in their vertex and its upstream vertices\n" +
+      "are considered short, and are boosted by the fair share comparator. 0 disables the boost\n" +
+      "for short fragments.", "llap.daemon.task.scheduler.fair.share.short.tasks"),
     LLAP_DAEMON_TASK_SCHEDULER_ENABLE_PREEMPTION(
       "hive.llap.daemon.task.scheduler.enable.preemption", true,
       "Whether non-finishable running tasks (e.g. a reducer waiting for inputs) should be\n" +
@@ -4724,6 +4856,23 @@ public static enum ConfVars {
         "instead of using the locations provided by the split itself. If there is no llap daemon " +
         "running, fall back to locations provided by the split. This is effective only if " +
         "hive.execution.mode is llap"),
+    LLAP_CLIENT_CACHE_AFFINITY_SPLITS("hive.llap.client.cache.affinity.splits", false,
+        "Whether to place the splits on the llap daemons that hold the most of their data in the\n" +
+        "cache, as reported on the /cachecontents page of the daemon web UI, rather than only by\n" +
+        "hashing them onto the daemons. Splits without cached data, or that would overload a\n" +
+        "daemon, are still hashed. Only ORC splits that carry a file id are considered. Requires\n" +
+        "hive.llap.client.consistent.splits and the default split location provider."),
+    LLAP_CLIENT_CACHE_AFFINITY_LOAD_SLACK("hive.llap.client.cache.affinity.load.slack", 0.25f,
+        "For hive.llap.client.cache.affinity.splits, how much more than the average split bytes\n" +
+        "a daemon may be assigned because of the data it has cached; e.g. 0.25 means 25% more."),
+    LLAP_CLIENT_CACHE_AFFINITY_SUMMARY_TTL("hive.llap.client.cache.affinity.summary.ttl", "60s",
+        new TimeValidator(TimeUnit.SECONDS),
+        "For hive.llap.client.cache.affinity.splits, how long the cache summaries fetched from\n" +
+        "the daemons are reused for the split generation of later queries."),
+    LLAP_CLIENT_CACHE_AFFINITY_FETCH_TIMEOUT("hive.llap.client.cache.affinity.fetch.timeout",
+        "5s", new TimeValidator(TimeUnit.MILLISECONDS),
+        "For hive.llap.client.cache.affinity.splits, the connect and read timeout for fetching\n" +
+        "the cache summary of a daemon; the daemons that don't respond are treated as empty."),
     LLAP_SPLIT_LOCATION_PROVIDER_CLASS("hive.llap.split.location.provider.class",
       "org.apache.hadoop.hive.ql.exec.tez.HostAffinitySplitLocationProvider",
       "Split location provider class to use during split generation for LLAP. This class should implement\n" +
@@ -5039,6 +5188,16 @@ public static enum ConfVars {
         "Should a query wait for the pending results of an already running query, " +
         "in order to use the cached result when it becomes ready"),
 
+    HIVE_QUERY_RESULTS_CACHE_PLAN_DIGEST_ENABLED("hive.query.results.cache.plan.digest.enabled", true,
+        "If the query results cache should also look up queries by a normalized digest of their optimized\n" +
+        "plan, so queries that only differ in whitespace, aliases or the order of commutative operands\n" +
+        "can use each other's cached results. Requires CBO."),
+
+    HIVE_QUERY_RESULTS_CACHE_PARTIAL_REUSE_ENABLED("hive.query.results.cache.partial.reuse.enabled", false,
+        "If a query may be answered from the cached results of a query over the same plan with fewer\n" +
+        "filter conditions, by applying the remaining filter and the projection to the cached results.\n" +
+        "Requires hive.query.results.cache.plan.digest.enabled."),
+
     HIVE_QUERY_RESULTS_CACHE_DIRECTORY("hive.query.results.cache.directory",
         "/tmp/hive/_resultscache_",
         "Location of the query results cache directory. Temporary results from queries " +
@@ -6034,6 +6193,8 @@ private static String[] convertVarsToRegex(String[] paramList) {
       ConfVars.HIVE_MULTI_INSERT_MOVE_TASKS_SHARE_DEPENDENCIES.varname,
       ConfVars.HIVE_QUERY_RESULTS_CACHE_ENABLED.varname,
       ConfVars.HIVE_QUERY_RESULTS_CACHE_WAIT_FOR_PENDING_RESULTS.varname,
+      ConfVars.HIVE_QUERY_RESULTS_CACHE_PLAN_DIGEST_ENABLED.varname,
+      ConfVars.HIVE_QUERY_RESULTS_CACHE_PARTIAL_REUSE_ENABLED.varname,
       ConfVars.HIVE_QUOTEDID_SUPPORT.varname,
       ConfVars.HIVE_RESULTSET_USE_UNIQUE_COLUMN_NAMES.varname,
       ConfVars.HIVE_STATS_COLLECT_PART_LEVEL_STATS.varname,
@@ -6055,6 +6216,7 @@ private static String[] convertVarsToRegex(String[] paramList) {
       ConfVars.LLAP_AUTO_MAX_OUTPUT.varname,
       ConfVars.LLAP_SKIP_COMPILE_UDF_CHECK.varname,
       ConfVars.LLAP_CLIENT_CONSISTENT_SPLITS.varname,
+      ConfVars.LLAP_CLIENT_CACHE_AFFINITY_SPLITS.varname,
       ConfVars.LLAP_ENABLE_GRACE_JOIN_IN_LLAP.varname,
       ConfVars.LLAP_ALLOW_PERMANENT_FNS.varname,
       ConfVars.MAXCREATEDFILES.varname,
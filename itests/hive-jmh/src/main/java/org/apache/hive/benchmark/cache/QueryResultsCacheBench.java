@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hive.benchmark.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.CacheEntry;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.LookupInfo;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.QueryInfo;
+import org.apache.hadoop.hive.ql.hooks.ReadEntity;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
+import org.apache.hadoop.hive.ql.plan.HiveOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This test measures the lookup throughput of the query results cache, with one and with many
+ * concurrent threads looking up cached queries the way HiveServer2 does for cache hits. The cached
+ * queries read NUM_TABLES tables, so that lookupConcurrentWithInvalidations invalidates and re-adds
+ * the entries of one table while the other threads look up the rest.
+ * <p/>
+ * This test uses JMH framework for benchmarking.
+ * You may execute this benchmark tool using JMH command line in different ways:
+ * <p/>
+ * To use the settings shown in the main() function, use:
+ * $ java -cp target/benchmarks.jar org.apache.hive.benchmark.cache.QueryResultsCacheBench
+ * <p/>
+ * To use the default settings used by JMH, use:
+ * $ java -jar target/benchmarks.jar org.apache.hive.benchmark.cache.QueryResultsCacheBench
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class QueryResultsCacheBench {
+
+  private static final int NUM_TABLES = 16;
+
+  @Param({"16", "1024"})
+  private int numEntries;
+
+  private File cacheDir;
+  private QueryResultsCache cache;
+  private LookupInfo[] lookups;
+
+  @Setup(Level.Trial)
+  public void initTrial() throws Exception {
+    cacheDir = new File(System.getProperty("java.io.tmpdir"),
+        "QueryResultsCacheBench-" + System.nanoTime());
+    HiveConf conf = new HiveConf();
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_DIRECTORY, cacheDir.getAbsolutePath());
+    conf.setTimeVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_LIFETIME, -1,
+        TimeUnit.MILLISECONDS);
+    QueryResultsCache.cleanupInstance();
+    QueryResultsCache.initialize(conf);
+    cache = QueryResultsCache.getInstance();
+
+    lookups = new LookupInfo[numEntries];
+    for (int i = 0; i < numEntries; i++) {
+      lookups[i] = new LookupInfo("select * from src" + (i % NUM_TABLES) + " where key = " + i,
+          () -> null);
+      addEntry(i);
+    }
+  }
+
+  private void addEntry(int i) {
+    HashSet<ReadEntity> inputs = new HashSet<ReadEntity>();
+    inputs.add(new ReadEntity(new Table("default", "src" + (i % NUM_TABLES))));
+    QueryInfo queryInfo = new QueryInfo(System.currentTimeMillis(), lookups[i],
+        HiveOperation.QUERY, new ArrayList<FieldSchema>(), null, null, inputs);
+    CacheEntry entry = cache.addToCache(queryInfo, null);
+    // Empty results, so no result files are needed.
+    FetchWork fetchWork = new FetchWork(new Path(cacheDir.getAbsolutePath(), "q" + i), null, -1);
+    fetchWork.setFilesToFetch(new HashSet<FileStatus>());
+    if (!cache.setEntryValid(entry, fetchWork)) {
+      throw new IllegalStateException("Could not add cache entry " + i);
+    }
+    entry.releaseReader();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws Exception {
+    QueryResultsCache.cleanupInstance();
+    FileUtil.fullyDelete(cacheDir);
+  }
+
+  private void lookupAndRead(Blackhole bh) {
+    LookupInfo lookupInfo = lookups[ThreadLocalRandom.current().nextInt(lookups.length)];
+    CacheEntry entry = cache.lookup(lookupInfo);
+    if (entry != null && entry.addReader()) {
+      bh.consume(entry.getFetchWork());
+      entry.releaseReader();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Threads(1)
+  public void lookupSingleThread(Blackhole bh) {
+    lookupAndRead(bh);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Threads(16)
+  public void lookupConcurrent(Blackhole bh) {
+    lookupAndRead(bh);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Threads(16)
+  public void lookupConcurrentWithInvalidations(Blackhole bh) {
+    // One in a thousand calls invalidates the entries of a table, as metastore events would, and
+    // adds them back, as the queries being run again would.
+    if (ThreadLocalRandom.current().nextInt(1000) == 0) {
+      int table = ThreadLocalRandom.current().nextInt(NUM_TABLES);
+      cache.notifyTableChanged("default", "src" + table, System.currentTimeMillis());
+      for (int i = table; i < numEntries; i += NUM_TABLES) {
+        addEntry(i);
+      }
+    }
+    lookupAndRead(bh);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + QueryResultsCacheBench.class.getSimpleName() + ".*")
+        .build();
+    new Runner(opt).run();
+  }
+}
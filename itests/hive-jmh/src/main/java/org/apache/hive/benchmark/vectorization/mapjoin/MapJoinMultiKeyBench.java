@@ -40,6 +40,8 @@
  *    X
  *  {ROW_MODE_HASH_MAP, ROW_MODE_OPTIMIZED, VECTOR_PASS_THROUGH, NATIVE_VECTOR_OPTIMIZED, NATIVE_VECTOR_FAST}
  *
+ *  plus INNER NATIVE_VECTOR_FAST with hive.vectorized.execution.mapjoin.native.batch.lookup.enabled.
+ *
  */
 @State(Scope.Benchmark)
 public class MapJoinMultiKeyBench extends AbstractMapJoin {
@@ -84,6 +86,14 @@ public void setup() throws Exception {
     }
   }
 
+  public static class MapJoinMultiKeyInnerNativeVectorFastBatchLookupBench extends MapJoinMultiKeyBenchBase {
+
+    @Setup
+    public void setup() throws Exception {
+      doSetup(VectorMapJoinVariation.INNER, MapJoinTestImplementation.NATIVE_VECTOR_FAST, true);
+    }
+  }
+
   //-----------------------------------------------------------------------------------------------
 
   public static class MapJoinMultiKeyInnerBigOnlyRowModeHashMapBench extends MapJoinMultiKeyBenchBase {
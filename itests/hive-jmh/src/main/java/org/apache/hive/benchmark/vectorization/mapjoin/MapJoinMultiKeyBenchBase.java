@@ -30,8 +30,15 @@ public abstract class MapJoinMultiKeyBenchBase extends AbstractMapJoin {
   
   public void doSetup(VectorMapJoinVariation vectorMapJoinVariation,
       MapJoinTestImplementation mapJoinImplementation) throws Exception {
+    doSetup(vectorMapJoinVariation, mapJoinImplementation, false);
+  }
+
+  public void doSetup(VectorMapJoinVariation vectorMapJoinVariation,
+      MapJoinTestImplementation mapJoinImplementation, boolean useBatchLookup) throws Exception {
     
     HiveConf hiveConf = new HiveConf();
+    HiveConf.setBoolVar(hiveConf,
+        HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_BATCH_LOOKUP_ENABLED, useBatchLookup);
 
     long seed = 2543;
 
@@ -29,6 +29,11 @@ InputFormat<NullWritable, T> getInputFormat(
   void close();
   String getMemoryInfo();
 
+  /**
+   * Summarizes the file ranges held in the data cache, in the text form of LlapCacheSummary.
+   */
+  String getCacheContentsSummary();
+
   /**
    * purge is best effort and will just release the buffers that are unlocked (refCount == 0). This is typically
    * called when the system is idle.
@@ -33,6 +33,9 @@ public enum LlapIOCounters {
   CACHE_MISS_BYTES(true),
   ALLOCATED_BYTES(true),
   ALLOCATED_USED_BYTES(true),
+  PREFETCH_HIT_BYTES(false),
+  PREFETCH_WASTED_BYTES(false),
+  DECODED_CACHE_HIT_BATCHES(false),
   TOTAL_IO_TIME_NS(false),
   DECODE_TIME_NS(false),
   HDFS_TIME_NS(false),
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of the file ranges held in the data cache of an LLAP daemon, used to place splits
+ * on the daemons that have their data cached.
+ *
+ * The files are identified by the string form of their cache key (the file id, or the
+ * synthetic file id); the offsets are file offsets. Close ranges are merged, so a range records
+ * both its extent and the number of bytes actually cached in it.
+ *
+ * The text form has one line per file: the file key, a tab, and comma-separated
+ * start-end:bytes ranges in ascending order.
+ */
+public final class LlapCacheSummary {
+  /** Ranges separated by less than this are merged in the summary. */
+  public static final long MERGE_GAP = 1024 * 1024;
+
+  private static final class Range {
+    private final long start;
+    private long end, bytes;
+
+    Range(long start, long end, long bytes) {
+      this.start = start;
+      this.end = end;
+      this.bytes = bytes;
+    }
+  }
+
+  private final Map<String, List<Range>> files = new HashMap<>();
+  private long totalBytes = 0;
+
+  /**
+   * Adds a cached range; the ranges of each file must be added in ascending order.
+   */
+  public void addRange(String fileKey, long start, long end) {
+    List<Range> ranges = files.get(fileKey);
+    if (ranges == null) {
+      ranges = new ArrayList<>();
+      files.put(fileKey, ranges);
+    }
+    addRange(ranges, start, end, end - start);
+  }
+
+  private void addRange(List<Range> ranges, long start, long end, long bytes) {
+    totalBytes += bytes;
+    if (!ranges.isEmpty()) {
+      Range last = ranges.get(ranges.size() - 1);
+      if (start - last.end < MERGE_GAP) {
+        last.end = Math.max(last.end, end);
+        last.bytes += bytes;
+        return;
+      }
+    }
+    ranges.add(new Range(start, end, bytes));
+  }
+
+  public int getFileCount() {
+    return files.size();
+  }
+
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Estimates the number of cached bytes in a range of a file, assuming that the cached bytes
+   * are spread evenly over the merged ranges.
+   */
+  public long getCachedBytes(String fileKey, long start, long end) {
+    List<Range> ranges = files.get(fileKey);
+    if (ranges == null) return 0;
+    long result = 0;
+    for (Range range : ranges) {
+      if (range.start >= end) break;
+      long overlap = Math.min(end, range.end) - Math.max(start, range.start);
+      if (overlap <= 0) continue;
+      long length = range.end - range.start;
+      result += (overlap == length) ? range.bytes : (long) ((double) range.bytes * overlap / length);
+    }
+    return result;
+  }
+
+  public void write(StringBuilder sb) {
+    for (Map.Entry<String, List<Range>> e : files.entrySet()) {
+      sb.append(e.getKey()).append('\t');
+      boolean isFirst = true;
+      for (Range range : e.getValue()) {
+        if (!isFirst) {
+          sb.append(',');
+        }
+        isFirst = false;
+        sb.append(range.start).append('-').append(range.end).append(':').append(range.bytes);
+      }
+      sb.append('\n');
+    }
+  }
+
+  public static LlapCacheSummary read(BufferedReader reader) throws IOException {
+    LlapCacheSummary result = new LlapCacheSummary();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) continue;
+      int tabIx = line.lastIndexOf('\t');
+      if (tabIx <= 0) {
+        throw new IOException("Invalid cache summary line " + line);
+      }
+      List<Range> ranges = new ArrayList<>();
+      result.files.put(line.substring(0, tabIx), ranges);
+      try {
+        for (String range : line.substring(tabIx + 1).split(",")) {
+          int dashIx = range.indexOf('-'), colonIx = range.indexOf(':', dashIx);
+          result.addRange(ranges, Long.parseLong(range.substring(0, dashIx)),
+              Long.parseLong(range.substring(dashIx + 1, colonIx)),
+              Long.parseLong(range.substring(colonIx + 1)));
+        }
+      } catch (NumberFormatException | IndexOutOfBoundsException e) {
+        throw new IOException("Invalid cache summary line " + line, e);
+      }
+    }
+    return result;
+  }
+}
@@ -67,6 +67,10 @@ public enum LlapDaemonExecutorInfo implements MetricsInfo {
   ExecutorFallOffNumCompletedFragments("Number of completed fragments w.r.t falloff values"),
   AverageQueueTime("Average queue time for tasks"),
   AverageResponseTime("Average response time for successful tasks"),
+  ExecutorQueryQueueTime("Number of fragments of a query that waited in the queue up to the given time"),
+  ExecutorQueryQueueTimeCount("Number of fragments of a query that started running"),
+  ExecutorQueryQueueTimeSum("Total wait queue time of the fragments of a query, in milliseconds"),
+  ExecutorQueryId("Query id"),
   ;
 
   private final String desc;
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class TestLlapCacheSummary {
+
+  @Test
+  public void testMergeAndEstimate() throws IOException {
+    LlapCacheSummary summary = new LlapCacheSummary();
+    long mb = 1024 * 1024;
+    // Two close ranges are merged; the far one is not.
+    summary.addRange("1", 0, mb);
+    summary.addRange("1", mb + 100, 2 * mb + 100);
+    summary.addRange("1", 10 * mb, 11 * mb);
+    summary.addRange("[5, 6, 7]", 0, 100);
+    assertEquals(3 * mb + 100, summary.getTotalBytes());
+
+    StringBuilder sb = new StringBuilder();
+    summary.write(sb);
+    LlapCacheSummary read = LlapCacheSummary.read(new BufferedReader(new StringReader(
+        sb.toString())));
+    assertEquals(2, read.getFileCount());
+    assertEquals(summary.getTotalBytes(), read.getTotalBytes());
+
+    assertEquals(3 * mb, read.getCachedBytes("1", 0, 20 * mb));
+    assertEquals(mb, read.getCachedBytes("1", 9 * mb, 20 * mb));
+    // Half of the first range.
+    assertEquals(mb, read.getCachedBytes("1", 0, mb + 50));
+    assertEquals(0, read.getCachedBytes("1", 3 * mb, 10 * mb));
+    assertEquals(100, read.getCachedBytes("[5, 6, 7]", 0, 1000));
+    assertEquals(0, read.getCachedBytes("2", 0, 1000));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidLine() throws IOException {
+    LlapCacheSummary.read(new BufferedReader(new StringReader("1\t0-x:5\n")));
+  }
+}
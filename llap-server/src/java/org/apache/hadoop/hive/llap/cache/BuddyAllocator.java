@@ -49,6 +49,8 @@
 import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler;
+import org.apache.hadoop.hive.llap.daemon.impl.ThreadPlacement;
 import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
 import org.apache.hadoop.hive.ql.io.orc.encoded.StoppableAllocator;
@@ -322,15 +324,20 @@ public void allocateMultiple(MemoryBuffer[] dest, int size, BufferObjectFactory
     int allocLog2 = freeListIx + minAllocLog2;
     int allocationSize = 1 << allocLog2;
 
-    // If using async, we could also reserve one by one.
-    memoryManager.reserveMemory(dest.length << allocLog2, isStopped);
+    // If using async, we could also reserve one by one. This is where we wait for the eviction.
+    FragmentProfiler.Stage previousStage = FragmentProfiler.enter(FragmentProfiler.Stage.ALLOCATE);
+    try {
+      memoryManager.reserveMemory(dest.length << allocLog2, isStopped);
+    } finally {
+      FragmentProfiler.exit(previousStage);
+    }
     initMemoryBuffers(dest, factory);
     int arenaCount = getArenaCount();
 
     // Note: we might want to be smarter if threadId-s are low and there more arenas than threads.
     long threadId = arenaCount > 1 ? Thread.currentThread().getId() : 0;
     int destAllocIx = allocateFast(dest, null, 0, dest.length,
-        freeListIx, allocationSize, (int)(threadId % arenaCount), arenaCount);
+        freeListIx, allocationSize, getStartArenaIx(threadId, arenaCount), arenaCount);
     if (destAllocIx == dest.length) {
       return;
     }
@@ -339,9 +346,35 @@ public void allocateMultiple(MemoryBuffer[] dest, int size, BufferObjectFactory
     if (destAllocIx == dest.length) {
       return;
     }
+    long stallStartNs = System.nanoTime();
+    previousStage = FragmentProfiler.enter(FragmentProfiler.Stage.ALLOCATE);
+    try {
+      allocateWithRetries(dest, size, freeListIx, destAllocIx, threadId);
+    } finally {
+      FragmentProfiler.exit(previousStage);
+      metrics.incrCacheAllocationStallTime(System.nanoTime() - stallStartNs);
+    }
+  }
+
+  /**
+   * Determines the first arena to allocate from: the home arena of the thread, when the threads
+   * are placed on NUMA nodes; otherwise, based on the thread id.
+   */
+  private static int getStartArenaIx(long threadId, int arenaCount) {
+    int homeArenaIx = ThreadPlacement.getHomeArenaIx(threadId, arenaCount);
+    return homeArenaIx >= 0 ? homeArenaIx : (int)(threadId % arenaCount);
+  }
 
+  /**
+   * The slow path of the allocation, when the fast path could not find free blocks: retries,
+   * then evicts from the cache, and finally force-discards cached buffers.
+   */
+  private void allocateWithRetries(MemoryBuffer[] dest, int size, int freeListIx,
+      int destAllocIx, long threadId) throws AllocatorOutOfMemoryException {
+    int allocLog2 = freeListIx + minAllocLog2;
+    int allocationSize = 1 << allocLog2;
     // Another thread might have allocated a new arena
-    arenaCount = getArenaCount();
+    int arenaCount = getArenaCount();
 
     // We called reserveMemory so we know that there's memory waiting for us somewhere.
     // But that can mean that the reserved memory is fragmented thus unusable
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.cache;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DateColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampColumnVector;
+import org.apache.orc.TypeDescription;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * On-heap cache of decoded ORC column vectors, keyed by file, stripe, row group and column.
+ * This is a second tier on top of the low-level cache of encoded data: for hot tables, the
+ * cost of scanning is dominated by decoding the same cached streams over and over again.
+ * The cache has its own memory budget and evicts least recently used entries when it is full.
+ *
+ * Only primitive columns are supported. The cached vectors are compact copies that are never
+ * modified after being put into the cache, so they can be shared by concurrent readers; the
+ * strings are referenced by the output vectors rather than copied again.
+ */
+public class DecodedColumnCache implements LlapIoDebugDump {
+  private static final int DEFAULT_CACHE_INITIAL_CAPACITY = 1024;
+  private static final int ENTRY_OVERHEAD = 64;
+
+  /** The vectors of one column, for all the batches of a row group. */
+  public static final class DecodedColumn {
+    private final ColumnVector[] batches;
+    private final int[] sizes;
+    private final int memoryUsage;
+
+    private DecodedColumn(ColumnVector[] batches, int[] sizes, int memoryUsage) {
+      this.batches = batches;
+      this.sizes = sizes;
+      this.memoryUsage = memoryUsage;
+    }
+
+    public int getBatchCount() {
+      return batches.length;
+    }
+
+    public int getBatchSize(int batchIx) {
+      return sizes[batchIx];
+    }
+
+    /** Sets the output vector to the values of one of the cached batches. */
+    public void copyTo(int batchIx, ColumnVector dest) {
+      copy(batches[batchIx], dest, sizes[batchIx], false);
+    }
+  }
+
+  /** Collects the decoded vectors of a column for all the batches of a row group. */
+  public static final class Builder {
+    private final ColumnVector[] batches;
+    private final int[] sizes;
+    private int count = 0;
+    private int memoryUsage = ENTRY_OVERHEAD;
+
+    public Builder(int maxBatches) {
+      this.batches = new ColumnVector[maxBatches];
+      this.sizes = new int[maxBatches];
+    }
+
+    /** Adds a compact copy of the decoded vector. */
+    public void add(TypeDescription type, ColumnVector src, int size) {
+      ColumnVector copy = createCopy(type, src, size);
+      copy(src, copy, size, true);
+      memoryUsage += estimateMemoryUsage(copy, src.isRepeating ? 1 : size);
+      batches[count] = copy;
+      sizes[count] = size;
+      ++count;
+    }
+
+    public DecodedColumn build() {
+      if (count == batches.length) {
+        return new DecodedColumn(batches, sizes, memoryUsage);
+      }
+      ColumnVector[] usedBatches = new ColumnVector[count];
+      int[] usedSizes = new int[count];
+      System.arraycopy(batches, 0, usedBatches, 0, count);
+      System.arraycopy(sizes, 0, usedSizes, 0, count);
+      return new DecodedColumn(usedBatches, usedSizes, memoryUsage);
+    }
+  }
+
+  /** Key of a column of a row group; rgIx is negative when the stripe is read as a whole. */
+  public static final class DecodedColumnKey {
+    private final Object fileKey;
+    private final int stripeIx, rgIx, columnId;
+    private final boolean useDecimal64;
+
+    public DecodedColumnKey(Object fileKey, int stripeIx, int rgIx, int columnId,
+        boolean useDecimal64) {
+      this.fileKey = fileKey;
+      this.stripeIx = stripeIx;
+      this.rgIx = rgIx;
+      this.columnId = columnId;
+      this.useDecimal64 = useDecimal64;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = prime + fileKey.hashCode();
+      result = prime * result + stripeIx;
+      result = prime * result + rgIx;
+      result = prime * result + columnId;
+      return prime * result + (useDecimal64 ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof DecodedColumnKey)) return false;
+      DecodedColumnKey other = (DecodedColumnKey) obj;
+      return stripeIx == other.stripeIx && rgIx == other.rgIx && columnId == other.columnId
+          && useDecimal64 == other.useDecimal64 && fileKey.equals(other.fileKey);
+    }
+
+    @Override
+    public String toString() {
+      return "[" + fileKey + ", stripe " + stripeIx + ", rgIx " + rgIx + ", column "
+          + columnId + "]";
+    }
+  }
+
+  private final Cache<DecodedColumnKey, DecodedColumn> cache;
+  private final long maxSize;
+
+  public DecodedColumnCache(long maxSize, int numThreads) {
+    this.maxSize = maxSize;
+    this.cache = CacheBuilder.newBuilder()
+        .initialCapacity(DEFAULT_CACHE_INITIAL_CAPACITY)
+        .concurrencyLevel(numThreads)
+        .maximumWeight(maxSize)
+        .weigher(new Weigher<DecodedColumnKey, DecodedColumn>() {
+          @Override
+          public int weigh(DecodedColumnKey key, DecodedColumn value) {
+            return value.memoryUsage;
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /** Whether the columns of the given types can be cached. */
+  public static boolean isSupported(TypeDescription[] types) {
+    for (TypeDescription type : types) {
+      if (!type.getCategory().isPrimitive()) return false;
+    }
+    return true;
+  }
+
+  public DecodedColumn get(DecodedColumnKey key) {
+    return cache.getIfPresent(key);
+  }
+
+  public void put(DecodedColumnKey key, DecodedColumn column) {
+    cache.put(key, column);
+  }
+
+  public void clear() {
+    cache.invalidateAll();
+    cache.cleanUp();
+  }
+
+  @Override
+  public void debugDumpShort(StringBuilder sb) {
+    CacheStats stats = cache.stats();
+    sb.append("\nDecoded column cache state: ").append(cache.size()).append(" columns, max size ")
+        .append(maxSize).append(", hits ").append(stats.hitCount()).append(", misses ")
+        .append(stats.missCount()).append(", evictions ").append(stats.evictionCount());
+  }
+
+  private static ColumnVector createCopy(TypeDescription type, ColumnVector src, int size) {
+    int length = src.isRepeating ? 1 : size;
+    if (src instanceof DateColumnVector) {
+      return new DateColumnVector(length);
+    } else if (src instanceof LongColumnVector) {
+      // Includes decimal64 vectors; the precision and scale come from the type.
+      return new LongColumnVector(length);
+    } else if (src instanceof DoubleColumnVector) {
+      return new DoubleColumnVector(length);
+    } else if (src instanceof BytesColumnVector) {
+      return new BytesColumnVector(length);
+    } else if (src instanceof TimestampColumnVector) {
+      return new TimestampColumnVector(length);
+    } else if (src instanceof DecimalColumnVector) {
+      return new DecimalColumnVector(length, type.getPrecision(), type.getScale());
+    }
+    throw new IllegalArgumentException("Cannot cache " + src.getClass().getSimpleName()
+        + " for " + type);
+  }
+
+  /**
+   * Copies the values of a primitive column vector.
+   * @param isDeep whether the strings should be copied, rather than referenced by dest.
+   */
+  private static void copy(ColumnVector src, ColumnVector dest, int size, boolean isDeep) {
+    int length = src.isRepeating ? 1 : size;
+    dest.isRepeating = src.isRepeating;
+    dest.noNulls = src.noNulls;
+    if (!src.noNulls) {
+      System.arraycopy(src.isNull, 0, dest.isNull, 0, length);
+    }
+    if (src instanceof LongColumnVector) {
+      if (src instanceof DateColumnVector) {
+        ((DateColumnVector) dest).setUsingProlepticCalendar(
+            ((DateColumnVector) src).isUsingProlepticCalendar());
+      }
+      System.arraycopy(((LongColumnVector) src).vector, 0,
+          ((LongColumnVector) dest).vector, 0, length);
+    } else if (src instanceof DoubleColumnVector) {
+      System.arraycopy(((DoubleColumnVector) src).vector, 0,
+          ((DoubleColumnVector) dest).vector, 0, length);
+    } else if (src instanceof BytesColumnVector) {
+      copyBytes((BytesColumnVector) src, (BytesColumnVector) dest, length, isDeep);
+    } else if (src instanceof TimestampColumnVector) {
+      TimestampColumnVector srcTs = (TimestampColumnVector) src;
+      TimestampColumnVector destTs = (TimestampColumnVector) dest;
+      destTs.setUsingProlepticCalendar(srcTs.usingProlepticCalendar());
+      System.arraycopy(srcTs.time, 0, destTs.time, 0, length);
+      System.arraycopy(srcTs.nanos, 0, destTs.nanos, 0, length);
+    } else if (src instanceof DecimalColumnVector) {
+      DecimalColumnVector srcDec = (DecimalColumnVector) src;
+      DecimalColumnVector destDec = (DecimalColumnVector) dest;
+      for (int i = 0; i < length; ++i) {
+        destDec.vector[i].set(srcDec.vector[i]);
+      }
+    } else {
+      throw new IllegalArgumentException("Cannot copy " + src.getClass().getSimpleName());
+    }
+  }
+
+  private static void copyBytes(
+      BytesColumnVector src, BytesColumnVector dest, int length, boolean isDeep) {
+    if (!isDeep) {
+      for (int i = 0; i < length; ++i) {
+        if (src.noNulls || !src.isNull[i]) {
+          dest.setRef(i, src.vector[i], src.start[i], src.length[i]);
+        }
+      }
+      return;
+    }
+    // Copy all the values into one buffer, so that the cached vector does not reference the
+    // buffers of the reader, and does not waste the space of a larger shared buffer.
+    int totalLength = 0;
+    for (int i = 0; i < length; ++i) {
+      if (src.noNulls || !src.isNull[i]) {
+        totalLength += src.length[i];
+      }
+    }
+    byte[] buffer = new byte[totalLength];
+    int offset = 0;
+    for (int i = 0; i < length; ++i) {
+      if (src.noNulls || !src.isNull[i]) {
+        System.arraycopy(src.vector[i], src.start[i], buffer, offset, src.length[i]);
+        dest.setRef(i, buffer, offset, src.length[i]);
+        offset += src.length[i];
+      }
+    }
+  }
+
+  private static int estimateMemoryUsage(ColumnVector cv, int length) {
+    // The null flags, plus the values.
+    int result = length;
+    if (cv instanceof LongColumnVector || cv instanceof DoubleColumnVector) {
+      result += 8 * length;
+    } else if (cv instanceof BytesColumnVector) {
+      BytesColumnVector bcv = (BytesColumnVector) cv;
+      result += 16 * length;
+      for (int i = 0; i < length; ++i) {
+        if (bcv.noNulls || !bcv.isNull[i]) {
+          result += bcv.length[i];
+        }
+      }
+    } else if (cv instanceof TimestampColumnVector) {
+      result += 12 * length;
+    } else if (cv instanceof DecimalColumnVector) {
+      // HiveDecimalWritable objects, with their internal words; semi-arbitrary.
+      result += 64 * length;
+    }
+    return result;
+  }
+}
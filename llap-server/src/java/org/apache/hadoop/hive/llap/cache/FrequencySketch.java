@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.cache;
+
+/**
+ * Count-min sketch of access frequencies with 4-bit counters, as used by TinyLFU.
+ * Each long in the table holds 16 counters; an item has one counter in each of 4 rows, all
+ * found in different longs. Once the number of increments reaches the sample size, all counters
+ * are halved, so the frequencies age and older history matters less.
+ * Not thread safe.
+ */
+final class FrequencySketch {
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  /** Bounds the table to 8Mb however large the cache is. */
+  private static final int MAX_TABLE_SIZE = 1 << 20;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size = 0;
+
+  /**
+   * @param expectedItems the expected number of distinct items (buffers) in the cache.
+   */
+  FrequencySketch(long expectedItems) {
+    int tableSize = (int) Math.min(MAX_TABLE_SIZE, Math.max(expectedItems, 1));
+    tableSize = Integer.highestOneBit(tableSize - 1) << 1;
+    if (tableSize == 0) {
+      tableSize = 1;
+    }
+    table = new long[tableSize];
+    tableMask = tableSize - 1;
+    sampleSize = 10 * tableSize;
+  }
+
+  /**
+   * @return the estimated number of accesses of the item (at most 15).
+   */
+  int frequency(int itemHash) {
+    int hash = spread(itemHash);
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; ++i) {
+      int offset = (start + i) << 2;
+      int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  void increment(int itemHash) {
+    int hash = spread(itemHash);
+    int start = (hash & 3) << 2;
+    boolean isAdded = false;
+    for (int i = 0; i < 4; ++i) {
+      isAdded |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (isAdded && (++size == sampleSize)) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves all the counters. */
+  private void reset() {
+    int oddCounters = 0;
+    for (int i = 0; i < table.length; ++i) {
+      oddCounters += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (oddCounters >>> 2);
+  }
+
+  private int indexOf(int hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    h += (h >>> 32);
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -407,7 +407,7 @@ public static String toFlagString(int state) {
     }
   }
 
-  @VisibleForTesting
+  /** The arena of the buffer; only for statistics, since a buffer can be moved when unlocked. */
   int getArenaIndex() {
     return State.getArena(state.get());
   }
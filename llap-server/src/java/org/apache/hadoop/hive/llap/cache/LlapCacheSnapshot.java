@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.CacheTag;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+import org.apache.hadoop.hive.llap.io.metadata.MetadataCache;
+import org.apache.hadoop.hive.ql.io.HdfsUtils;
+import org.apache.hadoop.hive.ql.io.SyntheticFileId;
+
+/**
+ * Writes the contents of the LLAP data and metadata caches to a local directory when the daemon
+ * shuts down, and loads them back into the new caches when it starts. The arenas themselves are
+ * not kept; the buffers are re-allocated and re-inserted through the regular cache paths, so the
+ * restored cache is indistinguishable from one warmed up by queries.
+ * Only files identified by HDFS file IDs or synthetic file IDs are persisted, since other file
+ * keys cannot be matched against the files after a restart.
+ */
+public final class LlapCacheSnapshot {
+  private static final int MAGIC = 0x4c4c4353; // LLCS
+  private static final int VERSION = 1;
+  private static final String DATA_FILE = "data.snapshot";
+  private static final String METADATA_FILE = "metadata.snapshot";
+
+  private static final byte KEY_FILE_ID = 1, KEY_SYNTHETIC_FILE_ID = 2;
+  private static final byte TAG_NONE = 0, TAG_TABLE = 1, TAG_PARTITION = 2;
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private final Configuration conf;
+  private final File dir;
+  private final LowLevelCacheImpl dataCache;
+  private final MetadataCache metadataCache;
+
+  public LlapCacheSnapshot(Configuration conf, File dir, LowLevelCacheImpl dataCache,
+      MetadataCache metadataCache) {
+    this.conf = conf;
+    this.dir = dir;
+    this.dataCache = dataCache;
+    this.metadataCache = metadataCache;
+  }
+
+  /**
+   * Loads the snapshot written by the previous daemon, if any, and deletes it. Metadata is
+   * restored first, since it is small and needed to read any of the data.
+   * @param maxBytes the maximum amount of cache memory to fill.
+   * @return the amount of cache memory filled.
+   */
+  public long restore(long maxBytes) {
+    long startTime = System.nanoTime();
+    Predicate<Object> isFileValid = createFileValidator();
+    long restored = 0;
+    File metadataFile = new File(dir, METADATA_FILE), dataFile = new File(dir, DATA_FILE);
+    try (DataInputStream in = openSnapshot(metadataFile)) {
+      if (in != null) {
+        restored += metadataCache.readSnapshot(in, isFileValid, maxBytes);
+      }
+    } catch (IOException e) {
+      LlapIoImpl.LOG.warn("Cannot restore the metadata cache from " + metadataFile, e);
+    } finally {
+      metadataFile.delete();
+    }
+    try (DataInputStream in = openSnapshot(dataFile)) {
+      if (in != null) {
+        restored += dataCache.readSnapshot(in, isFileValid, maxBytes - restored);
+      }
+    } catch (IOException e) {
+      LlapIoImpl.LOG.warn("Cannot restore the data cache from " + dataFile, e);
+    } finally {
+      dataFile.delete();
+    }
+    LlapIoImpl.LOG.info("Restored {} bytes of LLAP cache from {} in {}ms", restored, dir,
+        (System.nanoTime() - startTime) / 1000000L);
+    return restored;
+  }
+
+  /**
+   * Writes the current contents of the caches. Each snapshot file is written under a temporary
+   * name and then renamed, so an interrupted shutdown never leaves a partial snapshot behind.
+   */
+  public void save() {
+    long startTime = System.nanoTime();
+    int metadataCount = 0, dataCount = 0;
+    try {
+      metadataCount = writeSnapshot(METADATA_FILE, metadataCache::writeSnapshot);
+      dataCount = writeSnapshot(DATA_FILE, dataCache::writeSnapshot);
+    } catch (IOException e) {
+      LlapIoImpl.LOG.warn("Cannot persist the LLAP cache to " + dir, e);
+      return;
+    }
+    LlapIoImpl.LOG.info("Persisted {} metadata entries and {} data buffers of LLAP cache to {}"
+        + " in {}ms", metadataCount, dataCount, dir, (System.nanoTime() - startTime) / 1000000L);
+  }
+
+  private interface SnapshotWriter {
+    int write(DataOutput out) throws IOException;
+  }
+
+  private int writeSnapshot(String fileName, SnapshotWriter writer) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    File tmpFile = File.createTempFile(fileName, ".tmp", dir);
+    int count;
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmpFile), COPY_BUFFER_SIZE))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        count = writer.write(out);
+      }
+      Files.move(tmpFile.toPath(), new File(dir, fileName).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      tmpFile.delete();
+    }
+    return count;
+  }
+
+  private static DataInputStream openSnapshot(File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file), COPY_BUFFER_SIZE));
+    int magic = in.readInt(), version = in.readInt();
+    if (magic != MAGIC || version != VERSION) {
+      LlapIoImpl.LOG.warn("Ignoring cache snapshot {} with unknown format {}/{}",
+          file, magic, version);
+      in.close();
+      return null;
+    }
+    return in;
+  }
+
+  /**
+   * Files identified by a synthetic file ID are always valid: the ID includes the length and the
+   * modification time, so a changed file gets a new ID and the old entries are never read again.
+   * HDFS file IDs are checked via the inode path, if enabled; a file that was replaced or deleted
+   * no longer exists under its old ID.
+   */
+  private Predicate<Object> createFileValidator() {
+    if (!HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_CACHE_PERSISTENCE_VALIDATE_FILEIDS)) {
+      return fileKey -> true;
+    }
+    FileSystem fs = null;
+    try {
+      fs = FileSystem.get(conf);
+    } catch (IOException e) {
+      LlapIoImpl.LOG.warn("Cannot get the default file system; dropping cached files with"
+          + " file IDs", e);
+    }
+    // Inode paths only exist on HDFS; file IDs of other file systems cannot be checked.
+    final FileSystem defaultFs = (fs != null && "hdfs".equalsIgnoreCase(fs.getUri().getScheme()))
+        ? fs : null;
+    final Map<Object, Boolean> checked = new HashMap<>();
+    return fileKey -> {
+      if (!(fileKey instanceof Long)) {
+        return true;
+      }
+      if (defaultFs == null) {
+        return false;
+      }
+      return checked.computeIfAbsent(fileKey, key -> {
+        Path path = HdfsUtils.getFileIdPath(null, (Long) key);
+        try {
+          return path != null && defaultFs.exists(path);
+        } catch (IOException e) {
+          LlapIoImpl.LOG.debug("Cannot check " + path, e);
+          return false;
+        }
+      });
+    };
+  }
+
+  public static boolean isSupportedFileKey(Object fileKey) {
+    return fileKey instanceof Long || fileKey instanceof SyntheticFileId;
+  }
+
+  public static void writeFileKey(DataOutput out, Object fileKey) throws IOException {
+    if (fileKey instanceof Long) {
+      out.writeByte(KEY_FILE_ID);
+      out.writeLong((Long) fileKey);
+    } else if (fileKey instanceof SyntheticFileId) {
+      out.writeByte(KEY_SYNTHETIC_FILE_ID);
+      ((SyntheticFileId) fileKey).write(out);
+    } else {
+      throw new IllegalArgumentException("Unsupported file key " + fileKey);
+    }
+  }
+
+  public static Object readFileKey(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+    case KEY_FILE_ID: return in.readLong();
+    case KEY_SYNTHETIC_FILE_ID: {
+      SyntheticFileId fileId = new SyntheticFileId();
+      fileId.readFields(in);
+      return fileId;
+    }
+    default: throw new IOException("Unknown file key type " + type);
+    }
+  }
+
+  public static void writeTag(DataOutput out, CacheTag tag) throws IOException {
+    if (tag == null) {
+      out.writeByte(TAG_NONE);
+      return;
+    }
+    if (!(tag instanceof CacheTag.PartitionCacheTag)) {
+      out.writeByte(TAG_TABLE);
+      out.writeUTF(tag.getTableName());
+      return;
+    }
+    out.writeByte(TAG_PARTITION);
+    out.writeUTF(tag.getTableName());
+    Map<String, String> partDescMap = ((CacheTag.PartitionCacheTag) tag).getPartitionDescMap();
+    out.writeInt(partDescMap.size());
+    for (Map.Entry<String, String> e : partDescMap.entrySet()) {
+      out.writeUTF(e.getKey());
+      out.writeUTF(e.getValue());
+    }
+  }
+
+  public static CacheTag readTag(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+    case TAG_NONE: return null;
+    case TAG_TABLE: return CacheTag.build(in.readUTF());
+    case TAG_PARTITION: {
+      String tableName = in.readUTF();
+      int count = in.readInt();
+      Map<String, String> partDescMap = new LinkedHashMap<>();
+      for (int i = 0; i < count; ++i) {
+        partDescMap.put(in.readUTF(), in.readUTF());
+      }
+      return CacheTag.build(tableName, partDescMap);
+    }
+    default: throw new IOException("Unknown cache tag type " + type);
+    }
+  }
+
+  /** Writes the remaining bytes of the buffer, without changing its position. */
+  public static void writeBytes(DataOutput out, ByteBuffer data, byte[] copyBuffer)
+      throws IOException {
+    ByteBuffer src = data.duplicate();
+    out.writeInt(src.remaining());
+    while (src.hasRemaining()) {
+      int toCopy = Math.min(src.remaining(), copyBuffer.length);
+      src.get(copyBuffer, 0, toCopy);
+      out.write(copyBuffer, 0, toCopy);
+    }
+  }
+
+  /**
+   * Reads bytes written by {@link #writeBytes}.
+   * @return the buffer holding the bytes, which is either scratch or, if scratch is too small,
+   *         a new larger buffer that the caller can keep as scratch for the next call.
+   */
+  public static ByteBuffer readBytes(DataInput in, ByteBuffer scratch) throws IOException {
+    int length = in.readInt();
+    if (scratch == null || scratch.capacity() < length) {
+      scratch = ByteBuffer.allocate(Math.max(length, COPY_BUFFER_SIZE));
+    }
+    scratch.clear();
+    in.readFully(scratch.array(), 0, length);
+    scratch.limit(length);
+    return scratch;
+  }
+
+  public static byte[] createCopyBuffer() {
+    return new byte[COPY_BUFFER_SIZE];
+  }
+}
@@ -40,8 +40,11 @@ public abstract class LlapCacheableBuffer {
   /** Linked list pointers for LRFU/LRU cache policies. Given that each block is in cache
    * that might be better than external linked list. Or not, since this is not concurrent. */
   public LlapCacheableBuffer next = null;
-  /** Index in heap for LRFU/LFU cache policies. */
+  /** Index in heap for LRFU/LFU cache policies; region of the buffer for TinyLFU. */
   public int indexInHeap = NOT_IN_CACHE;
+  /** Hash of the cache key (e.g. file key and offset) for frequency based cache policies, so
+   * that data that is evicted and read again is recognized. 0 if the cache doesn't set it. */
+  public int cacheKeyHash = 0;
 
   public static final int INVALIDATE_OK = 0, INVALIDATE_FAILED = 1, INVALIDATE_ALREADY_INVALID = 2;
   protected abstract int invalidate();
@@ -18,7 +18,9 @@
 package org.apache.hadoop.hive.llap.cache;
 
 public interface LowLevelCacheCounters {
+  /** Records bytes found in the cache; also counted per cache policy, to compare policies. */
   void recordCacheHit(long bytesHit);
+  /** Records bytes not found in the cache; also counted per cache policy. */
   void recordCacheMiss(long bytesMissed);
   void recordAllocBytes(long bytesWasted, long bytesAllocated);
   void recordHdfsTime(long timeNs);
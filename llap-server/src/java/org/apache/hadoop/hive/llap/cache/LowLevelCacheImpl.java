@@ -17,6 +17,9 @@
  */
 package org.apache.hadoop.hive.llap.cache;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -25,8 +28,10 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import org.apache.hadoop.hive.common.io.Allocator;
+import org.apache.hadoop.hive.common.io.Allocator.AllocatorOutOfMemoryException;
 import org.apache.hadoop.hive.common.io.CacheTag;
 import org.apache.hadoop.hive.common.io.DataCache.BooleanRef;
 import org.apache.hadoop.hive.common.io.DataCache.DiskRangeListFactory;
@@ -34,6 +39,8 @@
 import org.apache.hadoop.hive.common.io.DiskRangeList;
 import org.apache.hadoop.hive.common.io.DiskRangeList.MutateHelper;
 import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
+import org.apache.hadoop.hive.llap.daemon.impl.ThreadPlacement;
+import org.apache.hadoop.hive.llap.io.LlapCacheSummary;
 import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
 import org.apache.hive.common.util.Ref;
@@ -191,6 +198,8 @@ private void getOverlappingRanges(long baseOffset, DiskRangeList currentNotCache
         absOffset, currentNotCached.getEnd() + baseOffset)
         .entrySet().iterator();
     long cacheEnd = -1;
+    boolean hasHomeArenas = ThreadPlacement.hasHomeNode();
+    int localNodeHits = 0, remoteNodeHits = 0;
     while (matches.hasNext()) {
       assert currentNotCached != null;
       Map.Entry<Long, LlapDataBuffer> e = matches.next();
@@ -215,11 +224,21 @@ private void getOverlappingRanges(long baseOffset, DiskRangeList currentNotCache
             + cacheOffset + ", " + (cacheOffset + buffer.declaredCachedLength) + ")");
       }
       cacheEnd = cacheOffset + buffer.declaredCachedLength;
+      if (hasHomeArenas) {
+        if (ThreadPlacement.isHomeArena(buffer.getArenaIndex())) {
+          ++localNodeHits;
+        } else {
+          ++remoteNodeHits;
+        }
+      }
       DiskRangeList currentCached = factory.createCacheChunk(buffer,
           cacheOffset - baseOffset, cacheEnd - baseOffset);
       currentNotCached = addCachedBufferToIter(currentNotCached, currentCached, gotAllData);
       metrics.incrCacheHitBytes(Math.min(requestedLength, currentCached.getLength()));
     }
+    if (localNodeHits + remoteNodeHits > 0) {
+      metrics.incrCacheNodeHits(localNodeHits, remoteNodeHits);
+    }
     if (currentNotCached != null) {
       assert !currentNotCached.hasData(); // Assumes no ranges passed to cache to read have data.
       if (gotAllData != null) {
@@ -306,6 +325,7 @@ public long[] putFileData(Object fileKey, DiskRange[] ranges, MemoryBuffer[] buf
         assert buffer.declaredCachedLength == LlapDataBuffer.UNKNOWN_CACHED_LENGTH;
         buffer.declaredCachedLength = ranges[i].getLength();
         buffer.setTag(tag);
+        buffer.cacheKeyHash = 31 * fileKey.hashCode() + Long.hashCode(offset);
         while (true) { // Overwhelmingly executes once, or maybe twice (replacing stale value).
           LlapDataBuffer oldVal = subCache.getCache().putIfAbsent(offset, buffer);
           if (oldVal == null) {
@@ -436,6 +456,103 @@ public int cleanUpOneFileCache(
     }
   }
 
+  /**
+   * Writes the cached buffers of all the files with persistable keys, see {@link LlapCacheSnapshot}.
+   * Buffers that are being evicted or moved are skipped.
+   * @return the number of buffers written.
+   */
+  public int writeSnapshot(DataOutput out) throws IOException {
+    byte[] copyBuffer = LlapCacheSnapshot.createCopyBuffer();
+    int count = 0;
+    for (Map.Entry<Object, FileCache<ConcurrentSkipListMap<Long, LlapDataBuffer>>> e :
+      cache.entrySet()) {
+      Object fileKey = e.getKey();
+      if (!LlapCacheSnapshot.isSupportedFileKey(fileKey) || !e.getValue().incRef()) continue;
+      List<Map.Entry<Long, LlapDataBuffer>> locked = new ArrayList<>();
+      try {
+        for (Map.Entry<Long, LlapDataBuffer> e2 : e.getValue().getCache().entrySet()) {
+          if (e2.getValue().tryIncRef() > 0) {
+            locked.add(e2);
+          }
+        }
+        if (locked.isEmpty()) continue;
+        out.writeBoolean(true);
+        LlapCacheSnapshot.writeFileKey(out, fileKey);
+        LlapCacheSnapshot.writeTag(out, locked.get(0).getValue().getTag());
+        out.writeInt(locked.size());
+        for (Map.Entry<Long, LlapDataBuffer> e2 : locked) {
+          LlapDataBuffer buffer = e2.getValue();
+          out.writeLong(e2.getKey());
+          out.writeInt(buffer.declaredCachedLength);
+          LlapCacheSnapshot.writeBytes(out, buffer.getByteBufferRaw(), copyBuffer);
+        }
+        count += locked.size();
+      } finally {
+        for (Map.Entry<Long, LlapDataBuffer> e2 : locked) {
+          e2.getValue().decRef();
+        }
+        e.getValue().decRef();
+      }
+    }
+    out.writeBoolean(false);
+    return count;
+  }
+
+  /**
+   * Puts the buffers written by {@link #writeSnapshot} into the cache.
+   * @param isFileValid the files for which this returns false are skipped.
+   * @param maxBytes the maximum amount of memory to allocate; the rest of the buffers are skipped.
+   * @return the amount of memory allocated.
+   */
+  public long readSnapshot(DataInput in, Predicate<Object> isFileValid, long maxBytes)
+      throws IOException {
+    long restored = 0;
+    int skippedFiles = 0;
+    ByteBuffer scratch = null;
+    while (in.readBoolean()) {
+      Object fileKey = LlapCacheSnapshot.readFileKey(in);
+      CacheTag tag = LlapCacheSnapshot.readTag(in);
+      int count = in.readInt();
+      boolean isValid = isFileValid.test(fileKey);
+      if (!isValid) {
+        ++skippedFiles;
+      }
+      for (int i = 0; i < count; ++i) {
+        long offset = in.readLong();
+        int declaredLength = in.readInt();
+        scratch = LlapCacheSnapshot.readBytes(in, scratch);
+        if (!isValid || restored + scratch.remaining() > maxBytes) continue;
+        LlapDataBuffer[] buffers = new LlapDataBuffer[] { new LlapDataBuffer() };
+        try {
+          allocator.allocateMultiple(buffers, scratch.remaining());
+        } catch (AllocatorOutOfMemoryException ex) {
+          LlapIoImpl.LOG.info("Cannot allocate memory to restore the cache; stopping");
+          return restored;
+        }
+        LlapDataBuffer buffer = buffers[0];
+        ByteBuffer dest = buffer.getByteBufferRaw();
+        int startPos = dest.position();
+        dest.put(scratch);
+        dest.limit(dest.position());
+        dest.position(startPos);
+        restored += buffer.allocSize;
+        DiskRange[] ranges = new DiskRange[] { new DiskRange(offset, offset + declaredLength) };
+        long[] replaced = putFileData(fileKey, ranges, buffers, 0, Priority.NORMAL, null, tag);
+        if (replaced != null) {
+          // Someone has already cached this range; keep the buffer that is in the cache.
+          allocator.deallocate(buffer);
+          restored -= buffer.allocSize;
+        }
+        decRefBuffer(buffers[0]);
+      }
+    }
+    if (skippedFiles > 0) {
+      LlapIoImpl.LOG.info("Skipped {} files that changed since the cache was persisted",
+          skippedFiles);
+    }
+    return restored;
+  }
+
   @Override
   public boolean incRefBuffer(MemoryBuffer buffer) {
     // notifyReused implies that buffer is already locked; it's also called once for new
@@ -448,6 +565,26 @@ public Allocator getAllocator() {
     return allocator;
   }
 
+  /**
+   * Adds the file ranges held in the cache to the summary, for the split placement; the
+   * buffers being evicted are skipped, but no buffers are locked.
+   */
+  public void summarizeContents(LlapCacheSummary summary) {
+    for (Map.Entry<Object, FileCache<ConcurrentSkipListMap<Long, LlapDataBuffer>>> e :
+      cache.entrySet()) {
+      String fileKey = e.getKey().toString();
+      for (Map.Entry<Long, LlapDataBuffer> e2 : e.getValue().getCache().entrySet()) {
+        LlapDataBuffer buffer = e2.getValue();
+        if (buffer.isInvalid()
+            || buffer.declaredCachedLength == LlapDataBuffer.UNKNOWN_CACHED_LENGTH) {
+          continue;
+        }
+        long offset = e2.getKey();
+        summary.addRange(fileKey, offset, offset + buffer.declaredCachedLength);
+      }
+    }
+  }
+
   @Override
   public void debugDumpShort(StringBuilder sb) {
     sb.append("\nORC cache state ");
@@ -31,13 +31,18 @@
 /**
  * Implementation of memory manager for low level cache. Note that memory is released during
  * reserve most of the time, by calling the evictor to evict some memory. releaseMemory is
- * called rarely.
+ * called rarely. Optionally, a background thread evicts ahead of the reservations to keep some
+ * memory free, so that the IO threads rarely have to evict themselves.
  */
 public class LowLevelCacheMemoryManager implements MemoryManager {
+  private static final long BACKGROUND_EVICTION_INTERVAL_MS = 1000;
+
   private final AtomicLong usedMemory;
   private final LowLevelCachePolicy evictor;
   private final LlapDaemonCacheMetrics metrics;
   private long maxSize;
+  private volatile long evictionHeadroom = 0;
+  private BackgroundEvictionThread evictionThread = null;
 
   public LowLevelCacheMemoryManager(
       long maxSize, LowLevelCachePolicy evictor, LlapDaemonCacheMetrics metrics) {
@@ -77,23 +82,52 @@ public void reserveMemory(final long memoryToReserve, AtomicBoolean isStopped) {
     return evicted;
   }
 
+  /**
+   * Starts the background eviction thread.
+   * @param headroom the amount of memory to keep free; capped at a quarter of the cache.
+   */
+  public void startBackgroundEviction(long headroom) {
+    if (evictor == null || headroom <= 0) return;
+    evictionHeadroom = Math.min(headroom, maxSize / 4);
+    LlapIoImpl.LOG.info("Starting background eviction with {} bytes of headroom",
+        evictionHeadroom);
+    evictionThread = new BackgroundEvictionThread();
+    evictionThread.start();
+  }
+
+  public void stopBackgroundEviction() {
+    if (evictionThread != null) {
+      evictionThread.interrupt();
+      evictionThread = null;
+    }
+  }
+
   @VisibleForTesting
   public boolean reserveMemory(final long memoryToReserve,
       boolean waitForEviction, AtomicBoolean isStopped) {
     // TODO: if this cannot evict enough, it will spin infinitely. Terminate at some point?
     int badCallCount = 0;
     long evictedTotalMetric = 0, reservedTotalMetric = 0, remainingToReserve = memoryToReserve;
+    long stallStartNs = -1;
     boolean result = true;
     while (remainingToReserve > 0) {
       long usedMem = usedMemory.get(), newUsedMem = usedMem + remainingToReserve;
       if (newUsedMem <= maxSize) {
         if (usedMemory.compareAndSet(usedMem, newUsedMem)) {
           reservedTotalMetric += remainingToReserve;
+          BackgroundEvictionThread thread = evictionThread;
+          if (thread != null && maxSize - newUsedMem < evictionHeadroom) {
+            thread.wakeUp();
+          }
           break;
         }
         continue;
       }
       if (evictor == null) return false;
+      if (stallStartNs < 0) {
+        stallStartNs = System.nanoTime();
+        metrics.incrCacheForegroundEvictions();
+      }
       // TODO: for one-block case, we could move notification for the last block out of the loop.
       long evicted = evictor.evictSomeBlocks(remainingToReserve);
       if (evicted == 0) {
@@ -136,6 +170,9 @@ public boolean reserveMemory(final long memoryToReserve,
       reservedTotalMetric = 0;
     }
     metrics.incrCacheCapacityUsed(reservedTotalMetric - evictedTotalMetric);
+    if (stallStartNs >= 0) {
+      metrics.incrCacheAllocationStallTime(System.nanoTime() - stallStartNs);
+    }
     return result;
   }
 
@@ -186,4 +223,59 @@ public long evictEntity(Predicate<LlapCacheableBuffer> predicate) {
   public long getCurrentUsedSize() {
     return usedMemory.get();
   }
+
+  /**
+   * Evicts from the cache whenever the free memory drops below the headroom. It is woken up by
+   * the reservations that cross the threshold, and also checks periodically.
+   */
+  private final class BackgroundEvictionThread extends Thread {
+    private final AtomicBoolean isSignaled = new AtomicBoolean(false);
+
+    public BackgroundEvictionThread() {
+      super("Llap low level cache background eviction thread");
+      setDaemon(true);
+    }
+
+    public void wakeUp() {
+      // Only notify once per round, to keep the reservation path cheap.
+      if (isSignaled.compareAndSet(false, true)) {
+        synchronized (isSignaled) {
+          isSignaled.notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        try {
+          synchronized (isSignaled) {
+            if (!isSignaled.get()) {
+              isSignaled.wait(BACKGROUND_EVICTION_INTERVAL_MS);
+            }
+          }
+          isSignaled.set(false);
+          evictToHeadroom();
+        } catch (InterruptedException ex) {
+          LlapIoImpl.LOG.info("Background eviction thread has been interrupted");
+          Thread.currentThread().interrupt();
+          break;
+        } catch (Throwable t) {
+          LlapIoImpl.LOG.error("Background eviction has failed; the thread will now exit", t);
+          break;
+        }
+      }
+    }
+
+    private void evictToHeadroom() {
+      long toEvict;
+      while (!isInterrupted()
+          && (toEvict = evictionHeadroom - (maxSize - usedMemory.get())) > 0) {
+        long evicted = evictor.evictSomeBlocks(toEvict);
+        if (evicted == 0) break; // Everything is locked; try again later.
+        metrics.incrCacheBackgroundEvictedBytes(evicted);
+        releaseMemory(evicted);
+      }
+    }
+  }
 }
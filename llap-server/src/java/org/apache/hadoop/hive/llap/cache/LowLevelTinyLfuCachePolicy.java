@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.LlapUtil;
+import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+
+/**
+ * W-TinyLFU cache policy, from "TinyLFU: A Highly Efficient Cache Admission Policy".
+ * New buffers enter a small LRU admission window. The rest of the cache is a segmented LRU:
+ * buffers admitted from the window go to the probation segment, and move to the protected
+ * segment when they are accessed again. Once the cache is full, the LRU buffer of the window
+ * competes with the LRU buffer of the probation segment whenever memory is needed, and the
+ * one with the lower access frequency is evicted. The frequencies are estimated with a
+ * count-min sketch that also remembers buffers that were evicted, so a large scan cannot push
+ * frequently used buffers out of the cache.
+ * Locked buffers are skipped by eviction and stay where they are.
+ */
+public final class LowLevelTinyLfuCachePolicy implements LowLevelCachePolicy {
+  // Regions of the cache, stored in indexInHeap of the buffers.
+  private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+  private static final double PROTECTED_RATIO = 0.8;
+  private static final int HIGH_PRIORITY_BOOST = 3;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final BufferList window = new BufferList(WINDOW);
+  private final BufferList probation = new BufferList(PROBATION);
+  private final BufferList protectedSegment = new BufferList(PROTECTED);
+  private final FrequencySketch sketch;
+  private final long maxWindowSize;
+  private final long maxMainSize;
+  private final long maxProtectedSize;
+  private EvictionListener evictionListener;
+  private long admittedCount = 0, rejectedCount = 0;
+
+  private final ThreadLocal<LlapCacheableBuffer[]> threadLocalBuffers;
+  private final ThreadLocal<Integer> threadLocalCount;
+  private final int maxQueueSize;
+
+  public LowLevelTinyLfuCachePolicy(int minBufferSize, long maxSize, Configuration conf) {
+    float windowRatio = HiveConf.getFloatVar(conf, HiveConf.ConfVars.LLAP_TINYLFU_WINDOW_RATIO);
+    if (windowRatio < 0 || windowRatio > 1) {
+      throw new IllegalArgumentException(HiveConf.ConfVars.LLAP_TINYLFU_WINDOW_RATIO.varname
+          + " must be in [0, 1]; got " + windowRatio);
+    }
+    this.maxQueueSize = HiveConf.getIntVar(conf, HiveConf.ConfVars.LLAP_LRFU_BP_WRAPPER_SIZE);
+    this.maxWindowSize = (long) (maxSize * windowRatio);
+    this.maxMainSize = maxSize - maxWindowSize;
+    this.maxProtectedSize = (long) (maxMainSize * PROTECTED_RATIO);
+    this.sketch = new FrequencySketch((long) Math.ceil((maxSize * 1.0) / minBufferSize));
+    LlapIoImpl.LOG.info("TinyLFU cache policy with min buffer size {}, window {} and protected {}",
+        minBufferSize, LlapUtil.humanReadableByteCount(maxWindowSize),
+        LlapUtil.humanReadableByteCount(maxProtectedSize));
+    threadLocalBuffers = ThreadLocal.withInitial(() -> new LlapCacheableBuffer[maxQueueSize]);
+    threadLocalCount = ThreadLocal.withInitial(() -> 0);
+  }
+
+  @Override
+  public void cache(LlapCacheableBuffer buffer, Priority priority) {
+    int keyHash = getKeyHash(buffer);
+    lock.lock();
+    try {
+      // Loading the buffer is an access; the unlock after the load is not counted again.
+      sketch.increment(keyHash);
+      if (priority == Priority.HIGH) {
+        // Like in LRFU, this is arbitrary: metadata counts as accessed a few times.
+        for (int i = 1; i < HIGH_PRIORITY_BOOST; ++i) {
+          sketch.increment(keyHash);
+        }
+      } else {
+        assert priority == Priority.NORMAL;
+      }
+      buffer.lastUpdate = -1;
+      window.addLast(buffer);
+      // While the cache is not full, buffers leaving the window are admitted without a contest.
+      while (window.size > maxWindowSize
+          && probation.size + protectedSegment.size + window.head.getMemoryUsage() <= maxMainSize) {
+        LlapCacheableBuffer admitted = window.head;
+        window.remove(admitted);
+        probation.addLast(admitted);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void notifyLock(LlapCacheableBuffer buffer) {
+    // Locked buffers are skipped when evicting, nothing to do.
+  }
+
+  @Override
+  public void notifyUnlock(LlapCacheableBuffer buffer) {
+    // Same approach as LRFU: batch the accesses in a thread local queue to amortize locking.
+    int count = threadLocalCount.get();
+    final LlapCacheableBuffer[] cacheableBuffers = threadLocalBuffers.get();
+    if (count < maxQueueSize) {
+      cacheableBuffers[count] = buffer;
+      threadLocalCount.set(++count);
+    }
+    if (count <= maxQueueSize / 2) {
+      // case too early to flush
+      return;
+    }
+
+    if (count == maxQueueSize) {
+      // case we have to flush thus block on the lock
+      lock.lock();
+    } else if (!lock.tryLock()) {
+      return;
+    }
+    try {
+      for (int i = 0; i < count; ++i) {
+        touchUnderLock(cacheableBuffers[i]);
+        cacheableBuffers[i] = null;
+      }
+    } finally {
+      threadLocalCount.set(0);
+      lock.unlock();
+    }
+  }
+
+  private void touchUnderLock(LlapCacheableBuffer buffer) {
+    if (buffer.lastUpdate == -1) {
+      buffer.lastUpdate = 0; // Unlock after the load; already counted in cache().
+    } else {
+      sketch.increment(getKeyHash(buffer));
+    }
+    switch (buffer.indexInHeap) {
+    case WINDOW:
+      window.moveToLast(buffer);
+      break;
+    case PROBATION:
+      // Accessed again after being admitted, protect it.
+      probation.remove(buffer);
+      protectedSegment.addLast(buffer);
+      while (protectedSegment.size > maxProtectedSize && protectedSegment.head != buffer) {
+        LlapCacheableBuffer demoted = protectedSegment.head;
+        protectedSegment.remove(demoted);
+        probation.addLast(demoted);
+      }
+      break;
+    case PROTECTED:
+      protectedSegment.moveToLast(buffer);
+      break;
+    default:
+      // Evicted while in the thread local queue.
+      break;
+    }
+  }
+
+  @Override
+  public void setEvictionListener(EvictionListener listener) {
+    this.evictionListener = listener;
+  }
+
+  @Override
+  public long evictEntity(Predicate<LlapCacheableBuffer> predicate) {
+    // TODO: HIVE-23197
+    return 0;
+  }
+
+  @Override
+  public long purge() {
+    List<LlapCacheableBuffer> evictedBuffers = new ArrayList<>();
+    lock.lock();
+    try {
+      for (BufferList list : new BufferList[] { window, probation, protectedSegment }) {
+        LlapCacheableBuffer buffer = list.head;
+        while (buffer != null) {
+          LlapCacheableBuffer next = buffer.next;
+          int invalidateResult = buffer.invalidate();
+          if (invalidateResult != LlapCacheableBuffer.INVALIDATE_FAILED) {
+            list.remove(buffer);
+          }
+          if (invalidateResult == LlapCacheableBuffer.INVALIDATE_OK) {
+            evictedBuffers.add(buffer);
+          }
+          buffer = next;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    long evicted = notifyEvicted(evictedBuffers);
+    LlapIoImpl.LOG.info("PURGE: evicted {} from TinyLFU policy",
+        LlapUtil.humanReadableByteCount(evicted));
+    return evicted;
+  }
+
+  @Override
+  public long evictSomeBlocks(long memoryToReserve) {
+    long evicted = 0;
+    List<LlapCacheableBuffer> evictedBuffers = new ArrayList<>();
+    lock.lock();
+    try {
+      while (evicted < memoryToReserve) {
+        LlapCacheableBuffer victim = evictUnderLock();
+        if (victim == null) {
+          break;
+        }
+        evicted += victim.getMemoryUsage();
+        evictedBuffers.add(victim);
+      }
+    } finally {
+      lock.unlock();
+    }
+    notifyEvicted(evictedBuffers);
+    return evicted;
+  }
+
+  /**
+   * Picks a buffer to evict, removes it from the policy and invalidates it.
+   * @return the evicted buffer, or null if there are no buffers that can be evicted.
+   */
+  private LlapCacheableBuffer evictUnderLock() {
+    while (true) {
+      // The window is about to receive the buffer(s) we are evicting for, so its LRU buffer is
+      // the candidate for admission even if the window is not over its size yet.
+      LlapCacheableBuffer candidate = window.firstUnlocked();
+      LlapCacheableBuffer victim = probation.firstUnlocked();
+      LlapCacheableBuffer toEvict;
+      if (candidate != null && victim != null) {
+        if (sketch.frequency(getKeyHash(candidate)) > sketch.frequency(getKeyHash(victim))) {
+          // Admit the candidate to the main region in place of the victim.
+          window.remove(candidate);
+          probation.addLast(candidate);
+          ++admittedCount;
+          toEvict = victim;
+        } else {
+          ++rejectedCount;
+          toEvict = candidate;
+        }
+      } else if (candidate != null) {
+        toEvict = candidate;
+      } else if (victim != null) {
+        toEvict = victim;
+      } else {
+        toEvict = protectedSegment.firstUnlocked();
+        if (toEvict == null) {
+          return null;
+        }
+      }
+      BufferList list = listOf(toEvict);
+      list.remove(toEvict);
+      int invalidateResult = toEvict.invalidate();
+      if (invalidateResult == LlapCacheableBuffer.INVALIDATE_OK) {
+        return toEvict;
+      } else if (invalidateResult == LlapCacheableBuffer.INVALIDATE_FAILED) {
+        // Got locked in the meantime, so it is in use; keep it.
+        list.addLast(toEvict);
+      }
+      // Otherwise, already invalidated by someone else; just drop it.
+    }
+  }
+
+  private long notifyEvicted(List<LlapCacheableBuffer> evictedBuffers) {
+    long evicted = 0;
+    for (LlapCacheableBuffer buffer : evictedBuffers) {
+      evicted += buffer.getMemoryUsage();
+      evictionListener.notifyEvicted(buffer);
+    }
+    return evicted;
+  }
+
+  private BufferList listOf(LlapCacheableBuffer buffer) {
+    switch (buffer.indexInHeap) {
+    case WINDOW:
+      return window;
+    case PROBATION:
+      return probation;
+    case PROTECTED:
+      return protectedSegment;
+    default:
+      throw new AssertionError("Buffer is not in TinyLFU policy: " + buffer);
+    }
+  }
+
+  private static int getKeyHash(LlapCacheableBuffer buffer) {
+    return buffer.cacheKeyHash != 0 ? buffer.cacheKeyHash : System.identityHashCode(buffer);
+  }
+
+  @Override
+  public void debugDumpShort(StringBuilder sb) {
+    lock.lock();
+    try {
+      sb.append("\nTinyLFU window: ").append(window.count).append(" items, ")
+          .append(LlapUtil.humanReadableByteCount(window.size));
+      sb.append("\nTinyLFU probation: ").append(probation.count).append(" items, ")
+          .append(LlapUtil.humanReadableByteCount(probation.size));
+      sb.append("\nTinyLFU protected: ").append(protectedSegment.count).append(" items, ")
+          .append(LlapUtil.humanReadableByteCount(protectedSegment.size));
+      sb.append("\nTinyLFU admitted: ").append(admittedCount)
+          .append(", rejected: ").append(rejectedCount);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * LRU list of the buffers of a region, using the list pointers of the buffers.
+   * The head is the least recently used buffer.
+   */
+  private static final class BufferList {
+    private final int region;
+    private LlapCacheableBuffer head, tail;
+    private long size = 0;
+    private int count = 0;
+
+    BufferList(int region) {
+      this.region = region;
+    }
+
+    void addLast(LlapCacheableBuffer buffer) {
+      buffer.indexInHeap = region;
+      buffer.next = null;
+      buffer.prev = tail;
+      if (tail != null) {
+        tail.next = buffer;
+      } else {
+        head = buffer;
+      }
+      tail = buffer;
+      size += buffer.getMemoryUsage();
+      ++count;
+    }
+
+    void remove(LlapCacheableBuffer buffer) {
+      assert buffer.indexInHeap == region;
+      if (buffer.prev != null) {
+        buffer.prev.next = buffer.next;
+      } else {
+        head = buffer.next;
+      }
+      if (buffer.next != null) {
+        buffer.next.prev = buffer.prev;
+      } else {
+        tail = buffer.prev;
+      }
+      buffer.prev = null;
+      buffer.next = null;
+      buffer.indexInHeap = LlapCacheableBuffer.NOT_IN_CACHE;
+      size -= buffer.getMemoryUsage();
+      --count;
+    }
+
+    void moveToLast(LlapCacheableBuffer buffer) {
+      if (buffer != tail) {
+        remove(buffer);
+        addLast(buffer);
+      }
+    }
+
+    LlapCacheableBuffer firstUnlocked() {
+      LlapCacheableBuffer buffer = head;
+      while (buffer != null && buffer.isLocked()) {
+        buffer = buffer.next;
+      }
+      return buffer;
+    }
+  }
+}
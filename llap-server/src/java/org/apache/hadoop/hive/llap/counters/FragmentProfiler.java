@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.counters;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.tez.common.counters.TezCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Low-overhead sampling profiler of the running fragments.
+ *
+ * The executor and IO elevator threads attach themselves to the fragment they work for; the IO
+ * code tags the stage of the elevator the thread is in. A background thread periodically samples
+ * the state of each attached thread (Thread.getState does not need a safepoint, unlike stack
+ * traces) and counts the samples per fragment, stage and state. The live counts are available
+ * through the web UI and JMX; when a thread detaches, its samples are converted to milliseconds
+ * and added to the counters of the task, so that they are summarized per vertex.
+ *
+ * The profiler is process-wide; it is disabled unless initialized with a positive interval, in
+ * which case the tagging calls are no-ops.
+ */
+public final class FragmentProfiler {
+  private static final Logger LOG = LoggerFactory.getLogger(FragmentProfiler.class);
+
+  /** Counter group of the per-stage thread state times, in milliseconds. */
+  public static final String COUNTER_GROUP = "LlapFragmentProfile";
+
+  /** What the thread is doing, from the point of view of the IO elevator. */
+  public enum Stage {
+    /** The operator pipeline on the executor, or untagged work on the IO thread. */
+    OTHER,
+    /** Reading from the file system. */
+    READ,
+    /** Looking up the cache and decompressing the data into it. */
+    DECOMPRESS,
+    /** Allocating cache buffers, including the eviction to make room for them. */
+    ALLOCATE,
+    /** Decoding the column vectors. */
+    DECODE,
+    /** Handing the vectors over to the executor; blocks when the executor is behind. */
+    CONSUME,
+    /** The executor waiting for vectors from the IO elevator. */
+    WAIT_IO
+  }
+
+  /** The sampled thread state; the timed and untimed waits are counted together. */
+  public enum State {
+    RUNNABLE,
+    BLOCKED,
+    WAITING
+  }
+
+  private static final int STAGE_COUNT = Stage.values().length;
+  private static final int SAMPLE_COUNT = STAGE_COUNT * State.values().length;
+
+  private static final ThreadLocal<ThreadProfile> CURRENT = new ThreadLocal<>();
+
+  private static volatile FragmentProfiler instance = null;
+
+  /** The samples of a fragment, or of a thread while attached to one. */
+  @VisibleForTesting
+  static final class Samples {
+    private final AtomicLongArray counts = new AtomicLongArray(SAMPLE_COUNT);
+
+    void increment(Stage stage, State state) {
+      counts.incrementAndGet(index(stage, state));
+    }
+
+    long get(Stage stage, State state) {
+      return counts.get(index(stage, state));
+    }
+
+    private static int index(Stage stage, State state) {
+      return state.ordinal() * STAGE_COUNT + stage.ordinal();
+    }
+
+    void appendTo(StringBuilder sb) {
+      boolean isFirst = true;
+      for (Stage stage : Stage.values()) {
+        for (State state : State.values()) {
+          long count = get(stage, state);
+          if (count == 0) continue;
+          sb.append(isFirst ? "" : ", ").append(stage).append('/').append(state).append('=')
+              .append(count);
+          isFirst = false;
+        }
+      }
+    }
+  }
+
+  private static final class FragmentProfile {
+    private final Samples samples = new Samples();
+    private final long startTimeMs = System.currentTimeMillis();
+    private int threadCount = 0;
+  }
+
+  private static final class ThreadProfile {
+    private final Thread thread;
+    private final String fragmentId;
+    private final FragmentProfile fragment;
+    private final Samples samples = new Samples();
+    private volatile Stage stage = Stage.OTHER;
+
+    ThreadProfile(Thread thread, String fragmentId, FragmentProfile fragment) {
+      this.thread = thread;
+      this.fragmentId = fragmentId;
+      this.fragment = fragment;
+    }
+  }
+
+  private final long intervalMs;
+  private final Map<String, FragmentProfile> fragments = new ConcurrentHashMap<>();
+  private final Set<ThreadProfile> threads = ConcurrentHashMap.newKeySet();
+  private final Thread samplerThread;
+
+  @VisibleForTesting
+  FragmentProfiler(long intervalMs, boolean startSampler) {
+    this.intervalMs = intervalMs;
+    if (!startSampler) {
+      this.samplerThread = null;
+      return;
+    }
+    this.samplerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runSampler();
+      }
+    }, "LlapFragmentProfiler");
+    samplerThread.setDaemon(true);
+    samplerThread.start();
+  }
+
+  /**
+   * Initializes the process-wide profiler from the daemon configuration; only the first call
+   * has an effect.
+   */
+  public static synchronized void init(Configuration conf) {
+    if (instance != null) return;
+    long intervalMs = HiveConf.getTimeVar(
+        conf, ConfVars.LLAP_DAEMON_FRAGMENT_PROFILER_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    if (intervalMs <= 0) return;
+    LOG.info("Sampling the fragment threads every " + intervalMs + "ms");
+    instance = new FragmentProfiler(intervalMs, true);
+  }
+
+  public static synchronized void shutdown() {
+    if (instance != null && instance.samplerThread != null) {
+      instance.samplerThread.interrupt();
+    }
+    instance = null;
+  }
+
+  /**
+   * Attaches the current thread to a fragment, until {@link #detach(TezCounters)}.
+   * @return Whether the thread was attached; false when the profiler is disabled, or the thread
+   *         is already attached.
+   */
+  public static boolean attach(String fragmentId) {
+    FragmentProfiler profiler = instance;
+    if (profiler == null || fragmentId == null || CURRENT.get() != null) return false;
+    CURRENT.set(profiler.register(Thread.currentThread(), fragmentId));
+    return true;
+  }
+
+  /**
+   * Detaches the current thread from its fragment, and adds the time it spent in each stage and
+   * state, as estimated from the samples, to the counters.
+   */
+  public static void detach(TezCounters counters) {
+    ThreadProfile profile = CURRENT.get();
+    if (profile == null) return;
+    CURRENT.remove();
+    FragmentProfiler profiler = instance;
+    if (profiler != null) {
+      profiler.unregister(profile);
+      if (counters != null) {
+        profiler.addCounters(profile.samples, counters);
+      }
+    }
+  }
+
+  /**
+   * Tags the stage of the current thread.
+   * @return The previous stage, to restore with {@link #exit(Stage)}; null when not profiling.
+   */
+  public static Stage enter(Stage stage) {
+    ThreadProfile profile = CURRENT.get();
+    if (profile == null) return null;
+    Stage previous = profile.stage;
+    profile.stage = stage;
+    return previous;
+  }
+
+  public static void exit(Stage previous) {
+    if (previous == null) return;
+    ThreadProfile profile = CURRENT.get();
+    if (profile != null) {
+      profile.stage = previous;
+    }
+  }
+
+  /** Whether the profiler is enabled. */
+  public static boolean isEnabled() {
+    return instance != null;
+  }
+
+  /** The live samples of the running fragments, one line per fragment. */
+  public static Set<String> getProfiles() {
+    Set<String> result = new TreeSet<>();
+    FragmentProfiler profiler = instance;
+    if (profiler == null) return result;
+    for (Map.Entry<String, FragmentProfile> e : profiler.fragments.entrySet()) {
+      FragmentProfile fragment = e.getValue();
+      StringBuilder sb = new StringBuilder(e.getKey());
+      synchronized (fragment) {
+        sb.append(" (").append(fragment.threadCount).append(" threads, ");
+      }
+      sb.append(System.currentTimeMillis() - fragment.startTimeMs).append("ms): ");
+      fragment.samples.appendTo(sb);
+      result.add(sb.toString());
+    }
+    return result;
+  }
+
+  public static void debugDump(StringBuilder sb) {
+    FragmentProfiler profiler = instance;
+    if (profiler == null) {
+      sb.append("The fragment profiler is disabled; see ")
+          .append(ConfVars.LLAP_DAEMON_FRAGMENT_PROFILER_INTERVAL_MS.varname).append("\n");
+      return;
+    }
+    sb.append("Running fragments, in samples every ").append(profiler.intervalMs)
+        .append("ms:\n");
+    for (String profile : getProfiles()) {
+      sb.append(profile).append("\n");
+    }
+  }
+
+  @VisibleForTesting
+  static FragmentProfiler setInstance(FragmentProfiler profiler) {
+    FragmentProfiler old = instance;
+    instance = profiler;
+    return old;
+  }
+
+  private ThreadProfile register(Thread thread, String fragmentId) {
+    FragmentProfile fragment;
+    while (true) {
+      fragment = fragments.computeIfAbsent(fragmentId, k -> new FragmentProfile());
+      synchronized (fragment) {
+        // The fragment may have been removed by the last thread detaching concurrently.
+        if (fragment.threadCount >= 0) {
+          ++fragment.threadCount;
+          break;
+        }
+      }
+    }
+    ThreadProfile profile = new ThreadProfile(thread, fragmentId, fragment);
+    threads.add(profile);
+    return profile;
+  }
+
+  private void unregister(ThreadProfile profile) {
+    threads.remove(profile);
+    FragmentProfile fragment = profile.fragment;
+    synchronized (fragment) {
+      if (--fragment.threadCount == 0) {
+        fragment.threadCount = -1;
+        fragments.remove(profile.fragmentId, fragment);
+      }
+    }
+  }
+
+  private void addCounters(Samples samples, TezCounters counters) {
+    for (Stage stage : Stage.values()) {
+      for (State state : State.values()) {
+        long count = samples.get(stage, state);
+        if (count == 0) continue;
+        counters.findCounter(COUNTER_GROUP, stage + "_" + state + "_MS")
+            .increment(count * intervalMs);
+      }
+    }
+  }
+
+  private void runSampler() {
+    while (true) {
+      try {
+        Thread.sleep(intervalMs);
+      } catch (InterruptedException e) {
+        LOG.info("Fragment profiler stopped");
+        return;
+      }
+      sample();
+    }
+  }
+
+  @VisibleForTesting
+  void sample() {
+    for (ThreadProfile profile : threads) {
+      State state;
+      switch (profile.thread.getState()) {
+      case RUNNABLE: state = State.RUNNABLE; break;
+      case BLOCKED: state = State.BLOCKED; break;
+      case WAITING:
+      case TIMED_WAITING: state = State.WAITING; break;
+      default: continue;
+      }
+      Stage stage = profile.stage;
+      profile.samples.increment(stage, state);
+      profile.fragment.samples.increment(stage, state);
+    }
+  }
+}
@@ -29,7 +29,11 @@
  * Per query counters.
  */
 public class QueryFragmentCounters implements LowLevelCacheCounters {
+  /** Counter group of the cache hit and miss bytes by cache policy, to compare policies. */
+  public static final String CACHE_POLICY_COUNTER_GROUP = "LlapCachePolicy";
+
   private final boolean doUseTimeCounters;
+  private final String cachePolicyHitCounter, cachePolicyMissCounter;
 
   public static enum Desc {
     MACHINE,
@@ -42,10 +46,16 @@ public static enum Desc {
   private final Object[] descs;
   private final TezCounters tezCounters;
 
-  public QueryFragmentCounters(Configuration conf, final TezCounters tezCounters) {
+  /**
+   * @param cachePolicyName The name of the cache policy of the daemon, used for the counters of the
+   *                        {@link #CACHE_POLICY_COUNTER_GROUP}; null if there is no cache.
+   */
+  public QueryFragmentCounters(Configuration conf, String cachePolicyName, final TezCounters tezCounters) {
     fixedCounters = new AtomicLongArray(LlapIOCounters.values().length);
     descs = new Object[Desc.values().length];
     doUseTimeCounters = HiveConf.getBoolVar(conf, ConfVars.LLAP_ORC_ENABLE_TIME_COUNTERS);
+    cachePolicyHitCounter = cachePolicyName == null ? null : cachePolicyName + "_CACHE_HIT_BYTES";
+    cachePolicyMissCounter = cachePolicyName == null ? null : cachePolicyName + "_CACHE_MISS_BYTES";
     this.tezCounters = tezCounters;
     if (!doUseTimeCounters) {
       setCounter(LlapIOCounters.TOTAL_IO_TIME_NS, -1);
@@ -94,11 +104,18 @@ public void setDesc(Desc key, Object desc) {
   @Override
   public void recordCacheHit(long bytesHit) {
     incrCounter(LlapIOCounters.CACHE_HIT_BYTES, bytesHit);
+    if (tezCounters != null && cachePolicyHitCounter != null) {
+      tezCounters.findCounter(CACHE_POLICY_COUNTER_GROUP, cachePolicyHitCounter).increment(bytesHit);
+    }
   }
 
   @Override
   public void recordCacheMiss(long bytesMissed) {
     incrCounter(LlapIOCounters.CACHE_MISS_BYTES, bytesMissed);
+    if (tezCounters != null && cachePolicyMissCounter != null) {
+      tezCounters.findCounter(CACHE_POLICY_COUNTER_GROUP, cachePolicyMissCounter)
+          .increment(bytesMissed);
+    }
   }
 
   @Override
@@ -453,6 +453,10 @@ public QueryCompleteResponseProto queryComplete(
         executorService.killFragment(fragmentInfo.getFragmentIdentifierString());
       }
       amReporter.queryComplete(queryIdentifier);
+      if (metrics != null) {
+        metrics.queryComplete(constructUniqueQueryId(
+            queryInfo.getHiveQueryIdString(), queryInfo.getDagIdentifier()));
+      }
     }
     return QueryCompleteResponseProto.getDefaultInstance();
   }
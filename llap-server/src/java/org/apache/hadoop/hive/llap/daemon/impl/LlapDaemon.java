@@ -46,6 +46,7 @@
 import org.apache.hadoop.hive.llap.LlapOutputFormatService;
 import org.apache.hadoop.hive.llap.LlapUtil;
 import org.apache.hadoop.hive.llap.configuration.LlapDaemonConfiguration;
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler;
 import org.apache.hadoop.hive.llap.daemon.ContainerRunner;
 import org.apache.hadoop.hive.llap.daemon.QueryFailedHandler;
 import org.apache.hadoop.hive.llap.daemon.rpc.LlapDaemonProtocolProtos;
@@ -323,6 +324,9 @@ public LlapDaemon(Configuration daemonConf, int numExecutors, long executorMemor
     String waitQueueSchedulerClassName = HiveConf.getVar(
         daemonConf, ConfVars.LLAP_DAEMON_WAIT_QUEUE_COMPARATOR_CLASS_NAME);
 
+    // Before creating the executor and IO thread pools.
+    ThreadPlacement.init(daemonConf);
+    FragmentProfiler.init(daemonConf);
     Scheduler<TaskRunnerCallable> executorService = new TaskExecutorService(numExecutors, waitQueueSize,
         waitQueueSchedulerClassName, enablePreemption, executorClassLoader, metrics, null);
 
@@ -514,6 +518,8 @@ public void shutdown() {
       pauseMonitor.stop();
     }
 
+    FragmentProfiler.shutdown();
+
     if (metrics != null) {
       LlapMetricsSystem.shutdown();
     }
@@ -688,6 +694,11 @@ public Set<String> getExecutorsStatus() {
     return containerRunner.getExecutorStatus();
   }
 
+  @Override
+  public Set<String> getFragmentProfiles() {
+    return FragmentProfiler.getProfiles();
+  }
+
   @Override
   public int getNumActive() {
     return containerRunner.getNumActive();
@@ -63,6 +63,13 @@ public interface LlapDaemonMXBean {
    */
   public Set<String> getExecutorsStatus();
 
+  /**
+   * Sampled thread states of the running fragments, per IO stage; empty when the fragment
+   * profiler is disabled.
+   * @return Fragment profiles.
+   */
+  public Set<String> getFragmentProfiles();
+
   /**
    * Gets llap daemon configured executor memory per instance.
    * @return memory per instance
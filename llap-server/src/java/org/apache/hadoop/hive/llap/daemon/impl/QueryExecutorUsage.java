@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.daemon.impl;
+
+/**
+ * Executor usage of a single query (DAG) on this daemon. Kept in the {@link QueryInfo}, so it
+ * lives as long as the query is tracked by the {@link QueryTracker}. Used by the fair share
+ * wait queue comparator to share the executors between the queries.
+ */
+public class QueryExecutorUsage {
+  private int runningFragments = 0;
+  private long finishedFragments = 0;
+  private long finishedRunningTimeNs = 0;
+  // The virtual finish tag of the last fragment of this query that was queued.
+  private double lastFinishTag = 0;
+
+  public synchronized void fragmentStarted() {
+    ++runningFragments;
+  }
+
+  public synchronized void fragmentFinished(long runningTimeNs) {
+    --runningFragments;
+    ++finishedFragments;
+    finishedRunningTimeNs += runningTimeNs;
+  }
+
+  public synchronized int getRunningFragments() {
+    return runningFragments;
+  }
+
+  public synchronized long getFinishedFragments() {
+    return finishedFragments;
+  }
+
+  public synchronized long getFinishedRunningTimeNs() {
+    return finishedRunningTimeNs;
+  }
+
+  /**
+   * @return the average running time of the finished fragments, or the given default if no
+   *         fragment has finished yet.
+   */
+  public synchronized long getAverageRunningTimeNs(long defaultNs) {
+    return finishedFragments == 0 ? defaultNs : finishedRunningTimeNs / finishedFragments;
+  }
+
+  /**
+   * Assigns the virtual start tag of a newly queued fragment; the fragment starts when both
+   * the virtual time and the previous fragments of the query have reached it.
+   * @param virtualTime the current virtual time of the scheduler.
+   * @param cost the weighted cost of the fragment, in virtual time units.
+   * @return the start tag of the fragment.
+   */
+  public synchronized double assignStartTag(double virtualTime, double cost) {
+    double startTag = Math.max(virtualTime, lastFinishTag);
+    lastFinishTag = startTag + cost;
+    return startTag;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "QueryExecutorUsage{running=" + runningFragments + ", finished=" + finishedFragments
+        + ", finishedRunningTimeNs=" + finishedRunningTimeNs + "}";
+  }
+}
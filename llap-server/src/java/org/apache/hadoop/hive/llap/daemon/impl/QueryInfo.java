@@ -70,6 +70,7 @@ public class QueryInfo {
   private final FinishableStateTracker finishableStateTracker = new FinishableStateTracker();
   private final String tokenUserName, appId;
   private final ContainerRunnerImpl.UgiPool ugiPool;
+  private final QueryExecutorUsage executorUsage = new QueryExecutorUsage();
 
   public QueryInfo(QueryIdentifier queryIdentifier, String appIdString, String dagIdString,
     String dagName, String hiveQueryIdString,
@@ -167,6 +168,10 @@ public boolean isExternalQuery() {
     return isExternalQuery;
   }
 
+  public QueryExecutorUsage getExecutorUsage() {
+    return executorUsage;
+  }
+
   private synchronized void createLocalDirs() throws IOException {
     if (localDirs == null) {
       localDirs = new String[localDirsBase.length];
@@ -34,6 +34,7 @@
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.hive.llap.LlapUtil;
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler;
 import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
 import org.apache.hadoop.hive.llap.io.encoded.TezCounterSource;
 import org.apache.tez.common.CallableWithNdc;
@@ -92,12 +93,15 @@ public void setUncaughtExceptionHandler(Thread.UncaughtExceptionHandler handler)
     private Callable<V> actualCallable;
     private Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
     private ThreadMXBean mxBean;
+    // The fragment of the submitting thread; the LLAP IO callables don't carry their own NDC.
+    private final String submitterFragmentId;
 
     WrappedCallable(final Callable<V> callable,
         final Thread.UncaughtExceptionHandler uncaughtExceptionHandler, ThreadMXBean mxBean) {
       this.actualCallable = callable;
       this.uncaughtExceptionHandler = uncaughtExceptionHandler;
       this.mxBean = mxBean;
+      this.submitterFragmentId = MDC.get("fragmentId");
     }
 
     @Override
@@ -114,6 +118,8 @@ public V call() throws Exception {
       long cpuTime = mxBean == null ? -1 : mxBean.getCurrentThreadCpuTime(),
           userTime = mxBean == null ? -1 : mxBean.getCurrentThreadUserTime();
       setupMDCFromNDC(actualCallable);
+      String fragmentId = MDC.get("fragmentId");
+      FragmentProfiler.attach(fragmentId != null ? fragmentId : submitterFragmentId);
       try {
         return actualCallable.call();
       } finally {
@@ -185,6 +191,7 @@ private void updateCounters(final List<LlapUtil.StatisticsData> statsBefore,
       } else {
         LOG.warn("Unexpected callable {}; cannot get counters", actualCallable);
       }
+      FragmentProfiler.detach(tezCounters);
 
       if (tezCounters != null) {
         if (cpuTime >= 0 && userTime >= 0) {
@@ -44,8 +44,11 @@
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.llap.daemon.FinishableStateUpdateHandler;
 import org.apache.hadoop.hive.llap.daemon.SchedulerFragmentCompletingListener;
+import org.apache.hadoop.hive.llap.daemon.impl.comparator.FairShareComparator;
 import org.apache.hadoop.hive.llap.daemon.impl.comparator.LlapQueueComparatorBase;
 import org.apache.hadoop.hive.llap.daemon.rpc.LlapDaemonProtocolProtos.FragmentRuntimeInfo;
 import org.apache.hadoop.hive.llap.daemon.rpc.LlapDaemonProtocolProtos.SignableVertexSpec;
@@ -139,6 +142,9 @@ public class TaskExecutorService extends AbstractService
 
   private final Object lock = new Object();
   private final LlapDaemonExecutorMetrics metrics;
+  private final LlapQueueComparatorBase waitQueueComparator;
+  // Set when the wait queue uses fair sharing, which needs to track the fragment lifecycle.
+  private final FairShareComparator fairShareComparator;
 
   public TaskExecutorService(int numExecutors, int waitQueueSize,
       String waitQueueComparatorClassName, boolean enablePreemption,
@@ -155,8 +161,9 @@ public TaskExecutorService(int numExecutors, int waitQueueSize,
         + ", waitQueueComparatorClassName=" + waitQueueComparatorClassName
         + ", enablePreemption=" + enablePreemption);
 
-    final LlapQueueComparatorBase waitQueueComparator = createComparator(
-        waitQueueComparatorClassName);
+    this.waitQueueComparator = createComparator(waitQueueComparatorClassName);
+    this.fairShareComparator = waitQueueComparator instanceof FairShareComparator
+        ? (FairShareComparator) waitQueueComparator : null;
     this.maxParallelExecutors = numExecutors;
     this.configuredMaxExecutors = numExecutors;
     this.configuredWaitingQueueSize = waitQueueSize;
@@ -165,7 +172,7 @@ public TaskExecutorService(int numExecutors, int waitQueueSize,
     this.threadPoolExecutor = new ThreadPoolExecutor(numExecutors, // core pool size
         numExecutors, // max pool size
         1, TimeUnit.MINUTES, new SynchronousQueue<Runnable>(), // direct hand-off
-        new ExecutorThreadFactory(classLoader));
+        ThreadPlacement.createThreadFactory(new ExecutorThreadFactory(classLoader)));
     this.executorService = MoreExecutors.listeningDecorator(threadPoolExecutor);
     this.preemptionQueue = new PriorityBlockingQueue<>(numExecutors,
         new PreemptionQueueComparator());
@@ -263,6 +270,14 @@ private LlapQueueComparatorBase createComparator(
     return waitQueueComparator;
   }
 
+  @Override
+  public void serviceInit(Configuration conf) throws Exception {
+    if (waitQueueComparator instanceof Configurable) {
+      ((Configurable) waitQueueComparator).setConf(conf);
+    }
+    super.serviceInit(conf);
+  }
+
   @Override
   public void serviceStop() {
     shutDown(false);
@@ -515,6 +530,9 @@ public SubmissionState schedule(TaskRunnerCallable task) {
 
       canFinish = taskWrapper.getTaskRunnerCallable().canFinish();
       taskWrapper.updateCanFinishForPriority(canFinish); // Update the property before offering.
+      if (fairShareComparator != null) {
+        fairShareComparator.fragmentQueued(task); // The fair share tag is also used for ordering.
+      }
       evictedTask = waitQueue.offer(taskWrapper, maxParallelExecutors - runningFragmentCount.get());
       // Finishable state is checked on the task, via an explicit query to the TaskRunnerCallable
 
@@ -755,6 +773,10 @@ void tryScheduleUnderLock(final TaskWrapper taskWrapper) throws RejectedExecutio
     TaskRunnerCallable task = taskWrapper.getTaskRunnerCallable();
     ListenableFuture<TaskRunner2Result> future = executorService.submit(task);
     task.setWmCountersRunning();
+    metrics.addMetricsQueryQueueTime(task.getQueryId(), task.getQueueTime());
+    if (fairShareComparator != null) {
+      fairShareComparator.fragmentStarted(task);
+    }
     runningFragmentCount.incrementAndGet();
     taskWrapper.setIsInWaitQueue(false);
 
@@ -1019,6 +1041,7 @@ public void onSuccess(TaskRunner2Result result) {
       taskWrapper.getTaskRunnerCallable().setWmCountersDone();
       metrics.addMetricsQueueTime(taskWrapper.getTaskRunnerCallable().getQueueTime());
       metrics.addMetricsRunningTime(taskWrapper.getTaskRunnerCallable().getRunningTime());
+      fragmentFinished();
       updatePreemptionListAndNotify(result.getEndReason());
       taskWrapper.getTaskRunnerCallable().getCallback().onSuccess(result);
     }
@@ -1034,11 +1057,19 @@ public void onFailure(Throwable t) {
       taskWrapper.setIsInPreemptableQueue(false);
       taskWrapper.maybeUnregisterForFinishedStateNotifications();
       taskWrapper.getTaskRunnerCallable().setWmCountersDone();
+      fragmentFinished();
       updatePreemptionListAndNotify(null);
       taskWrapper.getTaskRunnerCallable().getCallback().onFailure(t);
       LOG.error("Failed notification received: Stacktrace: " + ExceptionUtils.getStackTrace(t));
     }
 
+    private void fragmentFinished() {
+      if (fairShareComparator != null) {
+        TaskRunnerCallable task = taskWrapper.getTaskRunnerCallable();
+        fairShareComparator.fragmentFinished(task, task.getRunningTime());
+      }
+    }
+
     private void updatePreemptionListAndNotify(EndReason reason) {
       // if this task was added to pre-emption list, remove it
       if (enablePreemption) {
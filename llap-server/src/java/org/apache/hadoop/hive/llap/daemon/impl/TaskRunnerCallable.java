@@ -133,6 +133,8 @@ public class TaskRunnerCallable extends CallableWithNdc<TaskRunner2Result> {
   private boolean isGuaranteed;
   private WmFragmentCounters wmCounters;
   private final AMNodeInfo amNodeInfo;
+  // Virtual start tag assigned by the fair share comparator; only changed under the epic lock.
+  private double fairShareTag;
 
   @VisibleForTesting
   public TaskRunnerCallable(SubmitWorkRequestProto request, QueryFragmentInfo fragmentInfo,
@@ -491,6 +493,18 @@ public QueryFragmentInfo getFragmentInfo() {
     return fragmentInfo;
   }
 
+  public QueryExecutorUsage getQueryExecutorUsage() {
+    return fragmentInfo.getQueryInfo().getExecutorUsage();
+  }
+
+  public double getFairShareTag() {
+    return fairShareTag;
+  }
+
+  public void setFairShareTag(double fairShareTag) {
+    this.fairShareTag = fairShareTag;
+  }
+
   public TaskRunnerCallback getCallback() {
     return new TaskRunnerCallback(request, vertex, this);
   }
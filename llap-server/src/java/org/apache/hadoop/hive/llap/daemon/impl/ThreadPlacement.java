@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.daemon.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Topology-aware placement of the executor and IO elevator threads of the daemon.
+ *
+ * Each thread created by a placing thread factory gets a home NUMA node, round-robin within its
+ * group, that is inherited by the threads it starts (e.g. the task thread of an executor). The
+ * arenas of the allocator are assigned to the nodes, arena i to node i modulo the node count, and
+ * a thread starts its allocations in a home arena of its node; the cache metrics count the hits
+ * outside the home arenas. Nothing binds the arena memory to the node: that is left to the
+ * first-touch policy of the OS, which only places it well when the threads are also pinned to
+ * the CPUs of their node.
+ *
+ * The placement is process-wide; it is disabled unless initialized with the feature enabled and
+ * more than one node.
+ */
+public final class ThreadPlacement {
+  private static final Logger LOG = LoggerFactory.getLogger(ThreadPlacement.class);
+
+  private static final String SYS_NODE_DIR = "/sys/devices/system/node";
+  private static final Pattern NODE_DIR_PATTERN = Pattern.compile("^node([0-9]+)$");
+  private static final String THREAD_SELF = "/proc/thread-self";
+  private static final long PIN_TIMEOUT_MS = 10000;
+
+  private static final InheritableThreadLocal<Integer> HOME_NODE = new InheritableThreadLocal<>();
+
+  private static volatile ThreadPlacement instance = null;
+
+  private final int nodeCount;
+  /** The CPU list of each node, in the cpulist format of /sys; null when not pinning. */
+  private final List<String> nodeCpus;
+  private volatile boolean isPinningEnabled;
+
+  @VisibleForTesting
+  ThreadPlacement(int nodeCount, List<String> nodeCpus) {
+    this.nodeCount = nodeCount;
+    this.nodeCpus = nodeCpus;
+    this.isPinningEnabled = nodeCpus != null;
+  }
+
+  /**
+   * Initializes the process-wide placement from the daemon configuration; only the first call
+   * has an effect.
+   */
+  public static synchronized ThreadPlacement init(Configuration conf) {
+    if (instance != null) {
+      return instance;
+    }
+    int nodeCount = 1;
+    List<String> nodeCpus = null;
+    if (HiveConf.getBoolVar(conf, ConfVars.LLAP_DAEMON_NUMA_AWARE_ENABLED)) {
+      List<String> sysNodeCpus = readNodeCpus(new File(SYS_NODE_DIR));
+      nodeCount = HiveConf.getIntVar(conf, ConfVars.LLAP_DAEMON_NUMA_NODES);
+      if (nodeCount <= 0) {
+        nodeCount = Math.max(1, sysNodeCpus.size());
+      }
+      if (HiveConf.getBoolVar(conf, ConfVars.LLAP_DAEMON_NUMA_PIN_THREADS)) {
+        if (sysNodeCpus.size() == nodeCount) {
+          nodeCpus = sysNodeCpus;
+        } else {
+          LOG.warn("Not pinning threads: found " + sysNodeCpus.size() + " nodes in "
+              + SYS_NODE_DIR + ", but configured " + nodeCount);
+        }
+      }
+      LOG.info("Placing LLAP threads on " + nodeCount + " nodes"
+          + (nodeCpus == null ? "" : "; pinning to CPUs " + nodeCpus));
+    }
+    instance = new ThreadPlacement(nodeCount, nodeCpus);
+    return instance;
+  }
+
+  /** The number of nodes the threads are placed on; 0 when the placement is disabled. */
+  private static int getNodeCount() {
+    ThreadPlacement placement = instance;
+    return (placement == null || placement.nodeCount <= 1) ? 0 : placement.nodeCount;
+  }
+
+  /** The home node of the current thread, or -1 if it does not have one. */
+  @VisibleForTesting
+  static int getHomeNode() {
+    Integer node = HOME_NODE.get();
+    return node == null ? -1 : node;
+  }
+
+  /** Whether the current thread is placed on a node, and thus has home arenas. */
+  public static boolean hasHomeNode() {
+    return getNodeCount() > 0 && getHomeNode() >= 0;
+  }
+
+  /** Whether the arena is one of the home arenas of the current thread. */
+  public static boolean isHomeArena(int arenaIx) {
+    int nodeCount = getNodeCount();
+    return nodeCount > 0 && arenaIx % nodeCount == getHomeNode();
+  }
+
+  /**
+   * The home arena of the current thread, to start its allocations from.
+   * @return The arena index; -1 if the thread is not placed on a node.
+   */
+  public static int getHomeArenaIx(long threadId, int arenaCount) {
+    int nodeCount = getNodeCount();
+    return nodeCount == 0 ? -1 : getHomeArenaIx(getHomeNode(), nodeCount, threadId, arenaCount);
+  }
+
+  /** Spreads the threads of a node over the arenas of the node, based on the thread id. */
+  @VisibleForTesting
+  static int getHomeArenaIx(int homeNode, int nodeCount, long threadId, int arenaCount) {
+    if (homeNode < 0 || homeNode >= arenaCount) {
+      return -1;
+    }
+    int homeArenaCount = (arenaCount - homeNode + nodeCount - 1) / nodeCount;
+    return homeNode + nodeCount * (int)(threadId % homeArenaCount);
+  }
+
+  /**
+   * Wraps the thread factory of a thread pool, so that its threads are placed round-robin on
+   * the nodes. Returns the original factory when the placement is disabled.
+   */
+  public static ThreadFactory createThreadFactory(ThreadFactory threadFactory) {
+    ThreadPlacement placement = instance;
+    return placement == null ? threadFactory : placement.wrap(threadFactory);
+  }
+
+  @VisibleForTesting
+  ThreadFactory wrap(final ThreadFactory threadFactory) {
+    if (nodeCount <= 1) {
+      return threadFactory;
+    }
+    final AtomicInteger threadCount = new AtomicInteger(0);
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final int node = threadCount.getAndIncrement() % nodeCount;
+        return threadFactory.newThread(new Runnable() {
+          @Override
+          public void run() {
+            placeCurrentThread(node);
+            r.run();
+          }
+        });
+      }
+    };
+  }
+
+  @VisibleForTesting
+  void placeCurrentThread(int node) {
+    HOME_NODE.set(node);
+    if (!isPinningEnabled) {
+      return;
+    }
+    try {
+      pinCurrentThread(nodeCpus.get(node));
+    } catch (IOException | InterruptedException e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      // Don't keep failing (and forking) for every thread.
+      isPinningEnabled = false;
+      LOG.warn("Failed to pin " + Thread.currentThread().getName() + " to the CPUs of node "
+          + node + "; disabling pinning", e);
+    }
+  }
+
+  private static void pinCurrentThread(String cpus) throws IOException, InterruptedException {
+    // The link points to /proc/<pid>/task/<tid>; Java does not expose the native thread id.
+    Path task = Files.readSymbolicLink(Paths.get(THREAD_SELF));
+    String tid = task.getFileName().toString();
+    Process process = new ProcessBuilder("taskset", "-p", "-c", cpus, tid)
+        .redirectErrorStream(true).start();
+    if (!process.waitFor(PIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+      process.destroyForcibly();
+      throw new IOException("Timed out running taskset for thread " + tid);
+    }
+    if (process.exitValue() != 0) {
+      throw new IOException("taskset failed for thread " + tid + " with exit code "
+          + process.exitValue());
+    }
+  }
+
+  /**
+   * Reads the CPU lists of the NUMA nodes, ordered by node id.
+   * @return The CPU lists; empty if the topology is not available.
+   */
+  @VisibleForTesting
+  static List<String> readNodeCpus(File sysNodeDir) {
+    TreeMap<Integer, String> result = new TreeMap<>();
+    File[] nodeDirs = sysNodeDir.listFiles();
+    if (nodeDirs == null) {
+      return new ArrayList<>();
+    }
+    for (File nodeDir : nodeDirs) {
+      Matcher m = NODE_DIR_PATTERN.matcher(nodeDir.getName());
+      if (!m.matches()) continue;
+      try {
+        String cpus = new String(Files.readAllBytes(new File(nodeDir, "cpulist").toPath()),
+            StandardCharsets.US_ASCII).trim();
+        if (!cpus.isEmpty()) {
+          // Memory-only nodes have no CPUs, and no threads to place on them.
+          result.put(Integer.parseInt(m.group(1)), cpus);
+        }
+      } catch (IOException e) {
+        LOG.warn("Cannot read the CPUs of " + nodeDir, e);
+      }
+    }
+    return new ArrayList<>(result.values());
+  }
+}
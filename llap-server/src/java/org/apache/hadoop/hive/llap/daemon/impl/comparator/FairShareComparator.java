@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.daemon.impl.comparator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.daemon.impl.QueryExecutorUsage;
+import org.apache.hadoop.hive.llap.daemon.impl.TaskRunnerCallable;
+import org.apache.hadoop.hive.llap.daemon.rpc.LlapDaemonProtocolProtos.FragmentRuntimeInfo;
+
+/**
+ * Weighted fair sharing of the executors between queries, using start-time fair queueing.
+ *
+ * Each fragment gets a virtual start tag when it is queued: the later of the current virtual
+ * time and the finish tag of the previous fragment of the same query. The finish tag of the
+ * fragment is its start tag plus its cost divided by its weight; the cost is the average running
+ * time of the finished fragments of the query (or of all the queries, for a new query). The
+ * virtual time is the largest start tag of the started fragments. Fragments with the smallest
+ * start tag run first, so a query that used a lot of executor time waits behind the queries that
+ * used little, and a new query is not stuck behind the backlog of an old one.
+ *
+ * Guaranteed fragments and fragments with few pending upstream tasks get a configurable weight
+ * boost, so they advance their query's tags more slowly.
+ *
+ * The tags are assigned when a fragment is offered to the wait queue and do not change while it
+ * is queued, so the queue order stays consistent. The hooks are called by the TaskExecutorService.
+ */
+public class FairShareComparator extends LlapQueueComparatorBase implements Configurable {
+  private static final long DEFAULT_FRAGMENT_COST_NS = TimeUnit.SECONDS.toNanos(1);
+
+  private Configuration conf;
+  private float boost = ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_BOOST.defaultFloatVal;
+  private int shortTasks = ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_SHORT_TASKS.defaultIntVal;
+
+  private double virtualTime = 0;
+  private long finishedFragments = 0;
+  private long finishedRunningTimeNs = 0;
+
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+    this.boost = Math.max(1.0f,
+        HiveConf.getFloatVar(conf, ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_BOOST));
+    this.shortTasks = HiveConf.getIntVar(
+        conf, ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_SHORT_TASKS);
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
+
+  /** Called before the fragment is offered to the wait queue. */
+  public synchronized void fragmentQueued(TaskRunnerCallable task) {
+    long defaultCost = finishedFragments == 0
+        ? DEFAULT_FRAGMENT_COST_NS : finishedRunningTimeNs / finishedFragments;
+    QueryExecutorUsage usage = task.getQueryExecutorUsage();
+    double cost = Math.max(1, usage.getAverageRunningTimeNs(defaultCost)) / getWeight(task);
+    task.setFairShareTag(usage.assignStartTag(virtualTime, cost));
+  }
+
+  /** Called when the fragment is submitted to an executor. */
+  public synchronized void fragmentStarted(TaskRunnerCallable task) {
+    virtualTime = Math.max(virtualTime, task.getFairShareTag());
+    task.getQueryExecutorUsage().fragmentStarted();
+  }
+
+  /** Called when a started fragment completes, successfully or not. */
+  public synchronized void fragmentFinished(TaskRunnerCallable task, long runningTimeNs) {
+    task.getQueryExecutorUsage().fragmentFinished(runningTimeNs);
+    ++finishedFragments;
+    finishedRunningTimeNs += runningTimeNs;
+  }
+
+  double getWeight(TaskRunnerCallable task) {
+    if (task.isGuaranteed()) {
+      return boost;
+    }
+    FragmentRuntimeInfo fri = task.getFragmentRuntimeInfo();
+    int knownPending = fri.getNumSelfAndUpstreamTasks() - fri.getNumSelfAndUpstreamCompletedTasks();
+    return knownPending <= shortTasks ? boost : 1.0;
+  }
+
+  @Override
+  public int compareInternal(TaskRunnerCallable o1, TaskRunnerCallable o2) {
+    int result = Double.compare(o1.getFairShareTag(), o2.getFairShareTag());
+    if (result != 0) {
+      return result;
+    }
+    FragmentRuntimeInfo fri1 = o1.getFragmentRuntimeInfo();
+    FragmentRuntimeInfo fri2 = o2.getFragmentRuntimeInfo();
+    if (o1.getQueryId().equals(o2.getQueryId())
+        && fri1.getWithinDagPriority() != fri2.getWithinDagPriority()) {
+      // Within dag priority - lower values indicate higher priority.
+      return Integer.compare(fri1.getWithinDagPriority(), fri2.getWithinDagPriority());
+    }
+    return Long.compare(fri1.getCurrentAttemptStartTime(), fri2.getCurrentAttemptStartTime());
+  }
+}
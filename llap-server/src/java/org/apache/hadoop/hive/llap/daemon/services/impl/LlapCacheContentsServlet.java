@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.daemon.services.impl;
+
+import java.io.PrintWriter;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hadoop.hive.llap.io.api.LlapIo;
+import org.apache.hadoop.hive.llap.io.api.LlapProxy;
+import org.apache.hive.http.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet that returns the summary of the file ranges in the LLAP IO cache, for the
+ * cache-affinity split placement; empty when LLAP IO is disabled.
+ */
+@SuppressWarnings("serial")
+public class LlapCacheContentsServlet extends HttpServlet {
+  private static final Logger LOG = LoggerFactory.getLogger(LlapCacheContentsServlet.class);
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) {
+    try {
+      if (!HttpServer.isInstrumentationAccessAllowed(getServletContext(), request, response)) {
+        return;
+      }
+      response.setContentType("text/plain; charset=utf8");
+      response.setHeader(LlapIoMemoryServlet.ACCESS_CONTROL_ALLOW_METHODS, "GET");
+      response.setHeader(LlapIoMemoryServlet.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+      response.setHeader("Cache-Control", "no-cache");
+
+      LlapIo<?> llapIo = LlapProxy.getIo();
+      try (PrintWriter writer = response.getWriter()) {
+        if (llapIo != null) {
+          writer.write(llapIo.getCacheContentsSummary());
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("Caught exception while processing llap cache contents request", e);
+      response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+}
@@ -116,6 +116,8 @@ public void serviceInit(Configuration conf) {
       this.http.addServlet("iomem", "/iomem", LlapIoMemoryServlet.class);
       this.http.addServlet("system", "/system", SystemConfigurationServlet.class);
       this.http.addServlet("locking", "/locking", LlapLockingServlet.class);
+      this.http.addServlet("profile", "/profile", LlapProfileServlet.class);
+      this.http.addServlet("cachecontents", "/cachecontents", LlapCacheContentsServlet.class);
     } catch (IOException e) {
       LOG.warn("LLAP web service failed to come up", e);
     }
@@ -82,13 +82,16 @@ public class LlapInputFormat implements InputFormat<NullWritable, VectorizedRowB
   private final String hostName;
 
   private final Configuration daemonConf;
+  private final String cachePolicyName;
 
   @SuppressWarnings({ "rawtypes", "unchecked" })
   LlapInputFormat(InputFormat sourceInputFormat, Deserializer sourceSerDe,
-      ColumnVectorProducer cvp, ExecutorService executor, Configuration daemonConf) {
+      ColumnVectorProducer cvp, ExecutorService executor, Configuration daemonConf,
+      String cachePolicyName) {
     this.executor = executor;
     this.cvp = cvp;
     this.daemonConf = daemonConf;
+    this.cachePolicyName = cachePolicyName;
     this.sourceInputFormat = sourceInputFormat;
     this.sourceASC = (sourceInputFormat instanceof AvoidSplitCombination)
         ? (AvoidSplitCombination)sourceInputFormat : null;
@@ -118,7 +121,7 @@ public RecordReader<NullWritable, VectorizedRowBatch> getRecordReader(
       List<Integer> tableIncludedCols = ColumnProjectionUtils.isReadAllColumns(job)
           ? null : ColumnProjectionUtils.getReadColumnIDs(job);
       LlapRecordReader rr = LlapRecordReader.create(job, fileSplit, tableIncludedCols, hostName,
-          cvp, executor, sourceInputFormat, sourceSerDe, reporter, daemonConf);
+          cvp, executor, sourceInputFormat, sourceSerDe, reporter, daemonConf, cachePolicyName);
       if (rr == null) {
         // Reader-specific incompatibility like SMB or schema evolution.
         return sourceInputFormat.getRecordReader(split, job, reporter);
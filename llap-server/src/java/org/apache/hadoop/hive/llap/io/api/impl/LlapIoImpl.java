@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hive.llap.io.api.impl;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,6 +34,7 @@
 import org.apache.hadoop.hive.llap.ProactiveEviction;
 import org.apache.hadoop.hive.llap.cache.LlapCacheableBuffer;
 import org.apache.hadoop.hive.llap.daemon.impl.StatsRecordingThreadPool;
+import org.apache.hadoop.hive.llap.daemon.impl.ThreadPlacement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -48,7 +50,9 @@
 import org.apache.hadoop.hive.llap.cache.BuddyAllocator;
 import org.apache.hadoop.hive.llap.cache.BufferUsageManager;
 import org.apache.hadoop.hive.llap.cache.CacheContentsTracker;
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache;
 import org.apache.hadoop.hive.llap.cache.EvictionDispatcher;
+import org.apache.hadoop.hive.llap.cache.LlapCacheSnapshot;
 import org.apache.hadoop.hive.llap.cache.LlapDataBuffer;
 import org.apache.hadoop.hive.llap.cache.LlapIoDebugDump;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache;
@@ -57,15 +61,18 @@
 import org.apache.hadoop.hive.llap.cache.LowLevelCachePolicy;
 import org.apache.hadoop.hive.llap.cache.LowLevelFifoCachePolicy;
 import org.apache.hadoop.hive.llap.cache.LowLevelLrfuCachePolicy;
+import org.apache.hadoop.hive.llap.cache.LowLevelTinyLfuCachePolicy;
 import org.apache.hadoop.hive.llap.cache.SerDeLowLevelCacheImpl;
 import org.apache.hadoop.hive.llap.cache.SimpleAllocator;
 import org.apache.hadoop.hive.llap.cache.SimpleBufferManager;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
 import org.apache.hadoop.hive.llap.daemon.rpc.LlapDaemonProtocolProtos;
+import org.apache.hadoop.hive.llap.io.LlapCacheSummary;
 import org.apache.hadoop.hive.llap.io.api.LlapIo;
 import org.apache.hadoop.hive.llap.io.decode.ColumnVectorProducer;
 import org.apache.hadoop.hive.llap.io.decode.GenericColumnVectorProducer;
 import org.apache.hadoop.hive.llap.io.decode.OrcColumnVectorProducer;
+import org.apache.hadoop.hive.llap.io.encoded.OrcStripePrefetcher;
 import org.apache.hadoop.hive.llap.io.metadata.MetadataCache;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonIOMetrics;
@@ -107,7 +114,12 @@ public class LlapIoImpl implements LlapIo<VectorizedRowBatch>, LlapIoDebugDump {
   private final LowLevelCache dataCache;
   private final BufferUsageManager bufferManager;
   private final Configuration daemonConf;
+  // Name of the cache policy in the counters of the fragments; null if there is no cache
+  private final String cachePolicyName;
   private final LowLevelCacheMemoryManager memoryManager;
+  private final LlapCacheSnapshot cacheSnapshot;
+  private final OrcStripePrefetcher stripePrefetcher;
+  private final DecodedColumnCache decodedColumnCache;
 
   private List<LlapIoDebugDump> debugDumpComponents = new ArrayList<>();
 
@@ -147,11 +159,20 @@ private LlapIoImpl(Configuration conf) throws IOException {
     if (useLowLevelCache) {
       // Memory manager uses cache policy to trigger evictions, so create the policy first.
       boolean useLrfu = HiveConf.getBoolVar(conf, HiveConf.ConfVars.LLAP_USE_LRFU);
+      boolean useTinyLfu = HiveConf.getBoolVar(conf, HiveConf.ConfVars.LLAP_USE_TINYLFU);
       long totalMemorySize = HiveConf.getSizeVar(conf, ConfVars.LLAP_IO_MEMORY_MAX_SIZE);
       int minAllocSize = (int) HiveConf.getSizeVar(conf, ConfVars.LLAP_ALLOCATOR_MIN_ALLOC);
-      LowLevelCachePolicy
-          realCachePolicy =
-          useLrfu ? new LowLevelLrfuCachePolicy(minAllocSize, totalMemorySize, conf) : new LowLevelFifoCachePolicy();
+      LowLevelCachePolicy realCachePolicy;
+      if (useTinyLfu) {
+        realCachePolicy = new LowLevelTinyLfuCachePolicy(minAllocSize, totalMemorySize, conf);
+        cachePolicyName = "TINYLFU";
+      } else if (useLrfu) {
+        realCachePolicy = new LowLevelLrfuCachePolicy(minAllocSize, totalMemorySize, conf);
+        cachePolicyName = "LRFU";
+      } else {
+        realCachePolicy = new LowLevelFifoCachePolicy();
+        cachePolicyName = "FIFO";
+      }
       boolean trackUsage = HiveConf.getBoolVar(conf, HiveConf.ConfVars.LLAP_TRACK_CACHE_USAGE);
       LowLevelCachePolicy cachePolicyWrapper;
       if (trackUsage) {
@@ -186,6 +207,9 @@ private LlapIoImpl(Configuration conf) throws IOException {
       cachePolicyWrapper.setEvictionListener(e);
 
       cacheImpl.startThreads(); // Start the cache threads.
+      long arenaHeadroom = HiveConf.getSizeVar(conf, ConfVars.LLAP_ALLOCATOR_EVICTION_HEADROOM);
+      memoryManager.startBackgroundEviction(
+          arenaHeadroom * (allocator.getMaxCacheSize() / allocator.getArenaSize()));
       bufferManager = bufferManagerOrc = cacheImpl; // Cache also serves as buffer manager.
       bufferManagerGeneric = serdeCache;
       if (trackUsage) {
@@ -200,6 +224,15 @@ private LlapIoImpl(Configuration conf) throws IOException {
         debugDumpComponents.add(metadataCache);
       }
       debugDumpComponents.add(allocator);
+
+      String persistencePath = HiveConf.getVar(conf, ConfVars.LLAP_IO_CACHE_PERSISTENCE_PATH);
+      if (persistencePath != null && !persistencePath.isEmpty()) {
+        cacheSnapshot = new LlapCacheSnapshot(
+            conf, new File(persistencePath), cacheImpl, metadataCache);
+        cacheSnapshot.restore(totalMemorySize);
+      } else {
+        cacheSnapshot = null;
+      }
     } else {
       this.allocator = new SimpleAllocator(conf);
       fileMetadataCache = null;
@@ -207,6 +240,8 @@ private LlapIoImpl(Configuration conf) throws IOException {
       bufferManager = bufferManagerOrc = bufferManagerGeneric = sbm;
       dataCache = sbm;
       this.memoryManager = null;
+      this.cacheSnapshot = null;
+      this.cachePolicyName = null;
       debugDumpComponents.add(new LlapIoDebugDump() {
         @Override
         public void debugDumpShort(StringBuilder sb) {
@@ -218,11 +253,21 @@ public void debugDumpShort(StringBuilder sb) {
     int numThreads = HiveConf.getIntVar(conf, HiveConf.ConfVars.LLAP_IO_THREADPOOL_SIZE);
     executor = new StatsRecordingThreadPool(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
         new LinkedBlockingQueue<Runnable>(),
-        new ThreadFactoryBuilder().setNameFormat("IO-Elevator-Thread-%d").setDaemon(true).build());
+        ThreadPlacement.createThreadFactory(new ThreadFactoryBuilder()
+            .setNameFormat("IO-Elevator-Thread-%d").setDaemon(true).build()));
     FixedSizedObjectPool<IoTrace> tracePool = IoTrace.createTracePool(conf);
+    stripePrefetcher = HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_ORC_PREFETCH_ENABLED)
+        ? new OrcStripePrefetcher(conf, allocator) : null;
+    long decodedCacheSize = HiveConf.getSizeVar(conf, ConfVars.LLAP_IO_DECODED_CACHE_MAX_SIZE);
+    if (decodedCacheSize > 0) {
+      decodedColumnCache = new DecodedColumnCache(decodedCacheSize, numThreads);
+      debugDumpComponents.add(decodedColumnCache);
+    } else {
+      decodedColumnCache = null;
+    }
     // TODO: this should depends on input format and be in a map, or something.
-    this.orcCvp = new OrcColumnVectorProducer(
-        metadataCache, dataCache, bufferManagerOrc, conf, cacheMetrics, ioMetrics, tracePool);
+    this.orcCvp = new OrcColumnVectorProducer(metadataCache, dataCache, bufferManagerOrc, conf,
+        cacheMetrics, ioMetrics, tracePool, stripePrefetcher, decodedColumnCache);
     this.genericCvp = isEncodeEnabled ? new GenericColumnVectorProducer(
         serdeCache, bufferManagerGeneric, conf, cacheMetrics, ioMetrics, tracePool) : null;
     LOG.info("LLAP IO initialized");
@@ -241,8 +286,22 @@ public String getMemoryInfo() {
     return sb.toString();
   }
 
+  @Override
+  public String getCacheContentsSummary() {
+    LlapCacheSummary summary = new LlapCacheSummary();
+    if (dataCache instanceof LowLevelCacheImpl) {
+      ((LowLevelCacheImpl) dataCache).summarizeContents(summary);
+    }
+    StringBuilder sb = new StringBuilder();
+    summary.write(sb);
+    return sb.toString();
+  }
+
   @Override
   public long purge() {
+    if (decodedColumnCache != null) {
+      decodedColumnCache.clear();
+    }
     if (memoryManager != null) {
       return memoryManager.purge();
     }
@@ -279,7 +338,7 @@ public InputFormat<NullWritable, VectorizedRowBatch> getInputFormat(
       LOG.warn("LLAP encode is disabled; cannot use for " + sourceInputFormat.getClass());
       return null;
     }
-    return new LlapInputFormat(sourceInputFormat, sourceSerDe, cvp, executor, daemonConf);
+    return new LlapInputFormat(sourceInputFormat, sourceSerDe, cvp, executor, daemonConf, cachePolicyName);
   }
 
   @Override
@@ -290,6 +349,15 @@ public void close() {
       buddyAllocatorMXBean = null;
     }
     executor.shutdownNow();
+    if (memoryManager != null) {
+      memoryManager.stopBackgroundEviction();
+    }
+    if (stripePrefetcher != null) {
+      stripePrefetcher.shutdown();
+    }
+    if (cacheSnapshot != null) {
+      cacheSnapshot.save();
+    }
   }
 
 
@@ -35,6 +35,7 @@
 import org.apache.hadoop.hive.llap.ConsumerFeedback;
 import org.apache.hadoop.hive.llap.LlapHiveUtils;
 import org.apache.hadoop.hive.llap.counters.FragmentCountersMap;
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler;
 import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
 import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
 import org.apache.hadoop.hive.llap.daemon.impl.StatsRecordingThreadPool;
@@ -111,16 +112,18 @@ class LlapRecordReader implements RecordReader<NullWritable, VectorizedRowBatch>
 
   /**
    * Creates the record reader and checks the input-specific compatibility.
+   * @param cachePolicyName The name of the cache policy of the daemon, null if there is no cache.
    * @return The reader if the split can be read, null otherwise.
    */
   public static LlapRecordReader create(JobConf job, FileSplit split,
       List<Integer> tableIncludedCols, String hostName, ColumnVectorProducer cvp,
       ExecutorService executor, InputFormat<?, ?> sourceInputFormat, Deserializer sourceSerDe,
-      Reporter reporter, Configuration daemonConf) throws IOException, HiveException {
+      Reporter reporter, Configuration daemonConf, String cachePolicyName)
+      throws IOException, HiveException {
     MapWork mapWork = LlapHiveUtils.findMapWork(job);
     if (mapWork == null) return null; // No compatible MapWork.
     LlapRecordReader rr = new LlapRecordReader(mapWork, job, split, tableIncludedCols, hostName,
-        cvp, executor, sourceInputFormat, sourceSerDe, reporter, daemonConf);
+        cvp, executor, sourceInputFormat, sourceSerDe, reporter, daemonConf, cachePolicyName);
     if (!rr.checkOrcSchemaEvolution()) {
       rr.close();
       return null;
@@ -131,7 +134,8 @@ public static LlapRecordReader create(JobConf job, FileSplit split,
   private LlapRecordReader(MapWork mapWork, JobConf job, FileSplit split,
       List<Integer> tableIncludedCols, String hostName, ColumnVectorProducer cvp,
       ExecutorService executor, InputFormat<?, ?> sourceInputFormat, Deserializer sourceSerDe,
-      Reporter reporter, Configuration daemonConf) throws IOException, HiveException {
+      Reporter reporter, Configuration daemonConf, String cachePolicyName)
+      throws IOException, HiveException {
     this.executor = executor;
     this.jobConf = job;
     this.split = split;
@@ -150,7 +154,7 @@ private LlapRecordReader(MapWork mapWork, JobConf job, FileSplit split,
     } else {
       LOG.warn("Not using tez counters as fragment id string is null");
     }
-    this.counters = new QueryFragmentCounters(job, taskCounters);
+    this.counters = new QueryFragmentCounters(job, cachePolicyName, taskCounters);
     this.counters.setDesc(QueryFragmentCounters.Desc.MACHINE, hostName);
 
     VectorizedRowBatchCtx ctx = mapWork.getVectorizedRowBatchCtx();
@@ -507,10 +511,15 @@ ColumnVectorBatch nextCvb() throws InterruptedException, IOException {
     // Hive operators rely on recordreader to handle task interruption, and unlike most RRs we
     // do not do any blocking IO ops on this thread.
     Object next;
-    do {
-      rethrowErrorIfAny(pendingError.get()); // Best-effort check; see the comment in the method.
-      next = queue.poll(100, TimeUnit.MILLISECONDS);
-    } while (next == null);
+    FragmentProfiler.Stage previousStage = FragmentProfiler.enter(FragmentProfiler.Stage.WAIT_IO);
+    try {
+      do {
+        rethrowErrorIfAny(pendingError.get()); // Best-effort check; see the comment in the method.
+        next = queue.poll(100, TimeUnit.MILLISECONDS);
+      } while (next == null);
+    } finally {
+      FragmentProfiler.exit(previousStage);
+    }
     if (doLogBlocking) {
       LlapIoImpl.LOG.trace("next is unblocked");
     }
@@ -583,7 +592,12 @@ public void consumeData(ColumnVectorBatch data) throws InterruptedException {
       LlapIoImpl.LOG.trace("consume called; closed {}, interrupted {}, err {}, pending {}",
           isClosed, isInterrupted, pendingError.get(), queue.size());
     }
-    enqueueInternal(data);
+    FragmentProfiler.Stage previousStage = FragmentProfiler.enter(FragmentProfiler.Stage.CONSUME);
+    try {
+      enqueueInternal(data);
+    } finally {
+      FragmentProfiler.exit(previousStage);
+    }
   }
 
   @Override
@@ -28,11 +28,13 @@
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hadoop.hive.llap.cache.BufferUsageManager;
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache;
 import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
 import org.apache.hadoop.hive.llap.io.api.impl.ColumnVectorBatch;
 import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
 import org.apache.hadoop.hive.llap.io.encoded.OrcEncodedDataReader;
+import org.apache.hadoop.hive.llap.io.encoded.OrcStripePrefetcher;
 import org.apache.hadoop.hive.llap.io.metadata.MetadataCache;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonIOMetrics;
@@ -61,11 +63,14 @@ public class OrcColumnVectorProducer implements ColumnVectorProducer {
   // TODO: if using in multiple places, e.g. SerDe cache, pass this in.
   // TODO: should this rather use a threadlocal for NUMA affinity?
   private final FixedSizedObjectPool<IoTrace> tracePool;
+  private final OrcStripePrefetcher stripePrefetcher;
+  private final DecodedColumnCache decodedColumnCache;
 
   public OrcColumnVectorProducer(MetadataCache metadataCache,
       LowLevelCache lowLevelCache, BufferUsageManager bufferManager,
       Configuration conf, LlapDaemonCacheMetrics cacheMetrics, LlapDaemonIOMetrics ioMetrics,
-      FixedSizedObjectPool<IoTrace> tracePool) {
+      FixedSizedObjectPool<IoTrace> tracePool, OrcStripePrefetcher stripePrefetcher,
+      DecodedColumnCache decodedColumnCache) {
     LlapIoImpl.LOG.info("Initializing ORC column vector producer");
 
     this.metadataCache = metadataCache;
@@ -75,6 +80,8 @@ public OrcColumnVectorProducer(MetadataCache metadataCache,
     this.cacheMetrics = cacheMetrics;
     this.ioMetrics = ioMetrics;
     this.tracePool = tracePool;
+    this.stripePrefetcher = stripePrefetcher;
+    this.decodedColumnCache = decodedColumnCache;
   }
 
   public Configuration getConf() {
@@ -89,8 +96,10 @@ public ReadPipeline createReadPipeline(
       Map<Path, PartitionDesc> parts) throws IOException {
     cacheMetrics.incrCacheReadRequests();
     OrcEncodedDataConsumer edc = new OrcEncodedDataConsumer(consumer, includes, counters, ioMetrics);
+    edc.setDecodedColumnCache(decodedColumnCache);
     OrcEncodedDataReader reader = new OrcEncodedDataReader(lowLevelCache, bufferManager,
-        metadataCache, conf, job, split, includes, sarg, edc, counters, sef, tracePool, parts);
+        metadataCache, conf, job, split, includes, sarg, edc, counters, sef, tracePool, parts,
+        stripePrefetcher);
     edc.init(reader, reader, reader.getTrace());
     return edc;
   }
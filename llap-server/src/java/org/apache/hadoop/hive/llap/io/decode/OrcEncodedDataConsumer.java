@@ -23,6 +23,10 @@
 
 import org.apache.hadoop.hive.common.io.encoded.EncodedColumnBatch;
 import org.apache.hadoop.hive.llap.ConsumerFeedback;
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache;
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache.DecodedColumn;
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache.DecodedColumnKey;
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler;
 import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
 import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
 import org.apache.hadoop.hive.llap.io.api.impl.ColumnVectorBatch;
@@ -75,6 +79,8 @@
   private final Includes includes;
   private TypeDescription[] batchSchemas;
   private boolean useDecimal64ColumnVectors;
+  private DecodedColumnCache decodedColumnCache;
+  private boolean isDecodedColumnCacheChecked = false;
 
   public OrcEncodedDataConsumer(Consumer<ColumnVectorBatch> consumer, Includes includes,
                                 QueryFragmentCounters counters, LlapDaemonIOMetrics ioMetrics) {
@@ -90,6 +96,10 @@ public void setUseDecimal64ColumnVectors(final boolean useDecimal64ColumnVectors
     this.useDecimal64ColumnVectors = useDecimal64ColumnVectors;
   }
 
+  public void setDecodedColumnCache(DecodedColumnCache decodedColumnCache) {
+    this.decodedColumnCache = decodedColumnCache;
+  }
+
   public void setFileMetadata(ConsumerFileMetadata f) {
     assert fileMetadata == null;
     fileMetadata = f;
@@ -115,6 +125,7 @@ protected void decodeBatch(OrcEncodedColumnBatch batch,
 
     boolean sameStripe = currentStripeIndex == previousStripeIndex;
 
+    FragmentProfiler.Stage previousStage = FragmentProfiler.enter(FragmentProfiler.Stage.DECODE);
     try {
       ConsumerStripeMetadata stripeMetadata = stripes.get(currentStripeIndex);
       // Get non null row count from root column, to get max vector batches
@@ -137,6 +148,18 @@ protected void decodeBatch(OrcEncodedColumnBatch batch,
       int batchSize = VectorizedRowBatch.DEFAULT_SIZE;
       TypeDescription fileSchema = fileMetadata.getSchema();
 
+      DecodedColumnCache.Builder[] decodedColumns = null;
+      if (canUseDecodedColumnCache(batch.getBatchKey(), fileSchema)) {
+        if (decodeFromCache(batch.getBatchKey(), downstreamConsumer)) {
+          counters.incrWallClockCounter(LlapIOCounters.DECODE_TIME_NS, startTime);
+          return;
+        }
+        decodedColumns = new DecodedColumnCache.Builder[batchSchemas.length];
+        for (int idx = 0; idx < decodedColumns.length; ++idx) {
+          decodedColumns[idx] = new DecodedColumnCache.Builder(maxBatchesRG);
+        }
+      }
+
       if (columnReaders == null || !sameStripe || noIndex) {
         createColumnReaders(batch, stripeMetadata, fileSchema);
       } else {
@@ -194,12 +217,21 @@ protected void decodeBatch(OrcEncodedColumnBatch batch,
           TreeReader reader = columnReaders[idx];
           ColumnVector cv = prepareColumnVector(cvb, idx, batchSize);
           reader.nextVector(cv, null, batchSize);
+          if (decodedColumns != null) {
+            decodedColumns[idx].add(batchSchemas[idx], cv, batchSize);
+          }
         }
 
         // we are done reading a batch, send it to consumer for processing
         downstreamConsumer.consumeData(cvb);
         counters.incrCounter(LlapIOCounters.ROWS_EMITTED, batchSize);
       }
+      if (decodedColumns != null) {
+        for (int idx = 0; idx < decodedColumns.length; ++idx) {
+          decodedColumnCache.put(createDecodedColumnKey(batch.getBatchKey(), idx),
+              decodedColumns[idx].build());
+        }
+      }
       LlapIoImpl.ORC_LOGGER.debug("Done with decode");
       counters.incrWallClockCounter(LlapIOCounters.DECODE_TIME_NS, startTime);
       counters.incrCounter(LlapIOCounters.NUM_VECTOR_BATCHES, maxBatchesRG);
@@ -207,7 +239,60 @@ protected void decodeBatch(OrcEncodedColumnBatch batch,
     } catch (IOException e) {
       // Caller will return the batch.
       downstreamConsumer.setError(e);
+    } finally {
+      FragmentProfiler.exit(previousStage);
+    }
+  }
+
+  /**
+   * Checks, once per reader, whether the decoded vectors can be cached: only primitive columns
+   * without schema evolution conversions or row-level filtering are.
+   */
+  private boolean canUseDecodedColumnCache(OrcBatchKey batchKey, TypeDescription fileSchema) {
+    if (decodedColumnCache == null) return false;
+    if (isDecodedColumnCacheChecked) return true;
+    isDecodedColumnCacheChecked = true;
+    batchSchemas = includes.getBatchReaderTypes(fileSchema);
+    if (batchKey.fileKey == null || batchSchemas.length == 0
+        || (evolution != null && evolution.hasConversion()) || includes.isProbeDecodeEnabled()
+        || !DecodedColumnCache.isSupported(batchSchemas)) {
+      decodedColumnCache = null;
+      return false;
+    }
+    return true;
+  }
+
+  private DecodedColumnKey createDecodedColumnKey(OrcBatchKey batchKey, int idx) {
+    return new DecodedColumnKey(batchKey.fileKey, batchKey.stripeIx, batchKey.rgIx,
+        batchSchemas[idx].getId(), useDecimal64ColumnVectors);
+  }
+
+  /**
+   * Produces the vector batches of a row group from the decoded column cache.
+   * @return false if some of the columns are not in the cache.
+   */
+  private boolean decodeFromCache(OrcBatchKey batchKey,
+      Consumer<ColumnVectorBatch> downstreamConsumer) throws InterruptedException {
+    DecodedColumn[] columns = new DecodedColumn[batchSchemas.length];
+    for (int idx = 0; idx < columns.length; ++idx) {
+      columns[idx] = decodedColumnCache.get(createDecodedColumnKey(batchKey, idx));
+      if (columns[idx] == null) return false;
+    }
+    int batchCount = columns[0].getBatchCount();
+    for (int i = 0; i < batchCount; ++i) {
+      int batchSize = columns[0].getBatchSize(i);
+      ColumnVectorBatch cvb = cvbPool.take();
+      cvb.filterContext.reset();
+      cvb.size = batchSize;
+      for (int idx = 0; idx < columns.length; ++idx) {
+        columns[idx].copyTo(i, prepareColumnVector(cvb, idx, batchSize));
+      }
+      downstreamConsumer.consumeData(cvb);
+      counters.incrCounter(LlapIOCounters.ROWS_EMITTED, batchSize);
     }
+    counters.incrCounter(LlapIOCounters.NUM_VECTOR_BATCHES, batchCount);
+    counters.incrCounter(LlapIOCounters.DECODED_CACHE_HIT_BATCHES, batchCount);
+    return true;
   }
 
   private ColumnVector prepareColumnVector(ColumnVectorBatch cvb, int idx, int batchSize) {
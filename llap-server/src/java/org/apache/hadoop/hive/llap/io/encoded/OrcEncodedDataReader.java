@@ -36,6 +36,8 @@
 import org.apache.hadoop.hive.common.io.Allocator.BufferObjectFactory;
 import org.apache.hadoop.hive.common.io.CacheTag;
 import org.apache.hadoop.hive.common.io.DataCache;
+import org.apache.hadoop.hive.common.io.DataCache.BooleanRef;
+import org.apache.hadoop.hive.common.io.DataCache.DiskRangeListFactory;
 import org.apache.hadoop.hive.common.io.DiskRange;
 import org.apache.hadoop.hive.common.io.DiskRangeList;
 import org.apache.hadoop.hive.common.io.encoded.EncodedColumnBatch.ColumnStreamData;
@@ -49,6 +51,7 @@
 import org.apache.hadoop.hive.llap.cache.LlapDataBuffer;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler;
 import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
 import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
 import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
@@ -64,6 +67,7 @@
 import org.apache.hadoop.hive.ql.io.orc.OrcFile.ReaderOptions;
 import org.apache.hadoop.hive.ql.io.orc.OrcSplit;
 import org.apache.hadoop.hive.ql.io.orc.RecordReaderImpl;
+import org.apache.hadoop.hive.ql.io.orc.encoded.CacheChunk;
 import org.apache.hadoop.hive.ql.io.orc.encoded.EncodedOrcFile;
 import org.apache.hadoop.hive.ql.io.orc.encoded.EncodedReader;
 import org.apache.hadoop.hive.ql.io.orc.encoded.IoTrace;
@@ -98,6 +102,7 @@
 import org.apache.orc.impl.ReaderImpl;
 import org.apache.orc.impl.RecordReaderUtils;
 import org.apache.orc.impl.SchemaEvolution;
+import org.apache.orc.impl.StreamName;
 import org.apache.orc.impl.WriterImpl;
 import org.apache.tez.common.CallableWithNdc;
 import org.apache.tez.common.counters.TezCounters;
@@ -151,6 +156,13 @@ public Pool<OrcEncodedColumnBatch> createEncodedColumnBatchPool() {
     }
   };
 
+  private static final DiskRangeListFactory CC_FACTORY = new DiskRangeListFactory() {
+    @Override
+    public DiskRangeList createCacheChunk(MemoryBuffer buffer, long offset, long end) {
+      return new CacheChunk(buffer, offset, end);
+    }
+  };
+
   private final MetadataCache metadataCache;
   private final LowLevelCache lowLevelCache;
   private final BufferUsageManager bufferManager;
@@ -176,6 +188,10 @@ public Pool<OrcEncodedColumnBatch> createEncodedColumnBatchPool() {
   private final CacheTag cacheTag;
   private final Map<Path, PartitionDesc> parts;
   private final boolean isReadCacheOnly;
+  private final OrcStripePrefetcher.FileReadAhead readAhead;
+  // The footer of the next stripe, read when starting its prefetch.
+  private OrcProto.StripeFooter nextStripeFooter;
+  private int nextStripeFooterIx = -1;
 
   private Supplier<FileSystem> fsSupplier;
 
@@ -196,7 +212,7 @@ public OrcEncodedDataReader(LowLevelCache lowLevelCache, BufferUsageManager buff
       MetadataCache metadataCache, Configuration daemonConf, Configuration jobConf,
       FileSplit split, Includes includes, SearchArgument sarg, OrcEncodedDataConsumer consumer,
       QueryFragmentCounters counters, SchemaEvolutionFactory sef, Pool<IoTrace> tracePool,
-      Map<Path, PartitionDesc> parts)
+      Map<Path, PartitionDesc> parts, OrcStripePrefetcher stripePrefetcher)
           throws IOException {
     this.lowLevelCache = lowLevelCache;
     this.metadataCache = metadataCache;
@@ -252,6 +268,14 @@ public OrcEncodedDataReader(LowLevelCache lowLevelCache, BufferUsageManager buff
     consumer.setFileMetadata(fileMetadata);
     consumer.setSchemaEvolution(evolution);
     isReadCacheOnly = HiveConf.getBoolVar(jobConf, ConfVars.LLAP_IO_CACHE_ONLY);
+    // Zero-copy readers track the disk ranges they return, and would release prefetched buffers.
+    if (stripePrefetcher != null && !useZeroCopy && !isReadCacheOnly) {
+      readAhead = stripePrefetcher.createFileReadAhead(
+          HiveConf.getVar(jobConf, ConfVars.HIVEQUERYID), split.getPath(), fsSupplier, ugi,
+          counters);
+    } else {
+      readAhead = null;
+    }
   }
 
   @Override
@@ -403,8 +427,15 @@ protected Void performDataRead() throws IOException, InterruptedException {
         if (stripeMetadatas != null) {
           stripeMetadata = stripeMetadatas.get(stripeIxMod);
         } else {
-          stripeKey.stripeIx = stripeIx;
-          OrcProto.StripeFooter footer = getStripeFooterFromCacheOrDisk(si, stripeKey);
+          OrcProto.StripeFooter footer;
+          if (nextStripeFooterIx == stripeIx) {
+            footer = nextStripeFooter;
+          } else {
+            stripeKey.stripeIx = stripeIx;
+            footer = getStripeFooterFromCacheOrDisk(si, stripeKey);
+          }
+          nextStripeFooter = null;
+          nextStripeFooterIx = -1;
           stripeMetadata = createOrcStripeMetadataObject(
               stripeIx, si, footer, fileIncludes, sargColumns);
           ensureDataReader();
@@ -412,6 +443,9 @@ protected Void performDataRead() throws IOException, InterruptedException {
               si, footer.getStreamsList(), fileIncludes, sargColumns);
           consumer.setStripeMetadata(stripeMetadata);
         }
+        if (readAhead != null) {
+          prefetchNextStripe(stripeIxMod, stripeMetadatas);
+        }
       } catch (Throwable t) {
         handleReaderError(startTime, t);
         return null;
@@ -428,9 +462,19 @@ protected Void performDataRead() throws IOException, InterruptedException {
         // consumer. It is potentially holding locked buffers, and must perform its own cleanup.
         // Also, currently readEncodedColumns is not stoppable. The consumer will discard the
         // data it receives for one stripe. We could probably interrupt it, if it checked that.
-        stripeReader.readEncodedColumns(stripeIx, si, stripeMetadata.getRowIndexes(),
-            stripeMetadata.getEncodings(), stripeMetadata.getStreams(), fileIncludes,
-            rgs, consumer);
+        // The disk reads, allocations and decoding are tagged separately by the profiler.
+        FragmentProfiler.Stage previousStage =
+            FragmentProfiler.enter(FragmentProfiler.Stage.DECOMPRESS);
+        try {
+          stripeReader.readEncodedColumns(stripeIx, si, stripeMetadata.getRowIndexes(),
+              stripeMetadata.getEncodings(), stripeMetadata.getStreams(), fileIncludes,
+              rgs, consumer);
+        } finally {
+          FragmentProfiler.exit(previousStage);
+        }
+        if (readAhead != null) {
+          readAhead.releaseStripes(stripeIx);
+        }
       } catch (Throwable t) {
         handleReaderError(startTime, t);
         return null;
@@ -513,6 +557,9 @@ private static Object determineFileId(Supplier<FileSystem> fsSupplier,
    * Closes the stripe readers (on error).
    */
   private void cleanupReaders() {
+    if (readAhead != null) {
+      readAhead.close();
+    }
     if (stripeReader != null) {
       try {
         stripeReader.close();
@@ -660,6 +707,61 @@ private ArrayList<OrcStripeMetadata> readStripesMetadata(
     return result;
   }
 
+  /**
+   * Starts prefetching the data streams of the next stripe that will be read, for the included
+   * columns, except for the parts that are already in the cache.
+   */
+  private void prefetchNextStripe(int stripeIxMod, ArrayList<OrcStripeMetadata> stripeMetadatas)
+      throws IOException {
+    int nextStripeIxMod = stripeIxMod + 1;
+    while (nextStripeIxMod < stripeRgs.length
+        && stripeRgs[nextStripeIxMod] == RecordReaderImpl.SargApplier.READ_NO_RGS) {
+      ++nextStripeIxMod;
+    }
+    if (nextStripeIxMod >= stripeRgs.length) return;
+    int nextStripeIx = stripeIxFrom + nextStripeIxMod;
+    StripeInformation si = fileMetadata.getStripes().get(nextStripeIx);
+    List<Stream> streams;
+    if (stripeMetadatas != null) {
+      streams = stripeMetadatas.get(nextStripeIxMod).getStreams();
+    } else {
+      // Keep the footer; the main loop would otherwise read it again for this stripe.
+      OrcBatchKey stripeKey = fileKey != null ? new OrcBatchKey(fileKey, nextStripeIx, 0) : null;
+      nextStripeFooter = getStripeFooterFromCacheOrDisk(si, stripeKey);
+      nextStripeFooterIx = nextStripeIx;
+      streams = nextStripeFooter.getStreamsList();
+    }
+    DiskRangeList.CreateHelper toRead = new DiskRangeList.CreateHelper();
+    long offset = si.getOffset();
+    for (Stream stream : streams) {
+      long length = stream.getLength();
+      int column = stream.getColumn();
+      if (StreamName.getArea(stream.getKind()) == StreamName.Area.DATA
+          && column < fileIncludes.length && fileIncludes[column] && length > 0) {
+        toRead.addOrMerge(offset, offset + length, true, false);
+      }
+      offset += length;
+    }
+    DiskRangeList ranges = toRead.get();
+    if (ranges == null) return;
+    if (fileKey != null) {
+      BooleanRef gotAllData = new BooleanRef();
+      ranges = lowLevelCache.getFileData(fileKey, ranges, 0, CC_FACTORY, null, gotAllData);
+    }
+    List<DiskRange> toPrefetch = new ArrayList<>();
+    for (DiskRangeList current = ranges; current != null; current = current.next) {
+      if (current instanceof CacheChunk) {
+        // Only checking whether the data is cached; the buffer is not used.
+        bufferManager.decRefBuffer(((CacheChunk) current).getBuffer());
+      } else if (!current.hasData()) {
+        toPrefetch.add(new DiskRange(current.getOffset(), current.getEnd()));
+      }
+    }
+    if (!toPrefetch.isEmpty()) {
+      readAhead.prefetch(nextStripeIx, toPrefetch);
+    }
+  }
+
   private OrcStripeMetadata createOrcStripeMetadataObject(int stripeIx, StripeInformation si,
       OrcProto.StripeFooter footer, boolean[] includes, boolean[] sargColumns) throws IOException {
     Stream.Kind[] bks = sargColumns == null ? null : new Stream.Kind[includes.length];
@@ -986,7 +1088,18 @@ public void close() throws IOException {
     public DiskRangeList readFileData(DiskRangeList range, long baseOffset,
         boolean doForceDirect) throws IOException {
       long startTime = counters.startTimeCounter();
-      DiskRangeList result = orcDataReaderRef.readFileData(range, baseOffset, doForceDirect);
+      FragmentProfiler.Stage previousStage = FragmentProfiler.enter(FragmentProfiler.Stage.READ);
+      DiskRangeList result = range;
+      try {
+        if (readAhead != null) {
+          result = readAhead.serve(range, baseOffset);
+        }
+        if (hasRangesToRead(result)) {
+          result = orcDataReaderRef.readFileData(result, baseOffset, doForceDirect);
+        }
+      } finally {
+        FragmentProfiler.exit(previousStage);
+      }
       counters.recordHdfsTime(startTime);
       if (LlapIoImpl.ORC_LOGGER.isTraceEnabled()) {
         LlapIoImpl.ORC_LOGGER.trace("Disk ranges after disk read (file {}, base offset {}): {}",
@@ -996,6 +1109,13 @@ public DiskRangeList readFileData(DiskRangeList range, long baseOffset,
       return result;
     }
 
+    private boolean hasRangesToRead(DiskRangeList range) {
+      for (DiskRangeList current = range; current != null; current = current.next) {
+        if (!current.hasData()) return true;
+      }
+      return false;
+    }
+
     @Override
     public boolean isTrackingDiskRanges() {
       return orcDataReaderRef.isTrackingDiskRanges();
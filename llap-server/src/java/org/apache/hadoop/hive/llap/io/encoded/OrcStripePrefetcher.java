@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.io.encoded;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.Allocator;
+import org.apache.hadoop.hive.common.io.DiskRange;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.cache.LlapDataBuffer;
+import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
+import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.orc.impl.BufferChunk;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Speculative read-ahead of ORC stripes for {@link OrcEncodedDataReader}. While a stripe is
+ * being decoded, the reader asks for the data streams of the next stripe that are not in the
+ * cache to be read asynchronously into allocator buffers; when the encoded reader later reads
+ * these ranges from disk, they are served from the prefetched buffers instead. The buffers are
+ * only used for the duration of the read of their stripe, and are never put into the cache as
+ * is; the encoded reader copies or decompresses them into the cache buffers as usual.
+ *
+ * Prefetching is limited by a per-query memory budget; when a query is over its budget, the
+ * stripes are simply read synchronously.
+ */
+public class OrcStripePrefetcher {
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private final Allocator allocator;
+  private final ExecutorService executor;
+  private final long maxQueryPrefetchSize;
+  // Prefetched bytes per query; entries are removed when they go back to zero.
+  private final ConcurrentHashMap<String, Long> queryPrefetchSizes = new ConcurrentHashMap<>();
+
+  public OrcStripePrefetcher(Configuration conf, Allocator allocator) {
+    this.allocator = allocator;
+    this.maxQueryPrefetchSize = HiveConf.getSizeVar(
+        conf, ConfVars.LLAP_IO_ORC_PREFETCH_QUERY_MAX_SIZE);
+    int threads = HiveConf.getIntVar(conf, ConfVars.LLAP_IO_ORC_PREFETCH_THREADS);
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+            .setNameFormat("IO-Elevator-Prefetch-Thread-%d").setDaemon(true).build());
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Creates the read-ahead state of a single file reader. */
+  public FileReadAhead createFileReadAhead(String queryId, Path path,
+      Supplier<FileSystem> fsSupplier, UserGroupInformation ugi,
+      QueryFragmentCounters counters) {
+    return new FileReadAhead(queryId, path, fsSupplier, ugi, counters);
+  }
+
+  private boolean reserve(String queryId, long size) {
+    final boolean[] isReserved = new boolean[1];
+    queryPrefetchSizes.compute(queryId, (k, v) -> {
+      long current = v == null ? 0 : v;
+      isReserved[0] = current + size <= maxQueryPrefetchSize;
+      return isReserved[0] ? Long.valueOf(current + size) : v;
+    });
+    return isReserved[0];
+  }
+
+  private void unreserve(String queryId, long size) {
+    queryPrefetchSizes.computeIfPresent(queryId, (k, v) -> v - size <= 0 ? null : v - size);
+  }
+
+  /**
+   * Prefetched ranges of one file, read by a single OrcEncodedDataReader. All the methods are
+   * called from the reader thread; the reads themselves run on the prefetch threads.
+   */
+  public final class FileReadAhead {
+    private final String queryId;
+    private final Path path;
+    private final Supplier<FileSystem> fsSupplier;
+    private final UserGroupInformation ugi;
+    private final QueryFragmentCounters counters;
+    private final List<PrefetchedRange> ranges = new ArrayList<>();
+
+    private FileReadAhead(String queryId, Path path, Supplier<FileSystem> fsSupplier,
+        UserGroupInformation ugi, QueryFragmentCounters counters) {
+      this.queryId = queryId;
+      this.path = path;
+      this.fsSupplier = fsSupplier;
+      this.ugi = ugi;
+      this.counters = counters;
+    }
+
+    /**
+     * Starts reading the given file ranges of a stripe asynchronously.
+     * @param stripeIx the stripe, used to release the buffers when it has been read.
+     * @param diskRanges absolute file ranges, sorted and non-overlapping.
+     */
+    public void prefetch(int stripeIx, List<DiskRange> diskRanges) {
+      for (DiskRange range : diskRanges) {
+        long length = range.getLength();
+        if (length <= 0) continue;
+        if (!reserve(queryId, length)) {
+          LlapIoImpl.LOG.debug("Not prefetching {} bytes of stripe {} of {}; the query is over"
+              + " its prefetch budget", length, stripeIx, path);
+          return;
+        }
+        PrefetchedRange prefetched = new PrefetchedRange(stripeIx, range.getOffset(), length);
+        try {
+          executor.execute(prefetched);
+        } catch (RejectedExecutionException e) {
+          unreserve(queryId, length);
+          return;
+        }
+        ranges.add(prefetched);
+      }
+    }
+
+    /**
+     * Replaces, in place, the ranges of the list that have been prefetched with their data.
+     * @return the head of the list, which may have been replaced.
+     */
+    public DiskRangeList serve(DiskRangeList range, long baseOffset) {
+      DiskRangeList head = range;
+      for (DiskRangeList current = range; current != null; current = current.next) {
+        if (current.hasData()) continue;
+        long offset = baseOffset + current.getOffset();
+        for (PrefetchedRange prefetched : ranges) {
+          if (!prefetched.contains(offset, current.getLength())) continue;
+          ByteBuffer data = prefetched.get(offset, (int) current.getLength());
+          if (data != null) {
+            DiskRangeList chunk = current.replaceSelfWith(
+                new BufferChunk(data, current.getOffset()));
+            if (current == head) {
+              head = chunk;
+            }
+            current = chunk;
+          }
+          break;
+        }
+      }
+      return head;
+    }
+
+    /** Releases the buffers of the stripes up to and including the given one. */
+    public void releaseStripes(int lastStripeIx) {
+      Iterator<PrefetchedRange> iter = ranges.iterator();
+      while (iter.hasNext()) {
+        PrefetchedRange prefetched = iter.next();
+        if (prefetched.stripeIx <= lastStripeIx) {
+          prefetched.release();
+          iter.remove();
+        }
+      }
+    }
+
+    public void close() {
+      releaseStripes(Integer.MAX_VALUE);
+    }
+
+    private final class PrefetchedRange implements Runnable {
+      private final int stripeIx;
+      private final long offset;
+      private final long length;
+      private final CountDownLatch isDone = new CountDownLatch(1);
+      // All guarded by this.
+      private MemoryBuffer[] buffers;
+      private int bufferSize;
+      private boolean isStarted = false, isCancelled = false, isRead = false,
+          isFinished = false, isReleased = false;
+      private long servedBytes = 0;
+
+      PrefetchedRange(int stripeIx, long offset, long length) {
+        this.stripeIx = stripeIx;
+        this.offset = offset;
+        this.length = length;
+      }
+
+      boolean contains(long rangeOffset, long rangeLength) {
+        return rangeOffset >= offset && rangeOffset + rangeLength <= offset + length;
+      }
+
+      @Override
+      public void run() {
+        synchronized (this) {
+          if (isCancelled || isReleased) {
+            finish();
+            return;
+          }
+          isStarted = true;
+        }
+        MemoryBuffer[] buffers = null;
+        int bufferSize = (int) Math.min(length, allocator.getMaxAllocation());
+        try {
+          MemoryBuffer[] newBuffers =
+              new MemoryBuffer[(int) ((length + bufferSize - 1) / bufferSize)];
+          allocator.allocateMultiple(newBuffers, bufferSize, LlapDataBuffer::new);
+          buffers = newBuffers;
+          final MemoryBuffer[] dest = buffers;
+          ugi.doAs((PrivilegedExceptionAction<Void>) () -> {
+            read(dest, bufferSize);
+            return null;
+          });
+          synchronized (this) {
+            this.buffers = buffers;
+            this.bufferSize = bufferSize;
+            isRead = true;
+          }
+        } catch (Throwable t) {
+          LlapIoImpl.LOG.info("Failed to prefetch [{}, {}) of {}; will read it synchronously",
+              offset, offset + length, path, t);
+          if (buffers != null) {
+            for (MemoryBuffer buffer : buffers) {
+              allocator.deallocate(buffer);
+            }
+          }
+        } finally {
+          synchronized (this) {
+            finish();
+          }
+        }
+      }
+
+      private void read(MemoryBuffer[] dest, int bufferSize) throws IOException {
+        FileSystem fs = fsSupplier.get();
+        byte[] copyBuffer = null;
+        try (FSDataInputStream in = fs.open(path)) {
+          long position = offset;
+          for (MemoryBuffer buffer : dest) {
+            int toRead = (int) Math.min(bufferSize, offset + length - position);
+            ByteBuffer bb = buffer.getByteBufferDup();
+            if (bb.hasArray()) {
+              in.readFully(position, bb.array(), bb.arrayOffset() + bb.position(), toRead);
+              position += toRead;
+              continue;
+            }
+            if (copyBuffer == null) {
+              copyBuffer = new byte[COPY_BUFFER_SIZE];
+            }
+            while (toRead > 0) {
+              int count = Math.min(toRead, copyBuffer.length);
+              in.readFully(position, copyBuffer, 0, count);
+              bb.put(copyBuffer, 0, count);
+              position += count;
+              toRead -= count;
+            }
+          }
+        }
+      }
+
+      /** Called under the lock when the task is done, whatever happened. */
+      private void finish() {
+        isFinished = true;
+        if (!isRead) {
+          unreserve(queryId, length);
+        } else if (isReleased) {
+          deallocate();
+        }
+        isDone.countDown();
+      }
+
+      /**
+       * @return the data of the given range, or null if it could not be prefetched; the caller
+       *         then reads it from disk.
+       */
+      ByteBuffer get(long rangeOffset, int rangeLength) {
+        synchronized (this) {
+          if (!isStarted) {
+            // Still queued; reading it ourselves is faster than waiting for it.
+            isCancelled = true;
+            return null;
+          }
+        }
+        try {
+          isDone.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+        synchronized (this) {
+          if (!isRead || isReleased) {
+            return null;
+          }
+          servedBytes += rangeLength;
+          counters.incrCounter(LlapIOCounters.PREFETCH_HIT_BYTES, rangeLength);
+          long relOffset = rangeOffset - offset;
+          int bufferIx = (int) (relOffset / bufferSize);
+          int bufferOffset = (int) (relOffset % bufferSize);
+          ByteBuffer bb = buffers[bufferIx].getByteBufferDup();
+          if (bufferOffset + rangeLength <= bufferSize) {
+            bb.position(bb.position() + bufferOffset);
+            bb.limit(bb.position() + rangeLength);
+            return bb.slice();
+          }
+          // The range spans several buffers; copy it.
+          ByteBuffer result = ByteBuffer.allocate(rangeLength);
+          while (result.hasRemaining()) {
+            bb.position(bb.position() + bufferOffset);
+            bb.limit(bb.position() + Math.min(bufferSize - bufferOffset, result.remaining()));
+            result.put(bb);
+            bufferOffset = 0;
+            if (result.hasRemaining()) {
+              bb = buffers[++bufferIx].getByteBufferDup();
+            }
+          }
+          result.flip();
+          return result;
+        }
+      }
+
+      synchronized void release() {
+        if (isReleased) return;
+        isReleased = true;
+        isCancelled = true;
+        if (isFinished && isRead) {
+          deallocate();
+        }
+      }
+
+      private void deallocate() {
+        counters.incrCounter(LlapIOCounters.PREFETCH_WASTED_BYTES,
+            Math.max(0, length - servedBytes));
+        for (MemoryBuffer buffer : buffers) {
+          allocator.deallocate(buffer);
+        }
+        buffers = null;
+        unreserve(queryId, length);
+      }
+    }
+  }
+}
@@ -52,8 +52,11 @@
 import org.apache.hadoop.hive.ql.plan.PartitionDesc;
 import org.apache.hadoop.hive.serde.serdeConstants;
 import org.apache.hadoop.hive.serde2.Deserializer;
+import org.apache.hadoop.hive.serde2.JsonSerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.fast.DeserializeRead;
 import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.json.fast.JsonDeserializeRead;
 import org.apache.hadoop.hive.serde2.lazy.LazySerDeParameters;
 import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
 import org.apache.hadoop.hive.serde2.lazy.fast.LazySimpleDeserializeRead;
@@ -72,11 +75,14 @@
 import org.apache.hadoop.mapred.InputFormat;
 import org.apache.hadoop.mapred.TextInputFormat;
 
-/** The class that writes rows from a text reader to an ORC writer using VectorDeserializeRow. */
+/**
+ * The class that writes rows from a text reader to an ORC writer using VectorDeserializeRow.
+ * Supports delimited text (LazySimpleSerDe) and JSON (JsonSerDe) tables with primitive columns.
+ */
 class VectorDeserializeOrcWriter extends EncodingWriter implements Runnable {
   private final VectorizedRowBatchCtx vrbCtx;
   private Writer orcWriter;
-  private final LazySimpleDeserializeRead deserializeRead;
+  private final DeserializeRead deserializeRead;
   private final VectorDeserializeRow<?> vectorDeserializeRow;
   private final StructObjectInspector destinationOi;
   private final boolean usesSourceIncludes;
@@ -101,7 +107,8 @@ public static EncodingWriter create(InputFormat<?, ?> sourceIf, Deserializer ser
     // Vector SerDe can be disabled both on client and server side.
     if (!HiveConf.getBoolVar(daemonConf, ConfVars.LLAP_IO_ENCODE_VECTOR_SERDE_ENABLED)
         || !HiveConf.getBoolVar(jobConf, ConfVars.LLAP_IO_ENCODE_VECTOR_SERDE_ENABLED)
-        || !(sourceIf instanceof TextInputFormat) || !(serDe instanceof LazySimpleSerDe)) {
+        || !(sourceIf instanceof TextInputFormat)
+        || !(serDe instanceof LazySimpleSerDe || serDe instanceof JsonSerDe)) {
       return new DeserializerOrcWriter(serDe, sourceOi, allocSize);
     }
     Path path = splitPath.getFileSystem(daemonConf).makeQualified(splitPath);
@@ -124,23 +131,36 @@ public static EncodingWriter create(InputFormat<?, ?> sourceIf, Deserializer ser
         return new DeserializerOrcWriter(serDe, sourceOi, allocSize);
       }
     }
+    boolean isJson = serDe instanceof JsonSerDe;
+    if (isJson && !JsonDeserializeRead.isSupported(getTypeInfos(sourceOi))) {
+      LlapIoImpl.LOG.info("Not using VertorDeserializeOrcWriter: unsupported JSON column types");
+      return new DeserializerOrcWriter(serDe, sourceOi, allocSize);
+    }
     LlapIoImpl.LOG.info("Creating VertorDeserializeOrcWriter for " + path);
     return new VectorDeserializeOrcWriter(
-        jobConf, tblProps, sourceOi, sourceIncludes, cacheIncludes, allocSize);
+        jobConf, tblProps, sourceOi, sourceIncludes, cacheIncludes, allocSize, isJson);
   }
 
   private VectorDeserializeOrcWriter(Configuration conf, Properties tblProps,
       StructObjectInspector sourceOi, List<Integer> sourceIncludes, boolean[] cacheIncludes,
-      int allocSize) throws IOException {
+      int allocSize, boolean isJson) throws IOException {
     super(sourceOi, allocSize);
     // See also: the usage of VectorDeserializeType, for binary. For now, we only want text.
     this.vrbCtx = createVrbCtx(sourceOi, tblProps, conf);
     this.sourceIncludes = sourceIncludes;
     this.cacheIncludes = cacheIncludes;
     this.sourceBatch = vrbCtx.createVectorizedRowBatch();
-    deserializeRead = new LazySimpleDeserializeRead(vrbCtx.getRowColumnTypeInfos(),
-      vrbCtx.getRowdataTypePhysicalVariations(),/* useExternalBuffer */ true, createSerdeParams(conf, tblProps));
-    vectorDeserializeRow = new VectorDeserializeRow<LazySimpleDeserializeRead>(deserializeRead);
+    JsonDeserializeRead jsonDeserializeRead = null;
+    if (isJson) {
+      jsonDeserializeRead = new JsonDeserializeRead(vrbCtx.getRowColumnTypeInfos(),
+          vrbCtx.getRowdataTypePhysicalVariations(), Arrays.asList(vrbCtx.getRowColumnNames()),
+          tblProps);
+      deserializeRead = jsonDeserializeRead;
+    } else {
+      deserializeRead = new LazySimpleDeserializeRead(vrbCtx.getRowColumnTypeInfos(),
+        vrbCtx.getRowdataTypePhysicalVariations(),/* useExternalBuffer */ true, createSerdeParams(conf, tblProps));
+    }
+    vectorDeserializeRow = new VectorDeserializeRow<DeserializeRead>(deserializeRead);
     int colCount = vrbCtx.getRowColumnTypeInfos().length;
     boolean[] includes = null;
     this.usesSourceIncludes = sourceIncludes.size() < colCount;
@@ -171,6 +191,10 @@ private VectorDeserializeOrcWriter(Configuration conf, Properties tblProps,
       if (LlapIoImpl.LOG.isDebugEnabled()) {
         LlapIoImpl.LOG.debug("Includes for deserializer are " + DebugUtils.toString(includes));
       }
+      if (jsonDeserializeRead != null) {
+        // Don't even decode the values of the other columns.
+        jsonDeserializeRead.setIncludedFields(includes);
+      }
       try {
         vectorDeserializeRow.init(includes);
       } catch (HiveException e) {
@@ -243,6 +267,16 @@ private static VectorizedRowBatchCtx createVrbCtx(StructObjectInspector oi, fina
     return vrbCtx;
   }
 
+  private static TypeInfo[] getTypeInfos(StructObjectInspector oi) {
+    List<? extends StructField> fields = oi.getAllStructFieldRefs();
+    TypeInfo[] result = new TypeInfo[fields.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = TypeInfoUtils.getTypeInfoFromObjectInspector(
+          fields.get(i).getFieldObjectInspector());
+    }
+    return result;
+  }
+
   private static LazySerDeParameters createSerdeParams(
       Configuration conf, Properties tblProps) throws IOException {
     try {
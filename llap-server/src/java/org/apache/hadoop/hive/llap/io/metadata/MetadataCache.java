@@ -21,23 +21,29 @@
 import org.apache.hadoop.hive.common.FileUtils;
 import org.apache.hadoop.hive.common.io.FileMetadataCache;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.hadoop.hive.common.io.encoded.MemoryBufferOrBuffers;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 import org.apache.hadoop.hive.common.io.DiskRange;
 import org.apache.hadoop.hive.common.io.DiskRangeList;
 import org.apache.hadoop.hive.common.io.DataCache.BooleanRef;
 import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
 import org.apache.hadoop.hive.common.io.CacheTag;
+import org.apache.hadoop.hive.common.io.Allocator.AllocatorOutOfMemoryException;
 import org.apache.hadoop.hive.llap.cache.BuddyAllocator;
 import org.apache.hadoop.hive.llap.cache.EvictionDispatcher;
 import org.apache.hadoop.hive.llap.cache.LlapAllocatorBuffer;
+import org.apache.hadoop.hive.llap.cache.LlapCacheSnapshot;
 import org.apache.hadoop.hive.llap.cache.LlapIoDebugDump;
 import org.apache.hadoop.hive.llap.cache.LowLevelCachePolicy;
 import org.apache.hadoop.hive.llap.cache.MemoryManager;
@@ -144,6 +150,88 @@ public void debugDumpShort(StringBuilder sb) {
         .append(" files w/ORC estimate");
   }
 
+  /**
+   * Writes the cached file and stripe metadata of the files with persistable keys,
+   * see {@link LlapCacheSnapshot}. The ORC estimate errors are not persisted.
+   * @return the number of entries written.
+   */
+  public int writeSnapshot(DataOutput out) throws IOException {
+    byte[] copyBuffer = LlapCacheSnapshot.createCopyBuffer();
+    int count = 0;
+    for (Map.Entry<Object, LlapBufferOrBuffers> e : metadata.entrySet()) {
+      Object key = e.getKey();
+      StripeKey stripeKey = (key instanceof StripeKey) ? (StripeKey) key : null;
+      Object fileKey = (stripeKey != null) ? stripeKey.fileKey : key;
+      if (!LlapCacheSnapshot.isSupportedFileKey(fileKey)) continue;
+      LlapAllocatorBuffer[] buffers = e.getValue().getSingleLlapBuffer() != null
+          ? new LlapAllocatorBuffer[] { e.getValue().getSingleLlapBuffer() }
+          : e.getValue().getMultipleLlapBuffers();
+      int lockedCount = 0;
+      try {
+        while (lockedCount < buffers.length && buffers[lockedCount].incRef() > 0) {
+          ++lockedCount;
+        }
+        if (lockedCount < buffers.length) continue; // Being evicted.
+        ByteBuffer data = buffers[0].getByteBufferDup();
+        if (buffers.length > 1) {
+          int length = 0;
+          for (LlapAllocatorBuffer buffer : buffers) {
+            length += buffer.getByteBufferRaw().remaining();
+          }
+          data = ByteBuffer.allocate(length);
+          for (LlapAllocatorBuffer buffer : buffers) {
+            data.put(buffer.getByteBufferDup());
+          }
+          data.flip();
+        }
+        out.writeBoolean(true);
+        LlapCacheSnapshot.writeFileKey(out, fileKey);
+        out.writeInt(stripeKey != null ? stripeKey.stripeIx : -1);
+        LlapCacheSnapshot.writeTag(out, buffers[0].getTag());
+        LlapCacheSnapshot.writeBytes(out, data, copyBuffer);
+        ++count;
+      } finally {
+        for (int i = 0; i < lockedCount; ++i) {
+          buffers[i].decRef();
+        }
+      }
+    }
+    out.writeBoolean(false);
+    return count;
+  }
+
+  /**
+   * Puts the entries written by {@link #writeSnapshot} into the cache.
+   * @param isFileValid the files for which this returns false are skipped.
+   * @param maxBytes the maximum amount of memory to allocate; the rest of the entries are skipped.
+   * @return the amount of memory allocated.
+   */
+  public long readSnapshot(DataInput in, Predicate<Object> isFileValid, long maxBytes)
+      throws IOException {
+    long restored = 0;
+    ByteBuffer scratch = null;
+    while (in.readBoolean()) {
+      Object fileKey = LlapCacheSnapshot.readFileKey(in);
+      int stripeIx = in.readInt();
+      CacheTag tag = LlapCacheSnapshot.readTag(in);
+      scratch = LlapCacheSnapshot.readBytes(in, scratch);
+      if (restored + scratch.remaining() > maxBytes || !isFileValid.test(fileKey)) continue;
+      Object key = (stripeIx < 0) ? fileKey : new StripeKey(fileKey, stripeIx);
+      LlapBufferOrBuffers result;
+      try {
+        result = putInternal(key, scratch, tag, null);
+      } catch (AllocatorOutOfMemoryException ex) {
+        LlapIoImpl.LOG.info("Cannot allocate memory to restore the metadata cache; stopping");
+        return restored;
+      }
+      restored += (result.getSingleLlapBuffer() != null)
+          ? result.getSingleLlapBuffer().allocSize
+          : (long) result.getMultipleLlapBuffers().length * allocator.getMaxAllocation();
+      unlockBuffer(result, true);
+    }
+    return restored;
+  }
+
   @Override
   public LlapBufferOrBuffers getFileMetadata(Object fileKey) {
     return getInternal(fileKey);
@@ -213,7 +301,7 @@ public LlapBufferOrBuffers putFileMetadata(Object fileKey, int length, InputStre
         }
         oldVal = metadata.putIfAbsent(fileKey, result);
         if (oldVal == null) {
-          cacheInPolicy(result); // Cached successfully, add to policy.
+          cacheInPolicy(fileKey, result); // Cached successfully, add to policy.
           return result;
         }
       }
@@ -281,7 +369,7 @@ private <T> LlapBufferOrBuffers putInternal(T key, ByteBuffer tailBuffer, CacheT
         result = wrapBb(result, key, tailBuffer, tag, isStopped);
         oldVal = metadata.putIfAbsent(key, result);
         if (oldVal == null) {
-          cacheInPolicy(result); // Cached successfully, add to policy.
+          cacheInPolicy(key, result); // Cached successfully, add to policy.
           return result;
         }
       }
@@ -293,13 +381,16 @@ private <T> LlapBufferOrBuffers putInternal(T key, ByteBuffer tailBuffer, CacheT
     }
   }
 
-  private void cacheInPolicy(LlapBufferOrBuffers buffers) {
+  private void cacheInPolicy(Object key, LlapBufferOrBuffers buffers) {
     LlapAllocatorBuffer singleBuffer = buffers.getSingleLlapBuffer();
     if (singleBuffer != null) {
+      singleBuffer.cacheKeyHash = key.hashCode();
       policy.cache(singleBuffer, Priority.HIGH);
       return;
     }
+    int i = 0;
     for (LlapAllocatorBuffer buffer : buffers.getMultipleLlapBuffers()) {
+      buffer.cacheKeyHash = 31 * key.hashCode() + (i++);
       policy.cache(buffer, Priority.HIGH);
     }
   }
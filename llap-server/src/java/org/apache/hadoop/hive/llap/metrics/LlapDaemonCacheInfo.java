@@ -36,7 +36,13 @@ public enum LlapDaemonCacheInfo implements MetricsInfo {
   CacheHitRatio("Ratio of disk ranges cached vs requested"),
   CacheReadRequests("Number of disk range requests to cache"),
   CacheAllocatedArena("Number of arenas allocated"),
-  CacheNumLockedBuffers("Number of locked buffers in cache");
+  CacheNumLockedBuffers("Number of locked buffers in cache"),
+  CacheAllocationStallTimeNs("Time spent by allocations waiting for cache eviction in ns"),
+  CacheForegroundEvictions("Number of allocations that had to evict from the cache themselves"),
+  CacheBackgroundEvictedBytes("Amount of memory evicted ahead of allocations in bytes"),
+  CacheLocalNodeHits("Number of cache hits on buffers in the home arenas of the reader"),
+  CacheRemoteNodeHits("Number of cache hits on buffers outside the home arenas of the reader"),
+  CacheRemoteNodeHitRatio("Ratio of cache hits on buffers outside the home arenas of the reader");
 
   private final String desc;
 
@@ -18,15 +18,21 @@
 package org.apache.hadoop.hive.llap.metrics;
 
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheAllocatedArena;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheAllocationStallTimeNs;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheBackgroundEvictedBytes;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheCapacityRemaining;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheCapacityRemainingPercentage;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheCapacityTotal;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheCapacityUsed;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheForegroundEvictions;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheHitBytes;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheHitRatio;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheLocalNodeHits;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheMetrics;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheNumLockedBuffers;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheReadRequests;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheRemoteNodeHitRatio;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheRemoteNodeHits;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheRequestedBytes;
 import static org.apache.hadoop.metrics2.impl.MsInfo.ProcessName;
 import static org.apache.hadoop.metrics2.impl.MsInfo.SessionId;
@@ -66,6 +72,16 @@ public class LlapDaemonCacheMetrics implements MetricsSource {
   MutableCounterLong cacheAllocatedArena;
   @Metric
   MutableCounterLong cacheNumLockedBuffers;
+  @Metric
+  MutableCounterLong cacheAllocationStallTimeNs;
+  @Metric
+  MutableCounterLong cacheForegroundEvictions;
+  @Metric
+  MutableCounterLong cacheBackgroundEvictedBytes;
+  @Metric
+  MutableCounterLong cacheLocalNodeHits;
+  @Metric
+  MutableCounterLong cacheRemoteNodeHits;
 
   private LlapDaemonCacheMetrics(String name, String sessionId) {
     this.name = name;
@@ -111,6 +127,23 @@ public void decrCacheNumLockedBuffers() {
     cacheNumLockedBuffers.incr(-1);
   }
 
+  public void incrCacheAllocationStallTime(long deltaNs) {
+    cacheAllocationStallTimeNs.incr(deltaNs);
+  }
+
+  public void incrCacheForegroundEvictions() {
+    cacheForegroundEvictions.incr();
+  }
+
+  public void incrCacheBackgroundEvictedBytes(long delta) {
+    cacheBackgroundEvictedBytes.incr(delta);
+  }
+
+  public void incrCacheNodeHits(long local, long remote) {
+    cacheLocalNodeHits.incr(local);
+    cacheRemoteNodeHits.incr(remote);
+  }
+
   public String getName() {
     return name;
   }
@@ -125,6 +158,16 @@ public long getCacheHitBytes() {
     return cacheHitBytes.value();
   }
 
+  @VisibleForTesting
+  public long getCacheForegroundEvictions() {
+    return cacheForegroundEvictions.value();
+  }
+
+  @VisibleForTesting
+  public long getCacheBackgroundEvictedBytes() {
+    return cacheBackgroundEvictedBytes.value();
+  }
+
   @Override
   public void getMetrics(MetricsCollector collector, boolean b) {
     MetricsRecordBuilder rb = collector.addRecord(CacheMetrics)
@@ -138,6 +181,10 @@ private void getCacheStats(MetricsRecordBuilder rb) {
     float cacheHitRatio = cacheRequestedBytes.value() == 0 ? 0.0f :
         (float) cacheHitBytes.value() / (float) cacheRequestedBytes.value();
 
+    long nodeHits = cacheLocalNodeHits.value() + cacheRemoteNodeHits.value();
+    float remoteNodeHitRatio = nodeHits == 0 ? 0.0f :
+        (float) cacheRemoteNodeHits.value() / (float) nodeHits;
+
     long cacheCapacityRemaining = cacheCapacityTotal.value() - cacheCapacityUsed.value();
     float cacheRemainingPercent = cacheCapacityTotal.value() == 0 ? 0.0f :
         (float) cacheCapacityRemaining / (float) cacheCapacityTotal.value();
@@ -150,6 +197,12 @@ private void getCacheStats(MetricsRecordBuilder rb) {
         .addCounter(CacheHitBytes, cacheHitBytes.value())
         .addCounter(CacheAllocatedArena, cacheAllocatedArena.value())
         .addCounter(CacheNumLockedBuffers, cacheNumLockedBuffers.value())
+        .addCounter(CacheAllocationStallTimeNs, cacheAllocationStallTimeNs.value())
+        .addCounter(CacheForegroundEvictions, cacheForegroundEvictions.value())
+        .addCounter(CacheBackgroundEvictedBytes, cacheBackgroundEvictedBytes.value())
+        .addCounter(CacheLocalNodeHits, cacheLocalNodeHits.value())
+        .addCounter(CacheRemoteNodeHits, cacheRemoteNodeHits.value())
+        .addGauge(CacheRemoteNodeHitRatio, remoteNodeHitRatio)
         .addGauge(CacheHitRatio, cacheHitRatio);
   }
 
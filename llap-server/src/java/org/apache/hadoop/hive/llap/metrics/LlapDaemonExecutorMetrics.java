@@ -36,6 +36,10 @@
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorNumPreemptableRequests;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorNumQueuedRequests;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorNumQueuedRequestsAverage;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorQueryId;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorQueryQueueTime;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorQueryQueueTimeCount;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorQueryQueueTimeSum;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorThreadCPUTime;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorThreadUserTime;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorTotalEvictedFromWaitQueue;
@@ -62,8 +66,13 @@
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
@@ -115,6 +124,22 @@ public class LlapDaemonExecutorMetrics implements MetricsSource {
   private final DescriptiveStatistics queueTime;
   private final DescriptiveStatistics runningTime;
 
+  // Upper bounds of the buckets of the per query queue time histograms; the last one is open.
+  private static final long[] QUERY_QUEUE_TIME_BUCKETS_MS =
+      { 10, 50, 100, 500, 1000, 5000, 10000, 60000, Long.MAX_VALUE };
+  private static final MetricsInfo[] QUERY_QUEUE_TIME_BUCKET_INFOS =
+      new MetricsInfo[QUERY_QUEUE_TIME_BUCKETS_MS.length];
+  static {
+    for (int i = 0; i < QUERY_QUEUE_TIME_BUCKETS_MS.length; i++) {
+      long bound = QUERY_QUEUE_TIME_BUCKETS_MS[i];
+      QUERY_QUEUE_TIME_BUCKET_INFOS[i] = new LlapDaemonCustomMetricsInfo(
+          ExecutorQueryQueueTime.name() + "_" + (bound == Long.MAX_VALUE ? "inf" : bound + "ms"),
+          ExecutorQueryQueueTime.description());
+    }
+  }
+  private final ConcurrentMap<String, QueryQueueTimeHistogram> queryQueueTimes =
+      new ConcurrentHashMap<>();
+
   final MutableGaugeLong[] executorThreadCpuTime;
   final MutableGaugeLong[] executorThreadUserTime;
   @Metric
@@ -249,6 +274,7 @@ public void getMetrics(MetricsCollector collector, boolean b) {
         .tag(ProcessName, MetricsUtils.METRICS_PROCESS_NAME)
         .tag(SessionId, sessionId);
     getExecutorStats(rb);
+    getQueryQueueTimeStats(collector);
   }
 
   public void incrExecutorTotalRequestsHandled() {
@@ -352,6 +378,31 @@ public void addMetricsQueueTime(long queueTime) {
     }
   }
 
+  /**
+   * Adds the wait queue time of a fragment that started running to the histogram of its query.
+   */
+  public void addMetricsQueryQueueTime(String queryId, long queueTimeNs) {
+    QueryQueueTimeHistogram histogram = queryQueueTimes.get(queryId);
+    if (histogram == null) {
+      QueryQueueTimeHistogram newHistogram = new QueryQueueTimeHistogram();
+      histogram = queryQueueTimes.putIfAbsent(queryId, newHistogram);
+      if (histogram == null) {
+        histogram = newHistogram;
+      }
+    }
+    histogram.add(TimeUnit.NANOSECONDS.toMillis(queueTimeNs));
+  }
+
+  /**
+   * Marks the histogram of the query as complete; it is reported one last time, then dropped.
+   */
+  public void queryComplete(String queryId) {
+    QueryQueueTimeHistogram histogram = queryQueueTimes.get(queryId);
+    if (histogram != null) {
+      histogram.isComplete = true;
+    }
+  }
+
   public void addMetricsRunningTime(long runningTime) {
     if (this.runningTime != null) {
       this.runningTime.addValue(runningTime);
@@ -440,6 +491,49 @@ private void getExecutorStats(MetricsRecordBuilder rb) {
     }
   }
 
+  private void getQueryQueueTimeStats(MetricsCollector collector) {
+    Iterator<Map.Entry<String, QueryQueueTimeHistogram>> iter =
+        queryQueueTimes.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, QueryQueueTimeHistogram> entry = iter.next();
+      QueryQueueTimeHistogram histogram = entry.getValue();
+      // Read the flag first, so that the values added before it was set are reported.
+      boolean isComplete = histogram.isComplete;
+      MetricsRecordBuilder rb = collector.addRecord(ExecutorQueryQueueTime)
+          .setContext("executors")
+          .tag(ProcessName, MetricsUtils.METRICS_PROCESS_NAME)
+          .tag(SessionId, sessionId)
+          .tag(ExecutorQueryId, entry.getKey());
+      // The buckets are cumulative, like the usual "less than or equal" histogram buckets.
+      long cumulative = 0;
+      for (int i = 0; i < QUERY_QUEUE_TIME_BUCKETS_MS.length; i++) {
+        cumulative += histogram.buckets.get(i);
+        rb.addCounter(QUERY_QUEUE_TIME_BUCKET_INFOS[i], cumulative);
+      }
+      rb.addCounter(ExecutorQueryQueueTimeCount, cumulative)
+          .addCounter(ExecutorQueryQueueTimeSum, histogram.sumMs.get());
+      if (isComplete) {
+        iter.remove();
+      }
+    }
+  }
+
+  /** Queue time histogram of the fragments of a single query, in milliseconds. */
+  private static final class QueryQueueTimeHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(QUERY_QUEUE_TIME_BUCKETS_MS.length);
+    private final AtomicLong sumMs = new AtomicLong();
+    private volatile boolean isComplete = false;
+
+    void add(long queueTimeMs) {
+      int i = 0;
+      while (queueTimeMs > QUERY_QUEUE_TIME_BUCKETS_MS[i]) {
+        ++i;
+      }
+      buckets.incrementAndGet(i);
+      sumMs.addAndGet(queueTimeMs);
+    }
+  }
+
   private void updateThreadMetrics(MetricsRecordBuilder rb) {
     if (threadMXBean.isThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled()) {
       final long[] ids = threadMXBean.getAllThreadIds();
@@ -64,6 +64,24 @@ public IndexCache(Configuration conf) {
   public TezIndexRecord getIndexInformation(String mapId, int reduce,
                                          Path fileName, String expectedIndexOwner)
       throws IOException {
+    return getIndexInformation(mapId, reduce, reduce, fileName, expectedIndexOwner)[0];
+  }
+
+  /**
+   * This method gets the index information for the given mapId and a range of
+   * reduces, with a single cache lookup.
+   * @param mapId
+   * @param firstReduce The first reduce of the range
+   * @param lastReduce The last reduce of the range, inclusive
+   * @param fileName The file to read the index information from if it is not
+   *                 already present in the cache
+   * @param expectedIndexOwner The expected owner of the index file
+   * @return The Index Information of each reduce in the range
+   * @throws IOException
+   */
+  public TezIndexRecord[] getIndexInformation(String mapId, int firstReduce, int lastReduce,
+                                         Path fileName, String expectedIndexOwner)
+      throws IOException {
 
     IndexInformation info = cache.get(mapId);
 
@@ -83,12 +101,16 @@ public TezIndexRecord getIndexInformation(String mapId, int reduce,
     }
 
     if (info.mapSpillRecord.size() == 0 ||
-        info.mapSpillRecord.size() <= reduce) {
+        info.mapSpillRecord.size() <= lastReduce) {
       throw new IOException("Invalid request " +
-          " Map Id = " + mapId + " Reducer = " + reduce +
+          " Map Id = " + mapId + " Reducer = " + lastReduce +
           " Index Info Length = " + info.mapSpillRecord.size());
     }
-    return info.mapSpillRecord.getIndex(reduce);
+    TezIndexRecord[] records = new TezIndexRecord[lastReduce - firstReduce + 1];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = info.mapSpillRecord.getIndex(firstReduce + i);
+    }
+    return records;
   }
 
   private boolean isUnderConstruction(IndexInformation info) {
@@ -68,11 +68,15 @@
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.ReadaheadPool;
 import org.apache.hadoop.io.SecureIOUtils;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.hive.llap.metrics.LlapMetricsSystem;
+import org.apache.hadoop.hive.llap.metrics.MetricsUtils;
 import org.apache.hadoop.metrics2.annotation.Metric;
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.MutableCounterInt;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableStat;
 import org.apache.hadoop.security.ssl.SSLFactory;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
@@ -228,6 +232,7 @@ public class ShuffleHandler implements AttemptRegistrationListener {
   private final LocalDirAllocator lDirAlloc =
       new LocalDirAllocator(SHUFFLE_HANDLER_LOCAL_DIRS);
   private final Shuffle shuffle;
+  private final ShuffleMetrics metrics;
 
   @Override
   public void registerAttemptDirs(AttemptPathIdentifier identifier,
@@ -246,6 +251,13 @@ static class ShuffleMetrics implements ChannelFutureListener {
     MutableCounterInt shuffleOutputsOK;
     @Metric("# of current shuffle connections")
     MutableGaugeInt shuffleConnections;
+    @Metric("# of shuffle requests")
+    MutableCounterLong shuffleRequests;
+    @Metric("# of partitions served by shuffle requests for a range of partitions")
+    MutableCounterLong shuffleRangePartitions;
+    @Metric(about = "Throughput of shuffle connections while serving requests",
+        sampleName = "Connections", valueName = "BytesPerSec")
+    MutableStat shuffleConnectionThroughput;
 
     @Override
     public void operationComplete(ChannelFuture future) throws Exception {
@@ -254,7 +266,40 @@ public void operationComplete(ChannelFuture future) throws Exception {
       } else {
         shuffleOutputsFailed.incr();
       }
-      shuffleConnections.decr();
+    }
+  }
+
+  /**
+   * Per connection statistics, kept as the channel attachment of the shuffle handler. All the
+   * events of a channel, including the write completions, are handled by the same I/O thread.
+   */
+  private static class ConnectionStats {
+    long requests;
+    long outputs;
+    long bytes;
+    // Time spent serving requests; the time the connection is idle between requests is not
+    // counted, so that keep-alive connections do not appear to be slow.
+    long busyNanos;
+    long requestStartNanos;
+  }
+
+  /** Inclusive range of reduce partitions of a shuffle request. */
+  static class Range {
+    final int first;
+    final int last;
+
+    Range(int first, int last) {
+      this.first = first;
+      this.last = last;
+    }
+
+    int size() {
+      return last - first + 1;
+    }
+
+    @Override
+    public String toString() {
+      return first == last ? Integer.toString(first) : first + "-" + last;
     }
   }
 
@@ -311,6 +356,8 @@ private ShuffleHandler(Configuration conf) {
 
     userRsrc = new ConcurrentHashMap<>();
     secretManager = new JobTokenSecretManager();
+    metrics = LlapMetricsSystem.instance().register(
+        "LlapShuffleMetrics-" + MetricsUtils.getHostName(), null, new ShuffleMetrics());
     shuffle = new Shuffle(conf);
     if (conf.getBoolean(SHUFFLE_DIR_WATCHER_ENABLED, SHUFFLE_DIR_WATCHER_ENABLED_DEFAULT)) {
       LOG.info("Attempting to start dirWatcher");
@@ -712,14 +759,58 @@ public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent evt)
         return;
       }
       accepted.add(evt.getChannel());
+      ctx.setAttachment(new ConnectionStats());
+      metrics.shuffleConnections.incr();
       super.channelOpen(ctx, evt);
      
     }
 
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent evt)
+        throws Exception {
+      ConnectionStats stats = (ConnectionStats) ctx.getAttachment();
+      if (stats != null) {
+        metrics.shuffleConnections.decr();
+        if (stats.busyNanos > 0) {
+          metrics.shuffleConnectionThroughput.add(
+              stats.bytes * TimeUnit.SECONDS.toNanos(1) / stats.busyNanos);
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Shuffle connection from " + evt.getChannel().getRemoteAddress()
+              + " closed: requests=" + stats.requests + ", outputs=" + stats.outputs
+              + ", bytes=" + stats.bytes
+              + ", busyTimeMs=" + TimeUnit.NANOSECONDS.toMillis(stats.busyNanos));
+        }
+      }
+      super.channelClosed(ctx, evt);
+    }
+
+    /**
+     * Parses the reduce parameter, which is either a single partition or an inclusive range of
+     * partitions, e.g. 4-7.
+     */
+    private Range splitReduces(String reduceq) {
+      int dash = reduceq.indexOf('-');
+      if (dash < 0) {
+        int reduce = Integer.parseInt(reduceq);
+        return new Range(reduce, reduce);
+      }
+      int first = Integer.parseInt(reduceq.substring(0, dash));
+      int last = Integer.parseInt(reduceq.substring(dash + 1));
+      if (first < 0 || last < first) {
+        throw new NumberFormatException("Invalid reduce range " + reduceq);
+      }
+      return new Range(first, last);
+    }
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
         throws Exception {
       HttpRequest request = (HttpRequest) evt.getMessage();
+      final ConnectionStats stats = (ConnectionStats) ctx.getAttachment();
+      stats.requests++;
+      stats.requestStartNanos = System.nanoTime();
+      metrics.shuffleRequests.incr();
       if (request.getMethod() != GET) {
           sendError(ctx, METHOD_NOT_ALLOWED);
           return;
@@ -763,11 +854,11 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
         sendError(ctx, "Too many job/reduce parameters", BAD_REQUEST);
         return;
       }
-      int reduceId;
+      Range reduceRange;
       String jobId;
       int dagId;
       try {
-        reduceId = Integer.parseInt(reduceQ.get(0));
+        reduceRange = splitReduces(reduceQ.get(0));
         jobId = jobQ.get(0);
         dagId = Integer.parseInt(dagIdQ.get(0));
       } catch (NumberFormatException e) {
@@ -806,7 +897,7 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
       String user = userRsrc.get(jobId);
 
       try {
-        populateHeaders(mapIds, jobId, dagId, user, reduceId,
+        populateHeaders(mapIds, jobId, dagId, user, reduceRange,
             response, keepAliveParam, mapOutputInfoMap);
       } catch(IOException e) {
         ch.write(response);
@@ -824,11 +915,11 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
           // This will be hit if there's a large number of mapIds in a single request
           // (Determined by the cache size further up), in which case we go to disk again.
           if (info == null) {
-            info = getMapOutputInfo(jobId, dagId, mapId, reduceId, user);
+            info = getMapOutputInfo(jobId, dagId, mapId, reduceRange, user);
           }
           lastMap =
               sendMapOutput(ctx, ch, user, mapId,
-                reduceId, info);
+                reduceRange, info);
           if (null == lastMap) {
             sendError(ctx, NOT_FOUND);
             return;
@@ -840,6 +931,15 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
           return;
         }
       }
+      if (reduceRange.size() > 1) {
+        metrics.shuffleRangePartitions.incr((long) reduceRange.size() * mapIds.size());
+      }
+      lastMap.addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+          stats.busyNanos += System.nanoTime() - stats.requestStartNanos;
+        }
+      });
       // If Keep alive is enabled, do not close the connection.
       if (!keepAliveParam && !connectionKeepAliveEnabled) {
         lastMap.addListener(ChannelFutureListener.CLOSE);
@@ -870,7 +970,7 @@ private String getErrorMessage(Throwable t) {
 
 
     protected MapOutputInfo getMapOutputInfo(String jobId, int dagId, String mapId,
-                                             int reduce, String user) throws IOException {
+                                             Range reduceRange, String user) throws IOException {
       AttemptPathInfo pathInfo;
       try {
         AttemptPathIdentifier identifier = new AttemptPathIdentifier(jobId, dagId, user, mapId);
@@ -887,8 +987,8 @@ protected MapOutputInfo getMapOutputInfo(String jobId, int dagId, String mapId,
         }
       }
 
-      TezIndexRecord info =
-          indexCache.getIndexInformation(mapId, reduce, pathInfo.indexPath, user);
+      TezIndexRecord[] info = indexCache.getIndexInformation(
+          mapId, reduceRange.first, reduceRange.last, pathInfo.indexPath, user);
 
       if (LOG.isDebugEnabled()) {
         LOG.debug("jobId=" + jobId + ", mapId=" + mapId + ",dataFile=" + pathInfo.dataPath +
@@ -901,7 +1001,7 @@ protected MapOutputInfo getMapOutputInfo(String jobId, int dagId, String mapId,
     }
 
     protected void populateHeaders(List<String> mapIds, String jobId, int dagId,
-        String user, int reduce, HttpResponse response,
+        String user, Range reduceRange, HttpResponse response,
         boolean keepAliveParam, Map<String, MapOutputInfo> mapOutputInfoMap)
         throws IOException {
       // Reads the index file for each requested mapId, and figures out the overall
@@ -909,18 +1009,14 @@ protected void populateHeaders(List<String> mapIds, String jobId, int dagId,
 
       long contentLength = 0;
       for (String mapId : mapIds) {
-        MapOutputInfo outputInfo = getMapOutputInfo(jobId, dagId, mapId, reduce, user);
+        MapOutputInfo outputInfo = getMapOutputInfo(jobId, dagId, mapId, reduceRange, user);
         // mapOutputInfoMap is used to share the lookups with the caller
         if (mapOutputInfoMap.size() < mapOutputMetaInfoCacheSize) {
           mapOutputInfoMap.put(mapId, outputInfo);
         }
-        ShuffleHeader header =
-            new ShuffleHeader(mapId, outputInfo.indexRecord.getPartLength(),
-                outputInfo.indexRecord.getRawLength(), reduce);
-        DataOutputBuffer dob = new DataOutputBuffer();
-        header.write(dob);
+        DataOutputBuffer dob = writeHeaders(mapId, reduceRange, outputInfo);
 
-        contentLength += outputInfo.indexRecord.getPartLength();
+        contentLength += outputInfo.getLength();
         contentLength += dob.getLength();
       }
 
@@ -943,13 +1039,55 @@ protected void setResponseHeaders(HttpResponse response,
       }
     }
 
+    /**
+     * Writes the headers of a map output. A request for a range of partitions is answered, for
+     * each map, with the number of partitions, the header of each partition, and then the data of
+     * all of them in one piece; the partitions of a map output are contiguous in the file.
+     */
+    private DataOutputBuffer writeHeaders(String mapId, Range reduceRange,
+        MapOutputInfo outputInfo) throws IOException {
+      DataOutputBuffer dob = new DataOutputBuffer();
+      if (reduceRange.size() > 1) {
+        WritableUtils.writeVInt(dob, reduceRange.size());
+      }
+      for (int i = 0; i < outputInfo.indexRecords.length; i++) {
+        TezIndexRecord indexRecord = outputInfo.indexRecords[i];
+        ShuffleHeader header = new ShuffleHeader(mapId, indexRecord.getPartLength(),
+            indexRecord.getRawLength(), reduceRange.first + i);
+        header.write(dob);
+      }
+      return dob;
+    }
+
     class MapOutputInfo {
       final Path mapOutputFileName; // 100-200 byte string. Maybe replace with a local-dir-id, and construct on the fly.
-      final TezIndexRecord indexRecord; // 3 longs + reference overheads.
+      final TezIndexRecord[] indexRecords; // 3 longs + reference overheads per partition.
 
-      MapOutputInfo(Path mapOutputFileName, TezIndexRecord indexRecord) {
+      MapOutputInfo(Path mapOutputFileName, TezIndexRecord[] indexRecords) {
         this.mapOutputFileName = mapOutputFileName;
-        this.indexRecord = indexRecord;
+        this.indexRecords = indexRecords;
+      }
+
+      /** The offset of the data of the first non-empty partition. */
+      long getStartOffset() {
+        for (TezIndexRecord indexRecord : indexRecords) {
+          if (indexRecord.getPartLength() != 0) {
+            return indexRecord.getStartOffset();
+          }
+        }
+        return indexRecords[0].getStartOffset();
+      }
+
+      /** The length of the data of all the partitions. */
+      long getLength() {
+        long startOffset = getStartOffset();
+        for (int i = indexRecords.length - 1; i >= 0; i--) {
+          if (indexRecords[i].getPartLength() != 0) {
+            return indexRecords[i].getStartOffset() + indexRecords[i].getPartLength()
+                - startOffset;
+          }
+        }
+        return 0;
       }
     }
 
@@ -995,13 +1133,11 @@ protected void verifyRequest(String appid, ChannelHandlerContext ctx,
     }
 
     protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx, Channel ch,
-        String user, String mapId, int reduce, MapOutputInfo mapOutputInfo)
+        String user, String mapId, Range reduceRange, MapOutputInfo mapOutputInfo)
         throws IOException {
-      final TezIndexRecord info = mapOutputInfo.indexRecord;
-      final ShuffleHeader header =
-        new ShuffleHeader(mapId, info.getPartLength(), info.getRawLength(), reduce);
-      final DataOutputBuffer dob = new DataOutputBuffer();
-      header.write(dob);
+      final DataOutputBuffer dob = writeHeaders(mapId, reduceRange, mapOutputInfo);
+      final long startOffset = mapOutputInfo.getStartOffset();
+      final long length = mapOutputInfo.getLength();
       ch.write(wrappedBuffer(dob.getData(), 0, dob.getLength()));
       final File spillfile =
           new File(mapOutputInfo.mapOutputFileName.toString());
@@ -1016,10 +1152,10 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx, Channel ch,
       if (ch.getPipeline().get(SslHandler.class) == null) {
         boolean canEvictAfterTransfer = true;
         if (!shouldAlwaysEvictOsCache) {
-          canEvictAfterTransfer = (reduce > 0); // e.g broadcast data
+          canEvictAfterTransfer = (reduceRange.first > 0); // e.g broadcast data
         }
         final FadvisedFileRegion partition = new FadvisedFileRegion(spill,
-            info.getStartOffset(), info.getPartLength(), manageOsCache, readaheadLength,
+            startOffset, length, manageOsCache, readaheadLength,
             readaheadPool, spillfile.getAbsolutePath(), 
             shuffleBufferSize, shuffleTransferToAllowed, canEvictAfterTransfer);
         writeFuture = ch.write(partition);
@@ -1037,11 +1173,24 @@ public void operationComplete(ChannelFuture future) {
       } else {
         // HTTPS cannot be done with zero copy.
         final FadvisedChunkedFile chunk = new FadvisedChunkedFile(spill,
-            info.getStartOffset(), info.getPartLength(), sslFileBufferSize,
+            startOffset, length, sslFileBufferSize,
             manageOsCache, readaheadLength, readaheadPool,
             spillfile.getAbsolutePath());
         writeFuture = ch.write(chunk);
       }
+      final ConnectionStats stats = (ConnectionStats) ctx.getAttachment();
+      final long responseLength = dob.getLength() + length;
+      writeFuture.addListener(metrics);
+      writeFuture.addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+          if (future.isSuccess()) {
+            metrics.shuffleOutputBytes.incr(length);
+            stats.outputs++;
+            stats.bytes += responseLength;
+          }
+        }
+      });
       return writeFuture;
     }
 
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache.DecodedColumn;
+import org.apache.hadoop.hive.llap.cache.DecodedColumnCache.DecodedColumnKey;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.orc.TypeDescription;
+import org.junit.Test;
+
+public class TestDecodedColumnCache {
+
+  @Test
+  public void testLongColumn() {
+    DecodedColumnCache cache = new DecodedColumnCache(1024 * 1024, 1);
+    LongColumnVector src = new LongColumnVector(10);
+    for (int i = 0; i < 10; ++i) {
+      src.vector[i] = i * 10;
+    }
+    src.noNulls = false;
+    src.isNull[3] = true;
+    DecodedColumnCache.Builder builder = new DecodedColumnCache.Builder(2);
+    builder.add(TypeDescription.createLong(), src, 10);
+    DecodedColumnKey key = new DecodedColumnKey(1L, 0, 2, 1, false);
+    cache.put(key, builder.build());
+    // The reader reuses its vectors; the cached copy must not change.
+    src.vector[0] = -1;
+
+    DecodedColumn column = cache.get(new DecodedColumnKey(1L, 0, 2, 1, false));
+    assertNotNull(column);
+    assertNull(cache.get(new DecodedColumnKey(1L, 0, 3, 1, false)));
+    assertNull(cache.get(new DecodedColumnKey(1L, 0, 2, 1, true)));
+    assertEquals(1, column.getBatchCount());
+    assertEquals(10, column.getBatchSize(0));
+    LongColumnVector dest = new LongColumnVector(1024);
+    column.copyTo(0, dest);
+    assertEquals(0, dest.vector[0]);
+    assertEquals(90, dest.vector[9]);
+    assertFalse(dest.noNulls);
+    assertTrue(dest.isNull[3]);
+    assertFalse(dest.isNull[4]);
+  }
+
+  @Test
+  public void testRepeatingBytesColumn() {
+    DecodedColumnCache cache = new DecodedColumnCache(1024 * 1024, 1);
+    BytesColumnVector src = new BytesColumnVector(10);
+    src.initBuffer();
+    src.setVal(0, "abc".getBytes(StandardCharsets.UTF_8));
+    src.isRepeating = true;
+    DecodedColumnCache.Builder builder = new DecodedColumnCache.Builder(1);
+    builder.add(TypeDescription.createString(), src, 10);
+    DecodedColumnKey key = new DecodedColumnKey(1L, 0, 0, 1, false);
+    cache.put(key, builder.build());
+    src.setVal(0, "xyz".getBytes(StandardCharsets.UTF_8));
+
+    BytesColumnVector dest = new BytesColumnVector(1024);
+    cache.get(key).copyTo(0, dest);
+    assertTrue(dest.isRepeating);
+    assertEquals("abc", dest.toString(5));
+  }
+
+  @Test
+  public void testEviction() {
+    // Each column of 1000 longs takes about 9Kb.
+    DecodedColumnCache cache = new DecodedColumnCache(20 * 1024, 1);
+    LongColumnVector src = new LongColumnVector(1000);
+    for (int rgIx = 0; rgIx < 3; ++rgIx) {
+      DecodedColumnCache.Builder builder = new DecodedColumnCache.Builder(1);
+      builder.add(TypeDescription.createLong(), src, 1000);
+      cache.put(new DecodedColumnKey(1L, 0, rgIx, 1, false), builder.build());
+    }
+    assertNull(cache.get(new DecodedColumnKey(1L, 0, 0, 1, false)));
+    assertNotNull(cache.get(new DecodedColumnKey(1L, 0, 2, 1, false)));
+  }
+
+  @Test
+  public void testComplexTypesAreNotSupported() {
+    assertTrue(DecodedColumnCache.isSupported(new TypeDescription[] {
+        TypeDescription.createLong(), TypeDescription.createString() }));
+    assertFalse(DecodedColumnCache.isSupported(new TypeDescription[] {
+        TypeDescription.createList(TypeDescription.createLong()) }));
+  }
+}
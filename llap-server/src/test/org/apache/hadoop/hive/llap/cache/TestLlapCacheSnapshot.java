@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.CacheTag;
+import org.apache.hadoop.hive.common.io.DataCache.DiskRangeListFactory;
+import org.apache.hadoop.hive.common.io.DiskRange;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.io.metadata.MetadataCache;
+import org.apache.hadoop.hive.llap.io.metadata.MetadataCache.LlapBufferOrBuffers;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.apache.hadoop.hive.ql.io.SyntheticFileId;
+import org.apache.hadoop.hive.ql.io.orc.encoded.CacheChunk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLlapCacheSnapshot {
+  private static final int MAX_ALLOC = 64;
+  private static final DiskRangeListFactory testFactory = new DiskRangeListFactory() {
+    public DiskRangeList createCacheChunk(MemoryBuffer buffer, long offset, long end) {
+      return new CacheChunk(buffer, offset, end);
+    }
+  };
+
+  private final Random rdm = new Random(42);
+  private final Object syntheticKey = new SyntheticFileId(new Path("/tmp/file1"), 1000, 1);
+  private final Object fileIdKey = 12345L;
+  private File dir;
+  private Configuration conf;
+
+  private static class Caches {
+    final BuddyAllocator allocator;
+    final LowLevelCacheImpl dataCache;
+    final MetadataCache metadataCache;
+
+    Caches() {
+      LlapDaemonCacheMetrics metrics = LlapDaemonCacheMetrics.create("test", "1");
+      LowLevelCachePolicy policy = new LowLevelFifoCachePolicy();
+      LowLevelCacheMemoryManager mm = new LowLevelCacheMemoryManager(4096, policy, metrics);
+      allocator = new BuddyAllocator(
+          false, false, 8, MAX_ALLOC, 1, 4096, 0, null, mm, metrics, null, true);
+      dataCache = new LowLevelCacheImpl(metrics, policy, allocator, true, -1);
+      metadataCache = new MetadataCache(allocator, mm, policy, false, metrics);
+      policy.setEvictionListener(new EvictionDispatcher(dataCache, null, metadataCache, allocator));
+    }
+  }
+
+  @Before
+  public void setUp() {
+    dir = new File(System.getProperty("java.io.tmpdir"),
+        "TestLlapCacheSnapshot-" + System.nanoTime());
+    conf = new Configuration();
+    conf.setBoolean(HiveConf.ConfVars.LLAP_IO_CACHE_PERSISTENCE_VALIDATE_FILEIDS.varname, false);
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testSaveAndRestore() {
+    Map<String, String> partDesc = new LinkedHashMap<>();
+    partDesc.put("year", "2020");
+    partDesc.put("month", "01");
+    CacheTag partTag = CacheTag.build("default.t1", partDesc);
+    CacheTag tableTag = CacheTag.build("default.t2");
+
+    Caches before = new Caches();
+    ByteBuffer data1 = putData(before, syntheticKey, 100, 50, partTag);
+    ByteBuffer data2 = putData(before, fileIdKey, 0, 20, tableTag);
+    ByteBuffer tail = randomBytes(MAX_ALLOC * 2 + 10);
+    before.metadataCache.decRefBuffer(
+        before.metadataCache.putFileMetadata(syntheticKey, tail, partTag, null));
+    new LlapCacheSnapshot(conf, dir, before.dataCache, before.metadataCache).save();
+
+    Caches after = new Caches();
+    long restored = new LlapCacheSnapshot(conf, dir, after.dataCache, after.metadataCache)
+        .restore(Long.MAX_VALUE);
+    assertTrue(restored > 0);
+    assertFalse(new File(dir, "data.snapshot").exists());
+
+    MemoryBuffer buffer = getData(after, syntheticKey, 100, 50);
+    assertNotNull(buffer);
+    assertEquals(data1, buffer.getByteBufferDup());
+    assertEquals(partTag, ((LlapDataBuffer) buffer).getTag());
+    after.dataCache.decRefBuffer(buffer);
+    buffer = getData(after, fileIdKey, 0, 20);
+    assertNotNull(buffer);
+    assertEquals(data2, buffer.getByteBufferDup());
+    assertEquals(tableTag, ((LlapDataBuffer) buffer).getTag());
+    after.dataCache.decRefBuffer(buffer);
+
+    LlapBufferOrBuffers metadata = after.metadataCache.getFileMetadata(syntheticKey);
+    assertNotNull(metadata);
+    ByteBuffer restoredTail = ByteBuffer.allocate(tail.remaining());
+    for (LlapAllocatorBuffer b : metadata.getMultipleLlapBuffers()) {
+      restoredTail.put(b.getByteBufferDup());
+    }
+    restoredTail.flip();
+    assertEquals(tail, restoredTail);
+    after.metadataCache.decRefBuffer(metadata);
+  }
+
+  @Test
+  public void testChangedFilesAreDropped() {
+    // The default file system is local, so HDFS file IDs cannot be validated and are dropped.
+    conf.setBoolean(HiveConf.ConfVars.LLAP_IO_CACHE_PERSISTENCE_VALIDATE_FILEIDS.varname, true);
+    Caches before = new Caches();
+    putData(before, syntheticKey, 0, 30, null);
+    putData(before, fileIdKey, 0, 30, null);
+    new LlapCacheSnapshot(conf, dir, before.dataCache, before.metadataCache).save();
+
+    Caches after = new Caches();
+    new LlapCacheSnapshot(conf, dir, after.dataCache, after.metadataCache)
+        .restore(Long.MAX_VALUE);
+    MemoryBuffer buffer = getData(after, syntheticKey, 0, 30);
+    assertNotNull(buffer);
+    after.dataCache.decRefBuffer(buffer);
+    assertNull(getData(after, fileIdKey, 0, 30));
+  }
+
+  @Test
+  public void testRestoreIsBounded() {
+    Caches before = new Caches();
+    for (int i = 0; i < 10; ++i) {
+      putData(before, syntheticKey, i * MAX_ALLOC, MAX_ALLOC, null);
+    }
+    new LlapCacheSnapshot(conf, dir, before.dataCache, before.metadataCache).save();
+
+    Caches after = new Caches();
+    long restored = new LlapCacheSnapshot(conf, dir, after.dataCache, after.metadataCache)
+        .restore(3 * MAX_ALLOC);
+    assertEquals(3 * MAX_ALLOC, restored);
+  }
+
+  @Test
+  public void testMissingSnapshot() {
+    Caches after = new Caches();
+    assertEquals(0, new LlapCacheSnapshot(conf, dir, after.dataCache, after.metadataCache)
+        .restore(Long.MAX_VALUE));
+  }
+
+  private ByteBuffer randomBytes(int length) {
+    ByteBuffer result = ByteBuffer.allocate(length);
+    rdm.nextBytes(result.array());
+    return result;
+  }
+
+  private ByteBuffer putData(Caches caches, Object fileKey, long offset, int length,
+      CacheTag tag) {
+    ByteBuffer data = randomBytes(length);
+    MemoryBuffer[] buffers = new MemoryBuffer[] { new LlapDataBuffer() };
+    caches.allocator.allocateMultiple(buffers, length);
+    ByteBuffer dest = buffers[0].getByteBufferRaw();
+    int startPos = dest.position();
+    dest.put(data.duplicate());
+    dest.limit(dest.position());
+    dest.position(startPos);
+    DiskRange[] ranges = new DiskRange[] { new DiskRange(offset, offset + length) };
+    assertNull(caches.dataCache.putFileData(
+        fileKey, ranges, buffers, 0, Priority.NORMAL, null, tag));
+    caches.dataCache.decRefBuffer(buffers[0]);
+    return data;
+  }
+
+  private MemoryBuffer getData(Caches caches, Object fileKey, long offset, int length) {
+    DiskRangeList result = caches.dataCache.getFileData(
+        fileKey, new DiskRangeList(offset, offset + length), 0, testFactory, null, null);
+    return (result instanceof CacheChunk) ? ((CacheChunk) result).getBuffer() : null;
+  }
+}
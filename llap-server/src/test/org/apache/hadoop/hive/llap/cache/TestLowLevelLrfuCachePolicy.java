@@ -222,6 +222,63 @@ public void testPurge() {
     }
   }
 
+  @Test(timeout = 60000)
+  public void testBackgroundEviction() throws Exception {
+    final int HEAP_SIZE = 16;
+    Configuration conf = new Configuration();
+    conf.setFloat(HiveConf.ConfVars.LLAP_LRFU_LAMBDA.varname, 1.0f);
+    conf.setInt(HiveConf.ConfVars.LLAP_LRFU_BP_WRAPPER_SIZE.varname, 1);
+    EvictionTracker et = new EvictionTracker();
+    LowLevelLrfuCachePolicy lru = new LowLevelLrfuCachePolicy(1, HEAP_SIZE, conf);
+    LlapDaemonCacheMetrics metrics = LlapDaemonCacheMetrics.create("testBackgroundEviction", "1");
+    LowLevelCacheMemoryManager mm = new LowLevelCacheMemoryManager(HEAP_SIZE, lru, metrics);
+    lru.setEvictionListener(et);
+    // The headroom is capped at a quarter of the cache.
+    mm.startBackgroundEviction(HEAP_SIZE);
+    try {
+      ArrayList<LlapDataBuffer> inserted = new ArrayList<LlapDataBuffer>(HEAP_SIZE);
+      for (int i = 0; i < HEAP_SIZE - 4; ++i) {
+        LlapDataBuffer buffer = LowLevelCacheImpl.allocateFake();
+        assertTrue(cache(mm, lru, et, buffer));
+        inserted.add(buffer);
+      }
+      assertEquals(0, metrics.getCacheBackgroundEvictedBytes());
+      // Going below the headroom wakes up the eviction thread, that evicts the oldest buffer.
+      assertTrue(cache(mm, lru, et, LowLevelCacheImpl.allocateFake()));
+      while (mm.getCurrentUsedSize() > HEAP_SIZE - 4) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, metrics.getCacheBackgroundEvictedBytes());
+      assertSame(inserted.get(0), getOneEvictedBuffer(et));
+      assertEquals(0, metrics.getCacheForegroundEvictions());
+    } finally {
+      mm.stopBackgroundEviction();
+    }
+  }
+
+  @Test
+  public void testForegroundEvictions() {
+    final int HEAP_SIZE = 4;
+    Configuration conf = new Configuration();
+    conf.setFloat(HiveConf.ConfVars.LLAP_LRFU_LAMBDA.varname, 1.0f);
+    conf.setInt(HiveConf.ConfVars.LLAP_LRFU_BP_WRAPPER_SIZE.varname, 1);
+    EvictionTracker et = new EvictionTracker();
+    LowLevelLrfuCachePolicy lru = new LowLevelLrfuCachePolicy(1, HEAP_SIZE, conf);
+    LlapDaemonCacheMetrics metrics = LlapDaemonCacheMetrics.create("testForegroundEvictions", "1");
+    LowLevelCacheMemoryManager mm = new LowLevelCacheMemoryManager(HEAP_SIZE, lru, metrics);
+    lru.setEvictionListener(et);
+    for (int i = 0; i < HEAP_SIZE; ++i) {
+      assertTrue(cache(mm, lru, et, LowLevelCacheImpl.allocateFake()));
+    }
+    assertEquals(0, metrics.getCacheForegroundEvictions());
+    // Each reservation that has to evict by itself is counted once.
+    for (int i = 0; i < 2; ++i) {
+      assertTrue(cache(mm, lru, et, LowLevelCacheImpl.allocateFake()));
+      assertNotNull(getOneEvictedBuffer(et));
+      assertEquals(i + 1, metrics.getCacheForegroundEvictions());
+    }
+  }
+
   @Test
   public void testDeadlockResolution() {
     int heapSize = 4;
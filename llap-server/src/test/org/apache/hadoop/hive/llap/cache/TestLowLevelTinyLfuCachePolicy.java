@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLowLevelTinyLfuCachePolicy {
+  private static final int CACHE_SIZE = 8;
+
+  private EvictionTracker et;
+  private LowLevelTinyLfuCachePolicy policy;
+  private LowLevelCacheMemoryManager mm;
+
+  private static class EvictionTracker implements EvictionListener {
+    public List<LlapDataBuffer> evicted = new ArrayList<LlapDataBuffer>();
+
+    @Override
+    public void notifyEvicted(LlapCacheableBuffer buffer) {
+      evicted.add((LlapDataBuffer)buffer);
+    }
+  }
+
+  @Before
+  public void setUp() {
+    Configuration conf = new Configuration();
+    conf.setInt(HiveConf.ConfVars.LLAP_LRFU_BP_WRAPPER_SIZE.varname, 1);
+    // Window of 2 buffers, main region of 6.
+    conf.setFloat(HiveConf.ConfVars.LLAP_TINYLFU_WINDOW_RATIO.varname, 0.25f);
+    et = new EvictionTracker();
+    policy = new LowLevelTinyLfuCachePolicy(1, CACHE_SIZE, conf);
+    mm = new LowLevelCacheMemoryManager(CACHE_SIZE, policy,
+        LlapDaemonCacheMetrics.create("test", "1"));
+    policy.setEvictionListener(et);
+  }
+
+  @Test
+  public void testScanResistance() {
+    List<LlapDataBuffer> hot = new ArrayList<>();
+    for (int i = 0; i < 4; ++i) {
+      LlapDataBuffer buffer = LowLevelCacheImpl.allocateFake();
+      assertTrue(cache(buffer));
+      hot.add(buffer);
+    }
+    for (int j = 0; j < 5; ++j) {
+      for (LlapDataBuffer buffer : hot) {
+        touch(buffer);
+      }
+    }
+    // A scan much larger than the cache, each buffer is read once.
+    for (int i = 0; i < 5 * CACHE_SIZE; ++i) {
+      assertTrue(cache(LowLevelCacheImpl.allocateFake()));
+    }
+    for (LlapDataBuffer buffer : hot) {
+      assertFalse(buffer.isInvalid());
+      assertFalse(et.evicted.contains(buffer));
+    }
+  }
+
+  @Test
+  public void testAdmission() {
+    List<LlapDataBuffer> inserted = new ArrayList<>();
+    for (int i = 0; i < CACHE_SIZE; ++i) {
+      LlapDataBuffer buffer = LowLevelCacheImpl.allocateFake();
+      assertTrue(cache(buffer));
+      inserted.add(buffer);
+    }
+    // The newest buffer is in the window; make it more popular than the rest.
+    LlapDataBuffer popular = inserted.get(CACHE_SIZE - 1);
+    for (int j = 0; j < 3; ++j) {
+      touch(popular);
+    }
+    // The unpopular window buffer is evicted first; then the popular one is admitted to the
+    // main region in place of the oldest buffer there.
+    for (int i = 0; i < 3; ++i) {
+      assertTrue(cache(LowLevelCacheImpl.allocateFake()));
+    }
+    assertFalse(popular.isInvalid());
+    assertTrue(inserted.get(0).isInvalid());
+  }
+
+  @Test
+  public void testLockedBuffersAreNotEvicted() {
+    List<LlapDataBuffer> inserted = new ArrayList<>();
+    for (int i = 0; i < CACHE_SIZE; ++i) {
+      LlapDataBuffer buffer = LowLevelCacheImpl.allocateFake();
+      assertTrue(cache(buffer));
+      inserted.add(buffer);
+    }
+    for (LlapDataBuffer buffer : inserted) {
+      buffer.incRef();
+      policy.notifyLock(buffer);
+    }
+    assertFalse(mm.reserveMemory(1, false, null));
+    assertTrue(et.evicted.isEmpty());
+    LlapDataBuffer unlocked = inserted.get(CACHE_SIZE / 2);
+    unlocked.decRef();
+    policy.notifyUnlock(unlocked);
+    assertTrue(mm.reserveMemory(1, false, null));
+    assertEquals(1, et.evicted.size());
+    assertTrue(unlocked == et.evicted.get(0));
+  }
+
+  @Test
+  public void testPurge() {
+    List<LlapDataBuffer> inserted = new ArrayList<>();
+    for (int i = 0; i < CACHE_SIZE; ++i) {
+      LlapDataBuffer buffer = LowLevelCacheImpl.allocateFake();
+      assertTrue(cache(buffer));
+      inserted.add(buffer);
+      touch(buffer);
+    }
+    LlapDataBuffer locked = inserted.get(0);
+    locked.incRef();
+    assertEquals(CACHE_SIZE - 1, policy.purge());
+    assertFalse(locked.isInvalid());
+    assertEquals(CACHE_SIZE - 1, et.evicted.size());
+    locked.decRef();
+    policy.notifyUnlock(locked);
+    assertEquals(1, policy.purge());
+  }
+
+  @Test
+  public void testFrequencySketch() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    for (int i = 0; i < 5; ++i) {
+      sketch.increment(42);
+    }
+    sketch.increment(43);
+    assertEquals(5, sketch.frequency(42));
+    assertTrue(sketch.frequency(43) >= 1);
+    for (int i = 0; i < 20; ++i) {
+      sketch.increment(44);
+    }
+    // Counters saturate at 15.
+    assertEquals(15, sketch.frequency(44));
+    // Aging halves the counters once enough increments were seen.
+    for (int i = 0; i < 10 * 64; ++i) {
+      sketch.increment(1000 + i);
+    }
+    assertTrue(sketch.frequency(44) < 15);
+  }
+
+  // Buffers in test are fakes not linked to cache; notify cache policy explicitly.
+  private boolean cache(LlapDataBuffer buffer) {
+    if (!mm.reserveMemory(1, false, null)) {
+      return false;
+    }
+    buffer.incRef();
+    policy.cache(buffer, Priority.NORMAL);
+    buffer.decRef();
+    policy.notifyUnlock(buffer);
+    return true;
+  }
+
+  private void touch(LlapDataBuffer buffer) {
+    buffer.incRef();
+    policy.notifyLock(buffer);
+    buffer.decRef();
+    policy.notifyUnlock(buffer);
+  }
+}
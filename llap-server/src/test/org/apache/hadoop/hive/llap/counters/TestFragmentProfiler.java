@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.counters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.apache.hadoop.hive.llap.counters.FragmentProfiler.Stage;
+import org.apache.tez.common.counters.TezCounters;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestFragmentProfiler {
+
+  @After
+  public void tearDown() {
+    FragmentProfiler.setInstance(null);
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(FragmentProfiler.attach("frag_1"));
+    assertNull(FragmentProfiler.enter(Stage.READ));
+    assertTrue(FragmentProfiler.getProfiles().isEmpty());
+  }
+
+  @Test
+  public void testSamplesPerStage() {
+    FragmentProfiler profiler = new FragmentProfiler(10, false);
+    FragmentProfiler.setInstance(profiler);
+    assertTrue(FragmentProfiler.attach("frag_1"));
+    assertFalse(FragmentProfiler.attach("frag_2"));
+
+    profiler.sample();
+    Stage previous = FragmentProfiler.enter(Stage.DECOMPRESS);
+    assertEquals(Stage.OTHER, previous);
+    Stage nested = FragmentProfiler.enter(Stage.READ);
+    profiler.sample();
+    profiler.sample();
+    FragmentProfiler.exit(nested);
+    profiler.sample();
+    FragmentProfiler.exit(previous);
+
+    Set<String> profiles = FragmentProfiler.getProfiles();
+    assertEquals(1, profiles.size());
+    String profile = profiles.iterator().next();
+    assertTrue(profile, profile.startsWith("frag_1 (1 threads"));
+    assertTrue(profile, profile.contains("READ/RUNNABLE=2"));
+
+    TezCounters counters = new TezCounters();
+    FragmentProfiler.detach(counters);
+    assertEquals(10, counters.findCounter(
+        FragmentProfiler.COUNTER_GROUP, "OTHER_RUNNABLE_MS").getValue());
+    assertEquals(20, counters.findCounter(
+        FragmentProfiler.COUNTER_GROUP, "READ_RUNNABLE_MS").getValue());
+    assertEquals(10, counters.findCounter(
+        FragmentProfiler.COUNTER_GROUP, "DECOMPRESS_RUNNABLE_MS").getValue());
+    // The fragment is gone with its last thread.
+    assertTrue(FragmentProfiler.getProfiles().isEmpty());
+  }
+
+  @Test
+  public void testThreadsOfOneFragment() throws Exception {
+    FragmentProfiler profiler = new FragmentProfiler(10, false);
+    FragmentProfiler.setInstance(profiler);
+    final Object lock = new Object();
+    Thread ioThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        FragmentProfiler.attach("frag_1");
+        FragmentProfiler.enter(Stage.CONSUME);
+        synchronized (lock) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            // Done.
+          }
+        }
+        FragmentProfiler.detach(null);
+      }
+    });
+    FragmentProfiler.attach("frag_1");
+    ioThread.start();
+    while (ioThread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+    profiler.sample();
+
+    String profile = FragmentProfiler.getProfiles().iterator().next();
+    assertTrue(profile, profile.startsWith("frag_1 (2 threads"));
+    assertTrue(profile, profile.contains("CONSUME/WAITING=1"));
+    ioThread.interrupt();
+    ioThread.join();
+    assertTrue(FragmentProfiler.getProfiles().iterator().next().startsWith("frag_1 (1 threads"));
+    FragmentProfiler.detach(null);
+  }
+}
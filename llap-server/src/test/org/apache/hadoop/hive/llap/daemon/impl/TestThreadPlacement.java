@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.daemon.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestThreadPlacement {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private void addNode(File sysDir, String name, String cpus) throws IOException {
+    File nodeDir = new File(sysDir, name);
+    assertTrue(nodeDir.mkdir());
+    Files.write(new File(nodeDir, "cpulist").toPath(), cpus.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testReadNodeCpus() throws IOException {
+    File sysDir = folder.newFolder("node");
+    addNode(sysDir, "node1", "24-47,72-95\n");
+    addNode(sysDir, "node0", "0-23,48-71\n");
+    // A memory-only node.
+    addNode(sysDir, "node2", "\n");
+    assertTrue(new File(sysDir, "possible").createNewFile());
+    assertEquals(Arrays.asList("0-23,48-71", "24-47,72-95"), ThreadPlacement.readNodeCpus(sysDir));
+    assertTrue(ThreadPlacement.readNodeCpus(new File(sysDir, "missing")).isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testThreadsArePlacedRoundRobin() throws InterruptedException {
+    ThreadFactory factory = new ThreadPlacement(2, null).wrap(Executors.defaultThreadFactory());
+    final AtomicIntegerArray nodes = new AtomicIntegerArray(4);
+    Thread[] threads = new Thread[3];
+    for (int i = 0; i < threads.length; ++i) {
+      final int threadIx = i;
+      threads[i] = factory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          nodes.set(threadIx, ThreadPlacement.getHomeNode());
+          if (threadIx == 1) {
+            // The threads started by a placed thread are on the same node.
+            Thread child = new Thread(new Runnable() {
+              @Override
+              public void run() {
+                nodes.set(3, ThreadPlacement.getHomeNode());
+              }
+            });
+            child.start();
+            try {
+              child.join();
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, nodes.get(0));
+    assertEquals(1, nodes.get(1));
+    assertEquals(0, nodes.get(2));
+    assertEquals(1, nodes.get(3));
+    assertEquals(-1, ThreadPlacement.getHomeNode());
+  }
+
+  @Test
+  public void testHomeArenas() {
+    // 5 arenas on 2 nodes: 0, 2 and 4 are on node 0; 1 and 3 on node 1.
+    assertEquals(0, ThreadPlacement.getHomeArenaIx(0, 2, 0, 5));
+    assertEquals(2, ThreadPlacement.getHomeArenaIx(0, 2, 1, 5));
+    assertEquals(4, ThreadPlacement.getHomeArenaIx(0, 2, 2, 5));
+    assertEquals(0, ThreadPlacement.getHomeArenaIx(0, 2, 3, 5));
+    assertEquals(1, ThreadPlacement.getHomeArenaIx(1, 2, 0, 5));
+    assertEquals(3, ThreadPlacement.getHomeArenaIx(1, 2, 1, 5));
+    assertEquals(1, ThreadPlacement.getHomeArenaIx(1, 2, 2, 5));
+    // No arena on the node, or no home node.
+    assertEquals(-1, ThreadPlacement.getHomeArenaIx(1, 2, 0, 1));
+    assertEquals(-1, ThreadPlacement.getHomeArenaIx(-1, 2, 0, 5));
+    // The placement is not initialized.
+    assertEquals(-1, ThreadPlacement.getHomeArenaIx(0, 5));
+    assertFalse(ThreadPlacement.hasHomeNode());
+  }
+
+  @Test
+  public void testSingleNodeIsNotPlaced() {
+    ThreadFactory factory = Executors.defaultThreadFactory();
+    assertSame(factory, new ThreadPlacement(1, null).wrap(factory));
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.daemon.impl.comparator;
+
+import static org.apache.hadoop.hive.llap.daemon.impl.TaskExecutorTestHelpers.createQueryInfo;
+import static org.apache.hadoop.hive.llap.daemon.impl.TaskExecutorTestHelpers.createSubmitWorkRequestProto;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.daemon.impl.EvictingPriorityBlockingQueue;
+import org.apache.hadoop.hive.llap.daemon.impl.QueryFragmentInfo;
+import org.apache.hadoop.hive.llap.daemon.impl.QueryInfo;
+import org.apache.hadoop.hive.llap.daemon.impl.TaskExecutorService.TaskWrapper;
+import org.apache.hadoop.hive.llap.daemon.impl.TaskExecutorTestHelpers.MockRequest;
+import org.apache.hadoop.hive.llap.daemon.rpc.LlapDaemonProtocolProtos.SubmitWorkRequestProto;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFairShareComparator {
+  private FairShareComparator comparator;
+  private EvictingPriorityBlockingQueue<TaskWrapper> queue;
+  private QueryInfo q1;
+  private QueryInfo q2;
+
+  @Before
+  public void setUp() {
+    comparator = new FairShareComparator();
+    Configuration conf = new Configuration();
+    conf.setFloat(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_BOOST.varname, 4.0f);
+    conf.setInt(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_FAIR_SHARE_SHORT_TASKS.varname, 10);
+    comparator.setConf(conf);
+    queue = new EvictingPriorityBlockingQueue<>(comparator, 10);
+    q1 = createQueryInfo();
+    q2 = createQueryInfo();
+  }
+
+  private TaskWrapper offer(QueryInfo queryInfo, String dagName, int fragmentNum,
+      int parallelism, long startTime) {
+    SubmitWorkRequestProto request = createSubmitWorkRequestProto(
+        fragmentNum, parallelism, 0, startTime, startTime, 1, dagName, false);
+    QueryFragmentInfo fragmentInfo = new QueryFragmentInfo(queryInfo, "fakeVertexName",
+        fragmentNum, 0, request.getWorkSpec().getVertex(), "");
+    TaskWrapper task = new TaskWrapper(
+        new MockRequest(request, fragmentInfo, true, true, 1000, null, false), null);
+    comparator.fragmentQueued(task.getTaskRunnerCallable());
+    assertNull(queue.offer(task, 0));
+    return task;
+  }
+
+  private void run(TaskWrapper task, long runningTimeSec) {
+    comparator.fragmentStarted(task.getTaskRunnerCallable());
+    comparator.fragmentFinished(task.getTaskRunnerCallable(),
+        TimeUnit.SECONDS.toNanos(runningTimeSec));
+  }
+
+  @Test(timeout = 60000)
+  public void testQueriesAreInterleaved() throws InterruptedException {
+    TaskWrapper r1 = offer(q1, "q1", 1, 100, 100);
+    TaskWrapper r2 = offer(q1, "q1", 2, 100, 101);
+    TaskWrapper r3 = offer(q1, "q1", 3, 100, 102);
+    TaskWrapper r4 = offer(q1, "q1", 4, 100, 103);
+    // The second query does not wait for the fragments the first one queued earlier.
+    TaskWrapper r5 = offer(q2, "q2", 1, 100, 200);
+    TaskWrapper r6 = offer(q2, "q2", 2, 100, 201);
+    assertEquals(r1, queue.take());
+    assertEquals(r5, queue.take());
+    assertEquals(r2, queue.take());
+    assertEquals(r6, queue.take());
+    assertEquals(r3, queue.take());
+    assertEquals(r4, queue.take());
+  }
+
+  @Test(timeout = 60000)
+  public void testExpensiveQueryGetsLessShare() throws InterruptedException {
+    run(offer(q1, "q1", 1, 100, 100), 10);
+    run(offer(q2, "q2", 1, 100, 200), 1);
+    assertEquals(2, queue.size());
+    queue.take();
+    queue.take();
+
+    TaskWrapper r1 = offer(q1, "q1", 2, 100, 101);
+    TaskWrapper r2 = offer(q1, "q1", 3, 100, 102);
+    TaskWrapper r3 = offer(q2, "q2", 2, 100, 201);
+    TaskWrapper r4 = offer(q2, "q2", 3, 100, 202);
+    TaskWrapper r5 = offer(q2, "q2", 4, 100, 203);
+    // The fragments of the first query take 10 times longer, so it gets fewer of them started.
+    assertEquals(r1, queue.take());
+    assertEquals(r3, queue.take());
+    assertEquals(r4, queue.take());
+    assertEquals(r5, queue.take());
+    assertEquals(r2, queue.take());
+  }
+
+  @Test(timeout = 60000)
+  public void testShortFragmentsAreBoosted() throws InterruptedException {
+    TaskWrapper r1 = offer(q1, "q1", 1, 100, 100);
+    TaskWrapper r2 = offer(q1, "q1", 2, 100, 101);
+    TaskWrapper r3 = offer(q1, "q1", 3, 100, 102);
+    TaskWrapper r4 = offer(q2, "q2", 1, 5, 200);
+    TaskWrapper r5 = offer(q2, "q2", 2, 5, 201);
+    TaskWrapper r6 = offer(q2, "q2", 3, 5, 202);
+    // The second query only has a few pending tasks, so its fragments have 4 times the weight.
+    assertEquals(r1, queue.take());
+    assertEquals(r4, queue.take());
+    assertEquals(r5, queue.take());
+    assertEquals(r6, queue.take());
+    assertEquals(r2, queue.take());
+    assertEquals(r3, queue.take());
+  }
+}
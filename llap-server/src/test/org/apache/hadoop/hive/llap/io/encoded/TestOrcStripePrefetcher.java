@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.io.encoded;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.DiskRange;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.cache.BuddyAllocator;
+import org.apache.hadoop.hive.llap.cache.MemoryManager;
+import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
+import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.tez.common.counters.TezCounters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for OrcStripePrefetcher.
+ */
+public class TestOrcStripePrefetcher {
+  private static final int FILE_SIZE = 4096;
+  // The prefetched ranges are split into buffers of this size.
+  private static final int MAX_ALLOC = 256;
+
+  private final HiveConf conf = new HiveConf();
+  private final TezCounters tezCounters = new TezCounters();
+  private byte[] fileData;
+  private File file;
+  private Path path;
+  private OrcStripePrefetcher prefetcher;
+
+  @Before
+  public void setUp() throws IOException {
+    fileData = new byte[FILE_SIZE];
+    for (int i = 0; i < FILE_SIZE; ++i) {
+      fileData[i] = (byte) (i % 251);
+    }
+    file = File.createTempFile("TestOrcStripePrefetcher", ".orc");
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(fileData);
+    }
+    path = new Path(file.toURI());
+    conf.setIntVar(ConfVars.LLAP_IO_ORC_PREFETCH_THREADS, 1);
+    conf.setVar(ConfVars.LLAP_IO_ORC_PREFETCH_QUERY_MAX_SIZE, "1000b");
+  }
+
+  @After
+  public void tearDown() {
+    if (prefetcher != null) {
+      prefetcher.shutdown();
+    }
+    file.delete();
+  }
+
+  private OrcStripePrefetcher.FileReadAhead createReadAhead(Supplier<FileSystem> fsSupplier)
+      throws IOException {
+    BuddyAllocator allocator = new BuddyAllocator(false, false, 8, MAX_ALLOC, MAX_ALLOC,
+        MAX_ALLOC * 32, 0, System.getProperty("java.io.tmpdir", "."), mock(MemoryManager.class),
+        LlapDaemonCacheMetrics.create("test", "1"), null, true);
+    prefetcher = new OrcStripePrefetcher(conf, allocator);
+    return prefetcher.createFileReadAhead("query", path, fsSupplier,
+        UserGroupInformation.getCurrentUser(), new QueryFragmentCounters(conf, null, tezCounters));
+  }
+
+  private OrcStripePrefetcher.FileReadAhead createReadAhead() throws IOException {
+    return createReadAhead(this::getLocalFs);
+  }
+
+  private FileSystem getLocalFs() {
+    try {
+      return FileSystem.getLocal(conf);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private long getCounter(LlapIOCounters counter) {
+    return tezCounters.findCounter(counter).getValue();
+  }
+
+  /** Checks that the range has been served with the file data at the given file offset. */
+  private void assertServed(DiskRangeList range, long fileOffset) {
+    assertTrue(range.hasData());
+    ByteBuffer data = range.getData().duplicate();
+    byte[] actual = new byte[data.remaining()];
+    data.get(actual);
+    assertArrayEquals(Arrays.copyOfRange(fileData, (int) fileOffset,
+        (int) (fileOffset + range.getLength())), actual);
+  }
+
+  @Test
+  public void testServeContainedRange() throws Exception {
+    OrcStripePrefetcher.FileReadAhead readAhead = createReadAhead();
+    readAhead.prefetch(0, Arrays.asList(new DiskRange(100, 700)));
+
+    // The stripe starts at 100; the range is within the first buffer.
+    DiskRangeList range = new DiskRangeList(10, 60);
+    DiskRangeList served = readAhead.serve(range, 100);
+    assertServed(served, 110);
+    assertEquals(10, served.getOffset());
+    assertEquals(50, getCounter(LlapIOCounters.PREFETCH_HIT_BYTES));
+
+    // A range that is not entirely prefetched is left to the reader.
+    DiskRangeList outside = readAhead.serve(new DiskRangeList(650, 750), 0);
+    assertFalse(outside.hasData());
+    readAhead.close();
+  }
+
+  @Test
+  public void testServeRangeSpanningBuffers() throws Exception {
+    OrcStripePrefetcher.FileReadAhead readAhead = createReadAhead();
+    readAhead.prefetch(0, Arrays.asList(new DiskRange(0, 700)));
+
+    DiskRangeList head = new DiskRangeList(0, 10);
+    DiskRangeList spanning = head.insertAfter(new DiskRangeList(200, 600));
+    assertEquals(spanning, head.next);
+    head = readAhead.serve(head, 0);
+    assertServed(head, 0);
+    assertServed(head.next, 200);
+    assertEquals(410, getCounter(LlapIOCounters.PREFETCH_HIT_BYTES));
+    readAhead.close();
+  }
+
+  @Test
+  public void testCancelBeforeStart() throws Exception {
+    CountDownLatch isReading = new CountDownLatch(1);
+    CountDownLatch canRead = new CountDownLatch(1);
+    // The single prefetch thread is held by the first range until the second one is cancelled.
+    OrcStripePrefetcher.FileReadAhead readAhead = createReadAhead(() -> {
+      isReading.countDown();
+      try {
+        canRead.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return getLocalFs();
+    });
+    readAhead.prefetch(0, Arrays.asList(new DiskRange(0, 100), new DiskRange(100, 200)));
+    isReading.await();
+
+    DiskRangeList queued = readAhead.serve(new DiskRangeList(100, 200), 0);
+    assertFalse(queued.hasData());
+    canRead.countDown();
+    assertServed(readAhead.serve(new DiskRangeList(0, 100), 0), 0);
+    assertEquals(100, getCounter(LlapIOCounters.PREFETCH_HIT_BYTES));
+    readAhead.close();
+  }
+
+  @Test
+  public void testWastedBytesOnRelease() throws Exception {
+    OrcStripePrefetcher.FileReadAhead readAhead = createReadAhead();
+    readAhead.prefetch(0, Arrays.asList(new DiskRange(0, 600)));
+    readAhead.prefetch(1, Arrays.asList(new DiskRange(600, 900)));
+
+    assertServed(readAhead.serve(new DiskRangeList(0, 100), 0), 0);
+    readAhead.releaseStripes(0);
+    assertEquals(500, getCounter(LlapIOCounters.PREFETCH_WASTED_BYTES));
+
+    // The released stripe is not served any more; the next one still is.
+    assertFalse(readAhead.serve(new DiskRangeList(100, 200), 0).hasData());
+    assertServed(readAhead.serve(new DiskRangeList(600, 900), 0), 600);
+    readAhead.close();
+    assertEquals(500, getCounter(LlapIOCounters.PREFETCH_WASTED_BYTES));
+    assertEquals(400, getCounter(LlapIOCounters.PREFETCH_HIT_BYTES));
+  }
+
+  @Test
+  public void testOverBudget() throws Exception {
+    OrcStripePrefetcher.FileReadAhead readAhead = createReadAhead();
+    // The budget is 1000 bytes; the second range does not fit.
+    readAhead.prefetch(0, Arrays.asList(new DiskRange(0, 600), new DiskRange(600, 1200)));
+
+    assertServed(readAhead.serve(new DiskRangeList(0, 600), 0), 0);
+    assertFalse(readAhead.serve(new DiskRangeList(600, 1200), 0).hasData());
+
+    // Releasing the stripe returns its bytes to the budget.
+    readAhead.releaseStripes(0);
+    readAhead.prefetch(1, Arrays.asList(new DiskRange(1200, 2000)));
+    assertServed(readAhead.serve(new DiskRangeList(1200, 2000), 0), 1200);
+    readAhead.close();
+  }
+}
@@ -28,9 +28,12 @@
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorNumExecutorsAvailable;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorNumExecutorsConfigured;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorNumQueuedRequests;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorQueryQueueTimeCount;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorQueryQueueTimeSum;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorWaitQueueSize;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorInfo.ExecutorWaitQueueSizeConfigured;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonExecutorMetrics.TimedAverageMetrics;
 import java.util.Map;
@@ -188,6 +191,34 @@ public void testSimpleAndDerivedMetricsCalculations() {
     assertTrue((waitQueueSize + numExecutorsAvailable - queuedRequests) == data.get(ExecutorAvailableFreeSlots.name()));
   }
 
+  @Test
+  public void testQueryQueueTimeHistogram() {
+    LlapDaemonExecutorMetrics metrics = LlapDaemonExecutorMetrics.create("testQueryQueueTime", "test", 1,
+        1, new int[]{1}, 1, 1, 1);
+    metrics.addMetricsQueryQueueTime("q1", 5000000L); // 5 ms
+    metrics.addMetricsQueryQueueTime("q1", 10000000L); // 10 ms
+    metrics.addMetricsQueryQueueTime("q1", 700000000L); // 700 ms
+    metrics.addMetricsQueryQueueTime("q1", 120000000000L); // 120 s
+    Map<String, Long> data = Maps.newHashMap();
+    metrics.getMetrics(new DumpingMetricsCollector(data), true);
+
+    assertEquals(2L, (long) data.get("ExecutorQueryQueueTime_10ms"));
+    assertEquals(2L, (long) data.get("ExecutorQueryQueueTime_500ms"));
+    assertEquals(3L, (long) data.get("ExecutorQueryQueueTime_1000ms"));
+    assertEquals(4L, (long) data.get("ExecutorQueryQueueTime_inf"));
+    assertEquals(4L, (long) data.get(ExecutorQueryQueueTimeCount.name()));
+    assertEquals(120715L, (long) data.get(ExecutorQueryQueueTimeSum.name()));
+
+    // A completed query is reported one last time, then dropped.
+    metrics.queryComplete("q1");
+    data.clear();
+    metrics.getMetrics(new DumpingMetricsCollector(data), true);
+    assertTrue(data.containsKey(ExecutorQueryQueueTimeCount.name()));
+    data.clear();
+    metrics.getMetrics(new DumpingMetricsCollector(data), true);
+    assertFalse(data.containsKey(ExecutorQueryQueueTimeCount.name()));
+  }
+
   private TimedAverageMetrics generateTimedAverageMetrics(int windowDataSize, long windowTimeSize, int dataNum,
       long firstData, long dataDelta, long firstTime, long timeDelta) {
     TimedAverageMetrics metrics =
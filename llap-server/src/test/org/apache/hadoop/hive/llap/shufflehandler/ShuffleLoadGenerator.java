@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.shufflehandler;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import javax.crypto.SecretKey;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.token.Token;
+import org.apache.tez.common.security.JobTokenIdentifier;
+import org.apache.tez.common.security.JobTokenSecretManager;
+import org.apache.tez.runtime.library.common.security.SecureShuffleUtils;
+import org.apache.tez.runtime.library.common.shuffle.orderedgrouped.ShuffleHeader;
+
+/**
+ * Local load generator for the LLAP ShuffleHandler. Writes synthetic map outputs to a local
+ * directory, starts the ShuffleHandler on an ephemeral port, and fetches random
+ * (map, partition range) combinations from several threads, verifying the data and reporting
+ * the fetch throughput.
+ *
+ * Usage: ShuffleLoadGenerator [maps] [partitions] [partitionBytes] [mapsPerRequest]
+ *   [partitionsPerRequest] [threads] [seconds]
+ */
+public class ShuffleLoadGenerator implements Closeable {
+  private static final long CLUSTER_TIMESTAMP = 1500000000000L;
+  private static final int DAG_ID = 1;
+
+  private final File dir;
+  private final int maps;
+  private final int partitions;
+  private final int partitionBytes;
+  private final String appId = "application_" + CLUSTER_TIMESTAMP + "_0001";
+  private final String jobId = "job_" + CLUSTER_TIMESTAMP + "_0001";
+  private String user;
+  private SecretKey secretKey;
+  private int port;
+
+  public ShuffleLoadGenerator(File dir, int maps, int partitions, int partitionBytes) {
+    this.dir = dir;
+    this.maps = maps;
+    this.partitions = partitions;
+    this.partitionBytes = partitionBytes;
+  }
+
+  /** Writes the map outputs, then starts the ShuffleHandler and registers the DAG with it. */
+  public void start() throws Exception {
+    user = UserGroupInformation.getCurrentUser().getShortUserName();
+    File outputDir = new File(dir, "usercache/" + user + "/appcache/" + appId + "/" + DAG_ID
+        + "/output");
+    for (int map = 0; map < maps; map++) {
+      writeMapOutput(new File(outputDir, getMapId(map)), map);
+    }
+
+    Configuration conf = new Configuration();
+    conf.set(ShuffleHandler.SHUFFLE_HANDLER_LOCAL_DIRS, dir.getAbsolutePath());
+    conf.setInt(ShuffleHandler.SHUFFLE_PORT_CONFIG_KEY, 0);
+    ShuffleHandler.initializeAndStart(conf);
+    ShuffleHandler handler = ShuffleHandler.get();
+    port = handler.getPort();
+
+    JobTokenSecretManager secretManager = new JobTokenSecretManager();
+    Token<JobTokenIdentifier> token =
+        new Token<>(new JobTokenIdentifier(new Text(appId)), secretManager);
+    handler.registerDag(appId, DAG_ID, token, user, null);
+    secretManager.addTokenForJob(jobId, token);
+    secretKey = secretManager.retrieveTokenSecret(jobId);
+  }
+
+  public static String getMapId(int map) {
+    return "attempt_" + CLUSTER_TIMESTAMP + "_0001_1_00_" + String.format("%06d", map) + "_0";
+  }
+
+  private static byte getFill(int map, int partition) {
+    return (byte) (map * 31 + partition);
+  }
+
+  /** Writes the data and index files of a map output, partition after partition. */
+  private void writeMapOutput(File attemptDir, int map) throws IOException {
+    if (!attemptDir.mkdirs()) {
+      throw new IOException("Cannot create " + attemptDir);
+    }
+    byte[] data = new byte[partitionBytes];
+    try (OutputStream out = new FileOutputStream(new File(attemptDir,
+        ShuffleHandler.DATA_FILE_NAME))) {
+      for (int partition = 0; partition < partitions; partition++) {
+        Arrays.fill(data, getFill(map, partition));
+        out.write(data);
+      }
+    }
+    try (FileOutputStream out = new FileOutputStream(new File(attemptDir,
+        ShuffleHandler.INDEX_FILE_NAME))) {
+      CheckedOutputStream checkedOut = new CheckedOutputStream(out, new CRC32());
+      DataOutputStream dataOut = new DataOutputStream(checkedOut);
+      for (int partition = 0; partition < partitions; partition++) {
+        dataOut.writeLong((long) partition * partitionBytes); // start offset
+        dataOut.writeLong(partitionBytes); // raw length
+        dataOut.writeLong(partitionBytes); // part length
+      }
+      dataOut.flush();
+      new DataOutputStream(out).writeLong(checkedOut.getChecksum().getValue());
+    }
+  }
+
+  /**
+   * Fetches a range of partitions of several maps in one request, and verifies the response.
+   * @return the number of bytes of map output data fetched.
+   */
+  public long fetch(List<Integer> mapIndexes, int firstReduce, int lastReduce)
+      throws IOException {
+    StringBuilder mapIds = new StringBuilder();
+    for (int map : mapIndexes) {
+      mapIds.append(mapIds.length() == 0 ? "" : ",").append(getMapId(map));
+    }
+    String reduce = firstReduce == lastReduce ? Integer.toString(firstReduce)
+        : firstReduce + "-" + lastReduce;
+    URL url = new URL("http", "localhost", port, "/mapOutput?job=" + jobId + "&dag=" + DAG_ID
+        + "&reduce=" + reduce + "&map=" + mapIds + "&keepAlive=true");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty(ShuffleHeader.HTTP_HEADER_NAME,
+        ShuffleHeader.DEFAULT_HTTP_HEADER_NAME);
+    connection.setRequestProperty(ShuffleHeader.HTTP_HEADER_VERSION,
+        ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION);
+    connection.setRequestProperty(SecureShuffleUtils.HTTP_HEADER_URL_HASH,
+        SecureShuffleUtils.generateHash(SecureShuffleUtils.buildMsgFrom(url)
+            .getBytes(StandardCharsets.UTF_8), secretKey));
+    long bytes = 0;
+    byte[] data = new byte[partitionBytes];
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(connection.getInputStream()))) {
+      for (int map : mapIndexes) {
+        int count = firstReduce == lastReduce ? 1 : WritableUtils.readVInt(in);
+        if (count != lastReduce - firstReduce + 1) {
+          throw new IOException("Expected " + (lastReduce - firstReduce + 1)
+              + " partitions, got " + count);
+        }
+        ShuffleHeader[] headers = new ShuffleHeader[count];
+        for (int i = 0; i < count; i++) {
+          headers[i] = new ShuffleHeader();
+          headers[i].readFields(in);
+          if (!getMapId(map).equals(headers[i].getMapId())
+              || headers[i].getPartition() != firstReduce + i) {
+            throw new IOException("Unexpected header " + headers[i].getMapId() + "/"
+                + headers[i].getPartition());
+          }
+        }
+        for (ShuffleHeader header : headers) {
+          in.readFully(data, 0, (int) header.getCompressedLength());
+          byte fill = getFill(map, header.getPartition());
+          for (int i = 0; i < header.getCompressedLength(); i++) {
+            if (data[i] != fill) {
+              throw new IOException("Corrupt data for " + header.getMapId() + "/"
+                  + header.getPartition());
+            }
+          }
+          bytes += header.getCompressedLength();
+        }
+      }
+      if (in.read() != -1) {
+        throw new IOException("Unexpected data at the end of the response");
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Fetches random maps and partition ranges from several threads for the given time.
+   * @return the number of bytes of map output data fetched.
+   */
+  public long run(final int mapsPerRequest, final int partitionsPerRequest, int threads,
+      final long durationMs) throws Exception {
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong requests = new AtomicLong();
+    final List<Throwable> errors = new ArrayList<>();
+    final long endTime = System.currentTimeMillis() + durationMs;
+    Thread[] fetchers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final Random random = new Random(t);
+      fetchers[t] = new Thread("ShuffleFetcher-" + t) {
+        @Override
+        public void run() {
+          try {
+            while (System.currentTimeMillis() < endTime) {
+              List<Integer> mapIndexes = new ArrayList<>();
+              int firstMap = random.nextInt(maps);
+              for (int i = 0; i < Math.min(mapsPerRequest, maps); i++) {
+                mapIndexes.add((firstMap + i) % maps);
+              }
+              int rangeSize = Math.min(partitionsPerRequest, partitions);
+              int firstReduce = random.nextInt(partitions - rangeSize + 1);
+              bytes.addAndGet(fetch(mapIndexes, firstReduce, firstReduce + rangeSize - 1));
+              requests.incrementAndGet();
+            }
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }
+      };
+      fetchers[t].start();
+    }
+    long startTime = System.nanoTime();
+    for (Thread fetcher : fetchers) {
+      fetcher.join();
+    }
+    long elapsedMs = Math.max(1, (System.nanoTime() - startTime) / 1000000L);
+    if (!errors.isEmpty()) {
+      throw new IOException("Fetch failed", errors.get(0));
+    }
+    System.out.println(String.format("%d requests, %d MB in %d ms: %.1f requests/s, %.1f MB/s",
+        requests.get(), bytes.get() >> 20, elapsedMs, requests.get() * 1000.0 / elapsedMs,
+        (bytes.get() >> 10) * 1000.0 / 1024 / elapsedMs));
+    return bytes.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      ShuffleHandler.shutdown();
+    } catch (Exception e) {
+      throw new IOException(e);
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int maps = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int partitions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int partitionBytes = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+    int mapsPerRequest = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+    int partitionsPerRequest = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+    int threads = args.length > 5 ? Integer.parseInt(args[5]) : 16;
+    int seconds = args.length > 6 ? Integer.parseInt(args[6]) : 30;
+    File dir = new File(System.getProperty("java.io.tmpdir"),
+        "ShuffleLoadGenerator-" + System.nanoTime());
+    try (ShuffleLoadGenerator generator =
+        new ShuffleLoadGenerator(dir, maps, partitions, partitionBytes)) {
+      generator.start();
+      generator.run(mapsPerRequest, partitionsPerRequest, threads, seconds * 1000L);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.shufflehandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestShuffleHandler {
+  private static final int MAPS = 4;
+  private static final int PARTITIONS = 8;
+  private static final int PARTITION_BYTES = 100;
+
+  private static ShuffleLoadGenerator generator;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    File dir = new File(System.getProperty("test.build.data", "/tmp"),
+        "TestShuffleHandler-" + System.nanoTime());
+    generator = new ShuffleLoadGenerator(dir, MAPS, PARTITIONS, PARTITION_BYTES);
+    generator.start();
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    if (generator != null) {
+      generator.close();
+    }
+  }
+
+  @Test
+  public void testSinglePartition() throws Exception {
+    assertEquals(PARTITION_BYTES, generator.fetch(Collections.singletonList(1), 3, 3));
+    assertEquals(2 * PARTITION_BYTES, generator.fetch(Arrays.asList(0, 2), 7, 7));
+  }
+
+  @Test
+  public void testPartitionRange() throws Exception {
+    assertEquals(3 * PARTITION_BYTES, generator.fetch(Collections.singletonList(0), 2, 4));
+    assertEquals(MAPS * PARTITIONS * PARTITION_BYTES,
+        generator.fetch(Arrays.asList(0, 1, 2, 3), 0, PARTITIONS - 1));
+  }
+
+  @Test
+  public void testInvalidPartitionRange() throws Exception {
+    try {
+      generator.fetch(Collections.singletonList(0), PARTITIONS - 1, PARTITIONS);
+      fail("Fetching a partition past the end of the map output should fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+    // The failed request does not affect the next ones.
+    assertEquals(PARTITION_BYTES, generator.fetch(Collections.singletonList(0), 0, 0));
+  }
+
+  @Test
+  public void testConcurrentFetches() throws Exception {
+    assertTrue(generator.run(2, 3, 4, 500) > 0);
+  }
+}
@@ -20,18 +20,18 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Striped;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -40,10 +40,11 @@
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.hadoop.conf.Configuration;
@@ -88,16 +89,107 @@ public final class QueryResultsCache {
   public static class LookupInfo {
     private String queryText;
     private Supplier<ValidTxnWriteIdList> txnWriteIdListProvider;
+    private PlanDigest planDigest;
 
     public LookupInfo(String queryText, Supplier<ValidTxnWriteIdList> txnWriteIdListProvider) {
+      this(queryText, txnWriteIdListProvider, null);
+    }
+
+    public LookupInfo(String queryText, Supplier<ValidTxnWriteIdList> txnWriteIdListProvider,
+        PlanDigest planDigest) {
       super();
       this.queryText = queryText;
       this.txnWriteIdListProvider = txnWriteIdListProvider;
+      this.planDigest = planDigest;
     }
 
     public String getQueryText() {
       return queryText;
     }
+
+    public PlanDigest getPlanDigest() {
+      return planDigest;
+    }
+
+    public LookupInfo withPlanDigest(PlanDigest newPlanDigest) {
+      return new LookupInfo(queryText, txnWriteIdListProvider, newPlanDigest);
+    }
+  }
+
+  /**
+   * The normalized digest of the optimized plan of a query. Queries which only differ in
+   * whitespace, aliases or the order of commutative operands have the same digest, and can
+   * share a cache entry even though their query text differs.
+   *
+   * The plan is also split into an optional top project and filter, and the plan below them
+   * (the base). A query can be answered from the cached result of another query over the same
+   * base whose filter conjuncts are a subset of its own, if the cached result kept all the base
+   * columns that the remaining (residual) conjuncts and the project need.
+   */
+  public static class PlanDigest {
+    private final String digest;
+    private final String baseDigest;
+    // Filter conjunct digest -> base columns used by the conjunct
+    private final Map<String, BitSet> filterConjuncts;
+    // Base columns used by the project (all base columns if there is no project)
+    private final BitSet projectColumns;
+    // Result column of each base column, or -1 if the base column is not part of the result
+    private final int[] baseColumnToResultColumn;
+    // Whether the project and filter give the same result over a superset of the base rows
+    private final boolean computableFromSuperset;
+
+    public PlanDigest(String digest, String baseDigest, Map<String, BitSet> filterConjuncts,
+        BitSet projectColumns, int[] baseColumnToResultColumn, boolean computableFromSuperset) {
+      this.digest = digest;
+      this.baseDigest = baseDigest;
+      this.filterConjuncts = filterConjuncts;
+      this.projectColumns = projectColumns;
+      this.baseColumnToResultColumn = baseColumnToResultColumn;
+      this.computableFromSuperset = computableFromSuperset;
+    }
+
+    public String getDigest() {
+      return digest;
+    }
+
+    public String getBaseDigest() {
+      return baseDigest;
+    }
+
+    public Set<String> getFilterConjuncts() {
+      return filterConjuncts.keySet();
+    }
+
+    public int getResultColumn(int baseColumn) {
+      return baseColumnToResultColumn[baseColumn];
+    }
+
+    /**
+     * Check if the result of the plan with this digest contains everything needed to compute the
+     * result of the requested plan.
+     */
+    public boolean canAnswer(PlanDigest request) {
+      // Window functions and non-deterministic expressions of the request would be computed over
+      // the cached rows instead of the rows of the request. A non-deterministic conjunct of this
+      // plan is excluded through the request, which has to contain it too.
+      if (!request.computableFromSuperset
+          || !baseDigest.equals(request.baseDigest)
+          || !request.filterConjuncts.keySet().containsAll(filterConjuncts.keySet())) {
+        return false;
+      }
+      BitSet neededColumns = (BitSet) request.projectColumns.clone();
+      for (Map.Entry<String, BitSet> conjunct : request.filterConjuncts.entrySet()) {
+        if (!filterConjuncts.containsKey(conjunct.getKey())) {
+          neededColumns.or(conjunct.getValue());
+        }
+      }
+      for (int i = neededColumns.nextSetBit(0); i >= 0; i = neededColumns.nextSetBit(i + 1)) {
+        if (i >= baseColumnToResultColumn.length || baseColumnToResultColumn[i] < 0) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 
   public static class QueryInfo {
@@ -198,6 +290,8 @@ public static class CacheEntry {
     private AtomicInteger readers = new AtomicInteger(0);
     private ScheduledFuture<?> invalidationFuture = null;
     private volatile CacheEntryStatus status = CacheEntryStatus.PENDING;
+    // Last time (System.nanoTime()) the entry was returned by a lookup, for LRU eviction.
+    private volatile long lastAccessTime = System.nanoTime();
     private ValidTxnWriteIdList txnWriteIdList;
 
     public void releaseReader() {
@@ -274,6 +368,14 @@ private String getQueryText() {
       return getQueryInfo().getLookupInfo().getQueryText();
     }
 
+    private PlanDigest getPlanDigest() {
+      return getQueryInfo().getLookupInfo().getPlanDigest();
+    }
+
+    private void touch() {
+      lastAccessTime = System.nanoTime();
+    }
+
     public FetchWork getFetchWork() {
       // FetchWork's sink is used to hold results, so each query needs a separate copy of FetchWork
       FetchWork fetch = new FetchWork(fetchWork.getTblDir(), fetchWork.getTblDesc(), fetchWork.getLimit());
@@ -337,25 +439,40 @@ public Stream<String> getTableNames() {
     }
   }
 
+  // The lookup structures are concurrent so that lookups do not take any locks, and cache hits
+  // never block each other. Adding and removing an entry take the lock stripes of the entry's
+  // tables and query text (see getEntryLocks()), so an entry is never partially registered
+  // while it is being removed, and invalidations of unrelated tables do not block each other.
+
   // Allow lookup by query string
-  private final Map<String, Set<CacheEntry>> queryMap = new HashMap<String, Set<CacheEntry>>();
+  private final Map<String, Set<CacheEntry>> queryMap =
+      new ConcurrentHashMap<String, Set<CacheEntry>>();
 
-  // LRU. Could also implement LRU as a doubly linked list if CacheEntry keeps its node.
-  // Use synchronized map since even read actions cause the lru to get updated.
-  private final Map<CacheEntry, CacheEntry> lru = Collections.synchronizedMap(
-      new LinkedHashMap<CacheEntry, CacheEntry>(INITIAL_LRU_SIZE, LRU_LOAD_FACTOR, true));
+  // Allow lookup by plan digest, and by the digest of the plan below the top project/filter
+  private final Map<String, Set<CacheEntry>> planDigestMap =
+      new ConcurrentHashMap<String, Set<CacheEntry>>();
+  private final Map<String, Set<CacheEntry>> baseDigestMap =
+      new ConcurrentHashMap<String, Set<CacheEntry>>();
+
+  // All entries in the cache. Recency is tracked by the entries themselves (lastAccessTime),
+  // so that a cache hit does not need to update a shared LRU structure.
+  private final Set<CacheEntry> allEntries = ConcurrentHashMap.newKeySet();
 
   // Lookup of cache entries by table used in the query, for cache invalidation.
-  private final Map<String, Set<CacheEntry>> tableToEntryMap = new HashMap<>();
+  private final Map<String, Set<CacheEntry>> tableToEntryMap =
+      new ConcurrentHashMap<String, Set<CacheEntry>>();
+
+  private final Striped<Lock> entryLocks = Striped.lock(LOCK_STRIPES);
+  // Serializes making room for new entries, so concurrent inserts do not evict more than needed.
+  private final Lock evictionLock = new ReentrantLock();
 
   private final HiveConf conf;
   private Path cacheDirPath;
   private Path zeroRowsPath;
-  private long cacheSize = 0;
+  private final AtomicLong cacheSize = new AtomicLong();
   private long maxCacheSize;
   private long maxEntrySize;
   private long maxEntryLifetime;
-  private ReadWriteLock rwLock = new ReentrantReadWriteLock();
   private ScheduledFuture<?> invalidationPollFuture;
 
   private QueryResultsCache(HiveConf configuration) throws IOException {
@@ -425,44 +542,37 @@ public CacheEntry lookup(LookupInfo request) {
     LOG.debug("QueryResultsCache lookup for query: {}", request.queryText);
 
     boolean foundPending = false;
-    // Cannot entries while we currently hold read lock, so keep track of them to delete later.
+    // Entries found to be invalid are removed once the candidates have been checked.
     Set<CacheEntry> entriesToRemove = new HashSet<CacheEntry>();
-    Lock readLock = rwLock.readLock();
-    try {
-      // Note: ReentrantReadWriteLock deos not allow upgrading a read lock to a write lock.
-      // Care must be taken while under read lock, to make sure we do not perform any actions
-      // which attempt to take a write lock.
-      readLock.lock();
-      Set<CacheEntry> candidates = queryMap.get(request.queryText);
-      if (candidates != null) {
-        CacheEntry pendingResult = null;
-        for (CacheEntry candidate : candidates) {
-          if (entryMatches(request, candidate, entriesToRemove)) {
-            CacheEntryStatus entryStatus = candidate.status;
-            if (entryStatus == CacheEntryStatus.VALID) {
-              result = candidate;
-              break;
-            } else if (entryStatus == CacheEntryStatus.PENDING && pendingResult == null) {
-              pendingResult = candidate;
-            }
+    Set<CacheEntry> candidates = queryMap.get(request.queryText);
+    if (candidates == null && request.planDigest != null) {
+      candidates = planDigestMap.get(request.planDigest.getDigest());
+    }
+    if (candidates != null) {
+      CacheEntry pendingResult = null;
+      for (CacheEntry candidate : candidates) {
+        if (entryMatches(request, candidate, entriesToRemove)) {
+          CacheEntryStatus entryStatus = candidate.status;
+          if (entryStatus == CacheEntryStatus.VALID) {
+            result = candidate;
+            break;
+          } else if (entryStatus == CacheEntryStatus.PENDING && pendingResult == null) {
+            pendingResult = candidate;
           }
         }
+      }
 
-        // Try to find valid entry, but settle for pending entry if that is all we have.
-        if (result == null && pendingResult != null) {
-          result = pendingResult;
-          foundPending = true;
-        }
+      // Try to find valid entry, but settle for pending entry if that is all we have.
+      if (result == null && pendingResult != null) {
+        result = pendingResult;
+        foundPending = true;
+      }
 
-        if (result != null) {
-          lru.get(result);  // Update LRU
-        }
+      if (result != null) {
+        result.touch();
       }
-    } finally {
-      readLock.unlock();
     }
 
-    // Now that we have exited read lock it is safe to remove any invalid entries.
     for (CacheEntry invalidEntry : entriesToRemove) {
       removeEntry(invalidEntry);
     }
@@ -475,6 +585,51 @@ public CacheEntry lookup(LookupInfo request) {
       } else {
         incrementMetric(MetricsConstant.QC_VALID_HITS);
       }
+    } else {
+      incrementMetric(MetricsConstant.QC_MISSES);
+    }
+
+    return result;
+  }
+
+  /**
+   * Check if the cache contains a valid entry whose results are a superset of the results of the
+   * requested query, see PlanDigest.canAnswer(). Pending entries are not considered.
+   * @param request
+   * @return  The cached result if there is a match in the cache, or null if no match is found.
+   */
+  public CacheEntry lookupPartial(LookupInfo request) {
+    if (request.planDigest == null) {
+      return null;
+    }
+    CacheEntry result = null;
+
+    LOG.debug("QueryResultsCache partial lookup for query: {}", request.queryText);
+
+    Set<CacheEntry> entriesToRemove = new HashSet<CacheEntry>();
+    Set<CacheEntry> candidates = baseDigestMap.get(request.planDigest.getBaseDigest());
+    if (candidates != null) {
+      for (CacheEntry candidate : candidates) {
+        if (candidate.status == CacheEntryStatus.VALID
+            && candidate.getPlanDigest().canAnswer(request.planDigest)
+            && entryMatches(request, candidate, entriesToRemove)) {
+          result = candidate;
+          break;
+        }
+      }
+
+      if (result != null) {
+        result.touch();
+      }
+    }
+
+    for (CacheEntry invalidEntry : entriesToRemove) {
+      removeEntry(invalidEntry);
+    }
+
+    LOG.debug("QueryResultsCache partial lookup result: {}", result);
+    if (result != null) {
+      incrementMetric(MetricsConstant.QC_PARTIAL_HITS);
     }
 
     return result;
@@ -493,20 +648,24 @@ public CacheEntry addToCache(QueryInfo queryInfo, ValidTxnWriteIdList txnWriteId
     addedEntry.queryInfo = queryInfo;
     addedEntry.txnWriteIdList = txnWriteIdList;
 
-    Lock writeLock = rwLock.writeLock();
+    Iterable<Lock> locks = getEntryLocks(addedEntry);
+    lockAll(locks);
     try {
-      writeLock.lock();
-
       LOG.info("Adding placeholder cache entry for query '{}'", queryText);
 
-      // Add the entry to the cache structures while under write lock.
+      // Add the entry to the cache structures while holding the entry's locks.
       addToEntryMap(queryMap, queryText, addedEntry);
-      lru.put(addedEntry, addedEntry);
+      PlanDigest planDigest = addedEntry.getPlanDigest();
+      if (planDigest != null) {
+        addToEntryMap(planDigestMap, planDigest.getDigest(), addedEntry);
+        addToEntryMap(baseDigestMap, planDigest.getBaseDigest(), addedEntry);
+      }
+      allEntries.add(addedEntry);
       // Index of entries by table usage.
       addedEntry.getTableNames()
           .forEach(tableName -> addToEntryMap(tableToEntryMap, tableName, addedEntry));
     } finally {
-      writeLock.unlock();
+      unlockAll(locks);
     }
 
     return addedEntry;
@@ -573,7 +732,7 @@ public boolean setEntryValid(CacheEntry cacheEntry, FetchWork fetchWork) {
         cacheEntry.fetchWork = fetchWorkForCache;
         //cacheEntry.cachedResultsPath = cachedResultsPath;
         cacheEntry.size = resultSize;
-        this.cacheSize += resultSize;
+        this.cacheSize.addAndGet(resultSize);
 
         cacheEntry.setStatus(CacheEntryStatus.VALID);
         // Mark this entry as being in use. Caller will need to release later.
@@ -601,65 +760,39 @@ public boolean setEntryValid(CacheEntry cacheEntry, FetchWork fetchWork) {
   }
 
   public void clear() {
-    Lock writeLock = rwLock.writeLock();
-    try {
-      writeLock.lock();
-      LOG.info("Clearing the results cache");
-      CacheEntry[] allEntries = null;
-      synchronized (lru) {
-        allEntries = lru.keySet().toArray(EMPTY_CACHEENTRY_ARRAY);
-      }
-      for (CacheEntry entry : allEntries) {
-        try {
-          removeEntry(entry);
-        } catch (Exception err) {
-          LOG.error("Error removing cache entry " + entry, err);
-        }
+    LOG.info("Clearing the results cache");
+    for (CacheEntry entry : new ArrayList<>(allEntries)) {
+      try {
+        removeEntry(entry);
+      } catch (Exception err) {
+        LOG.error("Error removing cache entry " + entry, err);
       }
-    } finally {
-      writeLock.unlock();
     }
   }
 
   public long getSize() {
-    Lock readLock = rwLock.readLock();
-    try {
-      readLock.lock();
-      return cacheSize;
-    } finally {
-      readLock.unlock();
-    }
+    return cacheSize.get();
   }
 
   public void notifyTableChanged(String dbName, String tableName, long updateTime) {
     LOG.debug("Table changed: {}.{}, at {}", dbName, tableName, updateTime);
     // Invalidate all cache entries using this table.
-    List<CacheEntry> entriesToInvalidate = null;
-    rwLock.writeLock().lock();
-    try {
-      String key = (dbName.toLowerCase() + "." + tableName.toLowerCase());
-      Set<CacheEntry> entriesForTable = tableToEntryMap.get(key);
-      if (entriesForTable != null) {
-        // Possible concurrent modification issues if we try to remove cache entries while
-        // traversing the cache structures. Save the entries to remove in a separate list.
-        entriesToInvalidate = new ArrayList<>(entriesForTable);
-      }
-      if (entriesToInvalidate != null) {
-        for (CacheEntry entry : entriesToInvalidate) {
-          // Ignore updates that occured before this cached query was created.
-          if (entry.getQueryInfo().getQueryTime() <= updateTime) {
-            removeEntry(entry);
-          }
-        }
+    String key = (dbName.toLowerCase() + "." + tableName.toLowerCase());
+    Set<CacheEntry> entriesForTable = tableToEntryMap.get(key);
+    if (entriesForTable == null) {
+      return;
+    }
+    // removeEntry() changes the set, so save the entries to remove in a separate list.
+    List<CacheEntry> entriesToInvalidate = new ArrayList<>(entriesForTable);
+    for (CacheEntry entry : entriesToInvalidate) {
+      // Ignore updates that occured before this cached query was created.
+      if (entry.getQueryInfo().getQueryTime() <= updateTime) {
+        removeEntry(entry);
       }
-    } finally {
-      rwLock.writeLock().unlock();
     }
   }
 
-  private static final int INITIAL_LRU_SIZE = 16;
-  private static final float LRU_LOAD_FACTOR = 0.75f;
-  private static final CacheEntry[] EMPTY_CACHEENTRY_ARRAY = {};
+  private static final int LOCK_STRIPES = 64;
 
   /**
    * Check that the cache entry matches the lookupInfo.
@@ -711,8 +844,8 @@ private boolean entryMatches(LookupInfo lookupInfo, CacheEntry entry, Set<CacheE
 
           if (!writeIdCheckPassed) {
             LOG.debug("Cached query no longer valid due to table {}", tableUsed.getFullyQualifiedName());
-            // We can invalidate the entry now, but calling removeEntry() requires a write lock
-            // and we may already have read lock taken now. Add to entriesToRemove to delete later.
+            // Invalidate the entry now, the caller removes it once it is done with the
+            // candidates. Add to entriesToRemove to delete later.
             entriesToRemove.add(entry);
             entry.invalidate();
             return false;
@@ -726,14 +859,41 @@ private boolean entryMatches(LookupInfo lookupInfo, CacheEntry entry, Set<CacheE
 
   public void removeEntry(CacheEntry entry) {
     entry.invalidate();
-    rwLock.writeLock().lock();
+    Iterable<Lock> locks = getEntryLocks(entry);
+    lockAll(locks);
     try {
+      if (!allEntries.remove(entry)) {
+        // Already removed by another caller.
+        return;
+      }
       removeFromLookup(entry);
-      lru.remove(entry);
       // Should the cache size be updated here, or after the result data has actually been deleted?
-      cacheSize -= entry.size;
+      cacheSize.addAndGet(-entry.size);
     } finally {
-      rwLock.writeLock().unlock();
+      unlockAll(locks);
+    }
+  }
+
+  /**
+   * The lock stripes of the tables and the query text of the entry. The stripes are returned in a
+   * consistent order, so taking all of them cannot deadlock with another caller.
+   */
+  private Iterable<Lock> getEntryLocks(CacheEntry entry) {
+    List<String> keys = entry.getTableNames().collect(Collectors.toList());
+    // Entries without tables still need to be guarded against concurrent add/remove.
+    keys.add(entry.getQueryText());
+    return entryLocks.bulkGet(keys);
+  }
+
+  private static void lockAll(Iterable<Lock> locks) {
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+  }
+
+  private static void unlockAll(Iterable<Lock> locks) {
+    for (Lock lock : locks) {
+      lock.unlock();
     }
   }
 
@@ -742,6 +902,11 @@ private void removeFromLookup(CacheEntry entry) {
     if (!removeFromEntryMap(queryMap, queryString, entry)) {
       LOG.warn("Attempted to remove entry but it was not in the cache: {}", entry);
     }
+    PlanDigest planDigest = entry.getPlanDigest();
+    if (planDigest != null) {
+      removeFromEntryMap(planDigestMap, planDigest.getDigest(), entry);
+      removeFromEntryMap(baseDigestMap, planDigest.getBaseDigest(), entry);
+    }
 
     // Remove this entry from the table usage mappings.
     entry.getTableNames()
@@ -759,15 +924,19 @@ private void calculateEntrySize(CacheEntry entry, FetchWork fetchWork) throws IO
    * Determines if the cache entry should be added to the results cache.
    */
   private boolean shouldEntryBeAdded(CacheEntry entry, long size) {
-    // Assumes the cache lock has already been taken.
     if (maxEntrySize >= 0 && size > maxEntrySize) {
       LOG.debug("Cache entry size {} larger than max entry size ({})", size, maxEntrySize);
       incrementMetric(MetricsConstant.QC_REJECTED_TOO_LARGE);
       return false;
     }
 
-    if (!clearSpaceForCacheEntry(entry, size)) {
-      return false;
+    evictionLock.lock();
+    try {
+      if (!clearSpaceForCacheEntry(entry, size)) {
+        return false;
+      }
+    } finally {
+      evictionLock.unlock();
     }
 
     return true;
@@ -775,24 +944,26 @@ private boolean shouldEntryBeAdded(CacheEntry entry, long size) {
 
   private boolean hasSpaceForCacheEntry(CacheEntry entry, long size) {
     if (maxCacheSize >= 0) {
-      return (cacheSize + size) <= maxCacheSize;
+      return (cacheSize.get() + size) <= maxCacheSize;
     }
     // Negative max cache size means unbounded.
     return true;
   }
 
   private CacheEntry findEntryToRemove() {
-    // Entries should be in LRU order in the keyset iterator.
-    Set<CacheEntry> entries = lru.keySet();
-    synchronized (lru) {
-      for (CacheEntry removalCandidate : entries) {
-        if (removalCandidate.getStatus() != CacheEntryStatus.VALID) {
-          continue;
-        }
-        return removalCandidate;
+    // Eviction only happens when adding entries, so scan for the least recently used entry here
+    // instead of keeping the entries ordered on every cache hit.
+    CacheEntry lruEntry = null;
+    for (CacheEntry removalCandidate : allEntries) {
+      if (removalCandidate.getStatus() != CacheEntryStatus.VALID) {
+        continue;
+      }
+      if (lruEntry == null
+          || removalCandidate.lastAccessTime - lruEntry.lastAccessTime < 0) {
+        lruEntry = removalCandidate;
       }
     }
-    return null;
+    return lruEntry;
   }
 
   private boolean clearSpaceForCacheEntry(CacheEntry entry, long size) {
@@ -821,28 +992,24 @@ private boolean clearSpaceForCacheEntry(CacheEntry entry, long size) {
 
   private static void addToEntryMap(Map<String, Set<CacheEntry>> entryMap,
       String key, CacheEntry entry) {
-    Set<CacheEntry> entriesForKey = entryMap.get(key);
-    if (entriesForKey == null) {
-      entriesForKey = new HashSet<CacheEntry>();
-      entryMap.put(key, entriesForKey);
-    }
-    entriesForKey.add(entry);
+    // compute() is atomic, so the set cannot be dropped by a concurrent removal while adding.
+    entryMap.compute(key, (k, entriesForKey) -> {
+      if (entriesForKey == null) {
+        entriesForKey = ConcurrentHashMap.newKeySet();
+      }
+      entriesForKey.add(entry);
+      return entriesForKey;
+    });
   }
 
   private static boolean removeFromEntryMap(Map<String, Set<CacheEntry>> entryMap,
       String key, CacheEntry entry) {
-    Set<CacheEntry> entries = entryMap.get(key);
-    if (entries == null) {
-      return false;
-    }
-    boolean deleted = entries.remove(entry);
-    if (!deleted) {
-      return false;
-    }
-    if (entries.isEmpty()) {
-      entryMap.remove(key);
-    }
-    return true;
+    final AtomicBoolean deleted = new AtomicBoolean(false);
+    entryMap.computeIfPresent(key, (k, entries) -> {
+      deleted.set(entries.remove(entry));
+      return entries.isEmpty() ? null : entries;
+    });
+    return deleted.get();
   }
 
   @VisibleForTesting
@@ -938,7 +1105,7 @@ public Long getValue() {
     MetricsVariable<Long> curCacheSize = new MetricsVariable<Long>() {
       @Override
       public Long getValue() {
-        return cache.cacheSize;
+        return cache.cacheSize.get();
       }
     };
 
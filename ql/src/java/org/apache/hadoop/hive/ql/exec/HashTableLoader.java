@@ -30,7 +30,8 @@
 public interface HashTableLoader {
 
   enum HashTableLoaderCounters {
-    HASHTABLE_LOAD_TIME_MS
+    HASHTABLE_LOAD_TIME_MS,
+    HASHTABLE_OFF_HEAP_BYTES
   };
 
   void init(ExecMapperContext context, MapredContext mrContext, Configuration hconf,
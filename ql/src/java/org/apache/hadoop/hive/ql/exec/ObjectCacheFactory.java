@@ -27,6 +27,7 @@
 import org.apache.hadoop.hive.llap.io.api.LlapProxy;
 import org.apache.hadoop.hive.llap.io.api.LlapProxy;
 import org.apache.hadoop.hive.ql.exec.tez.LlapObjectCache;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastSlabAllocator;
 
 /**
  * ObjectCacheFactory returns the appropriate cache depending on settings in
@@ -107,5 +108,6 @@ public static void removeLlapQueryCache(String queryId) {
       LOG.info("Removing object cache for " + queryId);
     }
     llapQueryCaches.remove(queryId);
+    VectorMapJoinFastSlabAllocator.releaseQuery(queryId);
   }
 }
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.io.LlapCacheSummary;
+import org.apache.hadoop.hive.ql.io.HiveInputFormat;
+import org.apache.hadoop.hive.ql.io.orc.OrcSplit;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.split.SplitLocationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Places each split on the LLAP daemon that has the most of its data cached, as long as that
+ * daemon has not been assigned more than its share of the split bytes (by the configured slack)
+ * yet; so a daemon exceeds its share by one split at most, and always gets its first one. The
+ * other splits are hashed onto the daemons like in {@link HostAffinitySplitLocationProvider}, so
+ * a split keeps going to the same daemon once its data is cached there; this makes the cached
+ * data usable after the daemons are restarted or the cluster is resized.
+ *
+ * The cached file ranges of the daemons come from their /cachecontents web page; the cache is
+ * keyed by file id, so only the ORC splits that carry one are matched.
+ */
+public class CacheAffinitySplitLocationProvider implements SplitLocationProvider {
+  private static final Logger LOG = LoggerFactory.getLogger(
+      CacheAffinitySplitLocationProvider.class);
+  private static final int MAX_FETCH_THREADS = 16;
+
+  private static final class FetchedSummary {
+    private final LlapCacheSummary summary;
+    private final long fetchTimeMs;
+
+    FetchedSummary(LlapCacheSummary summary, long fetchTimeMs) {
+      this.summary = summary;
+      this.fetchTimeMs = fetchTimeMs;
+    }
+  }
+
+  /** The summaries fetched from the daemons, by services address, for reuse across queries. */
+  private static final Map<String, FetchedSummary> fetchedSummaries = new ConcurrentHashMap<>();
+
+  @VisibleForTesting
+  final List<String> locations;
+  private final List<LlapCacheSummary> summaries;
+  private final double loadSlack;
+  private final int activeLocationCount;
+  private final long[] assignedBytes;
+  /** The location of each split, so that it is placed the same way when asked again. */
+  private final Map<String, Integer> assignments = new HashMap<>();
+  private long totalAssignedBytes = 0, cachedBytes = 0, localCachedBytes = 0;
+
+  /**
+   * @param locations The daemon hosts; null for the daemons that don't run splits.
+   * @param summaries The cache summaries of the daemons, in the same order; null when unknown.
+   */
+  public CacheAffinitySplitLocationProvider(
+      List<String> locations, List<LlapCacheSummary> summaries, double loadSlack) {
+    Preconditions.checkState(locations != null && !locations.isEmpty(),
+        CacheAffinitySplitLocationProvider.class.getName() +
+            " needs at least 1 location to function");
+    Preconditions.checkArgument(summaries.size() == locations.size());
+    this.locations = locations;
+    this.summaries = summaries;
+    this.loadSlack = loadSlack;
+    this.assignedBytes = new long[locations.size()];
+    int count = 0;
+    for (String location : locations) {
+      if (location != null) {
+        ++count;
+      }
+    }
+    this.activeLocationCount = Math.max(1, count);
+  }
+
+  @Override
+  public synchronized String[] getLocations(InputSplit split) throws IOException {
+    if (!(split instanceof FileSplit)) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Split: " + split + " is not a FileSplit. Using default locations");
+      }
+      return split.getLocations();
+    }
+    FileSplit fsplit = (FileSplit) split;
+    String path = fsplit.getPath().toString();
+    String splitKey = path + "@" + fsplit.getStart() + "+" + fsplit.getLength();
+    Integer index = assignments.get(splitKey);
+    if (index == null) {
+      index = place(fsplit, path);
+      assignments.put(splitKey, index);
+    }
+    String location = locations.get(index);
+    return (location != null) ? new String[] { location } : null;
+  }
+
+  private int place(FileSplit fsplit, String path) {
+    long start = fsplit.getStart(), length = fsplit.getLength();
+    String splitDesc = "Split at " + path + " with offset= " + start + ", length=" + length;
+    int hashIndex = HostAffinitySplitLocationProvider.determineLocation(
+        locations, path, start, splitDesc);
+    int index = hashIndex;
+    long indexCachedBytes = 0;
+    Object fileKey = getFileKey(fsplit);
+    if (fileKey != null) {
+      String key = fileKey.toString();
+      long maxAssignedBytes =
+          (long) ((1 + loadSlack) * totalAssignedBytes / activeLocationCount);
+      long hashCachedBytes = 0, maxCachedBytes = 0, bestCachedBytes = 0;
+      int bestIndex = -1;
+      for (int i = 0; i < locations.size(); ++i) {
+        LlapCacheSummary summary = summaries.get(i);
+        if (locations.get(i) == null || summary == null) continue;
+        long splitCachedBytes = summary.getCachedBytes(key, start, start + length);
+        maxCachedBytes = Math.max(maxCachedBytes, splitCachedBytes);
+        if (i == hashIndex) {
+          hashCachedBytes = splitCachedBytes;
+        }
+        if (splitCachedBytes > bestCachedBytes && assignedBytes[i] <= maxAssignedBytes) {
+          bestIndex = i;
+          bestCachedBytes = splitCachedBytes;
+        }
+      }
+      // Prefer the hashed location on ties, so that the placement stays stable.
+      if (bestIndex >= 0 && bestCachedBytes > hashCachedBytes) {
+        index = bestIndex;
+        indexCachedBytes = bestCachedBytes;
+      } else {
+        indexCachedBytes = hashCachedBytes;
+      }
+      cachedBytes += maxCachedBytes;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(splitDesc + " placed at index=" + index + " with " + indexCachedBytes
+            + " cached bytes; hashed to index=" + hashIndex + " with " + hashCachedBytes);
+      }
+    }
+    localCachedBytes += indexCachedBytes;
+    assignedBytes[index] += length;
+    totalAssignedBytes += length;
+    return index;
+  }
+
+  private static Object getFileKey(FileSplit fsplit) {
+    // The splits of a query come wrapped, see HiveInputFormat.getSplits.
+    InputSplit split = (fsplit instanceof HiveInputFormat.HiveInputSplit)
+        ? ((HiveInputFormat.HiveInputSplit) fsplit).getInputSplit() : fsplit;
+    return (split instanceof OrcSplit) ? ((OrcSplit) split).getFileKey() : null;
+  }
+
+  /** The bytes of the placed splits. */
+  public synchronized long getSplitBytes() {
+    return totalAssignedBytes;
+  }
+
+  /** The bytes of the placed splits that are cached on some daemon. */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /** The bytes of the placed splits that are cached on the daemon they are placed on. */
+  public synchronized long getLocalCachedBytes() {
+    return localCachedBytes;
+  }
+
+  /**
+   * Gets the cache summaries of the daemons, fetching the ones that are not recent enough in
+   * parallel; the summary of a daemon that cannot be fetched is null.
+   */
+  public static List<LlapCacheSummary> getCacheSummaries(
+      List<String> servicesAddresses, Configuration conf) {
+    long ttlMs = HiveConf.getTimeVar(conf,
+        HiveConf.ConfVars.LLAP_CLIENT_CACHE_AFFINITY_SUMMARY_TTL, TimeUnit.MILLISECONDS);
+    final int timeoutMs = (int) HiveConf.getTimeVar(conf,
+        HiveConf.ConfVars.LLAP_CLIENT_CACHE_AFFINITY_FETCH_TIMEOUT, TimeUnit.MILLISECONDS);
+    long nowMs = System.currentTimeMillis();
+    List<String> toFetch = new ArrayList<>();
+    for (String address : servicesAddresses) {
+      if (address == null) continue;
+      FetchedSummary fetched = fetchedSummaries.get(address);
+      if (fetched == null || nowMs - fetched.fetchTimeMs > ttlMs) {
+        toFetch.add(address);
+      }
+    }
+    if (!toFetch.isEmpty()) {
+      ExecutorService executor = Executors.newFixedThreadPool(
+          Math.min(MAX_FETCH_THREADS, toFetch.size()), new ThreadFactoryBuilder()
+              .setDaemon(true).setNameFormat("LlapCacheSummaryFetcher %d").build());
+      try {
+        List<Future<LlapCacheSummary>> futures = new ArrayList<>(toFetch.size());
+        for (final String address : toFetch) {
+          futures.add(executor.submit(new Callable<LlapCacheSummary>() {
+            @Override
+            public LlapCacheSummary call() throws IOException {
+              return fetchCacheSummary(address, timeoutMs);
+            }
+          }));
+        }
+        for (int i = 0; i < toFetch.size(); ++i) {
+          LlapCacheSummary summary = null;
+          try {
+            summary = futures.get(i).get();
+          } catch (ExecutionException e) {
+            LOG.warn("Cannot get the cache summary of " + toFetch.get(i)
+                + "; its splits will be hashed", e.getCause());
+          }
+          // Remember the failures too, so that an unresponsive daemon doesn't slow every query.
+          fetchedSummaries.put(toFetch.get(i), new FetchedSummary(summary, nowMs));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warn("Interrupted while getting the cache summaries; the splits will be hashed");
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    List<LlapCacheSummary> result = new ArrayList<>(servicesAddresses.size());
+    for (String address : servicesAddresses) {
+      FetchedSummary fetched = (address == null) ? null : fetchedSummaries.get(address);
+      result.add(fetched == null ? null : fetched.summary);
+    }
+    return result;
+  }
+
+  private static LlapCacheSummary fetchCacheSummary(String servicesAddress, int timeoutMs)
+      throws IOException {
+    URLConnection connection = new URL(servicesAddress + "/cachecontents").openConnection();
+    connection.setConnectTimeout(timeoutMs);
+    connection.setReadTimeout(timeoutMs);
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+      LlapCacheSummary summary = LlapCacheSummary.read(reader);
+      LOG.info("Got the cache summary of " + servicesAddress + ": " + summary.getFileCount()
+          + " files, " + summary.getTotalBytes() + " bytes");
+      return summary;
+    }
+  }
+}
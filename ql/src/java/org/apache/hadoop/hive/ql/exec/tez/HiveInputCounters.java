@@ -25,5 +25,12 @@ public enum HiveInputCounters {
   RAW_INPUT_SPLITS,
   GROUPED_INPUT_SPLITS,
   INPUT_FILES,
-  INPUT_DIRECTORIES
+  INPUT_DIRECTORIES,
+  // With hive.llap.client.cache.affinity.splits: the split bytes, the bytes cached on some
+  // daemon, the bytes cached on the daemon the split is placed on, and the percentage of the
+  // latter in the cached bytes.
+  SPLIT_BYTES,
+  CACHED_SPLIT_BYTES,
+  LOCAL_CACHED_SPLIT_BYTES,
+  CACHE_LOCALITY_PERCENT
 }
\ No newline at end of file
@@ -291,6 +291,10 @@ public List<Event> initialize() throws Exception {
         if (inputInitializerContext != null) {
           counterName = Utilities.getVertexCounterName(HiveInputCounters.GROUPED_INPUT_SPLITS.name(), vertexName);
           tezCounters.findCounter(groupName, counterName).setValue(flatSplits.length);
+          if (splitLocationProvider instanceof CacheAffinitySplitLocationProvider) {
+            addCacheAffinityCounters((CacheAffinitySplitLocationProvider) splitLocationProvider,
+                tezCounters, groupName, vertexName);
+          }
 
           if (LOG.isDebugEnabled()) {
             LOG.debug("Published tez counters: " + tezCounters);
@@ -319,6 +323,22 @@ public List<Event> initialize() throws Exception {
     }
   }
 
+  private static void addCacheAffinityCounters(CacheAffinitySplitLocationProvider provider,
+      TezCounters tezCounters, String groupName, String vertexName) {
+    long cachedBytes = provider.getCachedBytes(), localCachedBytes = provider.getLocalCachedBytes();
+    tezCounters.findCounter(groupName, Utilities.getVertexCounterName(
+        HiveInputCounters.SPLIT_BYTES.name(), vertexName)).setValue(provider.getSplitBytes());
+    tezCounters.findCounter(groupName, Utilities.getVertexCounterName(
+        HiveInputCounters.CACHED_SPLIT_BYTES.name(), vertexName)).setValue(cachedBytes);
+    tezCounters.findCounter(groupName, Utilities.getVertexCounterName(
+        HiveInputCounters.LOCAL_CACHED_SPLIT_BYTES.name(), vertexName)).setValue(localCachedBytes);
+    if (cachedBytes > 0) {
+      tezCounters.findCounter(groupName, Utilities.getVertexCounterName(
+          HiveInputCounters.CACHE_LOCALITY_PERCENT.name(), vertexName))
+          .setValue(localCachedBytes * 100 / cachedBytes);
+    }
+  }
+
   private InputSplit[] pruneBuckets(MapWork work, InputSplit[] splits) {
     final BitSet buckets = work.getIncludedBuckets();
     final String bucketIn = buckets.toString();
@@ -20,12 +20,14 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.io.LlapCacheSummary;
 import org.apache.hadoop.hive.llap.registry.LlapServiceInstance;
 import org.apache.hadoop.hive.llap.registry.impl.LlapRegistryService;
 import org.apache.hadoop.hive.metastore.api.MetaException;
@@ -74,7 +76,7 @@ public static SplitLocationProvider getSplitLocationProvider(Configuration conf,
       return locationProviderImpl;
     } else if (useCustomLocations) {
       LlapRegistryService serviceRegistry = LlapRegistryService.getClient(conf);
-      return getCustomSplitLocationProvider(serviceRegistry, LOG);
+      return getCustomSplitLocationProvider(serviceRegistry, conf, LOG);
     } else {
       splitLocationProvider = new SplitLocationProvider() {
         @Override
@@ -98,6 +100,11 @@ public String[] getLocations(InputSplit split) throws IOException {
   @VisibleForTesting
   static SplitLocationProvider getCustomSplitLocationProvider(LlapRegistryService serviceRegistry, Logger LOG) throws
       IOException {
+    return getCustomSplitLocationProvider(serviceRegistry, null, LOG);
+  }
+
+  private static SplitLocationProvider getCustomSplitLocationProvider(LlapRegistryService serviceRegistry,
+      Configuration conf, Logger LOG) throws IOException {
     LOG.info("Using LLAP instance " + serviceRegistry.getApplicationId());
 
     Collection<LlapServiceInstance> serviceInstances =
@@ -105,7 +112,9 @@ static SplitLocationProvider getCustomSplitLocationProvider(LlapRegistryService
     Preconditions.checkArgument(!serviceInstances.isEmpty(),
         "No running LLAP daemons! Please check LLAP service status and zookeeper configuration");
     ArrayList<String> locations = new ArrayList<>(serviceInstances.size());
+    ArrayList<String> servicesAddresses = new ArrayList<>(serviceInstances.size());
     for (LlapServiceInstance serviceInstance : serviceInstances) {
+      servicesAddresses.add(serviceInstance.getServicesAddress());
       String executors =
           serviceInstance.getProperties().get(LlapRegistryService.LLAP_DAEMON_NUM_ENABLED_EXECUTORS);
       if (executors != null && Integer.parseInt(executors) == 0) {
@@ -123,6 +132,12 @@ static SplitLocationProvider getCustomSplitLocationProvider(LlapRegistryService
         }
       }
     }
+    if (conf != null && HiveConf.getBoolVar(conf, HiveConf.ConfVars.LLAP_CLIENT_CACHE_AFFINITY_SPLITS)) {
+      List<LlapCacheSummary> summaries =
+          CacheAffinitySplitLocationProvider.getCacheSummaries(servicesAddresses, conf);
+      return new CacheAffinitySplitLocationProvider(locations, summaries,
+          HiveConf.getFloatVar(conf, HiveConf.ConfVars.LLAP_CLIENT_CACHE_AFFINITY_LOAD_SLACK));
+    }
     return new HostAffinitySplitLocationProvider(locations);
   }
 
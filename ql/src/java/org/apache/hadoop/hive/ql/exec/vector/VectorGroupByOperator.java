@@ -18,12 +18,15 @@
 
 package org.apache.hadoop.hive.ql.exec.vector;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -46,9 +49,15 @@
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpressionWriter;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpressionWriterFactory;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.fast.VectorGroupByFastHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.fast.VectorGroupByFastLongHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.fast.VectorGroupByFastMultiKeyHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.fast.VectorGroupByFastStringHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.rowbytescontainer.VectorRowBytesContainer;
 import org.apache.hadoop.hive.ql.exec.vector.wrapper.VectorHashKeyWrapperBase;
 import org.apache.hadoop.hive.ql.exec.vector.wrapper.VectorHashKeyWrapperBatch;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.HiveUtils;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.GroupByDesc;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
@@ -56,12 +65,18 @@
 import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc;
 import org.apache.hadoop.hive.ql.plan.api.OperatorType;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.hive.serde2.lazybinary.fast.LazyBinaryDeserializeRead;
+import org.apache.hadoop.hive.serde2.lazybinary.fast.LazyBinarySerializeWrite;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hive.common.util.HashCodeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -81,6 +96,8 @@ public class VectorGroupByOperator extends Operator<GroupByDesc>
   private static final Logger LOG = LoggerFactory.getLogger(
       VectorGroupByOperator.class.getName());
 
+  private static final float NATIVE_HASH_LOAD_FACTOR = 0.75f;
+
   private VectorizationContext vContext;
   private VectorGroupByDesc vectorDesc;
 
@@ -295,6 +312,17 @@ private class ProcessingModeHashAggregate extends ProcessingModeBase {
      */
     private Map<KeyWrapper, VectorAggregationBufferRow> mapKeysAggregationBuffers;
 
+    /**
+     * The native (fast) hash table used instead of mapKeysAggregationBuffers when the
+     * Vectorizer chose a hash table key type.
+     */
+    private VectorGroupByFastHashTable fastHashTable;
+
+    /**
+     * The aggregation buffers found by the native hash table for each row of the current batch.
+     */
+    private VectorAggregationBufferRow[] batchAggregationBuffers;
+
     /**
      * Total per hashtable entry fixed memory (does not depend on key/agg values).
      */
@@ -358,6 +386,57 @@ private class ProcessingModeHashAggregate extends ProcessingModeBase {
      */
     private long numRowsCompareHashAggr;
 
+    /**
+     * Whether to spill the rows of new keys to disk (instead of flushing) when the memory
+     * threshold is reached.
+     */
+    private boolean isSpillEnabled;
+
+    /**
+     * Number of hash partitions of the spilled rows (a power of 2).
+     */
+    private int spillPartitionCount;
+
+    /**
+     * Maximum re-partitioning depth of spilled rows.
+     */
+    private int spillMaxLevel;
+
+    private String spillLocalDirs;
+
+    /**
+     * Once the hash table is frozen no new groups are added.  Rows whose key is already in the
+     * hash table are aggregated, the others are spilled to currentSpillPartitions.
+     */
+    private boolean isHashTableFrozen;
+
+    /**
+     * The spill level of the rows being aggregated: 0 for the operator input, N for rows read
+     * back from a level N-1 spill partition.
+     */
+    private int currentSpillLevel;
+
+    /**
+     * The spill partitions of the current level (null until the hash table gets frozen).
+     */
+    private VectorRowBytesContainer[] currentSpillPartitions;
+    private long[] currentSpillPartitionRowCounts;
+
+    /**
+     * The spilled partitions waiting to be re-aggregated.
+     */
+    private Deque<SpilledPartition> pendingSpillPartitions;
+
+    private VectorSerializeRow<LazyBinarySerializeWrite> spillVectorSerializeRow;
+    private VectorDeserializeRow<LazyBinaryDeserializeRead> spillVectorDeserializeRow;
+    private VectorizedRowBatch spillReplayBatch;
+    private boolean isSpillSerDeUnavailable;
+
+    private int[] spillSavedSelected;
+    private int[] spillFoundLogicalIndices;
+
+    private long spilledRowCount;
+
     @Override
     public void initialize(Configuration hconf) throws HiveException {
       // hconf is null in unit testing
@@ -386,7 +465,33 @@ public void initialize(Configuration hconf) throws HiveException {
 
       sumBatchSize = 0;
 
-      mapKeysAggregationBuffers = new HashMap<KeyWrapper, VectorAggregationBufferRow>();
+      // Spilling replays the input rows, which does not work with grouping sets since each
+      // input row is aggregated once per grouping set.
+      if (null != hconf && !groupingSetsPresent &&
+          HiveConf.getBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED)) {
+        isSpillEnabled = true;
+        int partitionCount = Math.max(1, HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS));
+        spillPartitionCount = (Integer.bitCount(partitionCount) == 1) ?
+            partitionCount : Integer.highestOneBit(partitionCount) << 1;
+        spillMaxLevel = HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_MAX_LEVEL);
+        spillLocalDirs = HiveUtils.getLocalDirList(hconf);
+        pendingSpillPartitions = new ArrayDeque<SpilledPartition>();
+      }
+
+      int nativeInitialCapacity = (null != hconf) ?
+          HiveConf.getIntVar(hconf,
+              HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_NATIVE_INITIAL_CAPACITY) :
+          HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_NATIVE_INITIAL_CAPACITY.defaultIntVal;
+      fastHashTable = createFastHashTable(nativeInitialCapacity);
+      if (fastHashTable == null) {
+        mapKeysAggregationBuffers = new HashMap<KeyWrapper, VectorAggregationBufferRow>();
+      } else {
+        batchAggregationBuffers = new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+        LOG.info("using native {} hash table for hash aggregation",
+            vectorDesc.getHashTableKeyType());
+      }
       computeMemoryLimits();
       LOG.debug("using hash aggregation processing mode");
     }
@@ -405,22 +510,42 @@ public void doProcessBatch(VectorizedRowBatch batch, boolean isFirstGroupingSet,
 
       // First we traverse the batch to evaluate and prepare the KeyWrappers
       // After this the KeyWrappers are properly set and hash code is computed
-      if (!groupingSetsPresent) {
+      // (The native hash table reads the key columns directly.)
+      if (fastHashTable != null) {
+        // Nothing to do.
+      } else if (!groupingSetsPresent) {
         keyWrappersBatch.evaluateBatch(batch);
       } else {
         keyWrappersBatch.evaluateBatchGroupingSets(batch, currentGroupingSetsOverrideIsNulls);
       }
 
-      // Next we locate the aggregation buffer set for each key
-      prepareBatchAggregationBufferSets(batch);
+      if (isHashTableFrozen) {
+        // Only aggregate the rows of keys already present; spill the others.
+        processBatchFrozen(batch);
+      } else {
 
-      // Finally, evaluate the aggregators
-      processAggregators(batch);
+        // Next we locate the aggregation buffer set for each key
+        prepareBatchAggregationBufferSets(batch);
+
+        // Finally, evaluate the aggregators
+        processAggregators(batch);
+      }
+
+      if (!isHashTableFrozen && canSpill() && shouldFlush(batch)) {
+        // Instead of flushing partial results, stop adding new groups.
+        freezeHashTable(batch);
+      }
+      if (isHashTableFrozen && gcCanary.get() == null) {
+        // We are actually short of memory: emit the partial results after all.  The rows
+        // spilled so far are re-aggregated at close.
+        retireCurrentSpillPartitions();
+      }
 
       //Flush if memory limits were reached
       // We keep flushing until the memory is under threshold
+      // (A frozen hash table does not grow, so there is nothing to flush.)
       int preFlushEntriesCount = numEntriesHashTable;
-      while (shouldFlush(batch)) {
+      while (!isHashTableFrozen && shouldFlush(batch)) {
         flush(false);
 
         if(gcCanary.get() == null) {
@@ -453,6 +578,12 @@ public void doProcessBatch(VectorizedRowBatch batch, boolean isFirstGroupingSet,
     public void close(boolean aborted) throws HiveException {
       if (!aborted) {
         flush(true);
+        if (isSpillEnabled) {
+          aggregateSpilledPartitions();
+        }
+      }
+      if (isSpillEnabled) {
+        clearSpillPartitions();
       }
       if (!aborted && sumBatchSize == 0 && GroupByOperator.shouldEmitSummaryRow(conf)) {
         // in case the empty grouping set is preset; but no output has done
@@ -470,6 +601,298 @@ public void close(boolean aborted) throws HiveException {
 
     }
 
+    /**
+     * Whether the memory threshold can be handled by spilling instead of flushing.
+     */
+    private boolean canSpill() {
+      return isSpillEnabled && !isSpillSerDeUnavailable && currentSpillLevel < spillMaxLevel;
+    }
+
+    /**
+     * Stops adding new groups to the hash table: from now on the rows of new keys are spilled.
+     */
+    private void freezeHashTable(VectorizedRowBatch batch) throws HiveException {
+      if (spillVectorSerializeRow == null) {
+        setupSpillSerDe(batch);
+        if (isSpillSerDeUnavailable) {
+          return;
+        }
+      }
+      currentSpillPartitions = new VectorRowBytesContainer[spillPartitionCount];
+      currentSpillPartitionRowCounts = new long[spillPartitionCount];
+      isHashTableFrozen = true;
+      LOG.info("Hash aggregation froze at {} entries (spill level {}), spilling rows of new keys",
+          numEntriesHashTable, currentSpillLevel);
+    }
+
+    /**
+     * The spilled rows are the input batch columns, serialized with LazyBinary like the
+     * vector map join spill.
+     */
+    private void setupSpillSerDe(VectorizedRowBatch batch) throws HiveException {
+
+      TypeInfo[] inputTypeInfos =
+          VectorizedBatchUtil.typeInfosFromStructObjectInspector(
+              (StructObjectInspector) inputObjInspectors[0]);
+
+      List<Integer> projectedColumns = vContext.getProjectedColumns();
+      final int projectionSize = projectedColumns.size();
+
+      List<TypeInfo> typeInfoList = new ArrayList<TypeInfo>();
+      List<Integer> projectionList = new ArrayList<Integer>();
+      for (int i = 0; i < projectionSize; i++) {
+        final int projectedColumn = projectedColumns.get(i);
+        if (batch.cols[projectedColumn] == null) {
+          continue;
+        }
+        if (inputTypeInfos[i].getCategory() != Category.PRIMITIVE) {
+          LOG.info("Hash aggregation spilling is not available for input column type {}",
+              inputTypeInfos[i]);
+          isSpillSerDeUnavailable = true;
+          return;
+        }
+        typeInfoList.add(inputTypeInfos[i]);
+        projectionList.add(projectedColumn);
+      }
+
+      int[] projection = ArrayUtils.toPrimitive(projectionList.toArray(new Integer[0]));
+      TypeInfo[] spillTypeInfos = typeInfoList.toArray(new TypeInfo[0]);
+
+      spillVectorSerializeRow =
+          new VectorSerializeRow<LazyBinarySerializeWrite>(
+              new LazyBinarySerializeWrite(projection.length));
+      spillVectorSerializeRow.init(spillTypeInfos, projection);
+
+      spillVectorDeserializeRow =
+          new VectorDeserializeRow<LazyBinaryDeserializeRead>(
+              new LazyBinaryDeserializeRead(spillTypeInfos, /* useExternalBuffer */ true));
+      spillVectorDeserializeRow.init(projection);
+
+      spillReplayBatch = VectorizedBatchUtil.makeLike(batch);
+      spillSavedSelected = new int[VectorizedRowBatch.DEFAULT_SIZE];
+      spillFoundLogicalIndices = new int[VectorizedRowBatch.DEFAULT_SIZE];
+      if (batchAggregationBuffers == null) {
+        batchAggregationBuffers = new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+      }
+    }
+
+    /**
+     * Frozen hash table variation of prepareBatchAggregationBufferSets + processAggregators.
+     * Rows whose key is present are aggregated.  The other rows are spilled to the partition of
+     * their key hash.
+     */
+    private void processBatchFrozen(VectorizedRowBatch batch) throws HiveException {
+
+      // The key wrappers give us the key hash codes for partitioning the spilled rows.
+      if (fastHashTable != null) {
+        keyWrappersBatch.evaluateBatch(batch);
+      }
+      VectorHashKeyWrapperBase[] keyWrappers = keyWrappersBatch.getVectorHashKeyWrappers();
+
+      aggregationBatchInfo.startBatch();
+
+      final int size = batch.size;
+      if (fastHashTable != null) {
+        fastHashTable.findOrAdd(batch, batchAggregationBuffers, /* allocator */ null);
+      } else {
+        for (int i = 0; i < size; i++) {
+          batchAggregationBuffers[i] = mapKeysAggregationBuffers.get(keyWrappers[i]);
+        }
+      }
+
+      final boolean selectedInUse = batch.selectedInUse;
+      final int[] selected = batch.selected;
+      int foundCount = 0;
+      for (int i = 0; i < size; i++) {
+        if (batchAggregationBuffers[i] != null) {
+          spillFoundLogicalIndices[foundCount++] = i;
+        } else {
+          spillRow(batch, (selectedInUse ? selected[i] : i), keyWrappers[i].hashCode());
+        }
+      }
+
+      if (foundCount == 0) {
+        return;
+      }
+      if (foundCount == size) {
+        for (int i = 0; i < size; i++) {
+          aggregationBatchInfo.mapAggregationBufferSet(batchAggregationBuffers[i], i);
+        }
+        processAggregators(batch);
+        return;
+      }
+
+      // Temporarily narrow the batch selection to the rows that were found.  The batch may be
+      // shared with other operators, so we restore it afterwards.
+      if (selectedInUse) {
+        System.arraycopy(selected, 0, spillSavedSelected, 0, size);
+      }
+      for (int j = 0; j < foundCount; j++) {
+        final int logical = spillFoundLogicalIndices[j];
+        selected[j] = (selectedInUse ? spillSavedSelected[logical] : logical);
+        aggregationBatchInfo.mapAggregationBufferSet(batchAggregationBuffers[logical], j);
+      }
+      batch.selectedInUse = true;
+      batch.size = foundCount;
+      try {
+        processAggregators(batch);
+      } finally {
+        batch.size = size;
+        batch.selectedInUse = selectedInUse;
+        if (selectedInUse) {
+          System.arraycopy(spillSavedSelected, 0, selected, 0, size);
+        }
+      }
+    }
+
+    private void spillRow(VectorizedRowBatch batch, int batchIndex, int keyHashCode)
+        throws HiveException {
+
+      // Mix in the level so rows that shared a partition get spread at the next level.
+      final int partitionId =
+          HashCodeUtil.calculateIntHashCode(keyHashCode + currentSpillLevel) &
+              (spillPartitionCount - 1);
+      VectorRowBytesContainer rowBytesContainer = currentSpillPartitions[partitionId];
+      if (rowBytesContainer == null) {
+        rowBytesContainer = new VectorRowBytesContainer(spillLocalDirs);
+        currentSpillPartitions[partitionId] = rowBytesContainer;
+      }
+      try {
+        Output output = rowBytesContainer.getOuputForRowBytes();
+        spillVectorSerializeRow.setOutputAppend(output);
+        spillVectorSerializeRow.serializeWrite(batch, batchIndex);
+        rowBytesContainer.finishRow();
+      } catch (IOException e) {
+        throw new HiveException(e);
+      }
+      currentSpillPartitionRowCounts[partitionId]++;
+      spilledRowCount++;
+    }
+
+    /**
+     * Moves the spill partitions of the current level to the pending partitions.
+     */
+    private void retireCurrentSpillPartitions() {
+      if (currentSpillPartitions == null) {
+        return;
+      }
+      for (int i = 0; i < spillPartitionCount; i++) {
+        if (currentSpillPartitions[i] != null) {
+          pendingSpillPartitions.push(
+              new SpilledPartition(currentSpillPartitions[i], currentSpillLevel + 1,
+                  currentSpillPartitionRowCounts[i]));
+        }
+      }
+      currentSpillPartitions = null;
+      currentSpillPartitionRowCounts = null;
+      isHashTableFrozen = false;
+    }
+
+    /**
+     * Re-aggregates the spilled partitions one at a time with the (flushed) hash table.  A
+     * partition that still does not fit is spilled again at the next level.
+     */
+    private void aggregateSpilledPartitions() throws HiveException {
+      retireCurrentSpillPartitions();
+      if (pendingSpillPartitions.isEmpty()) {
+        return;
+      }
+      LOG.info("Hash aggregation re-aggregating {} spilled rows", spilledRowCount);
+
+      while (!pendingSpillPartitions.isEmpty()) {
+        SpilledPartition partition = pendingSpillPartitions.pop();
+        currentSpillLevel = partition.level;
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Re-aggregating spill partition of {} rows at level {}",
+              partition.rowCount, partition.level);
+        }
+
+        VectorRowBytesContainer rowBytesContainer = partition.rowBytesContainer;
+        try {
+          rowBytesContainer.prepareForReading();
+          spillReplayBatch.reset();
+          while (rowBytesContainer.readNext()) {
+            spillVectorDeserializeRow.setBytes(
+                rowBytesContainer.currentBytes(),
+                rowBytesContainer.currentOffset(),
+                rowBytesContainer.currentLength());
+            try {
+              spillVectorDeserializeRow.deserialize(spillReplayBatch, spillReplayBatch.size);
+            } catch (Exception e) {
+              throw new HiveException(
+                  "\nDeserializeRead detail: " +
+                      spillVectorDeserializeRow.getDetailedReadPositionString(),
+                  e);
+            }
+            spillReplayBatch.size++;
+            if (spillReplayBatch.size == VectorizedRowBatch.DEFAULT_SIZE) {
+              doProcessBatch(spillReplayBatch, false, null);
+              spillReplayBatch.reset();
+            }
+          }
+          if (spillReplayBatch.size > 0) {
+            doProcessBatch(spillReplayBatch, false, null);
+            spillReplayBatch.reset();
+          }
+        } catch (IOException e) {
+          throw new HiveException(e);
+        } finally {
+          rowBytesContainer.clear();
+        }
+
+        flush(true);
+        retireCurrentSpillPartitions();
+      }
+    }
+
+    private void clearSpillPartitions() {
+      if (currentSpillPartitions != null) {
+        for (VectorRowBytesContainer rowBytesContainer : currentSpillPartitions) {
+          if (rowBytesContainer != null) {
+            rowBytesContainer.clear();
+          }
+        }
+        currentSpillPartitions = null;
+      }
+      while (!pendingSpillPartitions.isEmpty()) {
+        pendingSpillPartitions.pop().rowBytesContainer.clear();
+      }
+    }
+
+    /**
+     * Creates the native hash table for the key type chosen by the Vectorizer, or returns
+     * null when the generic key wrapper HashMap must be used.
+     */
+    private VectorGroupByFastHashTable createFastHashTable(int initialCapacity)
+        throws HiveException {
+      if (vectorDesc == null || vectorDesc.getHashTableKeyType() == null || groupingSetsPresent) {
+        return null;
+      }
+      switch (vectorDesc.getHashTableKeyType()) {
+      case LONG:
+        return new VectorGroupByFastLongHashTable(
+            keyExpressions[0].getOutputColumnNum(), initialCapacity, NATIVE_HASH_LOAD_FACTOR);
+      case STRING:
+        return new VectorGroupByFastStringHashTable(
+            keyExpressions[0].getOutputColumnNum(), initialCapacity, NATIVE_HASH_LOAD_FACTOR);
+      case MULTI_KEY:
+        {
+          final int keyCount = keyExpressions.length;
+          TypeInfo[] keyTypeInfos = new TypeInfo[keyCount];
+          int[] keyColumnNums = new int[keyCount];
+          for (int i = 0; i < keyCount; i++) {
+            keyTypeInfos[i] = keyExpressions[i].getOutputTypeInfo();
+            keyColumnNums[i] = keyExpressions[i].getOutputColumnNum();
+          }
+          return new VectorGroupByFastMultiKeyHashTable(
+              keyTypeInfos, keyColumnNums, initialCapacity, NATIVE_HASH_LOAD_FACTOR);
+        }
+      case NONE:
+      default:
+        return null;
+      }
+    }
+
     /**
      * Locates the aggregation buffer sets to use for each key in the current batch.
      * The keyWrappersBatch must have evaluated the current batch first.
@@ -483,6 +906,11 @@ private void prepareBatchAggregationBufferSets(VectorizedRowBatch batch) throws
         return;
       }
 
+      if (fastHashTable != null) {
+        prepareBatchAggregationBufferSetsNative(batch);
+        return;
+      }
+
       // We now have to probe the global hash and find-or-allocate
       // the aggregation buffers to use for each key present in the batch
       VectorHashKeyWrapperBase[] keyWrappers = keyWrappersBatch.getVectorHashKeyWrappers();
@@ -507,16 +935,43 @@ private void prepareBatchAggregationBufferSets(VectorizedRowBatch batch) throws
       }
     }
 
+    /**
+     * Native hash table variation of prepareBatchAggregationBufferSets.  The keys are probed
+     * directly from the key column vector(s), so the key wrappers are not used.
+     */
+    private void prepareBatchAggregationBufferSetsNative(VectorizedRowBatch batch)
+        throws HiveException {
+
+      // Make sure the slots do not move while we process the batch.
+      fastHashTable.ensureCapacity(batch.size);
+
+      final int newEntries =
+          fastHashTable.findOrAdd(batch, batchAggregationBuffers, this::allocateAggregationBuffer);
+      numEntriesHashTable += newEntries;
+      numEntriesSinceCheck += newEntries;
+
+      for (int i = 0; i < batch.size; ++i) {
+        aggregationBatchInfo.mapAggregationBufferSet(batchAggregationBuffers[i], i);
+      }
+    }
+
     /**
      * Computes the memory limits for hash table flush (spill).
      */
     private void computeMemoryLimits() {
       JavaDataModel model = JavaDataModel.get();
 
-      fixedHashEntrySize =
-          model.hashMapEntry() +
-          keyWrappersBatch.getKeysFixedSize() +
-          aggregationBatchInfo.getAggregatorsFixedSize();
+      if (fastHashTable != null) {
+        // Slots are allocated ahead of the keys according to the load factor.
+        fixedHashEntrySize =
+            (long) ((model.ref() + fastHashTable.getSlotFixedSize()) / NATIVE_HASH_LOAD_FACTOR) +
+            aggregationBatchInfo.getAggregatorsFixedSize();
+      } else {
+        fixedHashEntrySize =
+            model.hashMapEntry() +
+            keyWrappersBatch.getKeysFixedSize() +
+            aggregationBatchInfo.getAggregatorsFixedSize();
+      }
 
       MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
       maxMemory = isLlap ? getConf().getMaxMemoryAvailable() : memoryMXBean.getHeapMemoryUsage().getMax();
@@ -562,6 +1017,11 @@ private void flush(boolean all) throws HiveException {
             gcCanary.get() == null ? "dead" : "alive"));
       }
 
+      if (fastHashTable != null) {
+        flushNative();
+        return;
+      }
+
       /* Iterate the global (keywrapper,aggregationbuffers) map and emit
        a row for each key */
       Iterator<Map.Entry<KeyWrapper, VectorAggregationBufferRow>> iter =
@@ -590,6 +1050,33 @@ private void flush(boolean all) throws HiveException {
       }
     }
 
+    /**
+     * Flushes all the entries of the native hash table.
+     *
+     * The open addressing table does not support removing single keys, so unlike the
+     * HashMap flush there is no partial flush -- all the entries are emitted and the table is
+     * cleared (keeping its current size for the next round of keys).
+     */
+    private void flushNative() throws HiveException {
+      final int slotCount = fastHashTable.getSlotCount();
+      for (int slot = 0; slot < slotCount; slot++) {
+        VectorAggregationBufferRow aggregationBuffer = fastHashTable.getAggregationBuffer(slot);
+        if (aggregationBuffer != null) {
+          writeSingleRowNative(fastHashTable, slot, aggregationBuffer);
+        }
+      }
+      if (fastHashTable.hasNullKey()) {
+        writeSingleRowNative(fastHashTable, VectorGroupByFastHashTable.NULL_KEY_SLOT,
+            fastHashTable.getAggregationBuffer(VectorGroupByFastHashTable.NULL_KEY_SLOT));
+      }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Native hash table flush " + fastHashTable.getMetricsString());
+      }
+      fastHashTable.clear();
+      numEntriesHashTable = 0;
+    }
+
     /**
      * Returns true if the memory threshold for the hash table was reached.
      * WARN: Frequent flushing can reduce Op throughput
@@ -606,6 +1093,9 @@ private boolean shouldFlush(VectorizedRowBatch batch) {
         numEntriesSinceCheck = 0;
       }
       long currMemUsed = numEntriesHashTable * (fixedHashEntrySize + avgVariableSize);
+      if (fastHashTable != null) {
+        currMemUsed += fastHashTable.getVariableKeySize();
+      }
       // Protect against low maxHtEntries setting: if memory usage is below 30% avoid flushing
       if ( ((numEntriesHashTable > this.maxHtEntries) && (currMemUsed > 0.3 * maxHashTblMemory))  ||
           currMemUsed > maxHashTblMemory) {
@@ -624,7 +1114,9 @@ private boolean shouldFlush(VectorizedRowBatch batch) {
      * that caused the check threshold to be reached.
      */
     private void updateAvgVariableSize(VectorizedRowBatch batch) {
-      int keyVariableSize = keyWrappersBatch.getVariableSize(batch.size);
+      // The native hash table accounts for its variable size keys itself.
+      int keyVariableSize =
+          (fastHashTable != null) ? 0 : keyWrappersBatch.getVariableSize(batch.size);
       int aggVariableSize = aggregationBatchInfo.getVariableSize(batch.size);
 
       // This assumes the distribution of variable size keys/aggregates in the input
@@ -638,6 +1130,11 @@ private void updateAvgVariableSize(VectorizedRowBatch batch) {
      * @throws HiveException
      */
     private void checkHashModeEfficiency() throws HiveException {
+      if (isHashTableFrozen || (isSpillEnabled && !pendingSpillPartitions.isEmpty())) {
+        // The spilled rows still need the hash table, and are only re-aggregated at close in
+        // hash mode; we are committed to hash mode.
+        return;
+      }
       if (lastModeCheckRowCount > numRowsCompareHashAggr) {
         lastModeCheckRowCount = 0;
         if (LOG.isDebugEnabled()) {
@@ -670,6 +1167,21 @@ private void checkHashModeEfficiency() throws HiveException {
     }
   }
 
+  /**
+   * A hash aggregation spill partition waiting to be re-aggregated.
+   */
+  private static class SpilledPartition {
+    final VectorRowBytesContainer rowBytesContainer;
+    final int level;
+    final long rowCount;
+
+    SpilledPartition(VectorRowBytesContainer rowBytesContainer, int level, long rowCount) {
+      this.rowBytesContainer = rowBytesContainer;
+      this.level = level;
+      this.rowCount = rowCount;
+    }
+  }
+
   /**
    * Streaming processing mode on ALREADY GROUPED data. Each input VectorizedRowBatch may
    * have a mix of different keys.  Intermediate values are flushed each time key changes.
@@ -1173,6 +1685,31 @@ private void writeSingleRow(VectorHashKeyWrapperBase kw, VectorAggregationBuffer
     }
   }
 
+  /**
+   * Emits a single row, made from a native hash table key and the row aggregation buffers values
+   * @param hashTable
+   * @param slot
+   * @param agg
+   * @throws HiveException
+   */
+  private void writeSingleRowNative(VectorGroupByFastHashTable hashTable, int slot,
+      VectorAggregationBufferRow agg) throws HiveException {
+
+    final int batchIndex = outputBatch.size;
+
+    // Output keys and aggregates into the output batch.
+    hashTable.assignKey(slot, outputBatch, batchIndex);
+    int colNum = outputKeyLength;
+    for (int i = 0; i < aggregators.length; ++i) {
+      aggregators[i].assignRowColumn(outputBatch, batchIndex, colNum++,
+          agg.getAggregationBuffer(i));
+    }
+    ++outputBatch.size;
+    if (outputBatch.size == VectorizedRowBatch.DEFAULT_SIZE) {
+      flushOutput();
+    }
+  }
+
   /**
    * Emits a (reduce) group row, made from the key (copied in at the beginning of the group) and
    * the row aggregation buffers values
@@ -31,6 +31,7 @@
 import org.apache.hadoop.hive.ql.exec.TopNKeyFilter;
 import org.apache.hadoop.hive.ql.exec.TopNKeyOperator;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.exec.vector.reducesink.VectorReduceSinkTopNFilter;
 import org.apache.hadoop.hive.ql.exec.vector.wrapper.VectorHashKeyWrapperBase;
 import org.apache.hadoop.hive.ql.exec.vector.wrapper.VectorHashKeyWrapperBatch;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
@@ -39,6 +40,7 @@
 import org.apache.hadoop.hive.ql.plan.VectorDesc;
 import org.apache.hadoop.hive.ql.plan.VectorTopNKeyDesc;
 import org.apache.hadoop.hive.ql.plan.api.OperatorType;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.slf4j.Logger;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -61,6 +63,8 @@ public class VectorTopNKeyOperator extends Operator<TopNKeyDesc> implements Vect
   private transient Set<KeyWrapper> disabledPartitions;
   private transient Comparator<VectorHashKeyWrapperBase> keyWrapperComparator;
   private transient long incomingBatches;
+  // The top N filter of the native ReduceSink this operator feeds, if it can be shared.
+  private transient VectorReduceSinkTopNFilter reduceSinkTopNFilter;
 
   public VectorTopNKeyOperator(CompilationOpContext ctx, OperatorDesc conf,
       VectorizationContext vContext, VectorDesc vectorDesc) {
@@ -108,10 +112,44 @@ private void initKeyExpressions(Configuration hconf, VectorExpression[] keyExpre
     }
   }
 
+  /**
+   * Called by the native ReduceSink this operator feeds, so that the rows that are worse than its
+   * current top N threshold are dropped here already. The filter is only used if its key is the
+   * same as the first key of this operator and there are no partition keys.
+   */
+  public void setReduceSinkTopNFilter(VectorReduceSinkTopNFilter filter, TypeInfo keyTypeInfo,
+      boolean isDescending) {
+    VectorExpression[] keyExpressions = vectorDesc.getKeyExpressions();
+    VectorExpression[] partitionKeyExpressions = vectorDesc.getPartitionKeyColumns();
+    if (keyExpressions.length == 0
+        || (partitionKeyExpressions != null && partitionKeyExpressions.length > 0)
+        || !keyTypeInfo.equals(keyExpressions[0].getOutputTypeInfo())
+        || isDescending != (conf.getColumnSortOrder().charAt(0) == '-')) {
+      return;
+    }
+    reduceSinkTopNFilter = filter;
+  }
+
+  private void filterByReduceSinkThreshold(VectorizedRowBatch batch) {
+    if (reduceSinkTopNFilter != null) {
+      reduceSinkTopNFilter.filterByThreshold(
+          batch, batch.cols[vectorDesc.getKeyExpressions()[0].getOutputColumnNum()]);
+    }
+  }
+
   @Override
   public void process(Object data, int tag) throws HiveException {
     VectorizedRowBatch batch = (VectorizedRowBatch) data;
     if (!disabledPartitions.isEmpty() && disabledPartitions.size() == topNKeyFilters.size()) { // all filters are disabled due to efficiency check
+      if (reduceSinkTopNFilter != null) {
+        for (VectorExpression keyExpression : vectorDesc.getKeyExpressions()) {
+          keyExpression.evaluate(batch);
+        }
+        filterByReduceSinkThreshold(batch);
+        if (batch.size == 0) {
+          return;
+        }
+      }
       vectorForward(batch);
       return;
     }
@@ -127,6 +165,7 @@ public void process(Object data, int tag) throws HiveException {
     for (VectorExpression keyExpression : vectorDesc.getKeyExpressions()) {
       keyExpression.evaluate(batch);
     }
+    filterByReduceSinkThreshold(batch);
 
     partitionKeyWrapperBatch.evaluateBatch(batch);
     VectorHashKeyWrapperBase[] partitionKeyWrappers = partitionKeyWrapperBatch.getVectorHashKeyWrappers();
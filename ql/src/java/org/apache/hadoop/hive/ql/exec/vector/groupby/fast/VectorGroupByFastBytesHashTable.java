@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby.fast;
+
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hive.common.util.HashCodeUtil;
+
+import com.google.common.primitives.Ints;
+
+/*
+ * An abstract class for a bytes key hash table for the native vectorized GROUP BY hash
+ * aggregation.
+ *
+ * The key bytes are appended to a single growing byte array (the key store), so a new group
+ * costs no per-key byte array.  Each slot records the key's offset and length in the key store
+ * and its hash code so collisions and rehashing rarely need to compare or rehash key bytes.
+ */
+public abstract class VectorGroupByFastBytesHashTable extends VectorGroupByFastHashTable {
+
+  private static final int INITIAL_KEY_STORE_SIZE = 64 * 1024;
+
+  protected byte[] keyStore;
+  protected int keyStoreLength;
+
+  protected int[] slotKeyOffsets;
+  protected int[] slotKeyLengths;
+  protected int[] slotHashCodes;
+
+  public VectorGroupByFastBytesHashTable(int initialCapacity, float loadFactor) {
+    super(initialCapacity, loadFactor);
+    keyStore = new byte[INITIAL_KEY_STORE_SIZE];
+    keyStoreLength = 0;
+    allocateSlotArrays(logicalHashBucketCount);
+  }
+
+  private void allocateSlotArrays(int count) {
+    slotKeyOffsets = new int[count];
+    slotKeyLengths = new int[count];
+    slotHashCodes = new int[count];
+  }
+
+  protected VectorAggregationBufferRow findOrAddKey(byte[] keyBytes, int keyStart, int keyLength,
+      AggregationBufferAllocator allocator) throws HiveException {
+
+    final int hashCode = HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength);
+    int slot = (hashCode & logicalHashBucketMask);
+    long probeSlot = slot;
+    int i = 0;
+    while (true) {
+      VectorAggregationBufferRow aggregationBuffer = slotAggregationBuffers[slot];
+      if (aggregationBuffer == null) {
+        break;
+      }
+      if (slotHashCodes[slot] == hashCode &&
+          keyEquals(slot, keyBytes, keyStart, keyLength)) {
+        return aggregationBuffer;
+      }
+      ++metricPutConflict;
+      // Some other key (collision) - keep probing.
+      probeSlot += (++i);
+      slot = (int)(probeSlot & logicalHashBucketMask);
+    }
+    if (allocator == null) {
+      // Lookup only.
+      return null;
+    }
+    trackProbeSteps(i);
+
+    slotKeyOffsets[slot] = appendKey(keyBytes, keyStart, keyLength);
+    slotKeyLengths[slot] = keyLength;
+    slotHashCodes[slot] = hashCode;
+    return addNewSlot(slot, allocator);
+  }
+
+  private boolean keyEquals(int slot, byte[] keyBytes, int keyStart, int keyLength) {
+    if (slotKeyLengths[slot] != keyLength) {
+      return false;
+    }
+    final int slotKeyOffset = slotKeyOffsets[slot];
+    for (int i = 0; i < keyLength; i++) {
+      if (keyStore[slotKeyOffset + i] != keyBytes[keyStart + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int appendKey(byte[] keyBytes, int keyStart, int keyLength) {
+    final int newLength = keyStoreLength + keyLength;
+    if (newLength < 0) {
+      throw new RuntimeException(
+          "Vector GroupBy bytes hash table key store cannot grow any more");
+    }
+    if (newLength > keyStore.length) {
+      long newCapacity = Math.max((long) keyStore.length * 2, newLength);
+      byte[] newKeyStore = new byte[Ints.saturatedCast(newCapacity)];
+      System.arraycopy(keyStore, 0, newKeyStore, 0, keyStoreLength);
+      keyStore = newKeyStore;
+    }
+    final int offset = keyStoreLength;
+    System.arraycopy(keyBytes, keyStart, keyStore, offset, keyLength);
+    keyStoreLength = newLength;
+    return offset;
+  }
+
+  @Override
+  protected void expandAndRehash() {
+
+    final int newLogicalHashBucketCount = logicalHashBucketCount * 2;
+    final int newLogicalHashBucketMask = newLogicalHashBucketCount - 1;
+    int newLargestNumberOfSteps = 0;
+
+    final int[] oldSlotKeyOffsets = slotKeyOffsets;
+    final int[] oldSlotKeyLengths = slotKeyLengths;
+    final int[] oldSlotHashCodes = slotHashCodes;
+    final VectorAggregationBufferRow[] oldSlotAggregationBuffers = slotAggregationBuffers;
+
+    allocateSlotArrays(newLogicalHashBucketCount);
+    slotAggregationBuffers = new VectorAggregationBufferRow[newLogicalHashBucketCount];
+
+    for (int slot = 0; slot < logicalHashBucketCount; slot++) {
+      VectorAggregationBufferRow aggregationBuffer = oldSlotAggregationBuffers[slot];
+      if (aggregationBuffer == null) {
+        continue;
+      }
+      final int hashCode = oldSlotHashCodes[slot];
+      int newSlot = hashCode & newLogicalHashBucketMask;
+      long newProbeSlot = newSlot;
+      int i = 0;
+      while (slotAggregationBuffers[newSlot] != null) {
+        // Some other key (collision) - keep probing.
+        newProbeSlot += (++i);
+        newSlot = (int)(newProbeSlot & newLogicalHashBucketMask);
+      }
+      if (newLargestNumberOfSteps < i) {
+        newLargestNumberOfSteps = i;
+      }
+      slotKeyOffsets[newSlot] = oldSlotKeyOffsets[slot];
+      slotKeyLengths[newSlot] = oldSlotKeyLengths[slot];
+      slotHashCodes[newSlot] = hashCode;
+      slotAggregationBuffers[newSlot] = aggregationBuffer;
+    }
+
+    largestNumberOfSteps = newLargestNumberOfSteps;
+    setNewSize(newLogicalHashBucketCount);
+  }
+
+  @Override
+  protected void clearKeys() {
+    // Keep the key store allocated for the next round of keys.
+    keyStoreLength = 0;
+  }
+
+  @Override
+  public long getSlotFixedSize() {
+    return 3 * Integer.BYTES;
+  }
+
+  @Override
+  public long getVariableKeySize() {
+    return keyStore.length;
+  }
+
+  @Override
+  public long getEstimatedMemorySize() {
+    return super.getEstimatedMemorySize() + keyStore.length;
+  }
+}
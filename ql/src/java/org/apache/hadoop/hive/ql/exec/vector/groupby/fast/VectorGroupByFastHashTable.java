@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby.fast;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Root abstract class for the open addressing hash tables used by the native vectorized
+ * GROUP BY hash aggregation.
+ *
+ * Unlike the HashMap<KeyWrapper, VectorAggregationBufferRow> used by the generic hash
+ * aggregation, the keys are kept in primitive slot arrays by the type specialized subclasses.
+ * No key wrapper copy or map entry object is created for a new group.  The only per-group
+ * object is the aggregation buffer row needed by the vector aggregate expressions.
+ *
+ * Like the VectorMapJoinFast* hash tables, we use quadratic probing and never delete single
+ * keys -- the whole table is cleared when the GROUP BY operator flushes.
+ */
+public abstract class VectorGroupByFastHashTable {
+  public static final Logger LOG = LoggerFactory.getLogger(VectorGroupByFastHashTable.class);
+
+  /*
+   * The pseudo slot number used for the NULL key of single column key tables.
+   */
+  public static final int NULL_KEY_SLOT = -1;
+
+  // 2^30 (we cannot use Integer.MAX_VALUE which is 2^31-1).
+  public static final int HIGHEST_INT_POWER_OF_2 = 1073741824;
+
+  public static final int ONE_QUARTER_LIMIT = HIGHEST_INT_POWER_OF_2 / 4;
+
+  protected int logicalHashBucketCount;
+  protected int logicalHashBucketMask;
+
+  protected final float loadFactor;
+  protected int resizeThreshold;
+
+  protected int keysAssigned;
+  protected int metricPutConflict;
+  protected int largestNumberOfSteps;
+  protected int metricExpands;
+
+  /*
+   * The aggregation buffers for each slot.  A null entry means the slot is empty.  This is the
+   * only object array -- subclasses keep the keys in primitive arrays.
+   */
+  protected VectorAggregationBufferRow[] slotAggregationBuffers;
+
+  private VectorAggregationBufferRow nullKeyAggregationBuffer;
+
+  private static int nextHighestPowerOfTwo(int v) {
+    return Integer.highestOneBit(v) << 1;
+  }
+
+  public VectorGroupByFastHashTable(int initialCapacity, float loadFactor) {
+
+    initialCapacity = (Integer.bitCount(initialCapacity) == 1)
+        ? initialCapacity : nextHighestPowerOfTwo(initialCapacity);
+    if (initialCapacity <= 0 || initialCapacity > ONE_QUARTER_LIMIT) {
+      throw new IllegalArgumentException("Invalid capacity " + initialCapacity);
+    }
+    if (loadFactor <= 0.0f || loadFactor >= 1.0f) {
+      throw new IllegalArgumentException("Invalid load factor " + loadFactor);
+    }
+
+    this.loadFactor = loadFactor;
+
+    logicalHashBucketCount = initialCapacity;
+    logicalHashBucketMask = logicalHashBucketCount - 1;
+    resizeThreshold = (int)(logicalHashBucketCount * loadFactor);
+
+    slotAggregationBuffers = new VectorAggregationBufferRow[logicalHashBucketCount];
+  }
+
+  /*
+   * Allocates the aggregation buffer row for a new group.
+   */
+  public interface AggregationBufferAllocator {
+    VectorAggregationBufferRow allocate() throws HiveException;
+  }
+
+  /*
+   * Find the aggregation buffers of each (logical) row key of the batch, adding the keys not
+   * present yet.
+   *
+   * The key column(s) must have already been evaluated.  On return, aggregationBuffers[i] holds
+   * the buffers for the row at logical index i (i.e. batch.selected[i] when selectedInUse).
+   *
+   * When allocator is null, no keys are added and aggregationBuffers[i] is set to null for rows
+   * whose key is not present (used when the operator no longer admits new groups).
+   *
+   * Returns the number of new groups added.
+   */
+  public abstract int findOrAdd(VectorizedRowBatch batch,
+      VectorAggregationBufferRow[] aggregationBuffers, AggregationBufferAllocator allocator)
+          throws HiveException;
+
+  /*
+   * Write the key of a slot into the key column(s) of an output batch row.
+   */
+  public abstract void assignKey(int slot, VectorizedRowBatch outputBatch, int batchIndex)
+      throws HiveException;
+
+  /*
+   * Rehash into a table with twice the number of slots.
+   */
+  protected abstract void expandAndRehash();
+
+  /*
+   * Subclasses clear their key storage.
+   */
+  protected abstract void clearKeys();
+
+  /*
+   * Estimated fixed memory per slot (excluding the aggregation buffer row).
+   */
+  public abstract long getSlotFixedSize();
+
+  /*
+   * Memory used by variable length keys, if any.
+   */
+  public long getVariableKeySize() {
+    return 0;
+  }
+
+  /*
+   * Make sure we can add newKeyCount keys without expanding.  Must be called with the batch size
+   * before findOrAdd so the slots remain stable for the whole batch.
+   */
+  public void ensureCapacity(int newKeyCount) {
+    while (keysAssigned + newKeyCount > resizeThreshold) {
+      if (logicalHashBucketCount > ONE_QUARTER_LIMIT) {
+        throw new RuntimeException(
+            "Vector GroupBy hash table cannot grow any more.  Current logical size is " +
+            logicalHashBucketCount + " and the limit is " + ONE_QUARTER_LIMIT);
+      }
+      expandAndRehash();
+      metricExpands++;
+    }
+  }
+
+  protected void setNewSize(int newLogicalHashBucketCount) {
+    logicalHashBucketCount = newLogicalHashBucketCount;
+    logicalHashBucketMask = newLogicalHashBucketCount - 1;
+    resizeThreshold = (int)(logicalHashBucketCount * loadFactor);
+  }
+
+  /*
+   * The number of slots to iterate over when flushing.
+   */
+  public int getSlotCount() {
+    return logicalHashBucketCount;
+  }
+
+  public VectorAggregationBufferRow getAggregationBuffer(int slot) {
+    if (slot == NULL_KEY_SLOT) {
+      return nullKeyAggregationBuffer;
+    }
+    return slotAggregationBuffers[slot];
+  }
+
+  protected VectorAggregationBufferRow findOrAddNullKey(AggregationBufferAllocator allocator)
+      throws HiveException {
+    if (nullKeyAggregationBuffer == null && allocator != null) {
+      nullKeyAggregationBuffer = allocator.allocate();
+    }
+    return nullKeyAggregationBuffer;
+  }
+
+  /*
+   * Fill in a new slot.  The key must have already been stored by the subclass.
+   */
+  protected VectorAggregationBufferRow addNewSlot(int slot, AggregationBufferAllocator allocator)
+      throws HiveException {
+    VectorAggregationBufferRow aggregationBuffer = allocator.allocate();
+    slotAggregationBuffers[slot] = aggregationBuffer;
+    keysAssigned++;
+    return aggregationBuffer;
+  }
+
+  protected void trackProbeSteps(int i) {
+    if (largestNumberOfSteps < i) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Probed " + i + " slots (the longest so far) to find space");
+      }
+      largestNumberOfSteps = i;
+    }
+  }
+
+  public boolean hasNullKey() {
+    return nullKeyAggregationBuffer != null;
+  }
+
+  /*
+   * Number of groups (including the NULL key group).
+   */
+  public int size() {
+    return keysAssigned + (nullKeyAggregationBuffer == null ? 0 : 1);
+  }
+
+  /*
+   * Remove all keys, keeping the current table size.
+   */
+  public void clear() {
+    Arrays.fill(slotAggregationBuffers, null);
+    nullKeyAggregationBuffer = null;
+    clearKeys();
+    keysAssigned = 0;
+    metricPutConflict = 0;
+    largestNumberOfSteps = 0;
+  }
+
+  /*
+   * Estimated memory of the slot arrays.
+   */
+  public long getEstimatedMemorySize() {
+    JavaDataModel jdm = JavaDataModel.get();
+    return jdm.lengthForObjectArrayOfSize(logicalHashBucketCount) +
+        logicalHashBucketCount * getSlotFixedSize();
+  }
+
+  public String getMetricsString() {
+    return "keysAssigned " + keysAssigned +
+        " logicalHashBucketCount " + logicalHashBucketCount +
+        " putConflict " + metricPutConflict +
+        " largestNumberOfSteps " + largestNumberOfSteps +
+        " expands " + metricExpands;
+  }
+}
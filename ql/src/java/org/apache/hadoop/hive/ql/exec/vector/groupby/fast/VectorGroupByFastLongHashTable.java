@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby.fast;
+
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hive.common.util.HashCodeUtil;
+
+/*
+ * A single long key (BOOLEAN, BYTE, SHORT, INT, LONG, DATE, ...) hash table for the native
+ * vectorized GROUP BY hash aggregation.
+ */
+public class VectorGroupByFastLongHashTable extends VectorGroupByFastHashTable {
+
+  private final int keyColumnNum;
+
+  /*
+   * The key of each slot.  Whether the slot is occupied is determined by its aggregation buffer.
+   */
+  private long[] slotKeys;
+
+  public VectorGroupByFastLongHashTable(int keyColumnNum, int initialCapacity, float loadFactor) {
+    super(initialCapacity, loadFactor);
+    this.keyColumnNum = keyColumnNum;
+    slotKeys = new long[logicalHashBucketCount];
+  }
+
+  @Override
+  public int findOrAdd(VectorizedRowBatch batch,
+      VectorAggregationBufferRow[] aggregationBuffers, AggregationBufferAllocator allocator)
+          throws HiveException {
+
+    final int beforeSize = size();
+    final LongColumnVector keyColVector = (LongColumnVector) batch.cols[keyColumnNum];
+    final long[] keyVector = keyColVector.vector;
+    final boolean[] keyIsNull = keyColVector.isNull;
+    final int size = batch.size;
+
+    if (keyColVector.isRepeating) {
+
+      // All rows share the same key -- one probe.
+      VectorAggregationBufferRow aggregationBuffer =
+          (keyColVector.noNulls || !keyIsNull[0]) ?
+              findOrAddKey(keyVector[0], allocator) : findOrAddNullKey(allocator);
+      for (int i = 0; i < size; i++) {
+        aggregationBuffers[i] = aggregationBuffer;
+      }
+    } else {
+      final boolean selectedInUse = batch.selectedInUse;
+      final int[] selected = batch.selected;
+
+      // Consecutive equal keys are common (e.g. sorted or clustered data), so remember the
+      // previous row's key to avoid repeating the probe.
+      boolean havePrevKey = false;
+      boolean prevIsNull = false;
+      long prevKey = 0;
+      VectorAggregationBufferRow prevAggregationBuffer = null;
+      for (int logical = 0; logical < size; logical++) {
+        final int batchIndex = (selectedInUse ? selected[logical] : logical);
+        final boolean isNull = !keyColVector.noNulls && keyIsNull[batchIndex];
+        final long key = keyVector[batchIndex];
+        if (!havePrevKey || isNull != prevIsNull || (!isNull && key != prevKey)) {
+          prevAggregationBuffer =
+              (isNull ? findOrAddNullKey(allocator) : findOrAddKey(key, allocator));
+          havePrevKey = true;
+          prevIsNull = isNull;
+          prevKey = key;
+        }
+        aggregationBuffers[logical] = prevAggregationBuffer;
+      }
+    }
+    return size() - beforeSize;
+  }
+
+  private VectorAggregationBufferRow findOrAddKey(long key, AggregationBufferAllocator allocator)
+      throws HiveException {
+
+    final int hashCode = HashCodeUtil.calculateLongHashCode(key);
+    int slot = (hashCode & logicalHashBucketMask);
+    long probeSlot = slot;
+    int i = 0;
+    while (true) {
+      VectorAggregationBufferRow aggregationBuffer = slotAggregationBuffers[slot];
+      if (aggregationBuffer == null) {
+        break;
+      }
+      if (slotKeys[slot] == key) {
+        return aggregationBuffer;
+      }
+      ++metricPutConflict;
+      // Some other key (collision) - keep probing.
+      probeSlot += (++i);
+      slot = (int)(probeSlot & logicalHashBucketMask);
+    }
+    if (allocator == null) {
+      // Lookup only.
+      return null;
+    }
+    trackProbeSteps(i);
+
+    slotKeys[slot] = key;
+    return addNewSlot(slot, allocator);
+  }
+
+  @Override
+  protected void expandAndRehash() {
+
+    final int newLogicalHashBucketCount = logicalHashBucketCount * 2;
+    final int newLogicalHashBucketMask = newLogicalHashBucketCount - 1;
+    int newLargestNumberOfSteps = 0;
+
+    long[] newSlotKeys = new long[newLogicalHashBucketCount];
+    VectorAggregationBufferRow[] newSlotAggregationBuffers =
+        new VectorAggregationBufferRow[newLogicalHashBucketCount];
+
+    for (int slot = 0; slot < logicalHashBucketCount; slot++) {
+      VectorAggregationBufferRow aggregationBuffer = slotAggregationBuffers[slot];
+      if (aggregationBuffer == null) {
+        continue;
+      }
+      final long key = slotKeys[slot];
+      final int hashCode = HashCodeUtil.calculateLongHashCode(key);
+      int newSlot = hashCode & newLogicalHashBucketMask;
+      long newProbeSlot = newSlot;
+      int i = 0;
+      while (newSlotAggregationBuffers[newSlot] != null) {
+        // Some other key (collision) - keep probing.
+        newProbeSlot += (++i);
+        newSlot = (int)(newProbeSlot & newLogicalHashBucketMask);
+      }
+      if (newLargestNumberOfSteps < i) {
+        newLargestNumberOfSteps = i;
+      }
+      newSlotKeys[newSlot] = key;
+      newSlotAggregationBuffers[newSlot] = aggregationBuffer;
+    }
+
+    slotKeys = newSlotKeys;
+    slotAggregationBuffers = newSlotAggregationBuffers;
+    largestNumberOfSteps = newLargestNumberOfSteps;
+    setNewSize(newLogicalHashBucketCount);
+  }
+
+  @Override
+  public void assignKey(int slot, VectorizedRowBatch outputBatch, int batchIndex) {
+    LongColumnVector colVector = (LongColumnVector) outputBatch.cols[0];
+    if (slot == NULL_KEY_SLOT) {
+      colVector.noNulls = false;
+      colVector.isNull[batchIndex] = true;
+      return;
+    }
+    colVector.isNull[batchIndex] = false;
+    colVector.vector[batchIndex] = slotKeys[slot];
+  }
+
+  @Override
+  protected void clearKeys() {
+    // Nothing to do -- slot occupancy is determined by the aggregation buffers.
+  }
+
+  @Override
+  public long getSlotFixedSize() {
+    return Long.BYTES;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby.fast;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorDeserializeRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorSerializeRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableDeserializeRead;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableSerializeWrite;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+
+/*
+ * A multi-key hash table for the native vectorized GROUP BY hash aggregation.
+ *
+ * Like the MultiKey vector map join, the key columns are serialized with BinarySortable into
+ * one byte key.  NULL key column values are part of the serialized form, so there is no separate
+ * NULL key group.  When flushing, the key is deserialized back into the output batch key columns.
+ */
+public class VectorGroupByFastMultiKeyHashTable extends VectorGroupByFastBytesHashTable {
+
+  private final VectorSerializeRow<BinarySortableSerializeWrite> keyVectorSerializeWrite;
+  private final Output currentKeyOutput;
+
+  private final VectorDeserializeRow<BinarySortableDeserializeRead> keyVectorDeserializeRow;
+
+  public VectorGroupByFastMultiKeyHashTable(TypeInfo[] keyTypeInfos, int[] keyColumnNums,
+      int initialCapacity, float loadFactor) throws HiveException {
+    super(initialCapacity, loadFactor);
+
+    final int keyCount = keyTypeInfos.length;
+    keyVectorSerializeWrite =
+        new VectorSerializeRow<BinarySortableSerializeWrite>(
+            new BinarySortableSerializeWrite(keyCount));
+    keyVectorSerializeWrite.init(keyTypeInfos, keyColumnNums);
+    currentKeyOutput = new Output();
+
+    // The keys are the first columns of the output batch.
+    int[] outputColumnNums = new int[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      outputColumnNums[i] = i;
+    }
+    keyVectorDeserializeRow =
+        new VectorDeserializeRow<BinarySortableDeserializeRead>(
+            BinarySortableDeserializeRead.ascendingNullsFirst(
+                keyTypeInfos, /* useExternalBuffer */ false));
+    keyVectorDeserializeRow.init(outputColumnNums);
+  }
+
+  @Override
+  public int findOrAdd(VectorizedRowBatch batch,
+      VectorAggregationBufferRow[] aggregationBuffers, AggregationBufferAllocator allocator)
+          throws HiveException {
+
+    final int beforeSize = size();
+    final int size = batch.size;
+    final boolean selectedInUse = batch.selectedInUse;
+    final int[] selected = batch.selected;
+    try {
+      for (int logical = 0; logical < size; logical++) {
+        final int batchIndex = (selectedInUse ? selected[logical] : logical);
+        keyVectorSerializeWrite.setOutput(currentKeyOutput);
+        keyVectorSerializeWrite.serializeWrite(batch, batchIndex);
+        aggregationBuffers[logical] =
+            findOrAddKey(
+                currentKeyOutput.getData(), 0, currentKeyOutput.getLength(), allocator);
+      }
+    } catch (IOException e) {
+      throw new HiveException(e);
+    }
+    return size() - beforeSize;
+  }
+
+  @Override
+  public void assignKey(int slot, VectorizedRowBatch outputBatch, int batchIndex)
+      throws HiveException {
+    keyVectorDeserializeRow.setBytes(keyStore, slotKeyOffsets[slot], slotKeyLengths[slot]);
+    try {
+      // The key store is reused after a flush, so we cannot deserialize by reference.
+      keyVectorDeserializeRow.deserialize(outputBatch, batchIndex);
+    } catch (Exception e) {
+      throw new HiveException(
+          "\nDeserializeRead detail: " +
+              keyVectorDeserializeRow.getDetailedReadPositionString(),
+          e);
+    }
+  }
+}
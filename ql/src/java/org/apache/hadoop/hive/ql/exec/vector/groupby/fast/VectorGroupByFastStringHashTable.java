@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby.fast;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+
+/*
+ * A single STRING, CHAR, VARCHAR or BINARY key hash table for the native vectorized GROUP BY
+ * hash aggregation.
+ */
+public class VectorGroupByFastStringHashTable extends VectorGroupByFastBytesHashTable {
+
+  private final int keyColumnNum;
+
+  public VectorGroupByFastStringHashTable(int keyColumnNum, int initialCapacity,
+      float loadFactor) {
+    super(initialCapacity, loadFactor);
+    this.keyColumnNum = keyColumnNum;
+  }
+
+  @Override
+  public int findOrAdd(VectorizedRowBatch batch,
+      VectorAggregationBufferRow[] aggregationBuffers, AggregationBufferAllocator allocator)
+          throws HiveException {
+
+    final int beforeSize = size();
+    final BytesColumnVector keyColVector = (BytesColumnVector) batch.cols[keyColumnNum];
+    final byte[][] keyVector = keyColVector.vector;
+    final int[] keyStart = keyColVector.start;
+    final int[] keyLength = keyColVector.length;
+    final boolean[] keyIsNull = keyColVector.isNull;
+    final int size = batch.size;
+
+    if (keyColVector.isRepeating) {
+
+      // All rows share the same key -- one probe.
+      VectorAggregationBufferRow aggregationBuffer =
+          (keyColVector.noNulls || !keyIsNull[0]) ?
+              findOrAddKey(keyVector[0], keyStart[0], keyLength[0], allocator) :
+              findOrAddNullKey(allocator);
+      for (int i = 0; i < size; i++) {
+        aggregationBuffers[i] = aggregationBuffer;
+      }
+    } else {
+      final boolean selectedInUse = batch.selectedInUse;
+      final int[] selected = batch.selected;
+      for (int logical = 0; logical < size; logical++) {
+        final int batchIndex = (selectedInUse ? selected[logical] : logical);
+        if (!keyColVector.noNulls && keyIsNull[batchIndex]) {
+          aggregationBuffers[logical] = findOrAddNullKey(allocator);
+        } else {
+          aggregationBuffers[logical] =
+              findOrAddKey(
+                  keyVector[batchIndex], keyStart[batchIndex], keyLength[batchIndex], allocator);
+        }
+      }
+    }
+    return size() - beforeSize;
+  }
+
+  @Override
+  public void assignKey(int slot, VectorizedRowBatch outputBatch, int batchIndex) {
+    BytesColumnVector colVector = (BytesColumnVector) outputBatch.cols[0];
+    if (slot == NULL_KEY_SLOT) {
+      colVector.noNulls = false;
+      colVector.isNull[batchIndex] = true;
+      return;
+    }
+    colVector.isNull[batchIndex] = false;
+
+    // The key store is reused after a flush, so we must copy.
+    colVector.setVal(batchIndex, keyStore, slotKeyOffsets[slot], slotKeyLengths[slot]);
+  }
+}
@@ -50,6 +50,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.optimized.VectorMapJoinOptimizedCreateHashTable;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTable;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinTableContainer;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastHashTable;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastHashTableLoader;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
@@ -68,6 +69,7 @@
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hive.common.util.BloomKFilter;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -90,6 +92,14 @@ public abstract class VectorMapJoinCommonOperator extends MapJoinOperator
 
   protected abstract String getLoggingPrefix();
 
+  /*
+   * Operator counters of the small table key Bloom filter.
+   */
+  public enum BloomFilterCounter {
+    BLOOM_FILTER_KEYS_TESTED,
+    BLOOM_FILTER_KEYS_REJECTED
+  }
+
   // For debug tracing: information about the map or reduce task, operator, operator class, etc.
   protected transient String loggingPrefix;
 
@@ -228,6 +238,9 @@ protected void initLoggingPrefix(String className) {
   protected transient boolean useOverflowRepeatedThreshold;
   protected transient int overflowRepeatedThreshold;
 
+  // Whether to lookup the distinct keys of a batch with one interleaved hash table batch lookup.
+  protected transient boolean useBatchLookup;
+
   // A helper object that efficiently copies the big table columns that are for the big table
   // portion of the join output.
   protected transient VectorCopyRow bigTableRetainedVectorCopy;
@@ -272,6 +285,12 @@ protected void initLoggingPrefix(String className) {
   // The small table hash table for the native vectorized map join operator.
   protected transient VectorMapJoinHashTable vectorMapJoinHashTable;
 
+  // The optional Bloom filter of the small table keys.  Only built for the FAST hash tables
+  // of inner and left semi joins, where a big table row without a match produces no output.
+  protected transient BloomKFilter bloomFilter;
+  protected transient long bloomFilterTestCount;
+  protected transient long bloomFilterRejectCount;
+
   protected transient long batchCounter;
   protected transient long rowCounter;
 
@@ -563,6 +582,8 @@ protected void initializeOp(Configuration hconf) throws HiveException {
     overflowRepeatedThreshold = HiveConf.getIntVar(hconf,
         HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_OVERFLOW_REPEATED_THRESHOLD);
     useOverflowRepeatedThreshold = (overflowRepeatedThreshold >= 0);
+    useBatchLookup = HiveConf.getBoolVar(hconf,
+        HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_BATCH_LOOKUP_ENABLED);
 
 
     /*
@@ -758,6 +779,8 @@ protected void commonSetup() throws HiveException {
 
     batchCounter = 0;
     rowCounter = 0;
+    bloomFilterTestCount = 0;
+    bloomFilterRejectCount = 0;
   }
 
   /*
@@ -780,6 +803,41 @@ public void firstBatchSetup(VectorizedRowBatch batch) throws HiveException {
    * Perform any Native Vector MapJoin operator specific hash table setup.
    */
   public void hashTableSetup() throws HiveException {
+
+    // After a Hybrid Grace reload the hash table is not a FAST one, so no Bloom filter.
+    if (vectorMapJoinHashTable instanceof VectorMapJoinFastHashTable) {
+      bloomFilter = ((VectorMapJoinFastHashTable) vectorMapJoinHashTable).getBloomFilter();
+    } else {
+      bloomFilter = null;
+    }
+  }
+
+  /*
+   * Test a long key against the small table key Bloom filter before probing the hash table.
+   *
+   * Returns false when the key is definitely not in the hash table.
+   */
+  protected boolean bloomFilterTestLong(long key) {
+    bloomFilterTestCount++;
+    if (bloomFilter.testLong(key)) {
+      return true;
+    }
+    bloomFilterRejectCount++;
+    return false;
+  }
+
+  /*
+   * Test a bytes key against the small table key Bloom filter before probing the hash table.
+   *
+   * Returns false when the key is definitely not in the hash table.
+   */
+  protected boolean bloomFilterTestBytes(byte[] keyBytes, int keyStart, int keyLength) {
+    bloomFilterTestCount++;
+    if (bloomFilter.testBytes(keyBytes, keyStart, keyLength)) {
+      return true;
+    }
+    bloomFilterRejectCount++;
+    return false;
   }
 
   /*
@@ -55,6 +55,7 @@
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.io.LongWritable;
 
 /**
  * This class has methods for generating vectorized join results and forwarding batchs.
@@ -741,6 +742,14 @@ public void closeOp(boolean aborted) throws HiveException {
     if (!aborted && overflowBatch.size > 0) {
       forwardOverflow();
     }
+    if (bloomFilterTestCount > 0) {
+      statsMap.put(BloomFilterCounter.BLOOM_FILTER_KEYS_TESTED.name(),
+          new LongWritable(bloomFilterTestCount));
+      statsMap.put(BloomFilterCounter.BLOOM_FILTER_KEYS_REJECTED.name(),
+          new LongWritable(bloomFilterRejectCount));
+      LOG.info(getLoggingPrefix() + " Bloom filter rejected " + bloomFilterRejectCount +
+          " of " + bloomFilterTestCount + " keys tested");
+    }
     if (LOG.isDebugEnabled()) {
       LOG.debug("VectorMapJoinInnerLongOperator closeOp " + batchCounter + " batches processed");
     }
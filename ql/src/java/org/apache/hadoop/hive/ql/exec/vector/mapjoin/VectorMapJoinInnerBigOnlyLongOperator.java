@@ -298,6 +298,9 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
               if (useMinMax && (currentKey < min || currentKey > max)) {
                 // Key out of range for whole hash table.
                 saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else if (bloomFilter != null && !bloomFilterTestLong(currentKey)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
               } else {
                 saveJoinResult = hashMultiSet.contains(currentKey, hashMultiSetResults[hashMultiSetResultCount]);
               }
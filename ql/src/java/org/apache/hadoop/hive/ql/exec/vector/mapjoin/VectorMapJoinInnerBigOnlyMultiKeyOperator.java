@@ -311,7 +311,12 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
   
               byte[] keyBytes = saveKeyOutput.getData();
               int keyLength = saveKeyOutput.getLength();
-              saveJoinResult = hashMultiSet.contains(keyBytes, 0, keyLength, hashMultiSetResults[hashMultiSetResultCount]);
+              if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, 0, keyLength)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else {
+                saveJoinResult = hashMultiSet.contains(keyBytes, 0, keyLength, hashMultiSetResults[hashMultiSetResultCount]);
+              }
             }
 
             /*
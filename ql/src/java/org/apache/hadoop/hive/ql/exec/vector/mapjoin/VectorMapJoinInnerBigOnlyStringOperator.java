@@ -285,7 +285,12 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
               byte[] keyBytes = vector[batchIndex];
               int keyStart = start[batchIndex];
               int keyLength = length[batchIndex];
-              saveJoinResult = hashMultiSet.contains(keyBytes, keyStart, keyLength, hashMultiSetResults[hashMultiSetResultCount]);
+              if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, keyStart, keyLength)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else {
+                saveJoinResult = hashMultiSet.contains(keyBytes, keyStart, keyLength, hashMultiSetResults[hashMultiSetResultCount]);
+              }
             }
 
             /*
@@ -91,6 +91,20 @@
   // Pre-allocated member for storing index into the hashMapResults for each spilled row.
   protected transient int[] spillHashMapResultIndices;
 
+  /*
+   *  Pre-allocated members for the batch lookup of the first key of each equal key series.
+   *
+   *  batchLookupSelected
+   *                The (physical) batch indices of the keys to lookup.
+   *  batchLookupHashMapResults
+   *                The hash map results, indexed by batch index.
+   *  batchLookupJoinResults
+   *                The join results, indexed by batch index.
+   */
+  protected transient int[] batchLookupSelected;
+  protected transient VectorMapJoinHashMapResult[] batchLookupHashMapResults;
+  protected transient JoinUtil.JoinResult[] batchLookupJoinResults;
+
   /** Kryo ctor. */
   protected VectorMapJoinInnerGenerateResultOperator() {
     super();
@@ -128,6 +142,26 @@ protected void commonSetup() throws HiveException {
 
     spills = new int[VectorizedRowBatch.DEFAULT_SIZE];
     spillHashMapResultIndices = new int[VectorizedRowBatch.DEFAULT_SIZE];
+
+    if (useBatchLookup) {
+      batchLookupSelected = new int[VectorizedRowBatch.DEFAULT_SIZE];
+      batchLookupHashMapResults = new VectorMapJoinHashMapResult[VectorizedRowBatch.DEFAULT_SIZE];
+      for (int i = 0; i < batchLookupHashMapResults.length; i++) {
+        batchLookupHashMapResults[i] = baseHashMap.createHashMapResult();
+      }
+      batchLookupJoinResults = new JoinUtil.JoinResult[VectorizedRowBatch.DEFAULT_SIZE];
+    }
+  }
+
+  /*
+   * Take the batch lookup result of the key at a batch index as entry hashMapResultIndex of
+   * hashMapResults.  We swap the result objects so both arrays keep distinct objects.
+   */
+  protected JoinUtil.JoinResult takeBatchLookupResult(int batchIndex, int hashMapResultIndex) {
+    VectorMapJoinHashMapResult hashMapResult = batchLookupHashMapResults[batchIndex];
+    batchLookupHashMapResults[batchIndex] = hashMapResults[hashMapResultIndex];
+    hashMapResults[hashMapResultIndex] = hashMapResult;
+    return batchLookupJoinResults[batchIndex];
   }
 
   /*
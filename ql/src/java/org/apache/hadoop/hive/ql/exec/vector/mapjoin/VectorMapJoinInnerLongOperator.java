@@ -126,6 +126,50 @@ public void hashTableSetup() throws HiveException {
     }
   }
 
+  /*
+   * Lookup the first key of each equal key series of the batch with one hash map batch lookup.
+   * The main loop then takes the results with takeBatchLookupResult.
+   */
+  private void batchLookup(VectorizedRowBatch batch, LongColumnVector joinColVector,
+      int inputLogicalSize) throws IOException {
+
+    final long[] vector = joinColVector.vector;
+    final int[] selected = batch.selected;
+    final boolean selectedInUse = batch.selectedInUse;
+
+    int lookupCount = 0;
+    long saveKey = 0;
+    boolean haveSaveKey = false;
+    for (int logical = 0; logical < inputLogicalSize; logical++) {
+      int batchIndex = (selectedInUse ? selected[logical] : logical);
+
+      // Follow the equal key series logic of the main loop exactly.
+      if (!joinColVector.noNulls && joinColVector.isNull[batchIndex]) {
+        haveSaveKey = false;
+        continue;
+      }
+      long currentKey = vector[batchIndex];
+      if (haveSaveKey && currentKey == saveKey) {
+        continue;
+      }
+      haveSaveKey = true;
+      saveKey = currentKey;
+
+      if (useMinMax && (currentKey < min || currentKey > max)) {
+        // The main loop does not take a result for keys out of range.
+        continue;
+      }
+      if (bloomFilter != null && !bloomFilterTestLong(currentKey)) {
+        batchLookupJoinResults[batchIndex] = JoinUtil.JoinResult.NOMATCH;
+        continue;
+      }
+      batchLookupSelected[lookupCount++] = batchIndex;
+    }
+
+    hashMap.lookupBatch(vector, batchLookupSelected, lookupCount,
+        batchLookupHashMapResults, batchLookupJoinResults);
+  }
+
   @Override
   public void processBatch(VectorizedRowBatch batch) throws HiveException {
 
@@ -232,6 +276,10 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
         boolean haveSaveKey = false;
         JoinUtil.JoinResult saveJoinResult = JoinUtil.JoinResult.NOMATCH;
 
+        if (useBatchLookup) {
+          batchLookup(batch, joinColVector, inputLogicalSize);
+        }
+
         // Logical loop over the rows in the batch since the batch may have selected in use.
         for (int logical = 0; logical < inputLogicalSize; logical++) {
           int batchIndex = (selectedInUse ? selected[logical] : logical);
@@ -294,6 +342,12 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
               if (useMinMax && (currentKey < min || currentKey > max)) {
                 // Key out of range for whole hash table.
                 saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else if (useBatchLookup) {
+                // Already looked up (and Bloom filter tested) by batchLookup.
+                saveJoinResult = takeBatchLookupResult(batchIndex, hashMapResultCount);
+              } else if (bloomFilter != null && !bloomFilterTestLong(currentKey)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
               } else {
                 saveJoinResult = hashMap.lookup(currentKey, hashMapResults[hashMapResultCount]);
               }
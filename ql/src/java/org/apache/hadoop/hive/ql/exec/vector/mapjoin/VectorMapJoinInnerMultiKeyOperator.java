@@ -36,6 +36,7 @@
 
 // Multi-Key specific imports.
 import org.apache.hadoop.hive.ql.exec.vector.VectorSerializeRow;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.StringExpr;
 import org.apache.hadoop.hive.serde2.ByteStream.Output;
 import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableSerializeWrite;
 
@@ -83,6 +84,15 @@ protected String getLoggingPrefix() {
   // The BinarySortable serialization of the saved key for a possible series of equal keys.
   private transient Output saveKeyOutput;
 
+  // For batch lookup, the BinarySortable serialization of all the keys of the batch and, indexed
+  // by batch index, where each key is and whether it has a NULL or starts an equal key series.
+  private transient Output batchLookupKeyOutput;
+  private transient byte[][] batchLookupKeyBytes;
+  private transient int[] batchLookupKeyStarts;
+  private transient int[] batchLookupKeyLengths;
+  private transient boolean[] batchLookupIsAnyNull;
+  private transient boolean[] batchLookupIsNewKey;
+
   //---------------------------------------------------------------------------
   // Pass-thru constructors.
   //
@@ -119,6 +129,15 @@ protected void commonSetup() throws HiveException {
 
     currentKeyOutput = new Output();
     saveKeyOutput = new Output();
+
+    if (useBatchLookup) {
+      batchLookupKeyOutput = new Output();
+      batchLookupKeyBytes = new byte[VectorizedRowBatch.DEFAULT_SIZE][];
+      batchLookupKeyStarts = new int[VectorizedRowBatch.DEFAULT_SIZE];
+      batchLookupKeyLengths = new int[VectorizedRowBatch.DEFAULT_SIZE];
+      batchLookupIsAnyNull = new boolean[VectorizedRowBatch.DEFAULT_SIZE];
+      batchLookupIsNewKey = new boolean[VectorizedRowBatch.DEFAULT_SIZE];
+    }
   }
 
   @Override
@@ -132,6 +151,69 @@ public void hashTableSetup() throws HiveException {
     hashMap = (VectorMapJoinBytesHashMap) vectorMapJoinHashTable;
   }
 
+  /*
+   * Serialize the keys of the batch and lookup the first key of each equal key series with one
+   * hash map batch lookup.  The main loop then uses the serialization results and takes the
+   * lookup results with takeBatchLookupResult.
+   */
+  private void batchLookup(VectorizedRowBatch batch, int inputLogicalSize)
+      throws HiveException, IOException {
+
+    final int[] selected = batch.selected;
+    final boolean selectedInUse = batch.selectedInUse;
+
+    batchLookupKeyOutput.reset();
+
+    int lookupCount = 0;
+    int saveKeyStart = 0;
+    int saveKeyLength = 0;
+    boolean haveSaveKey = false;
+    for (int logical = 0; logical < inputLogicalSize; logical++) {
+      int batchIndex = (selectedInUse ? selected[logical] : logical);
+
+      final int keyStart = batchLookupKeyOutput.getLength();
+      keyVectorSerializeWrite.setOutputAppend(batchLookupKeyOutput);
+      keyVectorSerializeWrite.serializeWrite(batch, batchIndex);
+
+      // Follow the equal key series logic of the main loop exactly.
+      if (keyVectorSerializeWrite.getHasAnyNulls()) {
+        batchLookupIsAnyNull[batchIndex] = true;
+        batchLookupIsNewKey[batchIndex] = true;
+        haveSaveKey = false;
+        continue;
+      }
+      batchLookupIsAnyNull[batchIndex] = false;
+      final int keyLength = batchLookupKeyOutput.getLength() - keyStart;
+      final byte[] keyBytes = batchLookupKeyOutput.getData();
+      if (haveSaveKey &&
+          StringExpr.equal(keyBytes, saveKeyStart, saveKeyLength, keyBytes, keyStart, keyLength)) {
+        batchLookupIsNewKey[batchIndex] = false;
+        continue;
+      }
+      batchLookupIsNewKey[batchIndex] = true;
+      haveSaveKey = true;
+      saveKeyStart = keyStart;
+      saveKeyLength = keyLength;
+
+      if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, keyStart, keyLength)) {
+        batchLookupJoinResults[batchIndex] = JoinUtil.JoinResult.NOMATCH;
+        continue;
+      }
+      batchLookupKeyStarts[batchIndex] = keyStart;
+      batchLookupKeyLengths[batchIndex] = keyLength;
+      batchLookupSelected[lookupCount++] = batchIndex;
+    }
+
+    // The output buffer may have been reallocated as it grew, so only now is the data final.
+    final byte[] keyBytes = batchLookupKeyOutput.getData();
+    for (int i = 0; i < lookupCount; i++) {
+      batchLookupKeyBytes[batchLookupSelected[i]] = keyBytes;
+    }
+
+    hashMap.lookupBatch(batchLookupKeyBytes, batchLookupKeyStarts, batchLookupKeyLengths,
+        batchLookupSelected, lookupCount, batchLookupHashMapResults, batchLookupJoinResults);
+  }
+
   @Override
   public void processBatch(VectorizedRowBatch batch) throws HiveException {
 
@@ -246,6 +328,10 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
         boolean haveSaveKey = false;
         JoinUtil.JoinResult saveJoinResult = JoinUtil.JoinResult.NOMATCH;
 
+        if (useBatchLookup) {
+          batchLookup(batch, inputLogicalSize);
+        }
+
         // Logical loop over the rows in the batch since the batch may have selected in use.
         for (int logical = 0; logical < inputLogicalSize; logical++) {
           int batchIndex = (selectedInUse ? selected[logical] : logical);
@@ -254,16 +340,25 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
            * Multi-Key get key.
            */
 
-          // Generate binary sortable key for current row in vectorized row batch.
-          keyVectorSerializeWrite.setOutput(currentKeyOutput);
-          keyVectorSerializeWrite.serializeWrite(batch, batchIndex);
-          boolean isAnyNull = keyVectorSerializeWrite.getHasAnyNulls();
+          boolean isAnyNull;
+          boolean isNewKey;
+          if (useBatchLookup) {
+            // Already serialized and compared by batchLookup.
+            isAnyNull = batchLookupIsAnyNull[batchIndex];
+            isNewKey = batchLookupIsNewKey[batchIndex];
+          } else {
+            // Generate binary sortable key for current row in vectorized row batch.
+            keyVectorSerializeWrite.setOutput(currentKeyOutput);
+            keyVectorSerializeWrite.serializeWrite(batch, batchIndex);
+            isAnyNull = keyVectorSerializeWrite.getHasAnyNulls();
+            isNewKey = isAnyNull || !haveSaveKey || !saveKeyOutput.arraysEquals(currentKeyOutput);
+          }
 
           /*
            * Equal key series checking.
            */
 
-          if (isAnyNull || !haveSaveKey || !saveKeyOutput.arraysEquals(currentKeyOutput)) {
+          if (isNewKey) {
 
             // New key.
 
@@ -290,21 +385,32 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
               // of it for a possible series of equal keys.
               haveSaveKey = true;
   
-              /*
-               * Multi-Key specific save key.
-               */
-  
-              temp = saveKeyOutput;
-              saveKeyOutput = currentKeyOutput;
-              currentKeyOutput = temp;
-  
-              /*
-               * Multi-Key specific lookup key.
-               */
-  
-              byte[] keyBytes = saveKeyOutput.getData();
-              int keyLength = saveKeyOutput.getLength();
-              saveJoinResult = hashMap.lookup(keyBytes, 0, keyLength, hashMapResults[hashMapResultCount]);
+              if (useBatchLookup) {
+                // Already looked up (and Bloom filter tested) by batchLookup.
+                saveJoinResult = takeBatchLookupResult(batchIndex, hashMapResultCount);
+              } else {
+
+                /*
+                 * Multi-Key specific save key.
+                 */
+
+                temp = saveKeyOutput;
+                saveKeyOutput = currentKeyOutput;
+                currentKeyOutput = temp;
+
+                /*
+                 * Multi-Key specific lookup key.
+                 */
+
+                byte[] keyBytes = saveKeyOutput.getData();
+                int keyLength = saveKeyOutput.getLength();
+                if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, 0, keyLength)) {
+                  // Key definitely not in the hash table.
+                  saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+                } else {
+                  saveJoinResult = hashMap.lookup(keyBytes, 0, keyLength, hashMapResults[hashMapResultCount]);
+                }
+              }
             }
 
             /*
@@ -117,6 +117,50 @@ public void hashTableSetup() throws HiveException {
     hashMap = (VectorMapJoinBytesHashMap) vectorMapJoinHashTable;
   }
 
+  /*
+   * Lookup the first key of each equal key series of the batch with one hash map batch lookup.
+   * The main loop then takes the results with takeBatchLookupResult.
+   */
+  private void batchLookup(VectorizedRowBatch batch, BytesColumnVector joinColVector,
+      int inputLogicalSize) throws IOException {
+
+    final byte[][] vector = joinColVector.vector;
+    final int[] start = joinColVector.start;
+    final int[] length = joinColVector.length;
+    final int[] selected = batch.selected;
+    final boolean selectedInUse = batch.selectedInUse;
+
+    int lookupCount = 0;
+    int saveKeyBatchIndex = -1;
+    boolean haveSaveKey = false;
+    for (int logical = 0; logical < inputLogicalSize; logical++) {
+      int batchIndex = (selectedInUse ? selected[logical] : logical);
+
+      // Follow the equal key series logic of the main loop exactly.
+      if (!joinColVector.noNulls && joinColVector.isNull[batchIndex]) {
+        haveSaveKey = false;
+        continue;
+      }
+      if (haveSaveKey &&
+          StringExpr.equal(vector[saveKeyBatchIndex], start[saveKeyBatchIndex], length[saveKeyBatchIndex],
+                             vector[batchIndex], start[batchIndex], length[batchIndex])) {
+        continue;
+      }
+      haveSaveKey = true;
+      saveKeyBatchIndex = batchIndex;
+
+      if (bloomFilter != null &&
+          !bloomFilterTestBytes(vector[batchIndex], start[batchIndex], length[batchIndex])) {
+        batchLookupJoinResults[batchIndex] = JoinUtil.JoinResult.NOMATCH;
+        continue;
+      }
+      batchLookupSelected[lookupCount++] = batchIndex;
+    }
+
+    hashMap.lookupBatch(vector, start, length, batchLookupSelected, lookupCount,
+        batchLookupHashMapResults, batchLookupJoinResults);
+  }
+
   @Override
   public void processBatch(VectorizedRowBatch batch) throws HiveException {
 
@@ -221,6 +265,10 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
         boolean haveSaveKey = false;
         JoinUtil.JoinResult saveJoinResult = JoinUtil.JoinResult.NOMATCH;
 
+        if (useBatchLookup) {
+          batchLookup(batch, joinColVector, inputLogicalSize);
+        }
+
         // Logical loop over the rows in the batch since the batch may have selected in use.
         for (int logical = 0; logical < inputLogicalSize; logical++) {
           int batchIndex = (selectedInUse ? selected[logical] : logical);
@@ -278,7 +326,15 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
               byte[] keyBytes = vector[batchIndex];
               int keyStart = start[batchIndex];
               int keyLength = length[batchIndex];
-              saveJoinResult = hashMap.lookup(keyBytes, keyStart, keyLength, hashMapResults[hashMapResultCount]);
+              if (useBatchLookup) {
+                // Already looked up (and Bloom filter tested) by batchLookup.
+                saveJoinResult = takeBatchLookupResult(batchIndex, hashMapResultCount);
+              } else if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, keyStart, keyLength)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else {
+                saveJoinResult = hashMap.lookup(keyBytes, keyStart, keyLength, hashMapResults[hashMapResultCount]);
+              }
             }
 
             /*
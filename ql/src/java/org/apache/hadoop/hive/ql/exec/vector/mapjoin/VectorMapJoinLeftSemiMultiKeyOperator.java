@@ -309,7 +309,12 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
   
               byte[] keyBytes = saveKeyOutput.getData();
               int keyLength = saveKeyOutput.getLength();
-              saveJoinResult = hashSet.contains(keyBytes, 0, keyLength, hashSetResults[hashSetResultCount]);
+              if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, 0, keyLength)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else {
+                saveJoinResult = hashSet.contains(keyBytes, 0, keyLength, hashSetResults[hashSetResultCount]);
+              }
             }
 
             /*
@@ -280,7 +280,12 @@ public void processBatch(VectorizedRowBatch batch) throws HiveException {
               byte[] keyBytes = vector[batchIndex];
               int keyStart = start[batchIndex];
               int keyLength = length[batchIndex];
-              saveJoinResult = hashSet.contains(keyBytes, keyStart, keyLength, hashSetResults[hashSetResultCount]);
+              if (bloomFilter != null && !bloomFilterTestBytes(keyBytes, keyStart, keyLength)) {
+                // Key definitely not in the hash table.
+                saveJoinResult = JoinUtil.JoinResult.NOMATCH;
+              } else {
+                saveJoinResult = hashSet.contains(keyBytes, keyStart, keyLength, hashSetResults[hashSetResultCount]);
+              }
             }
 
             /*
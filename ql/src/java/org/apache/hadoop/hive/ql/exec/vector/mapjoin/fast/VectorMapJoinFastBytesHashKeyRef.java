@@ -52,6 +52,29 @@ public static boolean equalKey(long refWord, byte[] keyBytes, int keyStart, int
     return true;
   }
 
+  /*
+   * Point byteSegmentRef at the key bytes of refWord (copying them only when they span write
+   * buffers).
+   */
+  public static void getKey(long refWord, WriteBuffers writeBuffers,
+      WriteBuffers.Position readPos, WriteBuffers.ByteSegmentRef byteSegmentRef) {
+
+    final long absoluteOffset = KeyRef.getAbsoluteOffset(refWord);
+
+    writeBuffers.setReadPoint(absoluteOffset, readPos);
+
+    int actualKeyLength = KeyRef.getSmallKeyLength(refWord);
+    boolean isKeyLengthSmall = (actualKeyLength != KeyRef.SmallKeyLength.allBitsOn);
+    if (!isKeyLengthSmall) {
+
+      // And, if current value is big we must read it.
+      actualKeyLength = writeBuffers.readVInt(readPos);
+    }
+
+    // Our reading was positioned to the key.
+    writeBuffers.getByteSegmentRefToCurrent(byteSegmentRef, actualKeyLength, readPos);
+  }
+
   public static int calculateHashCode(long refWord, WriteBuffers writeBuffers,
       WriteBuffers.Position readPos) {
 
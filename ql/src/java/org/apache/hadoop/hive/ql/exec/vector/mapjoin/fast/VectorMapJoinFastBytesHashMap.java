@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
+import java.io.IOException;
+
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
 import org.apache.hadoop.hive.ql.exec.persistence.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashMap;
@@ -250,6 +252,66 @@ public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyStart, int keyLength,
     return fastHashMapResult.joinResult();
   }
 
+  @Override
+  public void lookupBatch(byte[][] keyBytes, int[] keyStarts, int[] keyLengths, int[] selected,
+      int size, VectorMapJoinHashMapResult[] hashMapResults, JoinUtil.JoinResult[] joinResults) {
+
+    // Scratch is per call since the hash table can be shared.
+    final long[] groupHashCodes = new long[BATCH_LOOKUP_GROUP_SIZE];
+    final long[] groupRefWords = new long[BATCH_LOOKUP_GROUP_SIZE];
+
+    for (int groupStart = 0; groupStart < size; groupStart += BATCH_LOOKUP_GROUP_SIZE) {
+      final int groupCount = Math.min(BATCH_LOOKUP_GROUP_SIZE, size - groupStart);
+
+      // First, hash each key in the group and load its home slot.  The loads do not depend on
+      // each other, so their cache misses overlap instead of being paid one after the other.
+      for (int g = 0; g < groupCount; g++) {
+        final int i = groupStart + g;
+        final int batchIndex = (selected == null ? i : selected[i]);
+        final long hashCode =
+            HashCodeUtil.murmurHash(
+                keyBytes[batchIndex], keyStarts[batchIndex], keyLengths[batchIndex]);
+        groupHashCodes[g] = hashCode;
+        groupRefWords[g] = slots[(int) hashCode & logicalHashBucketMask];
+      }
+
+      // Then, resolve each key.  Most keys are decided at the home slot; otherwise we fall back
+      // to the full probe.
+      for (int g = 0; g < groupCount; g++) {
+        final int i = groupStart + g;
+        final int batchIndex = (selected == null ? i : selected[i]);
+        final byte[] bytes = keyBytes[batchIndex];
+        final int keyStart = keyStarts[batchIndex];
+        final int keyLength = keyLengths[batchIndex];
+        final long hashCode = groupHashCodes[g];
+        final long refWord = groupRefWords[g];
+
+        VectorMapJoinFastBytesHashMapStore.HashMapResult fastHashMapResult =
+            (VectorMapJoinFastBytesHashMapStore.HashMapResult) hashMapResults[batchIndex];
+
+        fastHashMapResult.forget();
+
+        if (refWord != 0) {
+          boolean isMatch = false;
+          if (VectorMapJoinFastBytesHashKeyRef.getPartialHashCodeFromRefWord(refWord) ==
+              VectorMapJoinFastBytesHashKeyRef.extractPartialHashCode(hashCode)) {
+            fastHashMapResult.setKey(hashMapStore, refWord);
+            if (fastHashMapResult.equalKey(bytes, keyStart, keyLength)) {
+              fastHashMapResult.setMatch();
+              isMatch = true;
+            }
+          }
+          if (!isMatch) {
+            doHashMapMatch(bytes, keyStart, keyLength, hashCode, fastHashMapResult);
+          }
+        }
+        // Otherwise, given that we do not delete, an empty slot means no match.
+
+        joinResults[batchIndex] = fastHashMapResult.joinResult();
+      }
+    }
+  }
+
   protected final int doHashMapMatch(
       byte[] keyBytes, int keyStart, int keyLength, long hashCode,
       VectorMapJoinFastBytesHashMapStore.HashMapResult fastHashMapResult) {
@@ -320,6 +382,18 @@ public VectorMapJoinFastBytesHashMap(
     writeBuffers = hashMapStore.getWriteBuffers();
   }
 
+  @Override
+  public long moveToSlabs(WriteBuffers.SlabAllocator allocator) throws IOException {
+    return writeBuffers.moveToSlabs(allocator);
+  }
+
+  @Override
+  public void releaseSlabs() {
+    if (writeBuffers.isMovedToSlabs()) {
+      writeBuffers.clear();
+    }
+  }
+
   @Override
   public long getEstimatedMemorySize() {
     long size = super.getEstimatedMemorySize();
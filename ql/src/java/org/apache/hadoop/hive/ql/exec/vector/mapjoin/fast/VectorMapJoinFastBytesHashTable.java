@@ -27,6 +27,7 @@
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.serde2.WriteBuffers;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.hive.common.util.BloomKFilter;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -119,6 +120,23 @@ protected void expandAndRehash() {
     metricExpands++;
   }
 
+  @Override
+  protected void addKeysToBloomFilter(BloomKFilter bloomFilter) {
+    WriteBuffers.ByteSegmentRef keyRef = new WriteBuffers.ByteSegmentRef();
+    for (int slot = 0; slot < logicalHashBucketCount; slot++) {
+      final long refWord = slots[slot];
+      if (refWord != 0) {
+        VectorMapJoinFastBytesHashKeyRef.getKey(refWord, writeBuffers, unsafeReadPos, keyRef);
+        if (keyRef.getLength() == 0) {
+          // An empty key is not populated; it must still hash like the probed empty key.
+          bloomFilter.addBytes(new byte[0], 0, 0);
+        } else {
+          bloomFilter.addBytes(keyRef.getBytes(), (int) keyRef.getOffset(), keyRef.getLength());
+        }
+      }
+    }
+  }
+
   /*
    * The hash table slots for fast HashMap.
    */
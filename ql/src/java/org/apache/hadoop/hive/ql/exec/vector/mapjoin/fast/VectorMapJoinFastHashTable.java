@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
+import java.io.IOException;
+
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +27,8 @@
 import org.apache.hadoop.hive.ql.exec.persistence.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTable;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
+import org.apache.hive.common.util.BloomKFilter;
 
 public abstract class VectorMapJoinFastHashTable implements VectorMapJoinHashTable {
   public static final Logger LOG = LoggerFactory.getLogger(VectorMapJoinFastHashTable.class);
@@ -48,12 +52,19 @@ public abstract class VectorMapJoinFastHashTable implements VectorMapJoinHashTab
   protected int resizeThreshold;
   protected int metricExpands;
 
+  // Optional Bloom filter of the keys, built once the hash table is fully loaded.
+  protected BloomKFilter bloomFilter;
+
   // 2^30 (we cannot use Integer.MAX_VALUE which is 2^31-1).
   public static final int HIGHEST_INT_POWER_OF_2 = 1073741824;
 
   public static final int ONE_QUARTER_LIMIT = HIGHEST_INT_POWER_OF_2 / 4;
   public static final int ONE_SIXTH_LIMIT = HIGHEST_INT_POWER_OF_2 / 6;
 
+  // The number of keys whose first slot loads are issued together by a batch lookup.  Enough
+  // to keep several cache misses in flight without spilling the scratch arrays out of L1.
+  public static final int BATCH_LOOKUP_GROUP_SIZE = 16;
+
   public void throwExpandError(int limit, String dataTypeName) {
     throw new MapJoinMemoryExhaustionError(
         "Vector MapJoin " + dataTypeName + " Hash Table cannot grow any more -- use a smaller container size. " +
@@ -101,6 +112,49 @@ public int size() {
     return keysAssigned;
   }
 
+  /*
+   * Build a Bloom filter of all the keys so probes of keys that are not present can usually skip
+   * the (cache missing) hash table lookup.  Must be called after the last key has been added.
+   */
+  public void buildBloomFilter() {
+    if (keysAssigned == 0) {
+      bloomFilter = null;
+      return;
+    }
+    BloomKFilter newBloomFilter = new BloomKFilter(keysAssigned);
+    addKeysToBloomFilter(newBloomFilter);
+    bloomFilter = newBloomFilter;
+  }
+
+  /*
+   * Add every key of the hash table to the Bloom filter.
+   */
+  protected abstract void addKeysToBloomFilter(BloomKFilter bloomFilter);
+
+  /*
+   * @return the Bloom filter of the keys, or null when none was built.
+   */
+  public BloomKFilter getBloomFilter() {
+    return bloomFilter;
+  }
+
+  /*
+   * Move the (sealed) key and value storage of the hash table off the Java heap into slabs of the
+   * allocator.  Must be called after the last key has been added.
+   *
+   * @return the number of bytes moved; 0 when the hash table has no storage that can be moved.
+   */
+  public long moveToSlabs(WriteBuffers.SlabAllocator allocator) throws IOException {
+    return 0;
+  }
+
+  /*
+   * Release the slabs the storage was moved to, if any.  The hash table cannot be used afterwards.
+   */
+  public void releaseSlabs() {
+    // Nothing was moved.
+  }
+
   protected final boolean checkResize() {
     // resize small hashtables up to a higher width (4096 items), but when there are collisions
     return (resizeThreshold <= keysAssigned)
@@ -115,6 +169,9 @@ public long getEstimatedMemorySize() {
     if (isFullOuter) {
       size += MatchTracker.calculateEstimatedMemorySize(logicalHashBucketCount);
     }
+    if (bloomFilter != null) {
+      size += bloomFilter.sizeInBytes();
+    }
     return size;
   }
 
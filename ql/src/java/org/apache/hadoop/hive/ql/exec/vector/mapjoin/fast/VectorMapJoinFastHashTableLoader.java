@@ -58,6 +58,8 @@ public class VectorMapJoinFastHashTableLoader implements org.apache.hadoop.hive.
   private TezContext tezContext;
   private String cacheKey;
   private TezCounter htLoadCounter;
+  private String counterGroup;
+  private String vertexName;
 
   @Override
   public void init(ExecMapperContext context, MapredContext mrContext,
@@ -66,8 +68,8 @@ public void init(ExecMapperContext context, MapredContext mrContext,
     this.hconf = hconf;
     this.desc = joinOp.getConf();
     this.cacheKey = joinOp.getCacheKey();
-    String counterGroup = HiveConf.getVar(hconf, HiveConf.ConfVars.HIVECOUNTERGROUP);
-    String vertexName = hconf.get(Operator.CONTEXT_NAME_KEY, "");
+    this.counterGroup = HiveConf.getVar(hconf, HiveConf.ConfVars.HIVECOUNTERGROUP);
+    this.vertexName = hconf.get(Operator.CONTEXT_NAME_KEY, "");
     String counterName = Utilities.getVertexCounterName(HashTableLoaderCounters.HASHTABLE_LOAD_TIME_MS.name(), vertexName);
     this.htLoadCounter = tezContext.getTezProcessorContext().getCounters().findCounter(counterGroup, counterName);
   }
@@ -161,6 +163,14 @@ public void load(MapJoinTableContainer[] mapJoinTables,
 
         vectorMapJoinFastTableContainer.seal();
         mapJoinTables[pos] = vectorMapJoinFastTableContainer;
+        long offHeapBytes = vectorMapJoinFastTableContainer.getOffHeapBytes();
+        if (offHeapBytes > 0) {
+          // Only when used, so that the counters of the plain on heap hash tables do not change.
+          String counterName = Utilities.getVertexCounterName(
+              HashTableLoaderCounters.HASHTABLE_OFF_HEAP_BYTES.name(), vertexName);
+          tezContext.getTezProcessorContext().getCounters()
+              .findCounter(counterGroup, counterName).increment(offHeapBytes);
+        }
         if (doMemCheck) {
           LOG.info("Finished loading hash table for input: {} cacheKey: {} numEntries: {} " +
               "estimatedMemoryUsage: {}", inputName, cacheKey, numEntries,
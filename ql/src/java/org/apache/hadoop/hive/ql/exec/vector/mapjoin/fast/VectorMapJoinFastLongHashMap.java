@@ -242,6 +242,64 @@ public JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapRe
     return joinResult;
   }
 
+  @Override
+  public void lookupBatch(long[] keys, int[] selected, int size,
+      VectorMapJoinHashMapResult[] hashMapResults, JoinUtil.JoinResult[] joinResults) {
+
+    // Scratch is per call since the hash table can be shared.
+    final int[] groupPairIndices = new int[BATCH_LOOKUP_GROUP_SIZE];
+    final long[] groupValueRefs = new long[BATCH_LOOKUP_GROUP_SIZE];
+
+    for (int groupStart = 0; groupStart < size; groupStart += BATCH_LOOKUP_GROUP_SIZE) {
+      final int groupCount = Math.min(BATCH_LOOKUP_GROUP_SIZE, size - groupStart);
+
+      // First, load the home slot of each key in the group.  The loads do not depend on each
+      // other, so their cache misses overlap instead of being paid one after the other.
+      for (int g = 0; g < groupCount; g++) {
+        final int i = groupStart + g;
+        final int batchIndex = (selected == null ? i : selected[i]);
+        final int intHashCode = (int) HashCodeUtil.calculateLongHashCode(keys[batchIndex]);
+        final int pairIndex = 2 * (intHashCode & logicalHashBucketMask);
+        groupPairIndices[g] = pairIndex;
+        groupValueRefs[g] = slotPairs[pairIndex];
+      }
+
+      // Then, resolve each key.  Most keys are decided at the home slot; on a collision we fall
+      // back to the full probe.
+      for (int g = 0; g < groupCount; g++) {
+        final int i = groupStart + g;
+        final int batchIndex = (selected == null ? i : selected[i]);
+        final long key = keys[batchIndex];
+
+        VectorMapJoinFastValueStore.HashMapResult optimizedHashMapResult =
+            (VectorMapJoinFastValueStore.HashMapResult) hashMapResults[batchIndex];
+
+        optimizedHashMapResult.forget();
+
+        int pairIndex = groupPairIndices[g];
+        if (groupValueRefs[g] == 0) {
+          // Given that we do not delete, an empty slot means no match.
+          pairIndex = -1;
+        } else if (slotPairs[pairIndex + 1] != key) {
+          pairIndex = findReadSlot(key, HashCodeUtil.calculateLongHashCode(key));
+        }
+
+        JoinUtil.JoinResult joinResult;
+        if (pairIndex == -1) {
+          joinResult = JoinUtil.JoinResult.NOMATCH;
+        } else {
+          optimizedHashMapResult.set(valueStore, slotPairs[pairIndex]);
+
+          joinResult = JoinUtil.JoinResult.MATCH;
+        }
+
+        optimizedHashMapResult.setJoinResult(joinResult);
+
+        joinResults[batchIndex] = joinResult;
+      }
+    }
+  }
+
   public void addFullOuterNullKeyValue(BytesWritable currentValue) {
 
     byte[] valueBytes = currentValue.getBytes();
@@ -269,6 +327,18 @@ public VectorMapJoinFastLongHashMap(
     fullOuterNullKeyValueRef = 0;
   }
 
+  @Override
+  public long moveToSlabs(WriteBuffers.SlabAllocator allocator) throws IOException {
+    return valueStore.writeBuffers().moveToSlabs(allocator);
+  }
+
+  @Override
+  public void releaseSlabs() {
+    if (valueStore.writeBuffers().isMovedToSlabs()) {
+      valueStore.writeBuffers().clear();
+    }
+  }
+
   @Override
   public long getEstimatedMemorySize() {
     return super.getEstimatedMemorySize() + valueStore.getEstimatedMemorySize();
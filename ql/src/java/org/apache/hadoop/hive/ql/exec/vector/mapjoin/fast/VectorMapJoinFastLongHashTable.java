@@ -34,6 +34,7 @@
 import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.hive.common.util.BloomKFilter;
 import org.apache.hive.common.util.HashCodeUtil;
 import org.apache.tez.runtime.library.api.KeyValueReader;
 
@@ -216,6 +217,16 @@ private void expandAndRehash() {
     metricExpands++;
   }
 
+  @Override
+  protected void addKeysToBloomFilter(BloomKFilter bloomFilter) {
+    for (int slot = 0; slot < logicalHashBucketCount; slot++) {
+      int pairIndex = slot * 2;
+      if (slotPairs[pairIndex] != 0) {
+        bloomFilter.addLong(slotPairs[pairIndex + 1]);
+      }
+    }
+  }
+
   protected boolean containsKey(long key) {
     long hashCode = HashCodeUtil.calculateLongHashCode(key);
     return findReadSlot(key, hashCode) != -1;
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.metrics.common.Metrics;
+import org.apache.hadoop.hive.common.metrics.common.MetricsConstant;
+import org.apache.hadoop.hive.common.metrics.common.MetricsFactory;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sun.misc.Cleaner;
+
+/*
+ * Allocates the off-heap slabs that native fast vector map join hash maps move their keys and
+ * values to once loaded.
+ *
+ * There is one allocator per query.  It is only used in LLAP daemons, where the hash tables are
+ * shared by the executors of a query through the object cache, so the slabs are released
+ * explicitly when the query's object cache is removed (see ObjectCacheFactory.removeLlapQueryCache)
+ * instead of waiting for the garbage collector to find the direct buffers.
+ *
+ * The slabs are either direct buffers or, when a directory is configured, memory mapped from
+ * deleted files in that directory.
+ */
+public class VectorMapJoinFastSlabAllocator implements WriteBuffers.SlabAllocator {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(VectorMapJoinFastSlabAllocator.class.getName());
+
+  private static final ConcurrentHashMap<String, VectorMapJoinFastSlabAllocator> queryAllocators =
+      new ConcurrentHashMap<String, VectorMapJoinFastSlabAllocator>();
+
+  private static Field cleanerField;
+  static {
+    try {
+      final Class<?> dbClazz = Class.forName("java.nio.DirectByteBuffer");
+      cleanerField = dbClazz.getDeclaredField("cleaner");
+      cleanerField.setAccessible(true);
+    } catch (Throwable t) {
+      LOG.warn("Cannot initialize DirectByteBuffer cleaner", t);
+      cleanerField = null;
+    }
+  }
+
+  private final String queryId;
+  private final File mmapDir;
+
+  // ByteBuffer equality is by content, so track the slabs by identity.
+  private final Set<ByteBuffer> slabs =
+      Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+  private final AtomicLong allocatedBytes = new AtomicLong();
+  private boolean isReleased;
+
+  private VectorMapJoinFastSlabAllocator(String queryId, File mmapDir) {
+    this.queryId = queryId;
+    this.mmapDir = mmapDir;
+  }
+
+  /*
+   * Get the allocator of the query of the configuration.
+   */
+  public static VectorMapJoinFastSlabAllocator get(Configuration hconf) {
+    final String queryId = HiveConf.getVar(hconf, HiveConf.ConfVars.HIVEQUERYID);
+    VectorMapJoinFastSlabAllocator allocator = queryAllocators.get(queryId);
+    if (allocator != null) {
+      return allocator;
+    }
+    final String mmapPath = HiveConf.getVar(hconf,
+        HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_HASHTABLE_OFFHEAP_MMAP_PATH);
+    allocator = new VectorMapJoinFastSlabAllocator(
+        queryId, (mmapPath == null || mmapPath.isEmpty()) ? null : new File(mmapPath));
+    VectorMapJoinFastSlabAllocator old = queryAllocators.putIfAbsent(queryId, allocator);
+    return (old != null) ? old : allocator;
+  }
+
+  /*
+   * Release all the slabs of a query.  The hash tables of the query must no longer be in use.
+   */
+  public static void releaseQuery(String queryId) {
+    VectorMapJoinFastSlabAllocator allocator = queryAllocators.remove(queryId);
+    if (allocator != null) {
+      allocator.releaseAll();
+    }
+  }
+
+  /*
+   * The off-heap bytes currently allocated for a query.
+   */
+  public static long getQueryAllocatedBytes(String queryId) {
+    VectorMapJoinFastSlabAllocator allocator = queryAllocators.get(queryId);
+    return (allocator == null) ? 0 : allocator.getAllocatedBytes();
+  }
+
+  public long getAllocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+  @Override
+  public ByteBuffer allocate(int size) throws IOException {
+    ByteBuffer slab = (mmapDir == null) ? ByteBuffer.allocateDirect(size) : allocateMapped(size);
+    synchronized (slabs) {
+      if (isReleased) {
+        freeSlab(slab);
+        throw new IOException("Off-heap slabs of query " + queryId + " were already released");
+      }
+      slabs.add(slab);
+    }
+    allocatedBytes.addAndGet(size);
+    updateMetric(size);
+    return slab;
+  }
+
+  private ByteBuffer allocateMapped(int size) throws IOException {
+    RandomAccessFile rwf = null;
+    File rf = null;
+    try {
+      rf = File.createTempFile("mapjoin-", ".slab", mmapDir);
+      rwf = new RandomAccessFile(rf, "rw");
+      rwf.setLength(size);
+      return rwf.getChannel().map(MapMode.READ_WRITE, 0, size);
+    } finally {
+      // A mapping, once established, is not dependent upon the file channel that was used to
+      // create it. delete file and hold onto the map
+      IOUtils.closeQuietly(rwf);
+      if (rf != null) {
+        rf.delete();
+      }
+    }
+  }
+
+  @Override
+  public void release(ByteBuffer slab) {
+    boolean isRemoved;
+    synchronized (slabs) {
+      isRemoved = slabs.remove(slab);
+    }
+    if (isRemoved) {
+      allocatedBytes.addAndGet(-slab.capacity());
+      updateMetric(-slab.capacity());
+      freeSlab(slab);
+    }
+  }
+
+  private void releaseAll() {
+    List<ByteBuffer> releaseSlabs;
+    synchronized (slabs) {
+      isReleased = true;
+      releaseSlabs = new ArrayList<ByteBuffer>(slabs);
+      slabs.clear();
+    }
+    long releasedBytes = 0;
+    for (ByteBuffer slab : releaseSlabs) {
+      releasedBytes += slab.capacity();
+      freeSlab(slab);
+    }
+    allocatedBytes.addAndGet(-releasedBytes);
+    updateMetric(-releasedBytes);
+    if (LOG.isInfoEnabled() && !releaseSlabs.isEmpty()) {
+      LOG.info("Released " + releaseSlabs.size() + " off-heap vector map join slabs (" +
+          releasedBytes + " bytes) of query " + queryId);
+    }
+  }
+
+  private static void updateMetric(long delta) {
+    Metrics metrics = MetricsFactory.getInstance();
+    if (metrics != null) {
+      metrics.incrementCounter(MetricsConstant.VECTOR_MAPJOIN_OFF_HEAP_BYTES, delta);
+    }
+  }
+
+  private static void freeSlab(ByteBuffer slab) {
+    Field field = cleanerField;
+    if (field == null) {
+      // Left to the garbage collector.
+      return;
+    }
+    try {
+      ((Cleaner) field.get(slab)).clean();
+    } catch (Throwable t) {
+      LOG.warn("Error using DirectByteBuffer cleaner; stopping its use", t);
+      cleanerField = null;
+    }
+  }
+}
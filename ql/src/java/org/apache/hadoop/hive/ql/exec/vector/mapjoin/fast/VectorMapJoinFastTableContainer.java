@@ -24,6 +24,7 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.io.api.LlapProxy;
 import org.apache.hadoop.hive.ql.exec.persistence.HashMapWrapper;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinKey;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinObjectSerDeContext;
@@ -62,6 +63,7 @@ public class VectorMapJoinFastTableContainer implements VectorMapJoinTableContai
 
   private final VectorMapJoinFastHashTable vectorMapJoinFastHashTable;
   private String key;
+  private long offHeapBytes;
 
   public VectorMapJoinFastTableContainer(MapJoinDesc desc, Configuration hconf,
       long estimatedKeyCount) throws SerDeException {
@@ -198,7 +200,64 @@ public MapJoinKey putRow(Writable currentKey, Writable currentValue)
 
   @Override
   public void seal() {
-    // Do nothing
+    if (isBloomFilterWanted()) {
+      long startTime = System.currentTimeMillis();
+      vectorMapJoinFastHashTable.buildBloomFilter();
+      if (vectorMapJoinFastHashTable.getBloomFilter() != null) {
+        LOG.info("Built Bloom filter of {} keys ({} bytes) in {} ms",
+            vectorMapJoinFastHashTable.size(),
+            vectorMapJoinFastHashTable.getBloomFilter().sizeInBytes(),
+            System.currentTimeMillis() - startTime);
+      }
+    }
+    // The slabs are only released when the query completes in an LLAP daemon; a Tez container
+    // has no such hook, so the hash table stays on heap there.
+    if (HiveConf.getBoolVar(hconf,
+        HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_HASHTABLE_OFFHEAP_ENABLED)
+        && LlapProxy.isDaemon()) {
+      moveToSlabs();
+    }
+  }
+
+  /*
+   * Move the loaded hash table storage off heap.  It is released when the query's object cache
+   * is removed, or when this container is cleared.
+   */
+  private void moveToSlabs() {
+    long startTime = System.currentTimeMillis();
+    try {
+      VectorMapJoinFastSlabAllocator allocator = VectorMapJoinFastSlabAllocator.get(hconf);
+      offHeapBytes = vectorMapJoinFastHashTable.moveToSlabs(allocator);
+      if (offHeapBytes > 0) {
+        LOG.info("Moved {} bytes of hash table storage off heap in {} ms; {} bytes off heap " +
+            "for the query", offHeapBytes, System.currentTimeMillis() - startTime,
+            allocator.getAllocatedBytes());
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to move hash table storage off heap; keeping it on heap", e);
+    }
+  }
+
+  /*
+   * The Bloom filter only pays off when a big table row without a match is simply dropped.
+   */
+  private boolean isBloomFilterWanted() {
+    if (!HiveConf.getBoolVar(hconf,
+        HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_BLOOM_FILTER_ENABLED)) {
+      return false;
+    }
+    VectorMapJoinDesc vectorDesc = (VectorMapJoinDesc) desc.getVectorDesc();
+    if (vectorDesc.getVectorMapJoinVariation() == null) {
+      return false;
+    }
+    switch (vectorDesc.getVectorMapJoinVariation()) {
+    case INNER:
+    case INNER_BIG_ONLY:
+    case LEFT_SEMI:
+      return true;
+    default:
+      return false;
+    }
   }
 
   @Override
@@ -214,7 +273,7 @@ public NonMatchedSmallTableIterator createNonMatchedSmallTableIterator(
 
   @Override
   public void clear() {
-    // Do nothing
+    vectorMapJoinFastHashTable.releaseSlabs();
   }
 
   @Override
@@ -237,6 +296,13 @@ public int size() {
     return vectorMapJoinFastHashTable.size();
   }
 
+  /*
+   * The bytes of hash table storage that were moved off heap when sealing.
+   */
+  public long getOffHeapBytes() {
+    return offHeapBytes;
+  }
+
   @Override
   public long getEstimatedMemorySize() {
     JavaDataModel jdm = JavaDataModel.get();
@@ -56,4 +56,28 @@
    */
   JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapResult,
       MatchTracker matchTracker) throws IOException;
-}
\ No newline at end of file
+
+  /*
+   * Lookup a batch of long keys in the hash map.
+   *
+   * The probes of the keys are interleaved so the memory loads of several keys are in flight
+   * at the same time, instead of paying for the cache miss of each key one after the other.
+   *
+   * @param keys
+   *         The long keys, indexed by batch index.
+   * @param selected
+   *         The batch indices of the keys to lookup.  When null, the batch indices are
+   *         0 .. size - 1.
+   * @param size
+   *         The number of keys to lookup.
+   * @param hashMapResults
+   *         The objects, indexed by batch index, to receive small table value(s) information
+   *         on a MATCH.  Or, for SPILL, information on where to spill the big table row.
+   * @param joinResults
+   *         Receives, indexed by batch index, whether each lookup was a match, no match, or
+   *         spilled.
+   */
+  void lookupBatch(long[] keys, int[] selected, int size,
+      VectorMapJoinHashMapResult[] hashMapResults, JoinUtil.JoinResult[] joinResults)
+          throws IOException;
+}
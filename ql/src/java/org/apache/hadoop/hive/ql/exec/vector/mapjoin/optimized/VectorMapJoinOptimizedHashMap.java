@@ -196,6 +196,20 @@ public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyOffset, int keyLength,
     return joinResult;
   }
 
+  @Override
+  public void lookupBatch(byte[][] keyBytes, int[] keyStarts, int[] keyLengths, int[] selected,
+      int size, VectorMapJoinHashMapResult[] hashMapResults, JoinUtil.JoinResult[] joinResults)
+          throws IOException {
+
+    // The BytesBytesMultiHashMap has no batch probe, so lookup the keys one at a time.
+    for (int i = 0; i < size; i++) {
+      final int batchIndex = (selected == null ? i : selected[i]);
+      joinResults[batchIndex] =
+          lookup(keyBytes[batchIndex], keyStarts[batchIndex], keyLengths[batchIndex],
+              hashMapResults[batchIndex]);
+    }
+  }
+
   public VectorMapJoinOptimizedHashMap(
       MapJoinTableContainer originalTableContainer, ReusableGetAdaptor hashMapRowGetter) {
     super(originalTableContainer, hashMapRowGetter);
@@ -183,6 +183,18 @@ public JoinResult lookup(long key,
             hashMapResult, matchTracker);
   }
 
+  @Override
+  public void lookupBatch(long[] keys, int[] selected, int size,
+      VectorMapJoinHashMapResult[] hashMapResults, JoinResult[] joinResults) throws IOException {
+
+    // Each key is serialized before the BytesBytesMultiHashMap probe, so lookup the keys one at
+    // a time.
+    for (int i = 0; i < size; i++) {
+      final int batchIndex = (selected == null ? i : selected[i]);
+      joinResults[batchIndex] = lookup(keys[batchIndex], hashMapResults[batchIndex]);
+    }
+  }
+
   public VectorMapJoinOptimizedLongHashMap(
         boolean minMaxEnabled, boolean isOuterJoin, HashTableKeyType hashTableKeyType,
         MapJoinTableContainer originalTableContainer, ReusableGetAdaptor hashMapRowGetter, TableDesc tableDesc) {
@@ -24,15 +24,18 @@
 import java.util.Properties;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.CompilationOpContext;
 import org.apache.hadoop.hive.ql.exec.Operator;
 import org.apache.hadoop.hive.ql.exec.TerminalOperator;
 import org.apache.hadoop.hive.ql.exec.TopNHash;
 import org.apache.hadoop.hive.ql.exec.Utilities;
 import org.apache.hadoop.hive.ql.exec.vector.VectorSerializeRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorTopNKeyOperator;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizationContextRegion;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizationOperator;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
 import org.apache.hadoop.hive.ql.io.HiveKey;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
@@ -126,6 +129,9 @@ public abstract class VectorReduceSinkCommonOperator extends TerminalOperator<Re
   // Picks topN K:V pairs from input.
   protected transient TopNHash reducerHash;
 
+  // Drops rows that cannot be in the top N before their keys are serialized.
+  protected transient VectorReduceSinkTopNFilter topNFilter;
+
   // Where to write our key and value pairs.
   private transient OutputCollector out;
 
@@ -298,6 +304,22 @@ protected void initializeOp(Configuration hconf) throws HiveException {
     if (limit >= 0 && memUsage > 0) {
       reducerHash = new TopNHash();
       reducerHash.initialize(limit, memUsage, conf.isMapGroupBy(), this, conf, hconf);
+
+      // Group by keeps the top N distinct keys, so N rows with the same key don't bound it.
+      int maxFilterTopN = HiveConf.getIntVar(
+          hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_REDUCESINK_TOPN_FILTER_MAX);
+      if (!isEmptyKey && !conf.isMapGroupBy() && limit <= maxFilterTopN) {
+        boolean isDescending = getColumnSortOrder(
+            conf.getKeySerializeInfo().getProperties(), reduceSinkKeyColumnMap.length)[0];
+        topNFilter = VectorReduceSinkTopNFilter.create(
+            reduceSinkKeyTypeInfos[0], limit, isDescending);
+        if (topNFilter != null && parentOperators.size() == 1
+            && parentOperators.get(0) instanceof VectorTopNKeyOperator) {
+          // Let the top N key operator in front of us filter with our threshold as well.
+          ((VectorTopNKeyOperator) parentOperators.get(0)).setReduceSinkTopNFilter(
+              topNFilter, reduceSinkKeyTypeInfos[0], isDescending);
+        }
+      }
     }
 
     batchCounter = 0;
@@ -325,6 +347,18 @@ public void collect(byte[] key, byte[] value, int hash) throws IOException {
     doCollect(keyWritable, valueWritable);
   }
 
+  /**
+   * Applies the top N filter, if any, to the batch; the key expressions must have been evaluated.
+   * @return false if no rows remain in the batch.
+   */
+  protected boolean filterTopN(VectorizedRowBatch batch) {
+    if (topNFilter == null) {
+      return true;
+    }
+    topNFilter.filter(batch, batch.cols[reduceSinkKeyColumnMap[0]]);
+    return batch.size > 0;
+  }
+
   protected void collect(HiveKey keyWritable, BytesWritable valueWritable)
       throws HiveException, IOException {
     if (reducerHash != null) {
@@ -378,6 +412,10 @@ protected void closeOp(boolean abort) throws HiveException {
     if (!abort && reducerHash != null) {
       reducerHash.flush();
     }
+    if (topNFilter != null && LOG.isInfoEnabled()) {
+      LOG.info(toString() + ": " + topNFilter);
+    }
+    topNFilter = null;
     runTimeNumRows = numRows;
     super.closeOp(abort);
     out = null;
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.reducesink;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.StringExpr;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+
+/**
+ * Columnar top N filter for the native vectorized ReduceSink of ORDER BY ... LIMIT N queries.
+ *
+ * A bounded heap keeps the N best values of the first key column seen so far; its root, the
+ * worst of those values, is the current threshold. A row whose first key value is strictly worse
+ * than the threshold cannot be in the top N whatever the rest of its key is, so it is removed
+ * from the batch by compacting the selected array, before its key and value are serialized.
+ * The remaining rows still go through {@link org.apache.hadoop.hive.ql.exec.TopNHash}, which
+ * keeps exactly the top N. Rows with a NULL first key are always kept.
+ *
+ * The threshold can also be applied without updating the heap, see {@link #filterByThreshold};
+ * the VectorTopNKeyOperator in front of the ReduceSink uses it to drop rows earlier.
+ */
+public abstract class VectorReduceSinkTopNFilter {
+
+  protected final int topN;
+  protected final boolean isDescending;
+  protected int heapSize = 0;
+
+  private long total = 0;
+  private long filtered = 0;
+
+  private VectorReduceSinkTopNFilter(int topN, boolean isDescending) {
+    this.topN = topN;
+    this.isDescending = isDescending;
+  }
+
+  /**
+   * @return the filter for the first key column type, or null if the type is not supported.
+   */
+  public static VectorReduceSinkTopNFilter create(TypeInfo keyTypeInfo, int topN,
+      boolean isDescending) {
+    if (topN <= 0 || !(keyTypeInfo instanceof PrimitiveTypeInfo)) {
+      return null;
+    }
+    switch (((PrimitiveTypeInfo) keyTypeInfo).getPrimitiveCategory()) {
+    case BOOLEAN:
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+    case DATE:
+    case INTERVAL_YEAR_MONTH:
+      return new LongFilter(topN, isDescending);
+    case FLOAT:
+    case DOUBLE:
+      return new DoubleFilter(topN, isDescending);
+    case STRING:
+    case VARCHAR:
+    case BINARY:
+      return new BytesFilter(topN, isDescending);
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Removes the rows that cannot be in the top N from the batch, and adds the key values of
+   * the others to the heap.
+   */
+  public void filter(VectorizedRowBatch batch, ColumnVector keyColVector) {
+    doFilter(batch, keyColVector, true);
+  }
+
+  /**
+   * Removes the rows that are worse than the current threshold from the batch, without adding
+   * anything to the heap. Does nothing until N values have been seen.
+   */
+  public void filterByThreshold(VectorizedRowBatch batch, ColumnVector keyColVector) {
+    if (heapSize < topN) {
+      return;
+    }
+    doFilter(batch, keyColVector, false);
+  }
+
+  private void doFilter(VectorizedRowBatch batch, ColumnVector keyColVector, boolean isUpdate) {
+    final int size = batch.size;
+    if (size == 0) {
+      return;
+    }
+    final boolean selectedInUse = batch.selectedInUse;
+    final int[] selected = batch.selected;
+    final boolean isRepeating = keyColVector.isRepeating;
+    final boolean noNulls = keyColVector.noNulls;
+    final boolean[] isNull = keyColVector.isNull;
+
+    // Selected is compacted in place; we never write past the row being read.
+    int newSize = 0;
+    for (int logical = 0; logical < size; logical++) {
+      final int batchIndex = (selectedInUse ? selected[logical] : logical);
+      final int rowIndex = (isRepeating ? 0 : batchIndex);
+      if ((noNulls || !isNull[rowIndex]) && !accept(keyColVector, rowIndex, isUpdate)) {
+        continue;
+      }
+      selected[newSize++] = batchIndex;
+    }
+    total += size;
+    if (newSize < size) {
+      filtered += size - newSize;
+      batch.size = newSize;
+      batch.selectedInUse = true;
+    }
+  }
+
+  /**
+   * @return whether the value at rowIndex may be in the top N.
+   */
+  protected abstract boolean accept(ColumnVector keyColVector, int rowIndex, boolean isUpdate);
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getFiltered() {
+    return filtered;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{topN=" + topN + ", total=" + total
+        + ", filtered=" + filtered + "}";
+  }
+
+  /*
+   * The heaps below have the worst of the kept values at the root. "Worse" means later in the
+   * sort order: greater for ascending order, smaller for descending order.
+   */
+
+  private static final class LongFilter extends VectorReduceSinkTopNFilter {
+    private final long[] heap;
+
+    LongFilter(int topN, boolean isDescending) {
+      super(topN, isDescending);
+      heap = new long[topN];
+    }
+
+    private boolean isWorse(long a, long b) {
+      return isDescending ? a < b : a > b;
+    }
+
+    @Override
+    protected boolean accept(ColumnVector keyColVector, int rowIndex, boolean isUpdate) {
+      final long value = ((LongColumnVector) keyColVector).vector[rowIndex];
+      if (heapSize < topN) {
+        if (isUpdate) {
+          int i = heapSize++;
+          while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(value, heap[parent])) {
+              break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+          }
+          heap[i] = value;
+        }
+        return true;
+      }
+      if (isWorse(value, heap[0])) {
+        return false;
+      }
+      if (isUpdate && isWorse(heap[0], value)) {
+        int i = 0;
+        while (true) {
+          int child = (i << 1) + 1;
+          if (child >= heapSize) {
+            break;
+          }
+          if (child + 1 < heapSize && isWorse(heap[child + 1], heap[child])) {
+            child++;
+          }
+          if (!isWorse(heap[child], value)) {
+            break;
+          }
+          heap[i] = heap[child];
+          i = child;
+        }
+        heap[i] = value;
+      }
+      return true;
+    }
+  }
+
+  private static final class DoubleFilter extends VectorReduceSinkTopNFilter {
+    private final double[] heap;
+
+    DoubleFilter(int topN, boolean isDescending) {
+      super(topN, isDescending);
+      heap = new double[topN];
+    }
+
+    private boolean isWorse(double a, double b) {
+      // Same total order as the key comparators; NaN is the greatest value.
+      int result = Double.compare(a, b);
+      return isDescending ? result < 0 : result > 0;
+    }
+
+    @Override
+    protected boolean accept(ColumnVector keyColVector, int rowIndex, boolean isUpdate) {
+      final double value = ((DoubleColumnVector) keyColVector).vector[rowIndex];
+      if (heapSize < topN) {
+        if (isUpdate) {
+          int i = heapSize++;
+          while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(value, heap[parent])) {
+              break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+          }
+          heap[i] = value;
+        }
+        return true;
+      }
+      if (isWorse(value, heap[0])) {
+        return false;
+      }
+      if (isUpdate && isWorse(heap[0], value)) {
+        int i = 0;
+        while (true) {
+          int child = (i << 1) + 1;
+          if (child >= heapSize) {
+            break;
+          }
+          if (child + 1 < heapSize && isWorse(heap[child + 1], heap[child])) {
+            child++;
+          }
+          if (!isWorse(heap[child], value)) {
+            break;
+          }
+          heap[i] = heap[child];
+          i = child;
+        }
+        heap[i] = value;
+      }
+      return true;
+    }
+  }
+
+  private static final class BytesFilter extends VectorReduceSinkTopNFilter {
+    // The heap holds copies of the values; the arrays are reused as values are replaced.
+    private final byte[][] heap;
+    private final int[] heapLength;
+
+    BytesFilter(int topN, boolean isDescending) {
+      super(topN, isDescending);
+      heap = new byte[topN][];
+      heapLength = new int[topN];
+    }
+
+    private boolean isWorse(byte[] a, int aStart, int aLength, int heapIndex) {
+      int result = StringExpr.compare(a, aStart, aLength, heap[heapIndex], 0, heapLength[heapIndex]);
+      return isDescending ? result < 0 : result > 0;
+    }
+
+    private boolean isWorse(int heapIndexA, int heapIndexB) {
+      return isWorse(heap[heapIndexA], 0, heapLength[heapIndexA], heapIndexB);
+    }
+
+    private void swap(int i, int j) {
+      byte[] bytes = heap[i];
+      heap[i] = heap[j];
+      heap[j] = bytes;
+      int length = heapLength[i];
+      heapLength[i] = heapLength[j];
+      heapLength[j] = length;
+    }
+
+    private void set(int heapIndex, byte[] bytes, int start, int length) {
+      if (heap[heapIndex] == null || heap[heapIndex].length < length) {
+        heap[heapIndex] = new byte[length];
+      }
+      System.arraycopy(bytes, start, heap[heapIndex], 0, length);
+      heapLength[heapIndex] = length;
+    }
+
+    @Override
+    protected boolean accept(ColumnVector keyColVector, int rowIndex, boolean isUpdate) {
+      final BytesColumnVector colVector = (BytesColumnVector) keyColVector;
+      final byte[] bytes = colVector.vector[rowIndex];
+      final int start = colVector.start[rowIndex];
+      final int length = colVector.length[rowIndex];
+      if (heapSize < topN) {
+        if (isUpdate) {
+          int i = heapSize++;
+          set(i, bytes, start, length);
+          while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(i, parent)) {
+              break;
+            }
+            swap(i, parent);
+            i = parent;
+          }
+        }
+        return true;
+      }
+      if (isWorse(bytes, start, length, 0)) {
+        return false;
+      }
+      if (isUpdate && StringExpr.compare(bytes, start, length, heap[0], 0, heapLength[0]) != 0) {
+        set(0, bytes, start, length);
+        int i = 0;
+        while (true) {
+          int child = (i << 1) + 1;
+          if (child >= heapSize) {
+            break;
+          }
+          if (child + 1 < heapSize && isWorse(child + 1, child)) {
+            child++;
+          }
+          if (!isWorse(child, i)) {
+            break;
+          }
+          swap(i, child);
+          i = child;
+        }
+      }
+      return true;
+    }
+  }
+}
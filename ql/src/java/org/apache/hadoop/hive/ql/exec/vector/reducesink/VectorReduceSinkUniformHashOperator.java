@@ -114,6 +114,11 @@ public void process(Object row, int tag) throws HiveException {
         }
       }
 
+      // Drop the rows that cannot be in the top N before doing any more work for them.
+      if (!filterTopN(batch)) {
+        return;
+      }
+
       // Perform any value expressions.  Results will go into scratch columns.
       if (reduceSinkValueExpressions != null) {
         for (VectorExpression ve : reduceSinkValueExpressions) {
@@ -82,7 +82,7 @@ protected ParquetInputSplit getSplit(
 
       // TODO enable MetadataFilter by using readFooter(Configuration configuration, Path file,
       // MetadataFilter filter) API
-      final ParquetMetadata parquetMetadata = ParquetFileReader.readFooter(jobConf, finalPath);
+      final ParquetMetadata parquetMetadata = readFooter(jobConf, finalPath);
       final List<BlockMetaData> blocks = parquetMetadata.getBlocks();
       final FileMetaData fileMetaData = parquetMetadata.getFileMetaData();
 
@@ -153,6 +153,18 @@ protected ParquetInputSplit getSplit(
     }
   }
 
+  /**
+   * Reads the whole footer of the file of a split.
+   *
+   * @param conf The JobConf of the Hive job, with the projections pushed down
+   * @param path The path of the file
+   * @return the footer of the file
+   * @throws IOException if the footer cannot be read from the file
+   */
+  protected ParquetMetadata readFooter(JobConf conf, Path path) throws IOException {
+    return ParquetFileReader.readFooter(conf, path);
+  }
+
   public FilterCompat.Filter setFilter(final JobConf conf, MessageType schema) {
     SearchArgument sarg = ConvertAstToSearchArg.createFromConf(conf);
     if (sarg == null) {
@@ -113,6 +113,14 @@ public class VectorizedParquetRecordReader extends ParquetRecordReaderBase
   private Map<Path, PartitionDesc> parts;
   private final boolean isReadCacheOnly;
 
+  // The file in the metadata cache; cachePath is the path to use with the cache key.
+  private Path cacheKeyFile;
+  private Object cacheKey;
+  private CacheTag cacheTag;
+  private Path cachePath;
+  /** The whole footer, when it was already read to compute the split. */
+  private ParquetMetadata fileFooter;
+
   /**
    * For each request column, the reader to read this column. This is NULL if this column
    * is missing from the file, in which case we populate the attribute with NULL.
@@ -187,11 +195,6 @@ public void initialize(
     ParquetMetadata footer;
     List<BlockMetaData> blocks;
 
-    MapWork mapWork = LlapHiveUtils.findMapWork(jobConf);
-    if (mapWork != null) {
-      parts = mapWork.getPathToPartitionInfo();
-    }
-
     ParquetInputSplit split = (ParquetInputSplit) oldSplit;
     boolean indexAccess =
       configuration.getBoolean(DataWritableReadSupport.PARQUET_COLUMN_INDEX_ACCESS, false);
@@ -203,29 +206,10 @@ public void initialize(
     String columnTypes = configuration.get(IOConstants.COLUMNS_TYPES);
     columnTypesList = DataWritableReadSupport.getColumnTypes(columnTypes);
 
-    // if task.side.metadata is set, rowGroupOffsets is null
-    Object cacheKey = null;
-    CacheTag cacheTag = null;
-    // TODO: also support fileKey in splits, like OrcSplit does
-    if (metadataCache != null) {
-      cacheKey = HdfsUtils.getFileId(file.getFileSystem(configuration), file,
-        HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_CACHE_ALLOW_SYNTHETIC_FILEID),
-        HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_CACHE_DEFAULT_FS_FILE_ID),
-        !HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_IO_USE_FILEID_PATH));
-    }
-    if (cacheKey != null) {
-      if (HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_TRACK_CACHE_USAGE)) {
-        PartitionDesc partitionDesc = LlapHiveUtils.partitionDescForPath(split.getPath(), parts);
-        cacheTag = LlapHiveUtils.getDbAndTableNameForMetrics(file, true, partitionDesc);
-      }
-      // If we are going to use cache, change the path to depend on file ID for extra consistency.
-      FileSystem fs = file.getFileSystem(configuration);
-      if (cacheKey instanceof Long && HiveConf.getBoolVar(
-          cacheConf, ConfVars.LLAP_IO_USE_FILEID_PATH)) {
-        file = HdfsUtils.getFileIdPath(file, (long)cacheKey);
-      }
-    }
+    initCacheKey(file, configuration);
+    file = cachePath;
 
+    // if task.side.metadata is set, rowGroupOffsets is null
     if (rowGroupOffsets == null) {
       //TODO check whether rowGroupOffSets can be null
       // then we need to apply the predicate push down filter
@@ -236,7 +220,8 @@ public void initialize(
       blocks = filterRowGroups(filter, footer.getBlocks(), fileSchema);
     } else {
       // otherwise we find the row groups that were selected on the client
-      footer = readSplitFooter(configuration, file, cacheKey, NO_FILTER, cacheTag);
+      footer = fileFooter != null ? fileFooter
+          : readSplitFooter(configuration, file, cacheKey, NO_FILTER, cacheTag);
       Set<Long> offsets = new HashSet<>();
       for (long offset : rowGroupOffsets) {
         offsets.add(offset);
@@ -280,6 +265,58 @@ public void initialize(
       configuration, footer.getFileMetaData(), path, blocks, requestedSchema.getColumns());
   }
 
+  /**
+   * Determines the metadata cache key of the file, and the path to read it with.
+   */
+  private void initCacheKey(Path path, JobConf configuration) throws IOException {
+    if (path.equals(cacheKeyFile)) {
+      return;
+    }
+    cacheKeyFile = path;
+    fileFooter = null;
+    cacheKey = null;
+    cacheTag = null;
+    cachePath = path;
+    // TODO: also support fileKey in splits, like OrcSplit does
+    if (metadataCache != null) {
+      cacheKey = HdfsUtils.getFileId(path.getFileSystem(configuration), path,
+        HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_CACHE_ALLOW_SYNTHETIC_FILEID),
+        HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_CACHE_DEFAULT_FS_FILE_ID),
+        !HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_IO_USE_FILEID_PATH));
+    }
+    if (cacheKey != null) {
+      if (HiveConf.getBoolVar(cacheConf, ConfVars.LLAP_TRACK_CACHE_USAGE)) {
+        if (parts == null) {
+          MapWork mapWork = LlapHiveUtils.findMapWork(configuration);
+          if (mapWork != null) {
+            parts = mapWork.getPathToPartitionInfo();
+          }
+        }
+        PartitionDesc partitionDesc = LlapHiveUtils.partitionDescForPath(path, parts);
+        cacheTag = LlapHiveUtils.getDbAndTableNameForMetrics(path, true, partitionDesc);
+      }
+      // If we are going to use cache, change the path to depend on file ID for extra consistency.
+      if (cacheKey instanceof Long && HiveConf.getBoolVar(
+          cacheConf, ConfVars.LLAP_IO_USE_FILEID_PATH)) {
+        cachePath = HdfsUtils.getFileIdPath(path, (long)cacheKey);
+      }
+    }
+  }
+
+  /**
+   * Reads the footer for the split through the metadata cache, like the reader itself does, and
+   * keeps it so that the reader does not parse it again.
+   */
+  @Override
+  protected ParquetMetadata readFooter(JobConf conf, Path path) throws IOException {
+    if (metadataCache == null) {
+      return super.readFooter(conf, path);
+    }
+    initCacheKey(path, conf);
+    fileFooter = readSplitFooter(conf, cachePath, cacheKey, NO_FILTER, cacheTag);
+    return fileFooter;
+  }
+
   private Path wrapPathForCache(Path path, Object fileKey, JobConf configuration,
       List<BlockMetaData> blocks, CacheTag tag) throws IOException {
     if (fileKey == null || cache == null) {
@@ -322,6 +322,7 @@ public enum EnabledOverride {
 
   // Now deprecated.
   private boolean isVectorizationGroupByComplexTypesEnabled;
+  private boolean isVectorizationGroupByNativeEnabled;
 
   private boolean isVectorizedRowIdentifierEnabled;
   private String vectorizedInputFormatSupportEnabled;
@@ -2474,6 +2475,9 @@ public PhysicalContext resolve(PhysicalContext physicalContext) throws SemanticE
     isVectorizationGroupByComplexTypesEnabled =
         HiveConf.getBoolVar(hiveConf,
             HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_COMPLEX_TYPES_ENABLED);
+    isVectorizationGroupByNativeEnabled =
+        HiveConf.getBoolVar(hiveConf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_NATIVE_ENABLED);
 
     isVectorizedRowIdentifierEnabled =
         HiveConf.getBoolVar(hiveConf,
@@ -2773,6 +2777,7 @@ private boolean validateGroupByOperator(GroupByOperator op, boolean isReduce,
 
     vectorGroupByDesc.setIsVectorizationComplexTypesEnabled(isVectorizationComplexTypesEnabled);
     vectorGroupByDesc.setIsVectorizationGroupByComplexTypesEnabled(isVectorizationGroupByComplexTypesEnabled);
+    vectorGroupByDesc.setIsNativeHashTableEnabled(isVectorizationGroupByNativeEnabled);
 
     LOG.info("Vector GROUP BY operator will use processing mode " + processingMode.name());
 
@@ -4656,6 +4661,8 @@ private static ImmutablePair<Operator<? extends OperatorDesc>,String> doVectoriz
     vectorGroupByDesc.setKeyExpressions(vecKeyExpressions);
     vectorGroupByDesc.setVecAggrDescs(vecAggrDescs);
     vectorGroupByDesc.setProjectedOutputColumns(projectedOutputColumns);
+    vectorGroupByDesc.setHashTableKeyType(
+        getGroupByHashTableKeyType(groupByDesc, vectorGroupByDesc, vecKeyExpressions));
     Operator<GroupByDesc> vectorOp =
         OperatorFactory.getVectorOperator(
             groupByOp.getCompilationOpContext(), groupByDesc,
@@ -4663,6 +4670,48 @@ private static ImmutablePair<Operator<? extends OperatorDesc>,String> doVectoriz
     return new ImmutablePair<Operator<? extends OperatorDesc>, String>(vectorOp, null);
   }
 
+  /*
+   * Which native hash table (if any) should the HASH processing mode use for these keys?
+   */
+  private static VectorGroupByDesc.HashTableKeyType getGroupByHashTableKeyType(
+      GroupByDesc groupByDesc, VectorGroupByDesc vectorGroupByDesc,
+      VectorExpression[] vecKeyExpressions) throws HiveException {
+
+    final boolean isGroupingSetsPresent =
+        groupByDesc.isGroupingSetsPresent() ||
+        (groupByDesc.getListGroupingSets() != null && !groupByDesc.getListGroupingSets().isEmpty());
+    if (!vectorGroupByDesc.getIsNativeHashTableEnabled() ||
+        vectorGroupByDesc.getProcessingMode() != ProcessingMode.HASH ||
+        isGroupingSetsPresent ||
+        vecKeyExpressions.length == 0) {
+      return VectorGroupByDesc.HashTableKeyType.NONE;
+    }
+
+    for (VectorExpression vecKeyExpression : vecKeyExpressions) {
+      TypeInfo typeInfo = vecKeyExpression.getOutputTypeInfo();
+      if (typeInfo.getCategory() != ObjectInspector.Category.PRIMITIVE ||
+          ((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory() == PrimitiveCategory.VOID ||
+          vecKeyExpression.getOutputDataTypePhysicalVariation() != DataTypePhysicalVariation.NONE) {
+        return VectorGroupByDesc.HashTableKeyType.NONE;
+      }
+    }
+
+    if (vecKeyExpressions.length == 1) {
+      ColumnVector.Type columnVectorType =
+          VectorizationContext.getColumnVectorTypeFromTypeInfo(
+              vecKeyExpressions[0].getOutputTypeInfo());
+      switch (columnVectorType) {
+      case LONG:
+        return VectorGroupByDesc.HashTableKeyType.LONG;
+      case BYTES:
+        return VectorGroupByDesc.HashTableKeyType.STRING;
+      default:
+        break;
+      }
+    }
+    return VectorGroupByDesc.HashTableKeyType.MULTI_KEY;
+  }
+
   public static Operator<? extends OperatorDesc> vectorizeSelectOperator(
       Operator<? extends OperatorDesc> selectOp, VectorizationContext vContext,
       VectorSelectDesc vectorSelectDesc)
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.optimizer.signature;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexOver;
+import org.apache.calcite.rex.RexSubQuery;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.Pair;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
+import org.apache.hadoop.hive.ql.optimizer.calcite.RelWriterImplCopy;
+
+/**
+ * Normalized digest of a Calcite plan, used by the query results cache.
+ *
+ * Unlike the plan explain string, the digest does not depend on the output column names of
+ * projects and aggregates or on table aliases, and the operands of commutative operators (and
+ * the values of IN) are sorted.
+ */
+public final class RelPlanDigest {
+
+  private RelPlanDigest() {
+  }
+
+  /**
+   * A plan split into its optional top project and filter, and the plan below them.
+   */
+  public static final class Decomposition {
+    private final RelNode base;
+    private final List<RexNode> filterConjuncts;
+    private final List<RexNode> projects;
+
+    private Decomposition(RelNode base, List<RexNode> filterConjuncts, List<RexNode> projects) {
+      this.base = base;
+      this.filterConjuncts = filterConjuncts;
+      this.projects = projects;
+    }
+
+    public RelNode getBase() {
+      return base;
+    }
+
+    /**
+     * @return the conjuncts of the top filter, over the columns of the base.
+     */
+    public List<RexNode> getFilterConjuncts() {
+      return filterConjuncts;
+    }
+
+    /**
+     * @return the expressions of the top project over the columns of the base, or null if there is
+     *         no top project.
+     */
+    public List<RexNode> getProjects() {
+      return projects;
+    }
+  }
+
+  public static Decomposition decompose(RelNode root) {
+    RelNode rel = root;
+    List<RexNode> projects = null;
+    if (rel instanceof Project) {
+      projects = ((Project) rel).getProjects();
+      rel = ((Project) rel).getInput();
+    }
+    List<RexNode> filterConjuncts = Collections.emptyList();
+    if (rel instanceof Filter) {
+      filterConjuncts = RelOptUtil.conjunctions(((Filter) rel).getCondition());
+      rel = ((Filter) rel).getInput();
+    }
+    return new Decomposition(rel, filterConjuncts, projects);
+  }
+
+  /**
+   * Check if the top project and filter of a plan compute the same values when they are applied to
+   * a superset of the rows that reach them. This is not the case for window functions, whose values
+   * depend on the other rows, and for non-deterministic expressions.
+   */
+  public static boolean isComputableFromSuperset(Decomposition decomposition) {
+    if (decomposition.getProjects() != null) {
+      if (RexOver.containsOver(decomposition.getProjects(), null)) {
+        return false;
+      }
+      for (RexNode project : decomposition.getProjects()) {
+        if (!RexUtil.isDeterministic(project)) {
+          return false;
+        }
+      }
+    }
+    for (RexNode conjunct : decomposition.getFilterConjuncts()) {
+      if (!RexUtil.isDeterministic(conjunct)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Create the results cache digest of a plan.
+   */
+  public static QueryResultsCache.PlanDigest createForResultsCache(RelNode root) {
+    Decomposition decomposition = decompose(root);
+    final int baseColumnCount = decomposition.getBase().getRowType().getFieldCount();
+
+    Map<String, BitSet> filterConjuncts = new LinkedHashMap<>();
+    for (RexNode conjunct : decomposition.getFilterConjuncts()) {
+      filterConjuncts.put(of(conjunct), RelOptUtil.InputFinder.bits(conjunct).toBitSet());
+    }
+
+    BitSet projectColumns;
+    int[] baseColumnToResultColumn = new int[baseColumnCount];
+    if (decomposition.getProjects() == null) {
+      projectColumns = new BitSet(baseColumnCount);
+      projectColumns.set(0, baseColumnCount);
+      for (int i = 0; i < baseColumnCount; i++) {
+        baseColumnToResultColumn[i] = i;
+      }
+    } else {
+      projectColumns = RelOptUtil.InputFinder.bits(decomposition.getProjects(), null).toBitSet();
+      Arrays.fill(baseColumnToResultColumn, -1);
+      List<RexNode> projects = decomposition.getProjects();
+      for (int i = 0; i < projects.size(); i++) {
+        if (projects.get(i) instanceof RexInputRef) {
+          int baseColumn = ((RexInputRef) projects.get(i)).getIndex();
+          if (baseColumnToResultColumn[baseColumn] < 0) {
+            baseColumnToResultColumn[baseColumn] = i;
+          }
+        }
+      }
+    }
+
+    return new QueryResultsCache.PlanDigest(of(root), of(decomposition.getBase()),
+        filterConjuncts, projectColumns, baseColumnToResultColumn,
+        isComputableFromSuperset(decomposition));
+  }
+
+  /**
+   * @return the normalized digest of the plan.
+   */
+  public static String of(RelNode rel) {
+    final StringWriter sw = new StringWriter();
+    rel.explain(new NormalizingRelWriterImpl(new PrintWriter(sw)));
+    return sw.toString();
+  }
+
+  /**
+   * @return the normalized digest of the expression.
+   */
+  public static String of(RexNode node) {
+    if (node instanceof RexInputRef) {
+      return node.toString();
+    }
+    if (node instanceof RexLiteral) {
+      return node + ":" + node.getType().getFullTypeString();
+    }
+    if (!(node instanceof RexCall) || node instanceof RexOver || node instanceof RexSubQuery) {
+      return node.toString();
+    }
+    RexCall call = (RexCall) node;
+    List<String> operands = new ArrayList<>(call.getOperands().size());
+    for (RexNode operand : call.getOperands()) {
+      operands.add(of(operand));
+    }
+    switch (call.getKind()) {
+    case AND:
+    case OR:
+    case EQUALS:
+    case NOT_EQUALS:
+    case PLUS:
+    case TIMES:
+      Collections.sort(operands);
+      break;
+    case IN:
+      // The first operand is the value looked up in the others.
+      Collections.sort(operands.subList(1, operands.size()));
+      break;
+    default:
+      break;
+    }
+    return call.getOperator().getName() + "(" + String.join(", ", operands) + "):"
+        + call.getType().getFullTypeString();
+  }
+
+  static class NormalizingRelWriterImpl extends RelWriterImplCopy {
+
+    NormalizingRelWriterImpl(PrintWriter pw) {
+      super(pw, SqlExplainLevel.EXPPLAN_ATTRIBUTES, false);
+    }
+
+    @Override
+    protected void explain_(RelNode rel, List<Pair<String, Object>> values) {
+      // Column names of projects and aggregates are aliases, so only their positions matter.
+      final boolean positionalTerms = (rel instanceof Project)
+          || (rel instanceof Aggregate);
+      StringBuilder s = new StringBuilder();
+      spacer.spaces(s);
+      s.append(rel.getRelTypeName()).append("(");
+      int j = 0;
+      for (Pair<String, Object> value : values) {
+        if (value.right instanceof RelNode || value.left.contains("alias")) {
+          continue;
+        }
+        if (j > 0) {
+          s.append(", ");
+        }
+        s.append(positionalTerms ? "$" + j : value.left).append("=[");
+        if (value.right instanceof RexNode) {
+          s.append(of((RexNode) value.right));
+        } else {
+          s.append(value.right);
+        }
+        s.append("]");
+        j++;
+      }
+      s.append(")");
+      pw.println(s);
+      spacer.add(2);
+      explainInputs(rel.getInputs());
+      spacer.subtract(2);
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hive.ql.parse;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableBiMap;
@@ -137,14 +138,17 @@
 import org.apache.hadoop.hive.conf.HiveConf.StrictChecks;
 import org.apache.hadoop.hive.metastore.Warehouse;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
 import org.apache.hadoop.hive.ql.Context;
 import org.apache.hadoop.hive.ql.ErrorMsg;
 import org.apache.hadoop.hive.ql.QueryProperties;
 import org.apache.hadoop.hive.ql.QueryState;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
 import org.apache.hadoop.hive.ql.exec.ColumnInfo;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.FunctionInfo;
 import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
+import org.apache.hadoop.hive.ql.exec.ListSinkOperator;
 import org.apache.hadoop.hive.ql.exec.Operator;
 import org.apache.hadoop.hive.ql.exec.OperatorFactory;
 import org.apache.hadoop.hive.ql.exec.RowSchema;
@@ -268,6 +272,7 @@
 import org.apache.hadoop.hive.ql.optimizer.calcite.rules.views.MaterializedViewRewritingRelVisitor;
 import org.apache.hadoop.hive.ql.optimizer.calcite.translator.ASTBuilder;
 import org.apache.hadoop.hive.ql.optimizer.calcite.translator.ASTConverter;
+import org.apache.hadoop.hive.ql.optimizer.calcite.translator.ExprNodeConverter;
 import org.apache.hadoop.hive.ql.parse.type.FunctionHelper;
 import org.apache.hadoop.hive.ql.parse.type.FunctionHelper.AggregateInfo;
 import org.apache.hadoop.hive.ql.parse.type.HiveFunctionHelper;
@@ -276,6 +281,7 @@
 import org.apache.hadoop.hive.ql.optimizer.calcite.translator.SqlFunctionConverter;
 import org.apache.hadoop.hive.ql.optimizer.calcite.translator.TypeConverter;
 import org.apache.hadoop.hive.ql.optimizer.calcite.translator.opconventer.HiveOpConverter;
+import org.apache.hadoop.hive.ql.optimizer.signature.RelPlanDigest;
 import org.apache.hadoop.hive.ql.parse.PTFInvocationSpec.OrderExpression;
 import org.apache.hadoop.hive.ql.parse.PTFInvocationSpec.OrderSpec;
 import org.apache.hadoop.hive.ql.parse.PTFInvocationSpec.PartitionExpression;
@@ -291,14 +297,20 @@
 import org.apache.hadoop.hive.ql.parse.type.TypeCheckProcFactory;
 import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
+import org.apache.hadoop.hive.ql.plan.FilterDesc;
 import org.apache.hadoop.hive.ql.plan.HiveOperation;
+import org.apache.hadoop.hive.ql.plan.ListSinkDesc;
 import org.apache.hadoop.hive.ql.plan.SelectDesc;
+import org.apache.hadoop.hive.ql.plan.TableDesc;
 import org.apache.hadoop.hive.ql.plan.mapper.EmptyStatsSource;
 import org.apache.hadoop.hive.ql.plan.mapper.StatsSource;
 import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFArray;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDTF;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDTFInline;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
 import org.apache.hadoop.hive.serde2.objectinspector.StandardStructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
@@ -347,6 +359,9 @@ public class CalcitePlanner extends SemanticAnalyzer {
 
   private EnumSet<ExtendedCBOProfile> profilesCBO;
 
+  // The optimized plan of the query, used for the query results cache
+  private RelNode resultsCachePlan;
+
   private static final CommonToken FROM_TOKEN =
       new ImmutableCommonToken(HiveParser.TOK_FROM, "TOK_FROM");
   private static final CommonToken DEST_TOKEN =
@@ -498,11 +513,127 @@ private static RelOptPlanner createPlanner(
     return HiveVolcanoPlanner.createPlanner(confContext);
   }
 
+  @Override
+  protected QueryResultsCache.PlanDigest getPlanDigestForResultsCache() {
+    if (resultsCachePlan == null || resultSchema == null
+        || resultsCachePlan.getRowType().getFieldCount() != resultSchema.size()) {
+      return null;
+    }
+    return RelPlanDigest.createForResultsCache(resultsCachePlan);
+  }
+
+  @Override
+  protected FetchWork createResidualFetchWork(QueryResultsCache.CacheEntry cacheEntry)
+      throws SemanticException {
+    final QueryResultsCache.PlanDigest cachedPlanDigest =
+        cacheEntry.getQueryInfo().getLookupInfo().getPlanDigest();
+    FetchWork fetchWork = cacheEntry.getFetchWork();
+    TableDesc tableDesc = fetchWork.getTblDesc();
+    if (resultsCachePlan == null || cachedPlanDigest == null
+        || !LazySimpleSerDe.class.getName().equals(tableDesc.getSerdeClassName())) {
+      // Only plain results can be filtered and projected again.
+      return null;
+    }
+
+    // The row type of the cached results.
+    final RelDataTypeFactory typeFactory = resultsCachePlan.getCluster().getTypeFactory();
+    List<String> cachedColumnNames = Utilities.getColumnNames(tableDesc.getProperties());
+    List<TypeInfo> cachedColumnTypes = TypeInfoUtils.getTypeInfosFromTypeString(
+        tableDesc.getProperties().getProperty(serdeConstants.LIST_COLUMN_TYPES));
+    List<RelDataType> cachedFieldTypes = new ArrayList<>(cachedColumnTypes.size());
+    for (TypeInfo cachedColumnType : cachedColumnTypes) {
+      cachedFieldTypes.add(TypeConverter.convert(cachedColumnType, typeFactory));
+    }
+    final RelDataType cachedRowType =
+        typeFactory.createStructType(cachedFieldTypes, cachedColumnNames);
+
+    Operator<?> source = createResidualOperators(
+        resultsCachePlan, cachedPlanDigest, cachedRowType, ctx.getOpContext());
+    if (source == null) {
+      return null;
+    }
+    Operator<?> select = source.getChildOperators().isEmpty() ?
+        source : source.getChildOperators().get(0);
+    ListSinkOperator sink = (ListSinkOperator) OperatorFactory.getAndMakeChild(
+        new ListSinkDesc(fetchWork.getSerializationNullFormat()), select);
+
+    fetchWork.setSource(source);
+    fetchWork.setSink(sink);
+    return fetchWork;
+  }
+
+  /**
+   * Create the filter and select operators which compute the results of the plan from the cached
+   * results of another plan, see QueryResultsCache.PlanDigest.canAnswer().
+   * @return the first operator, followed by the select if it is a filter, or null if the results
+   *         cannot be computed this way.
+   */
+  @VisibleForTesting
+  static Operator<?> createResidualOperators(RelNode plan,
+      final QueryResultsCache.PlanDigest cachedPlanDigest, final RelDataType cachedRowType,
+      CompilationOpContext opContext) {
+    final RexBuilder rexBuilder = plan.getCluster().getRexBuilder();
+    final RelDataTypeFactory typeFactory = plan.getCluster().getTypeFactory();
+    // Rewrite the residual filter and the project over the cached results.
+    RelPlanDigest.Decomposition decomposition = RelPlanDigest.decompose(plan);
+    if (!RelPlanDigest.isComputableFromSuperset(decomposition)) {
+      return null;
+    }
+    RexShuttle toCachedColumns = new RexShuttle() {
+      @Override
+      public RexNode visitInputRef(RexInputRef inputRef) {
+        int cachedColumn = cachedPlanDigest.getResultColumn(inputRef.getIndex());
+        return rexBuilder.makeInputRef(
+            cachedRowType.getFieldList().get(cachedColumn).getType(), cachedColumn);
+      }
+    };
+    List<RexNode> residualConjuncts = new ArrayList<>();
+    for (RexNode conjunct : decomposition.getFilterConjuncts()) {
+      if (!cachedPlanDigest.getFilterConjuncts().contains(RelPlanDigest.of(conjunct))) {
+        residualConjuncts.add(conjunct.accept(toCachedColumns));
+      }
+    }
+    List<RexNode> projects = decomposition.getProjects() != null ?
+        decomposition.getProjects() : rexBuilder.identityProjects(decomposition.getBase().getRowType());
+    ExprNodeConverter converter =
+        new ExprNodeConverter("", cachedRowType, new HashSet<Integer>(), typeFactory);
+
+    Operator<?> source = null;
+    Operator<?> parent = null;
+    if (!residualConjuncts.isEmpty()) {
+      RexNode residualCondition = RexUtil.composeConjunction(rexBuilder, residualConjuncts, false);
+      ExprNodeDesc predicate = residualCondition.accept(converter);
+      if (predicate == null) {
+        return null;
+      }
+      source = parent = OperatorFactory.get(opContext, new FilterDesc(predicate, false));
+    }
+    List<ExprNodeDesc> colList = new ArrayList<>(projects.size());
+    List<String> outputColumnNames = new ArrayList<>(projects.size());
+    for (int i = 0; i < projects.size(); i++) {
+      ExprNodeDesc col = projects.get(i).accept(toCachedColumns).accept(converter);
+      if (col == null) {
+        return null;
+      }
+      colList.add(col);
+      outputColumnNames.add(getColumnInternalName(i));
+    }
+    SelectDesc selectDesc = new SelectDesc(colList, outputColumnNames);
+    Operator<?> select = (parent == null) ?
+        OperatorFactory.get(opContext, selectDesc) :
+        OperatorFactory.getAndMakeChild(selectDesc, parent);
+    if (source == null) {
+      source = select;
+    }
+    return source;
+  }
+
   @Override
   @SuppressWarnings("rawtypes")
   Operator genOPTree(ASTNode ast, PlannerContext plannerCtx) throws SemanticException {
     Operator sinkOp = null;
     boolean skipCalcitePlan = false;
+    resultsCachePlan = null;
 
     if (!runCBO) {
       skipCalcitePlan = true;
@@ -538,6 +669,7 @@ Operator genOPTree(ASTNode ast, PlannerContext plannerCtx) throws SemanticExcept
         try {
           // 0. Gen Optimized Plan
           RelNode newPlan = logicalPlan();
+          resultsCachePlan = newPlan;
 
           if (this.conf.getBoolVar(HiveConf.ConfVars.HIVE_CBO_RETPATH_HIVEOP)) {
             if (cboCtx.type == PreCboCtx.Type.VIEW && !materializedView) {
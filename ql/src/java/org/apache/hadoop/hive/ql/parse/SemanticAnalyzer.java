@@ -211,6 +211,7 @@
 import org.apache.hadoop.hive.ql.plan.ExprNodeDescUtils;
 import org.apache.hadoop.hive.ql.plan.ExprNodeFieldDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
 import org.apache.hadoop.hive.ql.plan.FileSinkDesc;
 import org.apache.hadoop.hive.ql.plan.FilterDesc;
 import org.apache.hadoop.hive.ql.plan.FilterDesc.SampleDesc;
@@ -12641,11 +12642,21 @@ void analyzeInternal(ASTNode ast, Supplier<PlannerContext> pcf) throws SemanticE
 
     if (isCacheEnabled && lookupInfo != null) {
       if (queryCanBeCached()) {
+        // Now that the plan is optimized, also look the query up by its plan digest.
+        if (conf.getBoolVar(ConfVars.HIVE_QUERY_RESULTS_CACHE_PLAN_DIGEST_ENABLED)) {
+          QueryResultsCache.PlanDigest planDigest = getPlanDigestForResultsCache();
+          if (planDigest != null) {
+            lookupInfo = lookupInfo.withPlanDigest(planDigest);
+          }
+        }
+
         // Last chance - check if the query is available in the cache.
         // Since we have already generated a query plan, using a cached query result at this point
         // requires SemanticAnalyzer state to be reset.
         if (checkResultsCache(lookupInfo, true)) {
           LOG.info("Cached result found on second lookup");
+        } else if (checkResultsCacheForPartialMatch(lookupInfo)) {
+          LOG.info("Cached superset result found on second lookup");
         } else {
           QueryResultsCache.QueryInfo queryInfo = createCacheQueryInfoForQuery(lookupInfo);
 
@@ -15059,17 +15070,27 @@ private boolean isResultsCacheEnabled() {
    * @param cacheEntry The results cache entry that will be used to resolve the query.
    */
   private void useCachedResult(QueryResultsCache.CacheEntry cacheEntry, boolean needsReset) {
+    List<FieldSchema> cachedResultSchema = cacheEntry.getQueryInfo().getResultSchema();
+    if (needsReset && resultSchema != null && resultSchema.size() == cachedResultSchema.size()) {
+      // The entry may have been found by plan digest, for a query with other column aliases.
+      cachedResultSchema = resultSchema;
+    }
+    useCachedResult(cacheEntry, cacheEntry.getFetchWork(), cachedResultSchema, needsReset);
+  }
+
+  private void useCachedResult(QueryResultsCache.CacheEntry cacheEntry, FetchWork fetchWork,
+      List<FieldSchema> cachedResultSchema, boolean needsReset) {
     if (needsReset) {
       reset(true);
       inputs.clear();
     }
 
     // Change query FetchTask to use new location specified in results cache.
-    FetchTask fetchTask = (FetchTask) TaskFactory.get(cacheEntry.getFetchWork());
+    FetchTask fetchTask = (FetchTask) TaskFactory.get(fetchWork);
     setFetchTask(fetchTask);
 
     queryState.setCommandType(cacheEntry.getQueryInfo().getHiveOperation());
-    resultSchema = cacheEntry.getQueryInfo().getResultSchema();
+    resultSchema = cachedResultSchema;
     setTableAccessInfo(cacheEntry.getQueryInfo().getTableAccessInfo());
     setColumnAccessInfo(cacheEntry.getQueryInfo().getColumnAccessInfo());
     inputs.addAll(cacheEntry.getQueryInfo().getInputs());
@@ -15241,6 +15262,60 @@ private boolean checkResultsCache(QueryResultsCache.LookupInfo lookupInfo, boole
     return false;
   }
 
+  /**
+   * Check the query results cache for a result which contains the results of the query
+   * represented by the lookupInfo, see QueryResultsCache.lookupPartial(). If found, the semantic
+   * analyzer will be configured to compute the query results from the cached results.
+   */
+  private boolean checkResultsCacheForPartialMatch(QueryResultsCache.LookupInfo lookupInfo) {
+    if (lookupInfo.getPlanDigest() == null ||
+        !conf.getBoolVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_PARTIAL_REUSE_ENABLED)) {
+      return false;
+    }
+    QueryResultsCache.CacheEntry cacheEntry = QueryResultsCache.getInstance().lookupPartial(lookupInfo);
+    if (cacheEntry == null) {
+      return false;
+    }
+    // Don't increment the reader count for explain queries.
+    boolean isExplainQuery = (ctx.getExplainConfig() != null);
+    if (!isExplainQuery && !cacheEntry.addReader()) {
+      return false;
+    }
+    FetchWork fetchWork = null;
+    try {
+      fetchWork = createResidualFetchWork(cacheEntry);
+    } catch (SemanticException err) {
+      LOG.warn("Unable to compute the query results from cache entry " + cacheEntry, err);
+    }
+    if (fetchWork == null) {
+      if (!isExplainQuery) {
+        cacheEntry.releaseReader();
+      }
+      return false;
+    }
+    useCachedResult(cacheEntry, fetchWork, resultSchema, true);
+    return true;
+  }
+
+  /**
+   * @return the digest of the optimized plan of the query for the results cache, or null if there
+   *         is none.
+   */
+  protected QueryResultsCache.PlanDigest getPlanDigestForResultsCache() {
+    return null;
+  }
+
+  /**
+   * Create the work which computes the results of this query from the results of a cache entry
+   * found by QueryResultsCache.lookupPartial(), by applying the remaining filter and the project
+   * of the query plan.
+   * @return the fetch work, or null if the results cannot be computed this way.
+   */
+  protected FetchWork createResidualFetchWork(QueryResultsCache.CacheEntry cacheEntry)
+      throws SemanticException {
+    return null;
+  }
+
   private static final class ColsAndTypes {
     public ColsAndTypes(String cols, String colTypes) {
       this.cols = cols;
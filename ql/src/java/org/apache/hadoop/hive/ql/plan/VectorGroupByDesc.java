@@ -59,16 +59,37 @@ public static enum ProcessingMode {
     STREAMING
   };
 
+  /**
+   *     NONE           The generic HashMap of key wrappers is used.
+   *
+   *     LONG           A single key that is stored in a LongColumnVector.
+   *
+   *     STRING         A single key that is stored in a BytesColumnVector.
+   *
+   *     MULTI_KEY      Any other combination of primitive keys (serialized with BinarySortable).
+   *
+   *     Only used by ProcessingMode.HASH when the native (fast) hash table is enabled.
+   */
+  public static enum HashTableKeyType {
+    NONE,
+    LONG,
+    STRING,
+    MULTI_KEY
+  }
+
   private ProcessingMode processingMode;
+  private HashTableKeyType hashTableKeyType;
 
   private VectorExpression[] keyExpressions;
   private VectorAggregationDesc[] vecAggrDescs;
   private int[] projectedOutputColumns;
   private boolean isVectorizationComplexTypesEnabled;
   private boolean isVectorizationGroupByComplexTypesEnabled;
+  private boolean isNativeHashTableEnabled;
 
   public VectorGroupByDesc() {
     this.processingMode = ProcessingMode.NONE;
+    this.hashTableKeyType = HashTableKeyType.NONE;
   }
 
   public void setProcessingMode(ProcessingMode processingMode) {
@@ -78,6 +99,13 @@ public ProcessingMode getProcessingMode() {
     return processingMode;
   }
 
+  public void setHashTableKeyType(HashTableKeyType hashTableKeyType) {
+    this.hashTableKeyType = hashTableKeyType;
+  }
+  public HashTableKeyType getHashTableKeyType() {
+    return hashTableKeyType;
+  }
+
   public void setKeyExpressions(VectorExpression[] keyExpressions) {
     this.keyExpressions = keyExpressions;
   }
@@ -118,6 +146,14 @@ public boolean getIsVectorizationGroupByComplexTypesEnabled() {
     return isVectorizationGroupByComplexTypesEnabled;
   }
 
+  public void setIsNativeHashTableEnabled(boolean isNativeHashTableEnabled) {
+    this.isNativeHashTableEnabled = isNativeHashTableEnabled;
+  }
+
+  public boolean getIsNativeHashTableEnabled() {
+    return isNativeHashTableEnabled;
+  }
+
   /**
    * Which ProcessingMode for VectorGroupByOperator?
    *
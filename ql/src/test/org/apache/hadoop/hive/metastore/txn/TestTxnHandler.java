@@ -56,6 +56,7 @@
 import org.apache.hadoop.hive.metastore.api.TxnInfo;
 import org.apache.hadoop.hive.metastore.api.TxnOpenException;
 import org.apache.hadoop.hive.metastore.api.TxnState;
+import org.apache.hadoop.hive.metastore.api.TxnType;
 import org.apache.hadoop.hive.metastore.api.UnlockRequest;
 import org.apache.hadoop.hive.metastore.api.TxnToWriteId;
 import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
@@ -72,13 +73,22 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -148,6 +158,170 @@ public void testOpenTxn() throws Exception {
     for (int i = 1; i < saw.length; i++) assertTrue(saw[i]);
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_GROUP_COMMIT_MAX_BATCH, 10);
+    MetastoreConf.setTimeVar(conf, MetastoreConf.ConfVars.TXN_GROUP_COMMIT_WINDOW, 50, TimeUnit.MILLISECONDS);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      TxnStore groupTxnHandler = TxnUtils.getTxnStore(conf);
+      List<CompletableFuture<Long>> opened = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        opened.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return groupTxnHandler.openTxns(new OpenTxnRequest(1, "me", "localhost")).getTxn_ids().get(0);
+          } catch (MetaException e) {
+            throw new RuntimeException(e);
+          }
+        }, executor));
+      }
+      List<Long> txnIds = new ArrayList<>();
+      for (CompletableFuture<Long> txnId : opened) {
+        txnIds.add(txnId.get());
+      }
+      assertEquals(8, txnIds.stream().distinct().count());
+      long abortedTxnId = txnIds.get(0);
+      groupTxnHandler.abortTxn(new AbortTxnRequest(abortedTxnId));
+
+      List<CompletableFuture<Exception>> committed = new ArrayList<>();
+      for (long txnId : txnIds) {
+        committed.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            groupTxnHandler.commitTxn(new CommitTxnRequest(txnId));
+            return null;
+          } catch (Exception e) {
+            return e;
+          }
+        }, executor));
+      }
+      // The failure of a transaction is returned to its own call only
+      assertTrue(committed.get(0).get() instanceof TxnAbortedException);
+      for (int i = 1; i < committed.size(); i++) {
+        assertNull(committed.get(i).get());
+      }
+      GetOpenTxnsInfoResponse txnsInfo = groupTxnHandler.getOpenTxnsInfo();
+      assertEquals(1, txnsInfo.getOpen_txns().size());
+      assertEquals(abortedTxnId, txnsInfo.getOpen_txns().get(0).getId());
+      assertEquals(TxnState.ABORTED, txnsInfo.getOpen_txns().get(0).getState());
+    } finally {
+      executor.shutdown();
+      MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_GROUP_COMMIT_MAX_BATCH, 1);
+      TxnUtils.getTxnStore(conf);
+    }
+  }
+
+  @Test
+  public void testGroupCommitFailure() throws Exception {
+    long txnId = openTxn();
+    AtomicBoolean failDbConn = new AtomicBoolean(true);
+    TxnHandler failingTxnHandler = new TxnHandler() {
+      @Override
+      Connection getDbConn(int isolationLevel) throws SQLException {
+        if (failDbConn.get()) {
+          throw new SQLException("Injected failure");
+        }
+        return super.getDbConn(isolationLevel);
+      }
+    };
+    failingTxnHandler.setConf(conf);
+    GroupCommit<CommitTxnRequest, Void> groupCommit = new GroupCommit<>(10, 0);
+
+    // The calls of a group that can not be committed are left to their callers
+    GroupCommit.Call<CommitTxnRequest, Void> call =
+        groupCommit.submit(new CommitTxnRequest(txnId), failingTxnHandler::commitTxnsInGroup);
+    assertFalse(call.isWritten());
+    assertEquals(1, txnHandler.getOpenTxnsInfo().getOpen_txns().size());
+
+    failDbConn.set(false);
+    call = groupCommit.submit(new CommitTxnRequest(txnId), failingTxnHandler::commitTxnsInGroup);
+    assertTrue(call.isWritten());
+    assertNull(call.getFailure());
+    assertEquals(0, txnHandler.getOpenTxnsInfo().getOpen_txns().size());
+  }
+
+  @Test
+  public void testGroupCommitWriteConflict() throws Exception {
+    List<Long> txnIds = txnHandler.openTxns(new OpenTxnRequest(4, "me", "localhost")).getTxn_ids();
+    // The first two transactions update the same partition
+    for (long txnId : txnIds.subList(0, 2)) {
+      AllocateTableWriteIdsRequest rqst = new AllocateTableWriteIdsRequest("default", "T");
+      rqst.setTxnIds(Collections.singletonList(txnId));
+      long writeId = txnHandler.allocateTableWriteIds(rqst).getTxnToWriteIds().get(0).getWriteId();
+      AddDynamicPartitions adp =
+          new AddDynamicPartitions(txnId, writeId, "default", "T", Collections.singletonList("p=1"));
+      adp.setOperationType(DataOperationType.UPDATE);
+      txnHandler.addDynamicPartitions(adp);
+    }
+    txnHandler.commitTxn(new CommitTxnRequest(txnIds.get(0)));
+
+    AtomicInteger dbCommits = new AtomicInteger();
+    TxnHandler countingTxnHandler = new TxnHandler() {
+      @Override
+      Connection getDbConn(int isolationLevel) throws SQLException {
+        Connection dbConn = super.getDbConn(isolationLevel);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+              if (method.getName().equals("commit")) {
+                dbCommits.incrementAndGet();
+              }
+              try {
+                return method.invoke(dbConn, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+      }
+    };
+    countingTxnHandler.setConf(conf);
+    // A long window, so that the three calls are committed in one group
+    GroupCommit<CommitTxnRequest, Void> groupCommit = new GroupCommit<>(10, 500);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<CompletableFuture<GroupCommit.Call<CommitTxnRequest, Void>>> calls = new ArrayList<>();
+      for (long txnId : txnIds.subList(1, 4)) {
+        calls.add(CompletableFuture.supplyAsync(() ->
+            groupCommit.submit(new CommitTxnRequest(txnId), countingTxnHandler::commitTxnsInGroup), executor));
+      }
+      // The conflicting transaction is aborted along with the commit of the others
+      assertTrue(calls.get(0).get().getFailure() instanceof TxnAbortedException);
+      for (int i = 1; i < calls.size(); i++) {
+        assertTrue(calls.get(i).get().isWritten());
+        assertNull(calls.get(i).get().getFailure());
+      }
+      assertEquals(1, dbCommits.get());
+    } finally {
+      executor.shutdown();
+    }
+    GetOpenTxnsInfoResponse txnsInfo = txnHandler.getOpenTxnsInfo();
+    assertEquals(1, txnsInfo.getOpen_txns().size());
+    assertEquals((long) txnIds.get(1), txnsInfo.getOpen_txns().get(0).getId());
+    assertEquals(TxnState.ABORTED, txnsInfo.getOpen_txns().get(0).getState());
+  }
+
+  @Test
+  public void testGroupOpenTxnsTimeout() throws Exception {
+    GroupCommit<OpenTxnRequest, OpenTxnsResponse> groupCommit = new GroupCommit<>(10, 0);
+    txnHandler.setOpenTxnTimeOutMillis(0);
+    try {
+      // A write transaction opened too slowly is removed, and its call is left to be retried
+      GroupCommit.Call<OpenTxnRequest, OpenTxnsResponse> call =
+          groupCommit.submit(new OpenTxnRequest(1, "me", "localhost"), ((TxnHandler) txnHandler)::openTxnsInGroup);
+      assertFalse(call.isWritten());
+      assertEquals(0, txnHandler.getOpenTxnsInfo().getOpen_txns().size());
+
+      // A read only transaction can not cause dirty reads, so it is kept
+      OpenTxnRequest readOnlyRqst = new OpenTxnRequest(1, "me", "localhost");
+      readOnlyRqst.setTxn_type(TxnType.READ_ONLY);
+      call = groupCommit.submit(readOnlyRqst, ((TxnHandler) txnHandler)::openTxnsInGroup);
+      assertTrue(call.isWritten());
+      List<TxnInfo> openTxns = txnHandler.getOpenTxnsInfo().getOpen_txns();
+      assertEquals(1, openTxns.size());
+      assertEquals((long) call.getResult().getTxn_ids().get(0), openTxns.get(0).getId());
+    } finally {
+      txnHandler.setOpenTxnTimeOutMillis(1000);
+    }
+  }
+
   @Test
   public void testAbortTxn() throws Exception {
     OpenTxnsResponse openedTxns = txnHandler.openTxns(new OpenTxnRequest(3, "me", "localhost"));
@@ -402,6 +576,60 @@ public void testLockDifferentTables() throws Exception {
     assertTrue(res.getState() == LockState.ACQUIRED);
   }
 
+  @Test
+  public void testLockManyTables() throws Exception {
+    // Test that the conflicts are found when a lock request has too many tables to list them
+    LockComponent comp = new LockComponent(LockType.EXCLUSIVE, LockLevel.DB, "mydb");
+    comp.setOperationType(DataOperationType.NO_TXN);
+    comp.setTablename("mytable");
+    List<LockComponent> components = new ArrayList<LockComponent>();
+    components.add(comp);
+    LockRequest req = new LockRequest(components, "me", "localhost");
+    LockResponse res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.ACQUIRED);
+
+    components.clear();
+    for (int i = 0; i < 200; i++) {
+      comp = new LockComponent(LockType.SHARED_READ, LockLevel.DB, "mydb");
+      comp.setOperationType(DataOperationType.NO_TXN);
+      comp.setTablename("table" + i);
+      components.add(comp);
+    }
+    req = new LockRequest(components, "me", "localhost");
+    res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.ACQUIRED);
+
+    comp = new LockComponent(LockType.SHARED_READ, LockLevel.DB, "mydb");
+    comp.setOperationType(DataOperationType.NO_TXN);
+    comp.setTablename("mytable");
+    components.add(comp);
+    req = new LockRequest(components, "me", "localhost");
+    res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.WAITING);
+  }
+
+  @Test
+  public void testLockFilter() throws Exception {
+    // Test that the earlier locks are checked on the listed tables, or on the whole database
+    Map<String, Set<String>> tablesByDb = new TreeMap<>();
+    tablesByDb.put("mydb", new TreeSet<>(Arrays.asList("mytable", "yourtable")));
+    tablesByDb.put("yourdb", null);
+    String filter = TxnHandler.getLockFilter(tablesByDb);
+    assertTrue(filter, filter.contains(
+        "(\"HL_DB\" = 'mydb' AND (\"HL_TABLE\" IS NULL OR \"HL_TABLE\" IN ('mytable','yourtable')))"));
+    assertTrue(filter, filter.contains("(\"HL_DB\" = 'yourdb')"));
+
+    // Too many tables to list, so all the locks of the database are checked
+    Set<String> tables = new TreeSet<>();
+    for (int i = 0; i < 200; i++) {
+      tables.add("table" + i);
+    }
+    tablesByDb.put("mydb", tables);
+    filter = TxnHandler.getLockFilter(tablesByDb);
+    assertFalse(filter, filter.contains("HL_TABLE"));
+    assertTrue(filter, filter.contains("(\"HL_DB\" = 'mydb')"));
+  }
+
   @Test
   public void testLockSameTable() throws Exception {
     // Test that two different tables don't collide on their locks
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.cache.results;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.CacheEntry;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.CacheEntryStatus;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.LookupInfo;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache.QueryInfo;
+import org.apache.hadoop.hive.ql.hooks.ReadEntity;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
+import org.apache.hadoop.hive.ql.plan.HiveOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the lookup structures of the query results cache.
+ */
+public class TestQueryResultsCache {
+  private static final int NUM_QUERIES = 8;
+
+  private QueryResultsCache cache;
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = new File(System.getProperty("java.io.tmpdir"), "TestQueryResultsCache");
+    HiveConf conf = new HiveConf();
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_DIRECTORY, cacheDir.getAbsolutePath());
+    QueryResultsCache.cleanupInstance();
+    QueryResultsCache.initialize(conf);
+    cache = QueryResultsCache.getInstance();
+  }
+
+  @After
+  public void tearDown() {
+    QueryResultsCache.cleanupInstance();
+  }
+
+  private LookupInfo lookupInfo(String tableName, int i) {
+    return new LookupInfo("select * from " + tableName + " where key = " + i, () -> null);
+  }
+
+  /** Adds a valid entry with empty results for a query reading the given table. */
+  private void addEntry(String tableName, int i) {
+    HashSet<ReadEntity> inputs = new HashSet<ReadEntity>();
+    inputs.add(new ReadEntity(new Table("default", tableName)));
+    QueryInfo queryInfo = new QueryInfo(System.currentTimeMillis(), lookupInfo(tableName, i),
+        HiveOperation.QUERY, new ArrayList<FieldSchema>(), null, null, inputs);
+    CacheEntry entry = cache.addToCache(queryInfo, null);
+    FetchWork fetchWork = new FetchWork(new Path(cacheDir.getAbsolutePath(), tableName + i), null, -1);
+    fetchWork.setFilesToFetch(new HashSet<FileStatus>());
+    assertTrue(cache.setEntryValid(entry, fetchWork));
+    entry.releaseReader();
+  }
+
+  @Test
+  public void testNotifyTableChanged() throws Exception {
+    addEntry("a", 0);
+    addEntry("b", 0);
+
+    // Changes made before the query was cached do not invalidate its entry.
+    cache.notifyTableChanged("default", "a", 0);
+    assertNotNull(cache.lookup(lookupInfo("a", 0)));
+
+    cache.notifyTableChanged("DEFAULT", "A", System.currentTimeMillis());
+    assertNull(cache.lookup(lookupInfo("a", 0)));
+    assertNotNull(cache.lookup(lookupInfo("b", 0)));
+  }
+
+  @Test
+  public void testConcurrentLookupsWithInvalidations() throws Exception {
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      addEntry("a", i);
+      addEntry("b", i);
+    }
+
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    List<Future<?>> readers = new ArrayList<>();
+    try {
+      for (int t = 0; t < 4; t++) {
+        readers.add(executor.submit(() -> {
+          int i = 0;
+          while (!done.get()) {
+            // The entries of table b are never invalidated, so they are always found.
+            CacheEntry entry = cache.lookup(lookupInfo("b", i % NUM_QUERIES));
+            assertNotNull(entry);
+            assertEquals(CacheEntryStatus.VALID, entry.getStatus());
+            // The entries of table a come and go.
+            entry = cache.lookup(lookupInfo("a", i % NUM_QUERIES));
+            if (entry != null && entry.addReader()) {
+              assertNotNull(entry.getFetchWork());
+              entry.releaseReader();
+            }
+            i++;
+          }
+          return null;
+        }));
+      }
+
+      // Invalidate the entries of table a and add them back, as if the queries were run again.
+      Future<?> writer = executor.submit(() -> {
+        for (int round = 0; round < 200; round++) {
+          cache.notifyTableChanged("default", "a", System.currentTimeMillis());
+          for (int i = 0; i < NUM_QUERIES; i++) {
+            addEntry("a", i);
+          }
+        }
+        return null;
+      });
+      writer.get(60, TimeUnit.SECONDS);
+    } finally {
+      done.set(true);
+      executor.shutdown();
+    }
+    for (Future<?> reader : readers) {
+      reader.get(60, TimeUnit.SECONDS);
+    }
+
+    cache.notifyTableChanged("default", "a", System.currentTimeMillis());
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      assertNull(cache.lookup(lookupInfo("a", i)));
+      assertNotNull(cache.lookup(lookupInfo("b", i)));
+    }
+  }
+}
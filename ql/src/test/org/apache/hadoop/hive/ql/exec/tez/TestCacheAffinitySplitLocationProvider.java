@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.io.LlapCacheSummary;
+import org.apache.hadoop.hive.ql.io.HiveInputFormat;
+import org.apache.hadoop.hive.ql.io.orc.OrcInputFormat;
+import org.apache.hadoop.hive.ql.io.orc.OrcSplit;
+import org.apache.hadoop.mapred.FileSplit;
+import org.junit.Test;
+
+public class TestCacheAffinitySplitLocationProvider {
+  private static final List<String> locations = Arrays.asList("host0", "host1", "host2");
+
+  private static FileSplit createSplit(String path, long start, long length, Object fileKey)
+      throws IOException {
+    FileSplit split = TestHostAffinitySplitLocationProvider.createMockFileSplit(
+        true, path, start, length, new String[] { "dn0" });
+    doReturn(fileKey).when((OrcSplit) split).getFileKey();
+    // The splits of a query reach the location provider wrapped.
+    return new HiveInputFormat.HiveInputSplit(split, OrcInputFormat.class.getName());
+  }
+
+  private static String hashedLocation(String path, long start) {
+    return locations.get(HostAffinitySplitLocationProvider.determineLocation(
+        locations, path, start, path));
+  }
+
+  @Test
+  public void testPlacesOnCachedNode() throws IOException {
+    String hashed = hashedLocation("path1", 0);
+    int cachedIx = (locations.indexOf(hashed) + 1) % locations.size();
+    List<LlapCacheSummary> summaries = new ArrayList<>();
+    for (int i = 0; i < locations.size(); ++i) {
+      LlapCacheSummary summary = new LlapCacheSummary();
+      if (i == cachedIx) {
+        summary.addRange("1", 0, 800);
+      }
+      summaries.add(summary);
+    }
+    CacheAffinitySplitLocationProvider provider = new CacheAffinitySplitLocationProvider(
+        locations, summaries, ConfVars.LLAP_CLIENT_CACHE_AFFINITY_LOAD_SLACK.defaultFloatVal);
+
+    FileSplit split = createSplit("path1", 0, 1000, 1L);
+    assertArrayEquals(new String[] { locations.get(cachedIx) }, provider.getLocations(split));
+    // The placement is stable.
+    assertArrayEquals(new String[] { locations.get(cachedIx) }, provider.getLocations(split));
+    // Without a file id, the split is hashed.
+    assertArrayEquals(new String[] { hashed },
+        provider.getLocations(createSplit("path1", 0, 999, null)));
+
+    assertEquals(1999, provider.getSplitBytes());
+    assertEquals(800, provider.getCachedBytes());
+    assertEquals(800, provider.getLocalCachedBytes());
+  }
+
+  @Test
+  public void testLoadBound() throws IOException {
+    List<LlapCacheSummary> summaries = new ArrayList<>();
+    for (int i = 0; i < locations.size(); ++i) {
+      LlapCacheSummary summary = new LlapCacheSummary();
+      if (i == 0) {
+        // Everything is cached on one node.
+        summary.addRange("1", 0, 100000);
+      }
+      summaries.add(summary);
+    }
+    CacheAffinitySplitLocationProvider provider =
+        new CacheAffinitySplitLocationProvider(locations, summaries, 0.5);
+    int onCachedNode = 0;
+    for (int i = 0; i < 30; ++i) {
+      String[] result = provider.getLocations(createSplit("path1", i * 1000, 1000, 1L));
+      if (locations.get(0).equals(result[0])) {
+        ++onCachedNode;
+      }
+    }
+    // About 1.5x of the average share of 10 splits, give or take the hashed ones.
+    assertEquals(30000, provider.getSplitBytes());
+    assertEquals(30000, provider.getCachedBytes());
+    assertEquals(onCachedNode * 1000L, provider.getLocalCachedBytes());
+    assertTrue("" + onCachedNode, onCachedNode >= 10 && onCachedNode < 30);
+  }
+
+  @Test
+  public void testUnknownSummaries() throws IOException {
+    CacheAffinitySplitLocationProvider provider = new CacheAffinitySplitLocationProvider(
+        locations, Arrays.<LlapCacheSummary>asList(null, null, null), 0.25);
+    assertArrayEquals(new String[] { hashedLocation("path2", 5000) },
+        provider.getLocations(createSplit("path2", 5000, 1000, 2L)));
+    assertEquals(0, provider.getCachedBytes());
+  }
+}
@@ -21,6 +21,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.management.ManagementFactory;
@@ -443,6 +444,96 @@ public void remove() {
     }
   }
 
+  @Test
+  public void testMemoryPressureSpill() throws HiveException {
+    testMemoryPressureSpill(false);
+  }
+
+  @Test
+  public void testMemoryPressureSpillNativeHashTable() throws HiveException {
+    testMemoryPressureSpill(true);
+  }
+
+  private void testMemoryPressureSpill(boolean isNativeHashTable) throws HiveException {
+    // 20000 distinct keys, each seen 5 times, do not fit into 100Kb
+    List<Object> keys = new ArrayList<Object>();
+    List<Object> values = new ArrayList<Object>();
+    for (long i = 0; i < 100000; ++i) {
+      keys.add(i % 20000);
+      values.add(i);
+    }
+
+    Map<Long, Long> expected = sumByKey(keys, values, 0.0f, false, isNativeHashTable);
+    assertEquals(20000, expected.size());
+
+    MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    long maxMemory = memoryMXBean.getHeapMemoryUsage().getMax();
+    try {
+      hconf.setBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED, true);
+      Map<Long, Long> result =
+          sumByKey(keys, values, 100.0f*1024.0f/maxMemory, true, isNativeHashTable);
+      assertEquals(expected, result);
+    } finally {
+      hconf.setBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED, false);
+    }
+  }
+
+  private Map<Long, Long> sumByKey(List<Object> keys, List<Object> values, float threshold,
+      boolean expectSpill, boolean isNativeHashTable) throws HiveException {
+    List<String> mapColumnNames = new ArrayList<String>();
+    mapColumnNames.add("Key");
+    mapColumnNames.add("Value");
+    VectorizationContext ctx = new VectorizationContext("name", mapColumnNames);
+
+    Pair<GroupByDesc,VectorGroupByDesc> pair = buildKeyGroupByDesc (ctx, "sum",
+        "Value", TypeInfoFactory.longTypeInfo,
+        new String[] {"Key"},
+        new TypeInfo[] {TypeInfoFactory.longTypeInfo});
+    GroupByDesc desc = pair.left;
+    VectorGroupByDesc vectorDesc = pair.right;
+    desc.setMemoryThreshold(threshold);
+    vectorDesc.setIsNativeHashTableEnabled(isNativeHashTable);
+
+    CompilationOpContext cCtx = new CompilationOpContext();
+
+    Operator<? extends OperatorDesc> groupByOp = OperatorFactory.get(cCtx, desc);
+
+    VectorGroupByOperator vgo =
+        (VectorGroupByOperator) Vectorizer.vectorizeGroupByOperator(groupByOp, ctx, vectorDesc);
+    assertEquals(isNativeHashTable ? VectorGroupByDesc.HashTableKeyType.LONG
+        : VectorGroupByDesc.HashTableKeyType.NONE, vectorDesc.getHashTableKeyType());
+
+    FakeCaptureVectorToRowOutputOperator out = FakeCaptureVectorToRowOutputOperator.addCaptureOutputChild(cCtx, vgo);
+    vgo.initialize(hconf, null);
+
+    // Each key is emitted once, with its whole sum
+    final Map<Long, Long> result = new HashMap<Long, Long>();
+    out.setOutputInspector(new FakeCaptureVectorToRowOutputOperator.OutputInspector() {
+      @Override
+      public void inspectRow(Object row, int tag) throws HiveException {
+        Object[] fields = (Object[]) row;
+        long key = ((LongWritable) fields[0]).get();
+        long value = ((LongWritable) fields[1]).get();
+        assertNull("Key " + key + " emitted twice", result.put(key, value));
+      }
+    });
+
+    FakeVectorRowBatchFromObjectIterables data = new FakeVectorRowBatchFromObjectIterables(
+        100,
+        new String[] {"long", "long"},
+        keys,
+        values);
+    for (VectorizedRowBatch unit: data) {
+      vgo.process(unit,  0);
+    }
+    if (expectSpill) {
+      // The rows of the keys that did not fit were spilled rather than flushed as partial sums
+      assertTrue(result.isEmpty());
+    }
+    vgo.close(false);
+    return result;
+  }
+
   @Test
   public void testRollupAggregation() throws HiveException {
 
@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby.fast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.fast.VectorGroupByFastHashTable.AggregationBufferAllocator;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestVectorGroupByFastHashTable {
+
+  private static final int CAPACITY = 8;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private static final AggregationBufferAllocator ALLOCATOR =
+      () -> new VectorAggregationBufferRow(new VectorAggregateExpression.AggregationBuffer[0]);
+
+  private static VectorizedRowBatch createBatch(int columnCount) {
+    return new VectorizedRowBatch(columnCount);
+  }
+
+  private static int countGroups(VectorGroupByFastHashTable table) {
+    int count = 0;
+    for (int slot = 0; slot < table.getSlotCount(); slot++) {
+      if (table.getAggregationBuffer(slot) != null) {
+        count++;
+      }
+    }
+    if (table.hasNullKey()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testLongKeys() throws Exception {
+    Random random = new Random(2234);
+
+    VectorGroupByFastLongHashTable table =
+        new VectorGroupByFastLongHashTable(0, CAPACITY, LOAD_FACTOR);
+
+    VectorizedRowBatch batch = createBatch(1);
+    LongColumnVector keyColVector = new LongColumnVector();
+    batch.cols[0] = keyColVector;
+
+    VectorAggregationBufferRow[] aggregationBuffers =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+    Map<Long, VectorAggregationBufferRow> expected = new HashMap<>();
+    VectorAggregationBufferRow expectedNull = null;
+
+    for (int b = 0; b < 20; b++) {
+      batch.reset();
+      batch.size = VectorizedRowBatch.DEFAULT_SIZE;
+      for (int i = 0; i < batch.size; i++) {
+        if (random.nextInt(50) == 0) {
+          keyColVector.noNulls = false;
+          keyColVector.isNull[i] = true;
+        } else {
+          keyColVector.vector[i] = random.nextInt(5000) - 2500;
+        }
+      }
+      table.ensureCapacity(batch.size);
+      int added = table.findOrAdd(batch, aggregationBuffers, ALLOCATOR);
+      int expectedAdded = 0;
+      for (int i = 0; i < batch.size; i++) {
+        VectorAggregationBufferRow aggregationBuffer = aggregationBuffers[i];
+        assertNotNull(aggregationBuffer);
+        if (!keyColVector.noNulls && keyColVector.isNull[i]) {
+          if (expectedNull == null) {
+            expectedNull = aggregationBuffer;
+            expectedAdded++;
+          }
+          assertSame(expectedNull, aggregationBuffer);
+        } else {
+          VectorAggregationBufferRow previous = expected.get(keyColVector.vector[i]);
+          if (previous == null) {
+            expected.put(keyColVector.vector[i], aggregationBuffer);
+            expectedAdded++;
+          } else {
+            assertSame(previous, aggregationBuffer);
+          }
+        }
+      }
+      assertEquals(expectedAdded, added);
+    }
+
+    assertEquals(expected.size() + (expectedNull == null ? 0 : 1), table.size());
+    assertEquals(table.size(), countGroups(table));
+
+    // Read the keys back.
+    VectorizedRowBatch outputBatch = createBatch(1);
+    LongColumnVector outputColVector = new LongColumnVector();
+    outputBatch.cols[0] = outputColVector;
+    for (int slot = 0; slot < table.getSlotCount(); slot++) {
+      VectorAggregationBufferRow aggregationBuffer = table.getAggregationBuffer(slot);
+      if (aggregationBuffer != null) {
+        table.assignKey(slot, outputBatch, 0);
+        assertSame(expected.get(outputColVector.vector[0]), aggregationBuffer);
+      }
+    }
+    if (expectedNull != null) {
+      table.assignKey(VectorGroupByFastHashTable.NULL_KEY_SLOT, outputBatch, 1);
+      assertTrue(outputColVector.isNull[1]);
+    }
+
+    table.clear();
+    assertEquals(0, table.size());
+    assertEquals(0, countGroups(table));
+  }
+
+  @Test
+  public void testLongKeysRepeating() throws Exception {
+    VectorGroupByFastLongHashTable table =
+        new VectorGroupByFastLongHashTable(0, CAPACITY, LOAD_FACTOR);
+
+    VectorizedRowBatch batch = createBatch(1);
+    LongColumnVector keyColVector = new LongColumnVector();
+    batch.cols[0] = keyColVector;
+    keyColVector.isRepeating = true;
+    keyColVector.vector[0] = 42;
+    batch.size = 100;
+
+    VectorAggregationBufferRow[] aggregationBuffers =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+    table.ensureCapacity(batch.size);
+    assertEquals(1, table.findOrAdd(batch, aggregationBuffers, ALLOCATOR));
+    for (int i = 1; i < batch.size; i++) {
+      assertSame(aggregationBuffers[0], aggregationBuffers[i]);
+    }
+    assertEquals(0, table.findOrAdd(batch, aggregationBuffers, ALLOCATOR));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testStringKeys() throws Exception {
+    Random random = new Random(9912);
+
+    VectorGroupByFastStringHashTable table =
+        new VectorGroupByFastStringHashTable(0, CAPACITY, LOAD_FACTOR);
+
+    VectorizedRowBatch batch = createBatch(1);
+    BytesColumnVector keyColVector = new BytesColumnVector();
+    batch.cols[0] = keyColVector;
+
+    VectorAggregationBufferRow[] aggregationBuffers =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+    Map<String, VectorAggregationBufferRow> expected = new HashMap<>();
+
+    for (int b = 0; b < 10; b++) {
+      batch.reset();
+      keyColVector.initBuffer();
+      batch.size = VectorizedRowBatch.DEFAULT_SIZE;
+
+      // Exercise the selected path.
+      batch.selectedInUse = true;
+      int selectedCount = 0;
+      for (int i = 0; i < batch.size; i++) {
+        byte[] bytes = ("key" + random.nextInt(3000)).getBytes(StandardCharsets.UTF_8);
+        keyColVector.setVal(i, bytes);
+        if (random.nextBoolean()) {
+          batch.selected[selectedCount++] = i;
+        }
+      }
+      batch.size = selectedCount;
+
+      table.ensureCapacity(batch.size);
+      table.findOrAdd(batch, aggregationBuffers, ALLOCATOR);
+      for (int logical = 0; logical < batch.size; logical++) {
+        int i = batch.selected[logical];
+        String key =
+            new String(keyColVector.vector[i], keyColVector.start[i], keyColVector.length[i],
+                StandardCharsets.UTF_8);
+        VectorAggregationBufferRow previous = expected.get(key);
+        if (previous == null) {
+          expected.put(key, aggregationBuffers[logical]);
+        } else {
+          assertSame(previous, aggregationBuffers[logical]);
+        }
+      }
+    }
+
+    assertEquals(expected.size(), table.size());
+
+    VectorizedRowBatch outputBatch = createBatch(1);
+    BytesColumnVector outputColVector = new BytesColumnVector();
+    outputBatch.cols[0] = outputColVector;
+    outputColVector.initBuffer();
+    for (int slot = 0; slot < table.getSlotCount(); slot++) {
+      VectorAggregationBufferRow aggregationBuffer = table.getAggregationBuffer(slot);
+      if (aggregationBuffer != null) {
+        table.assignKey(slot, outputBatch, 0);
+        String key =
+            new String(outputColVector.vector[0], outputColVector.start[0],
+                outputColVector.length[0], StandardCharsets.UTF_8);
+        assertSame(expected.get(key), aggregationBuffer);
+      }
+    }
+  }
+
+  @Test
+  public void testMultiKeys() throws Exception {
+    Random random = new Random(7719);
+
+    TypeInfo[] keyTypeInfos = { TypeInfoFactory.longTypeInfo, TypeInfoFactory.stringTypeInfo };
+    VectorGroupByFastMultiKeyHashTable table =
+        new VectorGroupByFastMultiKeyHashTable(
+            keyTypeInfos, new int[] { 0, 1 }, CAPACITY, LOAD_FACTOR);
+
+    VectorizedRowBatch batch = createBatch(2);
+    LongColumnVector longColVector = new LongColumnVector();
+    BytesColumnVector bytesColVector = new BytesColumnVector();
+    batch.cols[0] = longColVector;
+    batch.cols[1] = bytesColVector;
+
+    VectorAggregationBufferRow[] aggregationBuffers =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+    Map<String, VectorAggregationBufferRow> expected = new HashMap<>();
+
+    for (int b = 0; b < 5; b++) {
+      batch.reset();
+      bytesColVector.initBuffer();
+      batch.size = VectorizedRowBatch.DEFAULT_SIZE;
+      for (int i = 0; i < batch.size; i++) {
+        if (random.nextInt(20) == 0) {
+          longColVector.noNulls = false;
+          longColVector.isNull[i] = true;
+        } else {
+          longColVector.vector[i] = random.nextInt(30);
+        }
+        bytesColVector.setVal(i, ("v" + random.nextInt(30)).getBytes(StandardCharsets.UTF_8));
+      }
+
+      table.ensureCapacity(batch.size);
+      table.findOrAdd(batch, aggregationBuffers, ALLOCATOR);
+      for (int i = 0; i < batch.size; i++) {
+        String key =
+            (longColVector.isNull[i] ? "NULL" : Long.toString(longColVector.vector[i])) + "|" +
+            new String(bytesColVector.vector[i], bytesColVector.start[i],
+                bytesColVector.length[i], StandardCharsets.UTF_8);
+        VectorAggregationBufferRow previous = expected.get(key);
+        if (previous == null) {
+          expected.put(key, aggregationBuffers[i]);
+        } else {
+          assertSame(previous, aggregationBuffers[i]);
+        }
+      }
+    }
+
+    assertEquals(expected.size(), table.size());
+    assertFalse(table.hasNullKey());
+
+    // The keys are deserialized back into the first output batch columns.
+    VectorizedRowBatch outputBatch = createBatch(2);
+    LongColumnVector outputLongColVector = new LongColumnVector();
+    BytesColumnVector outputBytesColVector = new BytesColumnVector();
+    outputBatch.cols[0] = outputLongColVector;
+    outputBatch.cols[1] = outputBytesColVector;
+    outputBytesColVector.initBuffer();
+    for (int slot = 0; slot < table.getSlotCount(); slot++) {
+      VectorAggregationBufferRow aggregationBuffer = table.getAggregationBuffer(slot);
+      if (aggregationBuffer != null) {
+        table.assignKey(slot, outputBatch, 0);
+        String key =
+            (outputLongColVector.isNull[0] ?
+                "NULL" : Long.toString(outputLongColVector.vector[0])) + "|" +
+            new String(outputBytesColVector.vector[0], outputBytesColVector.start[0],
+                outputBytesColVector.length[0], StandardCharsets.UTF_8);
+        assertSame(expected.get(key), aggregationBuffer);
+      }
+    }
+  }
+
+  @Test
+  public void testLookupOnly() throws Exception {
+    VectorGroupByFastLongHashTable table =
+        new VectorGroupByFastLongHashTable(0, CAPACITY, LOAD_FACTOR);
+
+    VectorizedRowBatch batch = createBatch(1);
+    LongColumnVector keyColVector = new LongColumnVector();
+    batch.cols[0] = keyColVector;
+    VectorAggregationBufferRow[] aggregationBuffers =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+
+    batch.size = 2;
+    keyColVector.vector[0] = 10;
+    keyColVector.vector[1] = 20;
+    table.ensureCapacity(batch.size);
+    assertEquals(2, table.findOrAdd(batch, aggregationBuffers, ALLOCATOR));
+    VectorAggregationBufferRow buffer10 = aggregationBuffers[0];
+
+    // Without an allocator, present keys are found and absent keys (including NULL) are not added.
+    batch.reset();
+    batch.size = 3;
+    keyColVector.vector[0] = 30;
+    keyColVector.vector[1] = 10;
+    keyColVector.noNulls = false;
+    keyColVector.isNull[2] = true;
+    assertEquals(0, table.findOrAdd(batch, aggregationBuffers, null));
+    assertNull(aggregationBuffers[0]);
+    assertSame(buffer10, aggregationBuffers[1]);
+    assertNull(aggregationBuffers[2]);
+    assertEquals(2, table.size());
+    assertFalse(table.hasNullKey());
+  }
+}
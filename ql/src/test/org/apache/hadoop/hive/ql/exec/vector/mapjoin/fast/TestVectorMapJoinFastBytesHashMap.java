@@ -18,16 +18,22 @@
 
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
 import org.apache.hadoop.hive.ql.exec.mapjoin.MapJoinMemoryExhaustionError;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.CheckFastHashTable.VerifyFastBytesHashMap;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -271,6 +277,121 @@ public void testMultipleKeysMultipleValue() throws Exception {
     addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
   }
 
+  @Test
+  public void testMoveToSlabs() throws Exception {
+    random = new Random(5091);
+
+    VectorMapJoinFastMultiKeyHashMap map =
+        new VectorMapJoinFastMultiKeyHashMap(
+            false,CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+
+    VerifyFastBytesHashMap verifyTable = new VerifyFastBytesHashMap();
+
+    int keyCount = 100 + random.nextInt(1000);
+    addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
+
+    final AtomicInteger liveSlabs = new AtomicInteger();
+    WriteBuffers.SlabAllocator allocator = new WriteBuffers.SlabAllocator() {
+      @Override
+      public ByteBuffer allocate(int size) {
+        liveSlabs.incrementAndGet();
+        return ByteBuffer.allocateDirect(size);
+      }
+
+      @Override
+      public void release(ByteBuffer slab) {
+        liveSlabs.decrementAndGet();
+      }
+    };
+    assertTrue(map.moveToSlabs(allocator) > 0);
+    assertTrue(liveSlabs.get() > 0);
+    verifyTable.verify(map);
+
+    map.releaseSlabs();
+    assertEquals(0, liveSlabs.get());
+  }
+
+  @Test
+  public void testLookupBatch() throws Exception {
+    random = new Random(7103);
+
+    VectorMapJoinFastMultiKeyHashMap map =
+        new VectorMapJoinFastMultiKeyHashMap(
+            false,CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+
+    VerifyFastBytesHashMap verifyTable = new VerifyFastBytesHashMap();
+
+    int keyCount = 100 + random.nextInt(1000);
+    addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
+
+    // Half existing keys, half (most likely) missing keys.  The keys share one buffer, like the
+    // serialized keys of a batch.
+    final int size = 1024;
+    byte[] buffer = new byte[size * MAX_KEY_LENGTH];
+    byte[][] keyBytes = new byte[size][];
+    int[] keyStarts = new int[size];
+    int[] keyLengths = new int[size];
+    int[] verifyIndices = new int[size];
+    int bufferLength = 0;
+    for (int i = 0; i < size; i++) {
+      byte[] key;
+      if (random.nextBoolean()) {
+        verifyIndices[i] = random.nextInt(verifyTable.getCount());
+        key = verifyTable.getKey(verifyIndices[i]);
+      } else {
+        do {
+          key = new byte[random.nextInt(MAX_KEY_LENGTH)];
+          random.nextBytes(key);
+        } while (verifyTable.contains(key));
+        verifyIndices[i] = -1;
+      }
+      System.arraycopy(key, 0, buffer, bufferLength, key.length);
+      keyBytes[i] = buffer;
+      keyStarts[i] = bufferLength;
+      keyLengths[i] = key.length;
+      bufferLength += key.length;
+    }
+
+    VectorMapJoinHashMapResult[] hashMapResults = new VectorMapJoinHashMapResult[size];
+    for (int i = 0; i < size; i++) {
+      hashMapResults[i] = map.createHashMapResult();
+    }
+    JoinUtil.JoinResult[] joinResults = new JoinUtil.JoinResult[size];
+
+    map.lookupBatch(keyBytes, keyStarts, keyLengths, null, size, hashMapResults, joinResults);
+    for (int i = 0; i < size; i++) {
+      verifyLookupBatchResult(verifyTable, verifyIndices[i], hashMapResults[i], joinResults[i]);
+    }
+
+    // Every third key, with a partial last group.
+    int[] selected = new int[size];
+    int selectedSize = 0;
+    for (int i = 0; i < size; i += 3) {
+      selected[selectedSize++] = i;
+    }
+    joinResults = new JoinUtil.JoinResult[size];
+    map.lookupBatch(keyBytes, keyStarts, keyLengths, selected, selectedSize,
+        hashMapResults, joinResults);
+    for (int i = 0; i < size; i++) {
+      if (i % 3 == 0) {
+        verifyLookupBatchResult(verifyTable, verifyIndices[i], hashMapResults[i], joinResults[i]);
+      } else {
+        assertNull(joinResults[i]);
+      }
+    }
+  }
+
+  private void verifyLookupBatchResult(VerifyFastBytesHashMap verifyTable, int verifyIndex,
+      VectorMapJoinHashMapResult hashMapResult, JoinUtil.JoinResult joinResult) {
+    if (verifyIndex == -1) {
+      assertEquals(JoinUtil.JoinResult.NOMATCH, joinResult);
+      assertFalse(hashMapResult.hasRows());
+    } else {
+      assertEquals(JoinUtil.JoinResult.MATCH, joinResult);
+      CheckFastHashTable.verifyHashMapValues(hashMapResult, verifyTable.getValues(verifyIndex));
+    }
+  }
+
   @Test
   public void testLargeAndExpand() throws Exception {
     random = new Random(21111);
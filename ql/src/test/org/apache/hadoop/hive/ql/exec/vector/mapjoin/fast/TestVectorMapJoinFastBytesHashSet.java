@@ -251,4 +251,39 @@ public void testLargeAndExpand() throws Exception {
     int keyCount = 1000;
     addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
   }
+
+  @Test
+  public void testBloomFilter() throws Exception {
+    random = new Random(3323);
+
+    VectorMapJoinFastMultiKeyHashSet map =
+        new VectorMapJoinFastMultiKeyHashSet(
+            false, CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+
+    VerifyFastBytesHashSet verifyTable = new VerifyFastBytesHashSet();
+
+    int keyCount = 100 + random.nextInt(1000);
+    for (int i = 0; i < keyCount; i++) {
+      // Include some keys long enough to need a separate key length.
+      byte[] key = new byte[random.nextInt(i % 10 == 0 ? 3 * MAX_KEY_LENGTH : MAX_KEY_LENGTH)];
+      random.nextBytes(key);
+      if (!verifyTable.contains(key)) {
+        map.testPutRow(key);
+        verifyTable.add(key);
+      }
+    }
+    map.testPutRow(new byte[0]);
+    verifyTable.add(new byte[0]);
+
+    assertNull(map.getBloomFilter());
+    map.buildBloomFilter();
+    assertNotNull(map.getBloomFilter());
+
+    // No false negatives.
+    for (int i = 0; i < verifyTable.getCount(); i++) {
+      byte[] key = verifyTable.getKey(i);
+      assertTrue(map.getBloomFilter().testBytes(key, 0, key.length));
+    }
+    verifyTable.verify(map);
+  }
 }
@@ -19,9 +19,12 @@
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
 import org.apache.hadoop.hive.ql.exec.mapjoin.MapJoinMemoryExhaustionError;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
@@ -29,6 +32,7 @@
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
 import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
 
 import org.junit.Before;
 import org.junit.Ignore;
@@ -272,6 +276,133 @@ public void testMultipleKeysMultipleValue() throws Exception {
     addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
   }
 
+  @Test
+  public void testMoveToSlabs() throws Exception {
+    random = new Random(4417);
+
+    VectorMapJoinFastLongHashMap map =
+        new VectorMapJoinFastLongHashMap(
+            false, false, HashTableKeyType.LONG, CAPACITY, LOAD_FACTOR, WB_SIZE, -1, tableDesc);
+
+    VerifyFastLongHashMap verifyTable = new VerifyFastLongHashMap();
+
+    int keyCount = 100 + random.nextInt(1000);
+    addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
+
+    final AtomicInteger liveSlabs = new AtomicInteger();
+    WriteBuffers.SlabAllocator allocator = new WriteBuffers.SlabAllocator() {
+      @Override
+      public ByteBuffer allocate(int size) {
+        liveSlabs.incrementAndGet();
+        return ByteBuffer.allocateDirect(size);
+      }
+
+      @Override
+      public void release(ByteBuffer slab) {
+        liveSlabs.decrementAndGet();
+      }
+    };
+    assertTrue(map.moveToSlabs(allocator) > 0);
+    assertTrue(liveSlabs.get() > 0);
+    verifyTable.verify(map);
+
+    map.releaseSlabs();
+    assertEquals(0, liveSlabs.get());
+  }
+
+  @Test
+  public void testQueryOffHeapBytes() throws Exception {
+    random = new Random(2113);
+
+    VectorMapJoinFastLongHashMap map =
+        new VectorMapJoinFastLongHashMap(
+            false, false, HashTableKeyType.LONG, CAPACITY, LOAD_FACTOR, WB_SIZE, -1, tableDesc);
+
+    VerifyFastLongHashMap verifyTable = new VerifyFastLongHashMap();
+
+    int keyCount = 100 + random.nextInt(1000);
+    addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
+
+    HiveConf hconf = new HiveConf();
+    String queryId = "testQueryOffHeapBytes";
+    hconf.setVar(HiveConf.ConfVars.HIVEQUERYID, queryId);
+    long movedBytes = map.moveToSlabs(VectorMapJoinFastSlabAllocator.get(hconf));
+    assertTrue(movedBytes > 0);
+    assertTrue(VectorMapJoinFastSlabAllocator.getQueryAllocatedBytes(queryId) >= movedBytes);
+    verifyTable.verify(map);
+
+    VectorMapJoinFastSlabAllocator.releaseQuery(queryId);
+    assertEquals(0, VectorMapJoinFastSlabAllocator.getQueryAllocatedBytes(queryId));
+  }
+
+  @Test
+  public void testLookupBatch() throws Exception {
+    random = new Random(6022);
+
+    VectorMapJoinFastLongHashMap map =
+        new VectorMapJoinFastLongHashMap(
+            false, false, HashTableKeyType.LONG, CAPACITY, LOAD_FACTOR, WB_SIZE, -1, tableDesc);
+
+    VerifyFastLongHashMap verifyTable = new VerifyFastLongHashMap();
+
+    int keyCount = 100 + random.nextInt(1000);
+    addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
+
+    // Half existing keys, half (most likely) missing keys.
+    final int size = 1024;
+    long[] keys = new long[size];
+    int[] verifyIndices = new int[size];
+    for (int i = 0; i < size; i++) {
+      if (random.nextBoolean()) {
+        verifyIndices[i] = random.nextInt(verifyTable.getCount());
+        keys[i] = verifyTable.getKey(verifyIndices[i]);
+      } else {
+        do {
+          keys[i] = random.nextLong();
+        } while (verifyTable.contains(keys[i]));
+        verifyIndices[i] = -1;
+      }
+    }
+
+    VectorMapJoinHashMapResult[] hashMapResults = new VectorMapJoinHashMapResult[size];
+    for (int i = 0; i < size; i++) {
+      hashMapResults[i] = map.createHashMapResult();
+    }
+    JoinUtil.JoinResult[] joinResults = new JoinUtil.JoinResult[size];
+
+    map.lookupBatch(keys, null, size, hashMapResults, joinResults);
+    for (int i = 0; i < size; i++) {
+      verifyLookupBatchResult(verifyTable, verifyIndices[i], hashMapResults[i], joinResults[i]);
+    }
+
+    // Every third key, with a partial last group.
+    int[] selected = new int[size];
+    int selectedSize = 0;
+    for (int i = 0; i < size; i += 3) {
+      selected[selectedSize++] = i;
+    }
+    joinResults = new JoinUtil.JoinResult[size];
+    map.lookupBatch(keys, selected, selectedSize, hashMapResults, joinResults);
+    for (int i = 0; i < size; i++) {
+      if (i % 3 == 0) {
+        verifyLookupBatchResult(verifyTable, verifyIndices[i], hashMapResults[i], joinResults[i]);
+      } else {
+        assertNull(joinResults[i]);
+      }
+    }
+  }
+
+  private void verifyLookupBatchResult(VerifyFastLongHashMap verifyTable, int verifyIndex,
+      VectorMapJoinHashMapResult hashMapResult, JoinUtil.JoinResult joinResult) {
+    if (verifyIndex == -1) {
+      assertEquals(JoinUtil.JoinResult.NOMATCH, joinResult);
+      assertFalse(hashMapResult.hasRows());
+    } else {
+      assertEquals(JoinUtil.JoinResult.MATCH, joinResult);
+      CheckFastHashTable.verifyHashMapValues(hashMapResult, verifyTable.getValues(verifyIndex));
+    }
+  }
+
   @Test
   public void testLargeAndExpand() throws Exception {
     random = new Random(20);
@@ -258,4 +258,42 @@ public void testLargeAndExpand() throws Exception {
     int keyCount = 1000;
     addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
   }
+
+  @Test
+  public void testBloomFilter() throws Exception {
+    random = new Random(7321);
+
+    VectorMapJoinFastLongHashSet map =
+        new VectorMapJoinFastLongHashSet(
+            false, false, HashTableKeyType.LONG, CAPACITY, LOAD_FACTOR, WB_SIZE, -1, keyTableDesc);
+
+    VerifyFastLongHashSet verifyTable = new VerifyFastLongHashSet();
+
+    int keyCount = 100 + random.nextInt(1000);
+    for (int i = 0; i < keyCount; i++) {
+      long key = random.nextLong();
+      if (!verifyTable.contains(key)) {
+        map.testPutRow(key);
+        verifyTable.add(key);
+      }
+    }
+
+    assertNull(map.getBloomFilter());
+    map.buildBloomFilter();
+    assertNotNull(map.getBloomFilter());
+
+    // No false negatives, and mostly true negatives.
+    int falsePositiveCount = 0;
+    for (int i = 0; i < verifyTable.getCount(); i++) {
+      assertTrue(map.getBloomFilter().testLong(verifyTable.getKey(i)));
+    }
+    for (int i = 0; i < 1000; i++) {
+      long key = random.nextLong();
+      if (!verifyTable.contains(key) && map.getBloomFilter().testLong(key)) {
+        falsePositiveCount++;
+      }
+    }
+    assertTrue("Too many false positives " + falsePositiveCount, falsePositiveCount < 200);
+    verifyTable.verify(map);
+  }
 }
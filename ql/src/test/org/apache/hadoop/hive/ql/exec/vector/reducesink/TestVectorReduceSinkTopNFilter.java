@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.reducesink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Test;
+
+/**
+ * Unit test of VectorReduceSinkTopNFilter.
+ */
+public class TestVectorReduceSinkTopNFilter {
+
+  private static VectorizedRowBatch longBatch(long... values) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(1);
+    LongColumnVector col = new LongColumnVector();
+    System.arraycopy(values, 0, col.vector, 0, values.length);
+    batch.cols[0] = col;
+    batch.size = values.length;
+    return batch;
+  }
+
+  private static List<Long> selectedLongs(VectorizedRowBatch batch) {
+    LongColumnVector col = (LongColumnVector) batch.cols[0];
+    List<Long> result = new ArrayList<>();
+    for (int i = 0; i < batch.size; i++) {
+      result.add(col.vector[batch.selectedInUse ? batch.selected[i] : i]);
+    }
+    return result;
+  }
+
+  @Test
+  public void testUnsupportedTypes() {
+    assertNull(VectorReduceSinkTopNFilter.create(TypeInfoFactory.timestampTypeInfo, 10, false));
+    assertNull(VectorReduceSinkTopNFilter.create(TypeInfoFactory.longTypeInfo, 0, false));
+  }
+
+  @Test
+  public void testAscending() {
+    VectorReduceSinkTopNFilter filter =
+        VectorReduceSinkTopNFilter.create(TypeInfoFactory.longTypeInfo, 3, false);
+    VectorizedRowBatch batch = longBatch(50, 40, 30, 60, 20, 30, 70, 10);
+    filter.filter(batch, batch.cols[0]);
+    // The first 3 rows fill the heap; after that only rows not worse than the threshold remain.
+    assertEquals(Arrays.asList(50L, 40L, 30L, 20L, 30L, 10L), selectedLongs(batch));
+
+    batch = longBatch(25, 30, 5);
+    filter.filter(batch, batch.cols[0]);
+    assertEquals(Arrays.asList(25L, 5L), selectedLongs(batch));
+    assertEquals(11, filter.getTotal());
+    assertEquals(3, filter.getFiltered());
+  }
+
+  @Test
+  public void testDescendingWithSelected() {
+    VectorReduceSinkTopNFilter filter =
+        VectorReduceSinkTopNFilter.create(TypeInfoFactory.intTypeInfo, 2, true);
+    VectorizedRowBatch batch = longBatch(1, 100, 2, 3, 200, 4);
+    batch.selectedInUse = true;
+    batch.selected[0] = 1;
+    batch.selected[1] = 2;
+    batch.selected[2] = 3;
+    batch.selected[3] = 5;
+    batch.size = 4;
+    filter.filter(batch, batch.cols[0]);
+    assertEquals(Arrays.asList(100L, 2L, 3L, 4L), selectedLongs(batch));
+    batch = longBatch(2, 3, 4, 5);
+    filter.filter(batch, batch.cols[0]);
+    assertEquals(Arrays.asList(4L, 5L), selectedLongs(batch));
+  }
+
+  @Test
+  public void testNullsAndRepeating() {
+    VectorReduceSinkTopNFilter filter =
+        VectorReduceSinkTopNFilter.create(TypeInfoFactory.longTypeInfo, 1, false);
+    VectorizedRowBatch batch = longBatch(5, 7, 9);
+    LongColumnVector col = (LongColumnVector) batch.cols[0];
+    col.noNulls = false;
+    col.isNull[1] = true;
+    filter.filter(batch, col);
+    assertEquals(Arrays.asList(5L, 7L), selectedLongs(batch));
+
+    batch = longBatch(8, 8, 8);
+    batch.cols[0].isRepeating = true;
+    filter.filter(batch, batch.cols[0]);
+    assertEquals(0, batch.size);
+  }
+
+  @Test
+  public void testThresholdOnly() {
+    VectorReduceSinkTopNFilter filter =
+        VectorReduceSinkTopNFilter.create(TypeInfoFactory.longTypeInfo, 2, false);
+    VectorizedRowBatch batch = longBatch(3, 1);
+    filter.filterByThreshold(batch, batch.cols[0]);
+    assertEquals(2, batch.size); // No threshold yet.
+    filter.filter(batch, batch.cols[0]);
+    batch = longBatch(0, 3, 4);
+    filter.filterByThreshold(batch, batch.cols[0]);
+    assertEquals(Arrays.asList(0L, 3L), selectedLongs(batch));
+    // The threshold was not lowered by 0, so 3 still passes.
+    batch = longBatch(3);
+    filter.filterByThreshold(batch, batch.cols[0]);
+    assertEquals(1, batch.size);
+  }
+
+  @Test
+  public void testDouble() {
+    VectorReduceSinkTopNFilter filter =
+        VectorReduceSinkTopNFilter.create(TypeInfoFactory.doubleTypeInfo, 2, false);
+    VectorizedRowBatch batch = new VectorizedRowBatch(1);
+    DoubleColumnVector col = new DoubleColumnVector();
+    double[] values = { Double.NaN, 1.5, -2.0, 0.5, Double.NaN, 3.0 };
+    System.arraycopy(values, 0, col.vector, 0, values.length);
+    batch.cols[0] = col;
+    batch.size = values.length;
+    filter.filter(batch, col);
+    assertEquals(4, batch.size);
+    assertEquals(0.5, col.vector[batch.selected[3]], 0.0);
+  }
+
+  @Test
+  public void testBytesMatchesSort() {
+    Random random = new Random(1234);
+    int topN = 10;
+    VectorReduceSinkTopNFilter filter =
+        VectorReduceSinkTopNFilter.create(TypeInfoFactory.stringTypeInfo, topN, false);
+    List<String> all = new ArrayList<>();
+    List<String> kept = new ArrayList<>();
+    for (int b = 0; b < 20; b++) {
+      VectorizedRowBatch batch = new VectorizedRowBatch(1);
+      BytesColumnVector col = new BytesColumnVector();
+      col.initBuffer();
+      batch.cols[0] = col;
+      for (int i = 0; i < VectorizedRowBatch.DEFAULT_SIZE; i++) {
+        String value = Integer.toString(random.nextInt(1000000));
+        all.add(value);
+        col.setVal(i, value.getBytes(StandardCharsets.UTF_8));
+      }
+      batch.size = VectorizedRowBatch.DEFAULT_SIZE;
+      filter.filter(batch, col);
+      for (int i = 0; i < batch.size; i++) {
+        int row = batch.selectedInUse ? batch.selected[i] : i;
+        kept.add(new String(col.vector[row], col.start[row], col.length[row],
+            StandardCharsets.UTF_8));
+      }
+    }
+    all.sort(null);
+    kept.sort(null);
+    // The true top N were all kept, and most of the other rows were dropped.
+    assertEquals(all.subList(0, topN), kept.subList(0, topN));
+    assertTrue(kept.size() < all.size() / 10);
+  }
+}
@@ -19,10 +19,18 @@
 package org.apache.hadoop.hive.ql.io.parquet;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.io.CacheTag;
+import org.apache.hadoop.hive.common.io.FileMetadataCache;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBufferOrBuffers;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.io.IOConstants;
 import org.apache.hadoop.hive.ql.io.parquet.vector.VectorizedParquetRecordReader;
 import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapreduce.Job;
@@ -34,6 +42,11 @@
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.parquet.hadoop.api.ReadSupport.PARQUET_READ_SCHEMA;
 
@@ -147,4 +160,139 @@ public void testNullSplitForParquetReader() throws Exception {
     TestVectorizedParquetRecordReader testReader = new TestVectorizedParquetRecordReader(fsplit, jobConf);
     Assert.assertNull("Test should return null split from getSplit() method", testReader.getSplit(fsplit, jobConf));
   }
+
+  /**
+   * Keeps the footers on the heap, and counts the lookups and insertions.
+   */
+  private static class TestFileMetadataCache implements FileMetadataCache {
+    private final Map<Object, ByteBuffer> footers = new HashMap<>();
+    private int getCount = 0, putCount = 0;
+
+    private static MemoryBufferOrBuffers wrap(ByteBuffer data) {
+      MemoryBuffer buffer = new MemoryBuffer() {
+        @Override
+        public ByteBuffer getByteBufferRaw() {
+          return data;
+        }
+
+        @Override
+        public ByteBuffer getByteBufferDup() {
+          return data.duplicate();
+        }
+      };
+      return new MemoryBufferOrBuffers() {
+        @Override
+        public MemoryBuffer getSingleBuffer() {
+          return buffer;
+        }
+
+        @Override
+        public MemoryBuffer[] getMultipleBuffers() {
+          return null;
+        }
+      };
+    }
+
+    @Override
+    public MemoryBufferOrBuffers getFileMetadata(Object fileKey) {
+      ++getCount;
+      ByteBuffer data = footers.get(fileKey);
+      return data == null ? null : wrap(data);
+    }
+
+    @Override
+    public MemoryBufferOrBuffers putFileMetadata(Object fileKey, int length, InputStream is,
+        CacheTag tag, AtomicBoolean isStopped) throws IOException {
+      ++putCount;
+      byte[] data = new byte[length];
+      IOUtils.readFully(is, data, 0, length);
+      footers.put(fileKey, ByteBuffer.wrap(data));
+      return wrap(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public MemoryBufferOrBuffers putFileMetadata(Object fileKey, ByteBuffer tailBuffer,
+        CacheTag tag, AtomicBoolean isStopped) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MemoryBufferOrBuffers putFileMetadata(Object fileKey, int length, InputStream is) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MemoryBufferOrBuffers putFileMetadata(Object fileKey, ByteBuffer tailBuffer) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MemoryBufferOrBuffers putFileMetadata(Object fileKey, int length, InputStream is,
+        CacheTag tag) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MemoryBufferOrBuffers putFileMetadata(Object fileKey, ByteBuffer tailBuffer,
+        CacheTag tag) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void decRefBuffer(MemoryBufferOrBuffers buffer) {
+    }
+  }
+
+  private VectorizedParquetRecordReader createCachedReader(FileMetadataCache metadataCache)
+      throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(IOConstants.COLUMNS, "int32_field");
+    conf.set(IOConstants.COLUMNS_TYPES, "int");
+    conf.setBoolean(ColumnProjectionUtils.READ_ALL_COLUMNS, false);
+    conf.set(ColumnProjectionUtils.READ_COLUMN_IDS_CONF_STR, "0");
+    conf.set(PARQUET_READ_SCHEMA, "message test { required int32 int32_field;}");
+    HiveConf.setBoolVar(conf, HiveConf.ConfVars.HIVE_VECTORIZATION_ENABLED, true);
+    HiveConf.setVar(conf, HiveConf.ConfVars.PLAN, "//tmp");
+    Job vectorJob = new Job(conf, "read vector");
+    ParquetInputFormat.setInputPaths(vectorJob, file);
+    initialVectorizedRowBatchCtx(conf);
+
+    Configuration cacheConf = new Configuration();
+    HiveConf.setBoolVar(cacheConf, HiveConf.ConfVars.LLAP_CACHE_ALLOW_SYNTHETIC_FILEID, true);
+    HiveConf.setBoolVar(cacheConf, HiveConf.ConfVars.LLAP_TRACK_CACHE_USAGE, false);
+    return new VectorizedParquetRecordReader(
+        getFileSplit(vectorJob), new JobConf(conf), metadataCache, null, cacheConf);
+  }
+
+  private static int readInts(VectorizedParquetRecordReader reader) throws IOException {
+    VectorizedRowBatch batch = reader.createValue();
+    int c = 0;
+    try {
+      while (reader.next(NullWritable.get(), batch)) {
+        LongColumnVector vector = (LongColumnVector) batch.cols[0];
+        for (int i = 0; i < batch.size; i++) {
+          Assert.assertEquals(getIntValue(isDictionaryEncoding, c), vector.vector[i]);
+          c++;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return c;
+  }
+
+  @Test
+  public void testFooterFromMetadataCache() throws Exception {
+    TestFileMetadataCache metadataCache = new TestFileMetadataCache();
+
+    // getSplit reads the footer through the cache, and initialize reuses it
+    Assert.assertEquals(nElements, readInts(createCachedReader(metadataCache)));
+    Assert.assertEquals(1, metadataCache.putCount);
+    Assert.assertEquals(1, metadataCache.getCount);
+
+    // The next reader of the file finds the footer in the cache
+    Assert.assertEquals(nElements, readInts(createCachedReader(metadataCache)));
+    Assert.assertEquals(1, metadataCache.putCount);
+    Assert.assertEquals(2, metadataCache.getCount);
+  }
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.optimizer.signature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+
+import java.util.Arrays;
+
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptSchema;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.optimizer.calcite.HiveRelFactories;
+import org.apache.hadoop.hive.ql.optimizer.calcite.RelOptHiveTable;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRelPlanDigest {
+
+  @Mock
+  private RelOptSchema schemaMock;
+  @Mock
+  RelOptHiveTable tableMock;
+  @Mock
+  Table hiveTableMDMock;
+
+  private RelBuilder builder;
+
+  @SuppressWarnings("unused")
+  private static class MyRecord {
+    public int f1;
+    public int f2;
+    public int f3;
+  }
+
+  @Before
+  public void before() {
+    HepPlanner planner = new HepPlanner(new HepProgramBuilder().build());
+
+    JavaTypeFactoryImpl typeFactory = new JavaTypeFactoryImpl();
+    RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RelOptCluster optCluster = RelOptCluster.create(planner, rexBuilder);
+    RelDataType rowTypeMock = typeFactory.createStructType(MyRecord.class);
+    doReturn(rowTypeMock).when(tableMock).getRowType();
+    doReturn(tableMock).when(schemaMock).getTableForMember(Matchers.any());
+    lenient().doReturn(hiveTableMDMock).when(tableMock).getHiveTableMD();
+
+    builder = HiveRelFactories.HIVE_BUILDER.create(optCluster, schemaMock);
+  }
+
+  private RexNode eq(String field, int value) {
+    return builder.call(SqlStdOperatorTable.EQUALS,
+        builder.field(field), builder.literal(value));
+  }
+
+  private RexNode eqReversed(String field, int value) {
+    return builder.call(SqlStdOperatorTable.EQUALS,
+        builder.literal(value), builder.field(field));
+  }
+
+  @Test
+  public void testOperandOrder() {
+    RelNode r1 = builder.scan("t").filter(builder.and(eq("f1", 7), eq("f2", 8))).build();
+    RelNode r2 = builder.scan("t").filter(builder.and(eqReversed("f2", 8), eq("f1", 7))).build();
+    RelNode r3 = builder.scan("t").filter(builder.and(eq("f1", 7), eq("f2", 9))).build();
+
+    assertEquals(RelPlanDigest.of(r1), RelPlanDigest.of(r2));
+    assertNotEquals(RelPlanDigest.of(r1), RelPlanDigest.of(r3));
+  }
+
+  @Test
+  public void testProjectAliases() {
+    RelNode r1 = builder.scan("t").filter(eq("f1", 7))
+        .project(Arrays.asList(builder.field("f2"), builder.field("f3")), Arrays.asList("a", "b"))
+        .build();
+    RelNode r2 = builder.scan("t").filter(eq("f1", 7))
+        .project(Arrays.asList(builder.field("f2"), builder.field("f3")), Arrays.asList("x", "y"))
+        .build();
+    RelNode r3 = builder.scan("t").filter(eq("f1", 7))
+        .project(Arrays.asList(builder.field("f3"), builder.field("f2")), Arrays.asList("a", "b"))
+        .build();
+
+    assertEquals(RelPlanDigest.of(r1), RelPlanDigest.of(r2));
+    assertNotEquals(RelPlanDigest.of(r1), RelPlanDigest.of(r3));
+  }
+
+  @Test
+  public void testCanAnswer() {
+    QueryResultsCache.PlanDigest allColumns = RelPlanDigest.createForResultsCache(
+        builder.scan("t").filter(eq("f1", 7)).build());
+    QueryResultsCache.PlanDigest someColumns = RelPlanDigest.createForResultsCache(
+        builder.scan("t").filter(eq("f1", 7))
+            .project(builder.field("f1"), builder.field("f2")).build());
+    QueryResultsCache.PlanDigest request = RelPlanDigest.createForResultsCache(
+        builder.scan("t").filter(builder.and(eq("f1", 7), eq("f2", 8)))
+            .project(builder.field("f3")).build());
+
+    assertEquals(allColumns.getBaseDigest(), request.getBaseDigest());
+    assertTrue(allColumns.canAnswer(request));
+    // The residual filter is fine, but f3 was not kept.
+    assertFalse(someColumns.canAnswer(request));
+    // The request result has fewer rows than needed.
+    assertFalse(request.canAnswer(allColumns));
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptSchema;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexFieldCollation;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexWindowBound;
+import org.apache.calcite.sql.SqlWindow;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
+import org.apache.hadoop.hive.ql.exec.FilterOperator;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.SelectOperator;
+import org.apache.hadoop.hive.ql.hooks.ReadEntity;
+import org.apache.hadoop.hive.ql.optimizer.calcite.HiveRelFactories;
+import org.apache.hadoop.hive.ql.optimizer.calcite.RelOptHiveTable;
+import org.apache.hadoop.hive.ql.optimizer.signature.RelPlanDigest;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
+import org.apache.hadoop.hive.ql.plan.HiveOperation;
+import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests answering a query from the cached results of a query with fewer filter conjuncts.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TestResultsCachePartialReuse {
+
+  @Mock
+  private RelOptSchema schemaMock;
+  @Mock
+  RelOptHiveTable tableMock;
+
+  private JavaTypeFactoryImpl typeFactory;
+  private RelBuilder builder;
+  private QueryResultsCache cache;
+
+  @SuppressWarnings("unused")
+  private static class MyRecord {
+    public int f1;
+    public int f2;
+    public int f3;
+  }
+
+  @Before
+  public void before() throws Exception {
+    HepPlanner planner = new HepPlanner(new HepProgramBuilder().build());
+    typeFactory = new JavaTypeFactoryImpl();
+    RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RelOptCluster optCluster = RelOptCluster.create(planner, rexBuilder);
+    RelDataType rowTypeMock = typeFactory.createStructType(MyRecord.class);
+    doReturn(rowTypeMock).when(tableMock).getRowType();
+    doReturn(tableMock).when(schemaMock).getTableForMember(Matchers.any());
+    builder = HiveRelFactories.HIVE_BUILDER.create(optCluster, schemaMock);
+
+    HiveConf conf = new HiveConf();
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_DIRECTORY,
+        new File(System.getProperty("java.io.tmpdir"), "TestResultsCachePartialReuse").getAbsolutePath());
+    QueryResultsCache.cleanupInstance();
+    QueryResultsCache.initialize(conf);
+    cache = QueryResultsCache.getInstance();
+  }
+
+  @After
+  public void after() {
+    QueryResultsCache.cleanupInstance();
+  }
+
+  private RexNode eq(String field, int value) {
+    return builder.call(SqlStdOperatorTable.EQUALS, builder.field(field), builder.literal(value));
+  }
+
+  // f1 = 7, all the columns
+  private RelNode cachedPlan() {
+    return builder.scan("t").filter(eq("f1", 7)).build();
+  }
+
+  // f1 = 7 and f2 = 8, f3
+  private RelNode requestPlan() {
+    return builder.scan("t").filter(builder.and(eq("f1", 7), eq("f2", 8)))
+        .project(builder.field("f3")).build();
+  }
+
+  // f1 = 7 and f2 = 8, f3 and row_number() over ()
+  private RelNode requestPlanWithOver() {
+    builder.scan("t").filter(builder.and(eq("f1", 7), eq("f2", 8)));
+    RexNode rowNumber = builder.getRexBuilder().makeOver(
+        typeFactory.createSqlType(SqlTypeName.BIGINT), SqlStdOperatorTable.ROW_NUMBER,
+        Collections.<RexNode>emptyList(), Collections.<RexNode>emptyList(),
+        ImmutableList.<RexFieldCollation>of(),
+        RexWindowBound.create(SqlWindow.createUnboundedPreceding(SqlParserPos.ZERO), null),
+        RexWindowBound.create(SqlWindow.createCurrentRow(SqlParserPos.ZERO), null),
+        true, true, false, false);
+    return builder.project(builder.field("f3"), rowNumber).build();
+  }
+
+  private RelDataType cachedRowType() {
+    RelDataType intType = typeFactory.createSqlType(SqlTypeName.INTEGER);
+    return typeFactory.createStructType(
+        Arrays.asList(intType, intType, intType), Arrays.asList("a", "b", "c"));
+  }
+
+  private QueryResultsCache.CacheEntry addValidEntry(RelNode plan) throws Exception {
+    QueryResultsCache.LookupInfo lookupInfo = new QueryResultsCache.LookupInfo(
+        "cached query", () -> null, RelPlanDigest.createForResultsCache(plan));
+    QueryResultsCache.QueryInfo queryInfo = new QueryResultsCache.QueryInfo(
+        System.currentTimeMillis(), lookupInfo, HiveOperation.QUERY, null, null, null,
+        new HashSet<ReadEntity>());
+    QueryResultsCache.CacheEntry entry = cache.addToCache(queryInfo, null);
+
+    Path resultsDir = new Path(cache.getCacheDirPath(), "results");
+    Path resultsFile = new Path(resultsDir, "000000_0");
+    FileSystem fs = resultsFile.getFileSystem(new HiveConf());
+    fs.create(resultsFile).close();
+    FetchWork fetchWork = new FetchWork(resultsDir, new TableDesc());
+    fetchWork.setFilesToFetch(new HashSet<FileStatus>(Collections.singleton(fs.getFileStatus(resultsFile))));
+    assertTrue(cache.setEntryValid(entry, fetchWork));
+    entry.releaseReader();
+    return entry;
+  }
+
+  @Test
+  public void testLookupPartial() throws Exception {
+    QueryResultsCache.CacheEntry entry = addValidEntry(cachedPlan());
+
+    QueryResultsCache.LookupInfo request = new QueryResultsCache.LookupInfo(
+        "request", () -> null, RelPlanDigest.createForResultsCache(requestPlan()));
+    assertSame(entry, cache.lookupPartial(request));
+  }
+
+  @Test
+  public void testLookupPartialOver() throws Exception {
+    addValidEntry(cachedPlan());
+
+    // The row numbers over the cached rows would differ from the ones over the requested rows.
+    QueryResultsCache.LookupInfo request = new QueryResultsCache.LookupInfo(
+        "request", () -> null, RelPlanDigest.createForResultsCache(requestPlanWithOver()));
+    assertNull(cache.lookupPartial(request));
+  }
+
+  @Test
+  public void testResidualOperators() {
+    QueryResultsCache.PlanDigest cachedPlanDigest = RelPlanDigest.createForResultsCache(cachedPlan());
+    Operator<?> source = CalcitePlanner.createResidualOperators(
+        requestPlan(), cachedPlanDigest, cachedRowType(), new CompilationOpContext());
+
+    // f2 = 8 over the cached rows, then f3.
+    assertNotNull(source);
+    assertTrue(source instanceof FilterOperator);
+    assertEquals("b", ((FilterOperator) source).getConf().getPredicate().getCols().get(0));
+    assertEquals(1, source.getChildOperators().size());
+    SelectOperator select = (SelectOperator) source.getChildOperators().get(0);
+    assertEquals(1, select.getConf().getColList().size());
+    assertEquals("c", ((ExprNodeColumnDesc) select.getConf().getColList().get(0)).getColumn());
+  }
+
+  @Test
+  public void testResidualOperatorsOver() {
+    QueryResultsCache.PlanDigest cachedPlanDigest = RelPlanDigest.createForResultsCache(cachedPlan());
+    assertNull(CalcitePlanner.createResidualOperators(
+        requestPlanWithOver(), cachedPlanDigest, cachedRowType(), new CompilationOpContext()));
+  }
+}
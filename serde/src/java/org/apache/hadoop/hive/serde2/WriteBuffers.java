@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hive.serde2;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
@@ -32,9 +33,15 @@
 /**
  * The structure storing arbitrary amount of data as a set of fixed-size byte buffers.
  * Maintains read and write pointers for convenient single-threaded writing/reading.
+ *
+ * Once sealed, the buffers can be moved into slabs outside the Java heap (see moveToSlabs).
+ * After that, only reading is supported.
  */
 public final class WriteBuffers implements RandomAccessOutput, MemoryEstimate {
   private final ArrayList<byte[]> writeBuffers = new ArrayList<byte[]>(1);
+  /** The slabs the buffers were moved to, or null when the buffers are on the Java heap. */
+  private ArrayList<ByteBuffer> slabs = null;
+  private SlabAllocator slabAllocator = null;
   /** Buffer size in writeBuffers */
   private final int wbSize;
   private final int wbSizeLog2;
@@ -43,10 +50,12 @@ public final class WriteBuffers implements RandomAccessOutput, MemoryEstimate {
 
   public static class Position implements MemoryEstimate {
     private byte[] buffer = null;
+    private ByteBuffer slab = null;
     private int bufferIndex = 0;
     private int offset = 0;
     public void clear() {
       buffer = null;
+      slab = null;
       bufferIndex = offset = -1;
     }
 
@@ -59,11 +68,21 @@ public long getEstimatedMemorySize() {
     }
     public void set(Position pos) {
       buffer = pos.buffer;
+      slab = pos.slab;
       bufferIndex = pos.bufferIndex;
       offset = pos.offset;
     }
   }
 
+  /**
+   * Allocates (and releases) the slabs, e.g. direct or memory-mapped byte buffers, that sealed
+   * buffers are moved to.
+   */
+  public interface SlabAllocator {
+    ByteBuffer allocate(int size) throws IOException;
+    void release(ByteBuffer slab);
+  }
+
   Position writePos = new Position(); // Position where we'd write
   Position unsafeReadPos = new Position(); // Position where we'd read (unsafely at write time).
 
@@ -92,7 +111,7 @@ public long unsafeReadVLong() {
 
   public long readVLong(Position readPos) {
     ponderNextBufferToRead(readPos);
-    byte firstByte = readPos.buffer[readPos.offset++];
+    byte firstByte = readByte(readPos, readPos.offset++);
     int length = (byte) WritableUtils.decodeVIntSize(firstByte) - 1;
     if (length == 0) {
       return firstByte;
@@ -100,7 +119,7 @@ public long readVLong(Position readPos) {
     long i = 0;
     if (isAllInOneReadBuffer(length, readPos)) {
       for (int idx = 0; idx < length; idx++) {
-        i = (i << 8) | (readPos.buffer[readPos.offset + idx] & 0xFF);
+        i = (i << 8) | (readByte(readPos, readPos.offset + idx) & 0xFF);
       }
       readPos.offset += length;
     } else {
@@ -118,15 +137,14 @@ public void unsafeSkipVLong() {
 
   public void skipVLong(Position readPos) {
     ponderNextBufferToRead(readPos);
-    byte firstByte = readPos.buffer[readPos.offset++];
+    byte firstByte = readByte(readPos, readPos.offset++);
     int length = (byte) WritableUtils.decodeVIntSize(firstByte);
     if (length > 1) {
       readPos.offset += (length - 1);
     }
     int diff = readPos.offset - wbSize;
     while (diff >= 0) {
-      ++readPos.bufferIndex;
-      readPos.buffer = writeBuffers.get(readPos.bufferIndex);
+      setReadBuffer(readPos, readPos.bufferIndex + 1);
       readPos.offset = diff;
       diff = readPos.offset - wbSize;
     }
@@ -138,11 +156,37 @@ public void setUnsafeReadPoint(long offset) {
   }
 
   public void setReadPoint(long offset, Position readPos) {
-    readPos.bufferIndex = getBufferIndex(offset);
-    readPos.buffer = writeBuffers.get(readPos.bufferIndex);
+    setReadBuffer(readPos, getBufferIndex(offset));
     readPos.offset = getOffset(offset);
   }
 
+  private void setReadBuffer(Position readPos, int bufferIndex) {
+    readPos.bufferIndex = bufferIndex;
+    if (slabs == null) {
+      readPos.buffer = writeBuffers.get(bufferIndex);
+      readPos.slab = null;
+    } else {
+      readPos.buffer = null;
+      readPos.slab = slabs.get(bufferIndex);
+    }
+  }
+
+  private static byte readByte(Position readPos, int offset) {
+    return (readPos.slab == null) ? readPos.buffer[offset] : readPos.slab.get(offset);
+  }
+
+  /** Copies bytes from the current read buffer. Does not modify readPoint. */
+  private static void readBytes(Position readPos, byte[] dest, int destOffset, int length) {
+    if (readPos.slab == null) {
+      System.arraycopy(readPos.buffer, readPos.offset, dest, destOffset, length);
+    } else {
+      // Never move the position of the shared slab itself.
+      ByteBuffer slab = readPos.slab.duplicate();
+      slab.position(readPos.offset);
+      slab.get(dest, destOffset, length);
+    }
+  }
+
   /** THIS METHOD IS NOT THREAD-SAFE. Use only at load time (or be mindful of thread safety). */
   public int unsafeHashCode(long offset, int length) {
     return hashCode(offset, length, unsafeReadPos);
@@ -150,7 +194,7 @@ public int unsafeHashCode(long offset, int length) {
 
   public int hashCode(long offset, int length, Position readPos) {
     setReadPoint(offset, readPos);
-    if (isAllInOneReadBuffer(length, readPos)) {
+    if (readPos.slab == null && isAllInOneReadBuffer(length, readPos)) {
       int result = HashCodeUtil.murmurHash(readPos.buffer, readPos.offset, length);
       readPos.offset += length;
       return result;
@@ -162,7 +206,7 @@ public int hashCode(long offset, int length, Position readPos) {
     while (destOffset < length) {
       ponderNextBufferToRead(readPos);
       int toRead = Math.min(length - destOffset, wbSize - readPos.offset);
-      System.arraycopy(readPos.buffer, readPos.offset, bytes, destOffset, toRead);
+      readBytes(readPos, bytes, destOffset, toRead);
       readPos.offset += toRead;
       destOffset += toRead;
     }
@@ -172,13 +216,12 @@ public int hashCode(long offset, int length, Position readPos) {
   private byte readNextByte(Position readPos) {
     // This method is inefficient. It's only used when something crosses buffer boundaries.
     ponderNextBufferToRead(readPos);
-    return readPos.buffer[readPos.offset++];
+    return readByte(readPos, readPos.offset++);
   }
 
   private void ponderNextBufferToRead(Position readPos) {
     if (readPos.offset >= wbSize) {
-      ++readPos.bufferIndex;
-      readPos.buffer = writeBuffers.get(readPos.bufferIndex);
+      setReadBuffer(readPos, readPos.bufferIndex + 1);
       readPos.offset = 0;
     }
   }
@@ -187,6 +230,12 @@ public int hashCode(byte[] key, int offset, int length) {
     return HashCodeUtil.murmurHash(key, offset, length);
   }
 
+  private void checkOnHeap() {
+    if (slabs != null) {
+      throw new IllegalStateException("Buffers were moved to slabs and can no longer be written");
+    }
+  }
+
   private void setByte(long offset, byte value) {
     // No checks, the caller must ensure the offsets are correct.
     writeBuffers.get(getBufferIndex(offset))[getOffset(offset)] = value;
@@ -195,6 +244,7 @@ private void setByte(long offset, byte value) {
   @Override
   public void reserve(int byteCount) {
     if (byteCount < 0) throw new AssertionError("byteCount must be non-negative");
+    checkOnHeap();
     int currentWriteOffset = writePos.offset + byteCount;
     while (currentWriteOffset > wbSize) {
       nextBufferToWrite();
@@ -204,6 +254,7 @@ public void reserve(int byteCount) {
   }
 
   public void setWritePoint(long offset) {
+    checkOnHeap();
     writePos.bufferIndex = getBufferIndex(offset);
     writePos.buffer = writeBuffers.get(writePos.bufferIndex);
     writePos.offset = getOffset(offset);
@@ -211,6 +262,7 @@ public void setWritePoint(long offset) {
 
   @Override
   public void write(int b) {
+    checkOnHeap();
     if (writePos.offset == wbSize) {
       nextBufferToWrite();
     }
@@ -224,6 +276,7 @@ public void write(byte[] b) {
 
   @Override
   public void write(byte[] b, int off, int len) {
+    checkOnHeap();
     if (writePos.bufferIndex == -1) {
       nextBufferToWrite();
     }
@@ -253,6 +306,7 @@ private int getBufferIndex(long offset) {
   }
 
   private void nextBufferToWrite() {
+    checkOnHeap();
     if (writePos.bufferIndex == (writeBuffers.size() - 1)) {
       if ((1 + writeBuffers.size()) * ((long)wbSize) > maxSize) {
         // We could verify precisely at write time, but just do approximate at allocation time.
@@ -270,6 +324,7 @@ public boolean isEqual(long leftOffset, int leftLength, long rightOffset, int ri
     if (rightLength != leftLength) {
       return false;
     }
+    checkOnHeap();
     int leftIndex = getBufferIndex(leftOffset), rightIndex = getBufferIndex(rightOffset),
         leftFrom = getOffset(leftOffset), rightFrom = getOffset(rightOffset);
     byte[] leftBuffer = writeBuffers.get(leftIndex), rightBuffer = writeBuffers.get(rightIndex);
@@ -305,6 +360,9 @@ private final boolean isEqual(byte[] left, int leftOffset, int rightIndex, int r
     }
     // invariant: rightLength = leftLength
     // rightOffset is within the buffers
+    if (slabs != null) {
+      return isEqualToSlabs(left, leftOffset, rightIndex, rightFrom, length);
+    }
     byte[] rightBuffer = writeBuffers.get(rightIndex);
     if (rightFrom + length <= wbSize) {
       // TODO: allow using unsafe optionally.
@@ -332,6 +390,22 @@ private final boolean isEqual(byte[] left, int leftOffset, int rightIndex, int r
     return true;
   }
 
+  private boolean isEqualToSlabs(byte[] left, int leftOffset, int rightIndex, int rightFrom,
+      int length) {
+    ByteBuffer rightSlab = slabs.get(rightIndex);
+    for (int i = 0; i < length; ++i) {
+      if (rightFrom == wbSize) {
+        ++rightIndex;
+        rightSlab = slabs.get(rightIndex);
+        rightFrom = 0;
+      }
+      if (left[leftOffset + i] != rightSlab.get(rightFrom++)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Compares part of the buffer with a part of an external byte array.
    * Does not modify readPoint.
@@ -364,6 +438,13 @@ public boolean isEqual(byte[] left, int leftOffset, Position readPos, int length
 
   public void clear() {
     writeBuffers.clear();
+    if (slabs != null) {
+      for (ByteBuffer slab : slabs) {
+        slabAllocator.release(slab);
+      }
+      slabs = null;
+      slabAllocator = null;
+    }
     clearState();
   }
  
@@ -408,6 +489,7 @@ public void writeVLong(long value) {
 
   /** Reads some bytes from the buffer and writes them again at current write point. */
   public void writeBytes(long offset, int length) {
+    checkOnHeap();
     int readBufIndex = getBufferIndex(offset);
     byte[] readBuffer = writeBuffers.get(readBufIndex);
     int readBufOffset = getOffset(offset);
@@ -467,6 +549,12 @@ public long getOffset() {
     public int getLength() {
       return length;
     }
+    private byte[] getCopyBuffer(int length) {
+      if (copyBuffer == null || copyBuffer.length < length) {
+        copyBuffer = new byte[length];
+      }
+      return copyBuffer;
+    }
     public ByteBuffer copy() {
       byte[] copy = new byte[length];
       if (length > 0) {
@@ -477,6 +565,8 @@ public ByteBuffer copy() {
     private byte[] bytes = null;
     private long offset;
     private int length;
+    // Reused to hold copies of values read from slabs.
+    private byte[] copyBuffer = null;
   }
 
   /**
@@ -486,6 +576,10 @@ public ByteBuffer copy() {
    * spanning multiple internal buffers.
    */
   public void populateValue(WriteBuffers.ByteSegmentRef value) {
+    if (slabs != null) {
+      populateValueFromSlabs(value);
+      return;
+    }
     // At this point, we are going to make a copy if needed to avoid array boundaries.
     int index = getBufferIndex(value.getOffset());
     byte[] buffer = writeBuffers.get(index);
@@ -512,6 +606,32 @@ public void populateValue(WriteBuffers.ByteSegmentRef value) {
     }
   }
 
+  /**
+   * The slabs are not on the Java heap, so we always copy the value.  The copy buffer belongs
+   * to the byte segment reference and is reused, so the value must be consumed before the
+   * reference is populated again.
+   */
+  private void populateValueFromSlabs(WriteBuffers.ByteSegmentRef value) {
+    int index = getBufferIndex(value.getOffset());
+    int slabOffset = getOffset(value.getOffset());
+    int length = value.getLength();
+    byte[] bytes = value.getCopyBuffer(length);
+    int destOffset = 0;
+    while (destOffset < length) {
+      if (destOffset > 0) {
+        ++index;
+        slabOffset = 0;
+      }
+      int toCopy = Math.min(length - destOffset, wbSize - slabOffset);
+      ByteBuffer slab = slabs.get(index).duplicate();
+      slab.position(slabOffset);
+      slab.get(bytes, destOffset, toCopy);
+      destOffset += toCopy;
+    }
+    value.bytes = bytes;
+    value.offset = 0;
+  }
+
   private boolean isAllInOneReadBuffer(int length, Position readPos) {
     return readPos.offset + length <= wbSize;
   }
@@ -521,7 +641,7 @@ private boolean isAllInOneWriteBuffer(int length) {
   }
 
   public void seal() {
-    if (writePos.bufferIndex == -1) {
+    if (writePos.bufferIndex == -1 || slabs != null) {
       return;
     }
     if (writePos.offset < (wbSize * 0.8)) { // arbitrary
@@ -546,7 +666,7 @@ public long readNByteLong(long offset, int bytes, Position readPos) {
     long v = 0;
     if (isAllInOneReadBuffer(bytes, readPos)) {
       for (int i = 0; i < bytes; ++i) {
-        v = (v << 8) + (readPos.buffer[readPos.offset + i] & 0xff);
+        v = (v << 8) + (readByte(readPos, readPos.offset + i) & 0xff);
       }
       readPos.offset += bytes;
     } else {
@@ -561,7 +681,7 @@ public long readNByteLong(int bytes, Position readPos) {
     long v = 0;
     if (isAllInOneReadBuffer(bytes, readPos)) {
       for (int i = 0; i < bytes; ++i) {
-        v = (v << 8) + (readPos.buffer[readPos.offset + i] & 0xff);
+        v = (v << 8) + (readByte(readPos, readPos.offset + i) & 0xff);
       }
       readPos.offset += bytes;
     } else {
@@ -595,6 +715,7 @@ public void writeFiveByteULong(long offset, long v) {
   }
 
   public void writeFiveByteULong(long v) {
+    checkOnHeap();
     if (isAllInOneWriteBuffer(5)) {
       writePos.buffer[writePos.offset] = (byte)(v >>> 32);
       writePos.buffer[writePos.offset + 1] = (byte)(v >>> 24);
@@ -620,7 +741,7 @@ public int readInt(long offset, Position readPos) {
     long v = 0;
     if (isAllInOneReadBuffer(4, readPos)) {
       for (int i = 0; i < 4; ++i) {
-        v = (v << 8) + (readPos.buffer[readPos.offset + i] & 0xff);
+        v = (v << 8) + (readByte(readPos, readPos.offset + i) & 0xff);
       }
       readPos.offset += 4;
     } else {
@@ -665,12 +786,50 @@ public void writeByte(long offset, byte value) {
     writePos.offset = prevOffset;
   }
 
+  /**
+   * Moves the sealed buffers into slabs from the allocator, e.g. off the Java heap, and drops the
+   * on-heap buffers.  Afterwards the buffers can only be read; clear releases the slabs.
+   *
+   * @return the number of bytes moved.
+   */
+  public long moveToSlabs(SlabAllocator allocator) throws IOException {
+    if (slabs != null) {
+      throw new IllegalStateException("Buffers were already moved to slabs");
+    }
+    seal();
+    ArrayList<ByteBuffer> newSlabs = new ArrayList<ByteBuffer>(writeBuffers.size());
+    long movedSize = 0;
+    try {
+      for (byte[] buffer : writeBuffers) {
+        ByteBuffer slab = allocator.allocate(buffer.length);
+        slab.put(buffer, 0, buffer.length);
+        slab.clear();
+        newSlabs.add(slab);
+        movedSize += buffer.length;
+      }
+    } catch (IOException | RuntimeException e) {
+      for (ByteBuffer slab : newSlabs) {
+        allocator.release(slab);
+      }
+      throw e;
+    }
+    slabs = newSlabs;
+    slabAllocator = allocator;
+    writeBuffers.clear();
+    clearState();
+    return movedSize;
+  }
+
+  public boolean isMovedToSlabs() {
+    return slabs != null;
+  }
+
   /**
    * Write buffer size
    * @return write buffer size
    */
   public long size() {
-    return writeBuffers.size() * (long) wbSize;
+    return (slabs == null ? writeBuffers.size() : slabs.size()) * (long) wbSize;
   }
 
   @Override
@@ -0,0 +1,514 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.serde2.json.fast;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.hive.common.type.DataTypePhysicalVariation;
+import org.apache.hadoop.hive.common.type.Date;
+import org.apache.hadoop.hive.common.type.Timestamp;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.JsonSerDe;
+import org.apache.hadoop.hive.serde2.fast.DeserializeRead;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.json.BinaryEncoding;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.DecimalTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hive.common.util.HiveStringUtils;
+import org.apache.hive.common.util.TimestampParser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+
+/*
+ * Directly deserialize with the caller reading field-by-field the JSON serialization format
+ * of JsonSerDe: one JSON object per row, with primitive values.
+ *
+ * Unlike JsonSerDe, no JSON tree and no Writable objects are created for the row; the object is
+ * tokenized with a streaming parser, and the values are converted as they are read into the
+ * current* members. Only the top level fields of primitive types are supported (see
+ * isSupported); the constructor rejects the other types.
+ *
+ * The conversions follow those of HiveJsonReader (e.g. a numeric string in an int column is
+ * parsed, an unknown field is ignored or rejected according to the table properties), and so
+ * does the field lookup: an internal name like _col1 is the field at that index before it is
+ * matched with the field names.
+ *
+ * Optionally, only some of the fields are converted (see setIncludedFields); the values of the
+ * other fields are skipped by the parser without being decoded, which matters for wide tables.
+ *
+ * The object is parsed on the first read after set, since set does not report errors.
+ */
+public final class JsonDeserializeRead extends DeserializeRead {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final Pattern INTERNAL_NAME_PATTERN = Pattern.compile("^_col([0-9]+)$");
+
+  private static final int MAX_CACHED_NAMES = 1024;
+
+  private final int fieldCount;
+  private final Map<String, Integer> fieldIndices;
+  private final Map<String, Integer> fieldNameCache = new HashMap<>();
+  private final boolean ignoreExtraFields;
+  private final boolean nullEmptyLines;
+  private final BinaryEncoding binaryEncoding;
+  private final TimestampParser tsParser;
+
+  private boolean[] includedFields;
+
+  private byte[] bytes;
+  private int start;
+  private int length;
+  private boolean isParsed;
+  private int nextFieldIndex;
+
+  // The tokens of the current row, by field. Null tokens are not stored.
+  private final JsonToken[] fieldTokens;
+  private final long[] longValues;
+  private final double[] doubleValues;
+  private final int[] textStarts;
+  private final int[] textLengths;
+  private byte[] textBuffer = new byte[1024];
+  private int textBufferLength;
+
+  public JsonDeserializeRead(TypeInfo[] typeInfos,
+      DataTypePhysicalVariation[] dataTypePhysicalVariations, List<String> fieldNames,
+      Properties tblProps) {
+    super(typeInfos, dataTypePhysicalVariations, /* useExternalBuffer */ false);
+    if (!isSupported(typeInfos)) {
+      throw new IllegalArgumentException("Unsupported JSON field types "
+          + Arrays.toString(typeInfos));
+    }
+    fieldCount = typeInfos.length;
+    fieldIndices = new HashMap<>(fieldCount * 2);
+    for (int i = 0; i < fieldCount; i++) {
+      fieldIndices.put(fieldNames.get(i).toLowerCase(), i);
+    }
+    ignoreExtraFields = Boolean.parseBoolean(
+        tblProps.getProperty(JsonSerDe.IGNORE_EXTRA, "true"));
+    nullEmptyLines = Boolean.parseBoolean(
+        tblProps.getProperty(JsonSerDe.NULL_EMPTY_LINES, "false"));
+    binaryEncoding = BinaryEncoding.valueOf(
+        tblProps.getProperty(JsonSerDe.BINARY_FORMAT, "base64").toUpperCase());
+    final String parserFormats = tblProps.getProperty(serdeConstants.TIMESTAMP_FORMATS);
+    tsParser = parserFormats == null ? new TimestampParser()
+        : new TimestampParser(HiveStringUtils.splitAndUnEscape(parserFormats));
+
+    fieldTokens = new JsonToken[fieldCount];
+    longValues = new long[fieldCount];
+    doubleValues = new double[fieldCount];
+    textStarts = new int[fieldCount];
+    textLengths = new int[fieldCount];
+  }
+
+  /*
+   * Whether the top level fields of these types can be read.
+   */
+  public static boolean isSupported(TypeInfo[] typeInfos) {
+    for (TypeInfo typeInfo : typeInfos) {
+      if (typeInfo.getCategory() != Category.PRIMITIVE) {
+        return false;
+      }
+      switch (((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory()) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+      case BINARY:
+      case DATE:
+      case TIMESTAMP:
+      case DECIMAL:
+        break;
+      default:
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Only convert the values of the included fields; the others are read as null.
+   * Null means all the fields are included.
+   */
+  public void setIncludedFields(boolean[] includedFields) {
+    this.includedFields = includedFields;
+  }
+
+  @Override
+  public void set(byte[] bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.start = offset;
+    this.length = length;
+    isParsed = false;
+    nextFieldIndex = 0;
+  }
+
+  private void parse() throws IOException {
+    isParsed = true;
+    Arrays.fill(fieldTokens, null);
+    textBufferLength = 0;
+    if (length == 0) {
+      if (!nullEmptyLines) {
+        throw new IOException("Encountered an empty row in the text file");
+      }
+      return;
+    }
+    try (JsonParser parser = JSON_FACTORY.createParser(bytes, start, length)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object, found " + parser.getCurrentToken());
+      }
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+        final int fieldIndex = getFieldIndex(parser.getCurrentName());
+        token = parser.nextToken();
+        if (fieldIndex < 0 || (includedFields != null && !includedFields[fieldIndex])) {
+          parser.skipChildren();
+          continue;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+          throw new IOException("Expected a primitive value for field "
+              + parser.getCurrentName() + ", found " + token);
+        }
+        // The last value of a duplicate field wins, as in a JSON tree.
+        fieldTokens[fieldIndex] = null;
+        if (token != JsonToken.VALUE_NULL) {
+          tokenizeValue(parser, token, fieldIndex);
+          fieldTokens[fieldIndex] = token;
+        }
+      }
+      if (token != JsonToken.END_OBJECT) {
+        throw new IOException("Unexpected end of JSON object, found " + token);
+      }
+    }
+  }
+
+  private int getFieldIndex(String fieldName) throws IOException {
+    Integer fieldIndex = fieldNameCache.get(fieldName);
+    if (fieldIndex != null) {
+      return fieldIndex;
+    }
+    // Same order as HiveJsonReader: the internal name, then the field name.
+    final Matcher matcher = INTERNAL_NAME_PATTERN.matcher(fieldName);
+    if (matcher.matches()) {
+      try {
+        final int colIndex = Integer.parseInt(matcher.group(1));
+        if (colIndex < fieldCount) {
+          fieldIndex = colIndex;
+        }
+      } catch (NumberFormatException e) {
+        // Too many digits to be an index.
+      }
+    }
+    if (fieldIndex == null) {
+      fieldIndex = fieldIndices.get(fieldName.toLowerCase());
+    }
+    if (fieldIndex == null) {
+      if (!ignoreExtraFields) {
+        throw new IOException("Field found in JSON does not match table definition: "
+            + fieldName);
+      }
+      fieldIndex = -1;
+    }
+    if (fieldNameCache.size() < MAX_CACHED_NAMES) {
+      fieldNameCache.put(fieldName, fieldIndex);
+    }
+    return fieldIndex;
+  }
+
+  /*
+   * Converts the value into the representation of the field type: a long, a double, or text.
+   */
+  private void tokenizeValue(JsonParser parser, JsonToken token, int fieldIndex)
+      throws IOException {
+    switch (primitiveCategories[fieldIndex]) {
+    case BOOLEAN:
+      longValues[fieldIndex] = toBoolean(parser, token) ? 1 : 0;
+      break;
+    case BYTE:
+    case SHORT:
+    case INT:
+      longValues[fieldIndex] = toInt(parser, token);
+      break;
+    case LONG:
+      longValues[fieldIndex] = toLong(parser, token);
+      break;
+    case FLOAT:
+    case DOUBLE:
+      doubleValues[fieldIndex] = toDouble(parser, token);
+      break;
+    case BINARY:
+      if (binaryEncoding == BinaryEncoding.BASE64) {
+        addText(parser.getBinaryValue(), fieldIndex);
+        break;
+      }
+      addText(toText(parser, token).getBytes(StandardCharsets.UTF_8), fieldIndex);
+      break;
+    default:
+      addText(toText(parser, token).getBytes(StandardCharsets.UTF_8), fieldIndex);
+      break;
+    }
+  }
+
+  private static boolean toBoolean(JsonParser parser, JsonToken token) throws IOException {
+    switch (token) {
+    case VALUE_TRUE:
+      return true;
+    case VALUE_NUMBER_INT:
+      return parser.getBigIntegerValue().signum() != 0;
+    case VALUE_STRING:
+      return "true".equals(parser.getText().trim());
+    default:
+      return false;
+    }
+  }
+
+  private static int toInt(JsonParser parser, JsonToken token) throws IOException {
+    switch (token) {
+    case VALUE_TRUE:
+      return 1;
+    case VALUE_NUMBER_INT:
+      return parser.getNumberType() == JsonParser.NumberType.INT
+          ? parser.getIntValue() : parser.getBigIntegerValue().intValue();
+    case VALUE_NUMBER_FLOAT:
+      return (int) parser.getDoubleValue();
+    case VALUE_STRING:
+      return NumberInput.parseAsInt(parser.getText(), 0);
+    default:
+      return 0;
+    }
+  }
+
+  private static long toLong(JsonParser parser, JsonToken token) throws IOException {
+    switch (token) {
+    case VALUE_TRUE:
+      return 1;
+    case VALUE_NUMBER_INT:
+      return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+          ? parser.getBigIntegerValue().longValue() : parser.getLongValue();
+    case VALUE_NUMBER_FLOAT:
+      return (long) parser.getDoubleValue();
+    case VALUE_STRING:
+      return NumberInput.parseAsLong(parser.getText(), 0);
+    default:
+      return 0;
+    }
+  }
+
+  private static double toDouble(JsonParser parser, JsonToken token) throws IOException {
+    switch (token) {
+    case VALUE_TRUE:
+      return 1.0;
+    case VALUE_NUMBER_INT:
+    case VALUE_NUMBER_FLOAT:
+      return parser.getDoubleValue();
+    case VALUE_STRING:
+      return NumberInput.parseAsDouble(parser.getText(), 0.0);
+    default:
+      return 0.0;
+    }
+  }
+
+  private static String toText(JsonParser parser, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+      // Same as the text of the parsed number in a JSON tree.
+      return Double.toString(parser.getDoubleValue());
+    }
+    return parser.getText();
+  }
+
+  private void addText(byte[] text, int fieldIndex) {
+    final int newLength = textBufferLength + text.length;
+    if (newLength > textBuffer.length) {
+      textBuffer = Arrays.copyOf(textBuffer, Math.max(newLength, textBuffer.length * 2));
+    }
+    System.arraycopy(text, 0, textBuffer, textBufferLength, text.length);
+    textStarts[fieldIndex] = textBufferLength;
+    textLengths[fieldIndex] = text.length;
+    textBufferLength = newLength;
+  }
+
+  private String getText(int fieldIndex) {
+    return new String(textBuffer, textStarts[fieldIndex], textLengths[fieldIndex],
+        StandardCharsets.UTF_8);
+  }
+
+  /*
+   * Reads the the next field.
+   *
+   * Afterwards, reading is positioned to the next field.
+   *
+   * @return  Return true when the field was not null and data is put in the appropriate
+   *          current* member.
+   *          Otherwise, false when the field is null.
+   *
+   */
+  @Override
+  public boolean readNextField() throws IOException {
+    return readField(nextFieldIndex++);
+  }
+
+  @Override
+  public void skipNextField() throws IOException {
+    nextFieldIndex++;
+  }
+
+  @Override
+  public boolean isReadFieldSupported() {
+    return true;
+  }
+
+  @Override
+  public boolean readField(int fieldIndex) throws IOException {
+    if (!isParsed) {
+      parse();
+    }
+    if (fieldTokens[fieldIndex] == null) {
+      return false;
+    }
+    final PrimitiveCategory primitiveCategory = primitiveCategories[fieldIndex];
+    switch (primitiveCategory) {
+    case BOOLEAN:
+      currentBoolean = longValues[fieldIndex] != 0;
+      return true;
+    case BYTE:
+      currentByte = (byte) longValues[fieldIndex];
+      return true;
+    case SHORT:
+      currentShort = (short) longValues[fieldIndex];
+      return true;
+    case INT:
+      currentInt = (int) longValues[fieldIndex];
+      return true;
+    case LONG:
+      currentLong = longValues[fieldIndex];
+      return true;
+    case FLOAT:
+      currentFloat = (float) doubleValues[fieldIndex];
+      return true;
+    case DOUBLE:
+      currentDouble = doubleValues[fieldIndex];
+      return true;
+    case STRING:
+    case CHAR:
+    case VARCHAR:
+    case BINARY:
+      // The caller truncates char and varchar values.
+      currentBytes = textBuffer;
+      currentBytesStart = textStarts[fieldIndex];
+      currentBytesLength = textLengths[fieldIndex];
+      return true;
+    case DATE:
+      currentDateWritable.set(Date.valueOf(getText(fieldIndex)));
+      return true;
+    case TIMESTAMP:
+      {
+        final Timestamp timestamp = tsParser.parseTimestamp(getText(fieldIndex));
+        if (timestamp == null) {
+          return false;
+        }
+        currentTimestampWritable.set(timestamp);
+        return true;
+      }
+    case DECIMAL:
+      {
+        currentHiveDecimalWritable.setFromBytes(
+            textBuffer, textStarts[fieldIndex], textLengths[fieldIndex], /* trimBlanks */ true);
+        if (!currentHiveDecimalWritable.isSet()) {
+          return false;
+        }
+        final DecimalTypeInfo decimalTypeInfo = (DecimalTypeInfo) typeInfos[fieldIndex];
+        final int precision = decimalTypeInfo.getPrecision();
+        final int scale = decimalTypeInfo.getScale();
+        if (!currentHiveDecimalWritable.mutateEnforcePrecisionScale(precision, scale)) {
+          return false;
+        }
+        if (dataTypePhysicalVariations[fieldIndex] == DataTypePhysicalVariation.DECIMAL_64) {
+          currentDecimal64 = currentHiveDecimalWritable.serialize64(scale);
+        }
+        return true;
+      }
+    default:
+      throw new IOException("Unsupported type " + typeInfos[fieldIndex].getTypeName());
+    }
+  }
+
+  /*
+   * The constructor only accepts primitive types, so the complex methods are never called.
+   */
+  @Override
+  public boolean isNextComplexMultiValue() {
+    throw new AssertionError("Complex types are rejected by the constructor");
+  }
+
+  @Override
+  public boolean readComplexField() {
+    throw new AssertionError("Complex types are rejected by the constructor");
+  }
+
+  @Override
+  public void finishComplexVariableFieldsType() {
+    throw new AssertionError("Complex types are rejected by the constructor");
+  }
+
+  /*
+   * The whole object is parsed on the first read.
+   */
+  @Override
+  public boolean isEndOfInputReached() {
+    return isParsed;
+  }
+
+  @Override
+  public String getDetailedReadPositionString() {
+    StringBuilder sb = new StringBuilder(64);
+    sb.append("Reading JSON byte[] of length ");
+    sb.append(bytes == null ? 0 : bytes.length);
+    sb.append(" at start offset ");
+    sb.append(start);
+    sb.append(" for length ");
+    sb.append(length);
+    sb.append(" to read ");
+    sb.append(fieldCount);
+    sb.append(" fields with types ");
+    sb.append(Arrays.toString(typeInfos));
+    sb.append(".  Next field index ");
+    sb.append(nextFieldIndex);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.serde2.json.fast;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.JsonSerDe;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonDeserializeRead {
+
+  private static JsonDeserializeRead create(String names, String types, Properties props) {
+    TypeInfo[] typeInfos =
+        TypeInfoUtils.getTypeInfosFromTypeString(types).toArray(new TypeInfo[0]);
+    return new JsonDeserializeRead(typeInfos, null, Arrays.asList(names.split(",")), props);
+  }
+
+  private static void set(JsonDeserializeRead deserializeRead, String json) {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    deserializeRead.set(bytes, 0, bytes.length);
+  }
+
+  private static String currentString(JsonDeserializeRead deserializeRead) {
+    return new String(deserializeRead.currentBytes, deserializeRead.currentBytesStart,
+        deserializeRead.currentBytesLength, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testPrimitiveTypes() throws Exception {
+    JsonDeserializeRead deserializeRead = create("name,age,height,alive,born,balance",
+        "string,int,double,boolean,date,decimal(10,2)", new Properties());
+    set(deserializeRead, "{\"balance\":12.345,\"Name\":\"john\",\"age\":\"30\","
+        + "\"height\":1.8,\"alive\":true,\"born\":\"1990-02-03\",\"unknown\":[1,2]}");
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertEquals("john", currentString(deserializeRead));
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertEquals(30, deserializeRead.currentInt);
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertEquals(1.8, deserializeRead.currentDouble, 0.0);
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertTrue(deserializeRead.currentBoolean);
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertEquals("1990-02-03", deserializeRead.currentDateWritable.toString());
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertEquals("12.35", deserializeRead.currentHiveDecimalWritable.toString());
+  }
+
+  @Test
+  public void testNullsAndMissingFields() throws Exception {
+    JsonDeserializeRead deserializeRead = create("a,b,c", "string,bigint,int", new Properties());
+    set(deserializeRead, "{\"a\":null,\"c\":7}");
+    Assert.assertFalse(deserializeRead.readNextField());
+    Assert.assertFalse(deserializeRead.readNextField());
+    Assert.assertTrue(deserializeRead.readNextField());
+    Assert.assertEquals(7, deserializeRead.currentInt);
+
+    // The values of the previous row are not carried over.
+    set(deserializeRead, "{\"_col1\":5}");
+    Assert.assertFalse(deserializeRead.readField(0));
+    Assert.assertTrue(deserializeRead.readField(1));
+    Assert.assertEquals(5, deserializeRead.currentLong);
+    Assert.assertFalse(deserializeRead.readField(2));
+  }
+
+  @Test
+  public void testIncludedFields() throws Exception {
+    JsonDeserializeRead deserializeRead = create("a,b,c", "string,int,int", new Properties());
+    deserializeRead.setIncludedFields(new boolean[] { false, true, false });
+    set(deserializeRead, "{\"a\":\"x\",\"b\":1,\"c\":{\"not\":\"checked\"}}");
+    Assert.assertFalse(deserializeRead.readField(0));
+    Assert.assertTrue(deserializeRead.readField(1));
+    Assert.assertEquals(1, deserializeRead.currentInt);
+    Assert.assertFalse(deserializeRead.readField(2));
+  }
+
+  @Test
+  public void testTableProperties() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(JsonSerDe.IGNORE_EXTRA, "false");
+    JsonDeserializeRead deserializeRead = create("a", "int", props);
+    set(deserializeRead, "{\"b\":1}");
+    try {
+      deserializeRead.readNextField();
+      Assert.fail("Unknown field should fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+    set(deserializeRead, "");
+    try {
+      deserializeRead.readNextField();
+      Assert.fail("Empty line should fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+
+    props.setProperty(JsonSerDe.NULL_EMPTY_LINES, "true");
+    deserializeRead = create("a", "int", props);
+    set(deserializeRead, "");
+    Assert.assertFalse(deserializeRead.readNextField());
+  }
+
+  @Test
+  public void testInternalNameCollision() throws Exception {
+    // The second field is _col1, and the first one is named _col1 too.
+    String names = "_col1,b";
+    String types = "int,int";
+    String json = "{\"_col1\":5}";
+
+    Properties props = new Properties();
+    props.setProperty(serdeConstants.LIST_COLUMNS, names);
+    props.setProperty(serdeConstants.LIST_COLUMN_TYPES, types);
+    JsonSerDe serde = new JsonSerDe();
+    serde.initialize(null, props, false);
+    List<?> row = (List<?>) serde.deserialize(new Text(json));
+    Assert.assertEquals(Arrays.asList(null, 5), row);
+
+    JsonDeserializeRead deserializeRead = create(names, types, new Properties());
+    set(deserializeRead, json);
+    Assert.assertFalse(deserializeRead.readField(0));
+    Assert.assertTrue(deserializeRead.readField(1));
+    Assert.assertEquals(5, deserializeRead.currentInt);
+
+    // An out of range index is matched with the field names.
+    deserializeRead = create("_col5,b", types, new Properties());
+    set(deserializeRead, "{\"_col5\":6}");
+    Assert.assertTrue(deserializeRead.readField(0));
+    Assert.assertEquals(6, deserializeRead.currentInt);
+    Assert.assertFalse(deserializeRead.readField(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testComplexTypesRejected() {
+    create("a,b", "int,array<int>", new Properties());
+  }
+}
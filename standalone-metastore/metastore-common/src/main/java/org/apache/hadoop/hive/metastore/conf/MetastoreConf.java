@@ -370,6 +370,16 @@ public enum ConfVars {
          "This can be used in conjunction with hive.metastore.cached.rawstore.cached.object.whitelist. \n" +
          "Example: db2.*, db3\\.tbl1, db3\\..*. The last item can potentially override patterns specified before. \n" +
          "The blacklist also overrides the whitelist."),
+    CACHED_RAW_STORE_LAZY_PARTITION_MAX_MEMORY("metastore.cached.rawstore.lazy.partition.max.memory",
+        "hive.metastore.cached.rawstore.lazy.partition.max.memory", "0", new SizeValidator(),
+        "The maximum memory in bytes used to cache, on demand, the partitions of the tables that are not \n" +
+        "cached by CachedStore (see hive.metastore.cached.rawstore.cached.object.blacklist). The least \n" +
+        "recently used partitions are evicted. Memory used is estimated as for \n" +
+        "hive.metastore.cached.rawstore.max.cache.memory, which has to be positive. 0 disables it."),
+    CACHED_RAW_STORE_LAZY_PARTITION_TTL("metastore.cached.rawstore.lazy.partition.ttl",
+        "hive.metastore.cached.rawstore.lazy.partition.ttl", 60, TimeUnit.SECONDS,
+        "The time after which a partition cached on demand is reloaded from metastore DB, so that the \n" +
+        "changes made through other metastore instances are picked up."),
     CACHED_RAW_STORE_MAX_CACHE_MEMORY("metastore.cached.rawstore.max.cache.memory",
         "hive.metastore.cached.rawstore.max.cache.memory", "1Gb", new SizeValidator(),
         "The maximum memory in bytes that the cached objects can use. "
@@ -1028,6 +1038,27 @@ public enum ConfVars {
         "Minimum number of worker threads in the Thrift server's pool."),
     SERVER_PORT("metastore.thrift.port", "hive.metastore.port", 9083,
         "Hive metastore listener port"),
+    SERVER_SELECTOR_HANDSHAKE_THREADS("metastore.server.selector.handshake.threads",
+        "hive.metastore.server.selector.handshake.threads", 2,
+        "With the selector server, the number of threads that set up the transport of the new\n" +
+        "connections (e.g. do the SASL negotiation), separately from the worker threads that run\n" +
+        "the calls, so that slow clients can't hold up the calls."),
+    SERVER_SELECTOR_HANDSHAKE_TIMEOUT("metastore.server.selector.handshake.timeout",
+        "hive.metastore.server.selector.handshake.timeout", 20, TimeUnit.SECONDS,
+        "With the selector server, the time a new connection has to complete its transport\n" +
+        "setup (e.g. the SASL negotiation) before it is closed."),
+    SERVER_SELECTOR_THREADS("metastore.server.selector.threads",
+        "hive.metastore.server.selector.threads", 2,
+        "With the selector server, the number of threads that do the network IO of the\n" +
+        "connections. The calls are run by up to metastore.server.max.threads worker threads."),
+    SERVER_TYPE("metastore.server.type", "hive.metastore.server.type", "threadpool",
+        new StringSetValidator("threadpool", "selector"),
+        "The Thrift server that serves the metastore clients.\n" +
+        "  threadpool: every connection has its own thread, up to metastore.server.max.threads.\n" +
+        "  selector: the connections are multiplexed over a few selector threads and their calls\n" +
+        "    are run by a bounded pool of worker threads, so idle connections don't hold threads.\n" +
+        "    The clients have to use metastore.thrift.framed.transport.enabled unless they use SASL;\n" +
+        "    SSL is not supported."),
     SSL_KEYSTORE_PASSWORD("metastore.keystore.password", "hive.metastore.keystore.password", "",
         "Metastore SSL certificate keystore password."),
     SSL_KEYSTORE_PATH("metastore.keystore.path", "hive.metastore.keystore.path", "",
@@ -1204,6 +1235,19 @@ public enum ConfVars {
             "select query has incorrect syntax or something similar inside a transaction, the\n" +
             "entire transaction will fail and fall-back to DataNucleus will not be possible. You\n" +
             "should disable the usage of direct SQL inside transactions if that happens in your case."),
+    TXN_GROUP_COMMIT_MAX_BATCH("metastore.txn.group.commit.max.batch",
+        "hive.txn.group.commit.max.batch", 1,
+        "The maximum number of concurrent open_txns() or commit_txn() calls that are merged into one\n" +
+            "transaction of the metastore DB. The calls arriving while another group is written are\n" +
+            "merged into the next group, which saves DB round trips and commits when many streaming\n" +
+            "writers open and commit transactions. A call that fails in a group is retried on its own.\n" +
+            "1 disables it."),
+    TXN_GROUP_COMMIT_WINDOW("metastore.txn.group.commit.window",
+        "hive.txn.group.commit.window", 0, TimeUnit.MILLISECONDS,
+        "The time a group of open_txns() or commit_txn() calls waits for more calls before it is\n" +
+            "written, see hive.txn.group.commit.max.batch. It adds to the latency of every call, so it\n" +
+            "should stay well below the time of a DB transaction. 0 only groups the calls that arrive\n" +
+            "while the previous group is written."),
     TXN_MAX_OPEN_BATCH("metastore.txn.max.open.batch", "hive.txn.max.open.batch", 1000,
         "Maximum number of transactions that can be fetched in one call to open_txns().\n" +
             "This controls how many transactions streaming agents such as Flume or Storm open\n" +
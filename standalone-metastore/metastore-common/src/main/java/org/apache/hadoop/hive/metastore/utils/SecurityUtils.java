@@ -27,6 +27,7 @@
 import org.apache.hadoop.security.token.TokenIdentifier;
 import org.apache.hadoop.security.token.TokenSelector;
 import org.apache.thrift.transport.TSSLTransportFactory;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
@@ -210,6 +211,18 @@ public static TServerSocket getServerSocket(String hiveHost, int portNum) throws
     return new TServerSocket(serverAddress);
   }
 
+  public static TNonblockingServerSocket getNonblockingServerSocket(String hiveHost, int portNum)
+      throws TTransportException {
+    InetSocketAddress serverAddress;
+    if (hiveHost == null || hiveHost.isEmpty()) {
+      // Wildcard bind
+      serverAddress = new InetSocketAddress(portNum);
+    } else {
+      serverAddress = new InetSocketAddress(hiveHost, portNum);
+    }
+    return new TNonblockingServerSocket(serverAddress);
+  }
+
   public static TServerSocket getServerSSLSocket(String hiveHost, int portNum, String keyStorePath,
                                                  String keyStorePassWord, List<String> sslVersionBlacklist) throws TTransportException,
       UnknownHostException {
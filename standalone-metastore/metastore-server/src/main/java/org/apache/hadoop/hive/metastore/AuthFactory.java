@@ -207,6 +207,15 @@ public boolean isSASLWithKerberizedHadoop() {
             && !authTypeStr.equalsIgnoreCase(AuthConstants.AuthTypes.NOSASL.getAuthName());
   }
 
+  /**
+   * Whether the messages are preceded by their length on the wire, as the selector server needs.
+   * This is the case for the framed transport and for all the SASL transports.
+   */
+  boolean isTransportFramed() {
+    return useFramedTransport
+            || !authTypeStr.equalsIgnoreCase(AuthConstants.AuthTypes.NOSASL.getAuthName());
+  }
+
   private static final class ChainedTTransportFactory extends TTransportFactory {
     private final TTransportFactory parentTransFactory;
     private final TTransportFactory childTransFactory;
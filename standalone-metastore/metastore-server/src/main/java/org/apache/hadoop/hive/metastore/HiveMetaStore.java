@@ -193,6 +193,7 @@
 import org.apache.thrift.server.TServerEventHandler;
 import org.apache.thrift.server.TThreadPoolServer;
 import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportFactory;
 import org.slf4j.Logger;
@@ -10286,6 +10287,7 @@ public static void startMetaStore(int port, HadoopThriftAuthBridge bridge,
     boolean tcpKeepAlive = MetastoreConf.getBoolVar(conf, ConfVars.TCP_KEEP_ALIVE);
     boolean useCompactProtocol = MetastoreConf.getBoolVar(conf, ConfVars.USE_THRIFT_COMPACT_PROTOCOL);
     boolean useSSL = MetastoreConf.getBoolVar(conf, ConfVars.USE_SSL);
+    boolean useSelectorServer = "selector".equalsIgnoreCase(MetastoreConf.getVar(conf, ConfVars.SERVER_TYPE));
     HiveMetaStore.HMSHandler baseHandler = new HiveMetaStore.HMSHandler("new db based metaserver",
             conf,false);
     AuthFactory authFactory = new AuthFactory(bridge, conf, baseHandler);
@@ -10314,8 +10316,6 @@ public static void startMetaStore(int port, HadoopThriftAuthBridge bridge,
     }
     IHMSHandler handler = newRetryingHMSHandler(baseHandler, conf);
 
-    TServerSocket serverSocket;
-
     if (useSasl) {
       processor = saslServer.wrapProcessor(
         new ThriftHiveMetastore.Processor<>(handler));
@@ -10336,67 +10336,96 @@ public static void startMetaStore(int port, HadoopThriftAuthBridge bridge,
       LOG.info("Binding host " + msHost + " for metastore server");
     }
 
-    if (!useSSL) {
-      serverSocket = SecurityUtils.getServerSocket(msHost, port);
+    TServer tServer;
+    if (useSelectorServer) {
+      if (useSSL) {
+        throw new IllegalArgumentException(ConfVars.USE_SSL.toString()
+            + " is not supported by the selector server");
+      }
+      if (!authFactory.isTransportFramed()) {
+        throw new IllegalArgumentException(ConfVars.USE_THRIFT_FRAMED_TRANSPORT.toString()
+            + " has to be enabled for the selector server when SASL is not used");
+      }
+      TSelectorServer.Args args = new TSelectorServer.Args(
+          SecurityUtils.getNonblockingServerSocket(msHost, port))
+          .selectorThreads(MetastoreConf.getIntVar(conf, ConfVars.SERVER_SELECTOR_THREADS))
+          .workerThreads(maxWorkerThreads)
+          .handshakeThreads(MetastoreConf.getIntVar(conf, ConfVars.SERVER_SELECTOR_HANDSHAKE_THREADS))
+          .handshakeTimeout(MetastoreConf.getTimeVar(conf,
+              ConfVars.SERVER_SELECTOR_HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+          .maxFrameSize(maxMessageSize)
+          .tcpKeepAlive(tcpKeepAlive)
+          .processor(processor)
+          .transportFactory(transFactory)
+          .protocolFactory(protocolFactory)
+          .inputProtocolFactory(inputProtoFactory);
+      tServer = new TSelectorServer(args);
+      tServer.setServerEventHandler(new SelectorServerEventHandler(baseHandler));
     } else {
-      String keyStorePath = MetastoreConf.getVar(conf, ConfVars.SSL_KEYSTORE_PATH).trim();
-      if (keyStorePath.isEmpty()) {
-        throw new IllegalArgumentException(ConfVars.SSL_KEYSTORE_PATH.toString()
-            + " Not configured for SSL connection");
-      }
-      String keyStorePassword =
-          MetastoreConf.getPassword(conf, MetastoreConf.ConfVars.SSL_KEYSTORE_PASSWORD);
+      TServerSocket serverSocket;
+      if (!useSSL) {
+        serverSocket = SecurityUtils.getServerSocket(msHost, port);
+      } else {
+        String keyStorePath = MetastoreConf.getVar(conf, ConfVars.SSL_KEYSTORE_PATH).trim();
+        if (keyStorePath.isEmpty()) {
+          throw new IllegalArgumentException(ConfVars.SSL_KEYSTORE_PATH.toString()
+              + " Not configured for SSL connection");
+        }
+        String keyStorePassword =
+            MetastoreConf.getPassword(conf, MetastoreConf.ConfVars.SSL_KEYSTORE_PASSWORD);
 
-      // enable SSL support for HMS
-      List<String> sslVersionBlacklist = new ArrayList<>();
-      for (String sslVersion : MetastoreConf.getVar(conf, ConfVars.SSL_PROTOCOL_BLACKLIST).split(",")) {
-        sslVersionBlacklist.add(sslVersion);
-      }
+        // enable SSL support for HMS
+        List<String> sslVersionBlacklist = new ArrayList<>();
+        for (String sslVersion : MetastoreConf.getVar(conf, ConfVars.SSL_PROTOCOL_BLACKLIST).split(",")) {
+          sslVersionBlacklist.add(sslVersion);
+        }
 
-      serverSocket = SecurityUtils.getServerSSLSocket(msHost, port, keyStorePath,
-          keyStorePassword, sslVersionBlacklist);
-    }
+        serverSocket = SecurityUtils.getServerSSLSocket(msHost, port, keyStorePath,
+            keyStorePassword, sslVersionBlacklist);
+      }
 
-    if (tcpKeepAlive) {
-      serverSocket = new TServerSocketKeepAlive(serverSocket);
-    }
+      if (tcpKeepAlive) {
+        serverSocket = new TServerSocketKeepAlive(serverSocket);
+      }
 
-    TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverSocket)
-        .processor(processor)
-        .transportFactory(transFactory)
-        .protocolFactory(protocolFactory)
-        .inputProtocolFactory(inputProtoFactory)
-        .minWorkerThreads(minWorkerThreads)
-        .maxWorkerThreads(maxWorkerThreads);
+      TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverSocket)
+          .processor(processor)
+          .transportFactory(transFactory)
+          .protocolFactory(protocolFactory)
+          .inputProtocolFactory(inputProtoFactory)
+          .minWorkerThreads(minWorkerThreads)
+          .maxWorkerThreads(maxWorkerThreads);
 
-    TServer tServer = new TThreadPoolServer(args);
-    TServerEventHandler tServerEventHandler = new TServerEventHandler() {
-      @Override
-      public void preServe() {
-      }
+      tServer = new TThreadPoolServer(args);
+      TServerEventHandler tServerEventHandler = new TServerEventHandler() {
+        @Override
+        public void preServe() {
+        }
 
-      @Override
-      public ServerContext createContext(TProtocol tProtocol, TProtocol tProtocol1) {
-        Metrics.getOpenConnectionsCounter().inc();
-        return null;
-      }
+        @Override
+        public ServerContext createContext(TProtocol tProtocol, TProtocol tProtocol1) {
+          Metrics.getOpenConnectionsCounter().inc();
+          return null;
+        }
 
-      @Override
-      public void deleteContext(ServerContext serverContext, TProtocol tProtocol, TProtocol tProtocol1) {
-        Metrics.getOpenConnectionsCounter().dec();
-        // If the IMetaStoreClient#close was called, HMSHandler#shutdown would have already
-        // cleaned up thread local RawStore. Otherwise, do it now.
-        cleanupRawStore();
-      }
+        @Override
+        public void deleteContext(ServerContext serverContext, TProtocol tProtocol, TProtocol tProtocol1) {
+          Metrics.getOpenConnectionsCounter().dec();
+          // If the IMetaStoreClient#close was called, HMSHandler#shutdown would have already
+          // cleaned up thread local RawStore. Otherwise, do it now.
+          cleanupRawStore();
+        }
 
-      @Override
-      public void processContext(ServerContext serverContext, TTransport tTransport, TTransport tTransport1) {
-      }
-    };
+        @Override
+        public void processContext(ServerContext serverContext, TTransport tTransport, TTransport tTransport1) {
+        }
+      };
 
-    tServer.setServerEventHandler(tServerEventHandler);
+      tServer.setServerEventHandler(tServerEventHandler);
+    }
     HMSHandler.LOG.info("Started the new metaserver on port [" + port
         + "]...");
+    HMSHandler.LOG.info("Server type = " + (useSelectorServer ? "selector" : "threadpool"));
     HMSHandler.LOG.info("Options.minWorkerThreads = "
         + minWorkerThreads);
     HMSHandler.LOG.info("Options.maxWorkerThreads = "
@@ -10523,6 +10552,71 @@ private static void cleanupRawStore() {
     }
   }
 
+  /**
+   * The event handler of the selector server, which runs the calls of a connection on any of its
+   * worker threads. The per connection state that HMSHandler keeps in thread locals is kept in the
+   * context of the connection, and moved to the thread that runs each call. The RawStore stays
+   * with the worker thread, so it is not shut down when a connection is closed.
+   */
+  private static final class SelectorServerEventHandler implements TServerEventHandler {
+    private final HMSHandler handler;
+
+    private static final class ConnectionContext implements ServerContext {
+      private Configuration conf;
+      private final Map<String, String> modifiedConfig = new HashMap<>();
+    }
+
+    SelectorServerEventHandler(HMSHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void preServe() {
+    }
+
+    @Override
+    public ServerContext createContext(TProtocol tProtocol, TProtocol tProtocol1) {
+      Metrics.getOpenConnectionsCounter().inc();
+      return new ConnectionContext();
+    }
+
+    @Override
+    public void deleteContext(ServerContext serverContext, TProtocol tProtocol, TProtocol tProtocol1) {
+      Metrics.getOpenConnectionsCounter().dec();
+      ConnectionContext context = (ConnectionContext) serverContext;
+      try {
+        if (!context.modifiedConfig.isEmpty()) {
+          attach(context);
+          handler.notifyMetaListenersOnShutDown();
+        }
+      } finally {
+        HMSHandler.threadLocalHMSHandler.remove();
+        HMSHandler.threadLocalConf.remove();
+        HMSHandler.threadLocalModifiedConfig.remove();
+      }
+    }
+
+    @Override
+    public void processContext(ServerContext serverContext, TTransport tTransport, TTransport tTransport1) {
+      attach((ConnectionContext) serverContext);
+      if (tTransport instanceof TSocket) {
+        HMSHandler.setThreadLocalIpAddress(
+            ((TSocket) tTransport).getSocket().getInetAddress().getHostAddress());
+      }
+    }
+
+    private void attach(ConnectionContext context) {
+      HMSHandler.threadLocalHMSHandler.remove();
+      HMSHandler.threadLocalModifiedConfig.set(context.modifiedConfig);
+      if (context.conf == null) {
+        HMSHandler.threadLocalConf.remove();
+        context.conf = handler.getConf();
+      } else {
+        HMSHandler.threadLocalConf.set(context.conf);
+      }
+    }
+  }
+
   private static void signalOtherThreadsToStart(final TServer server, final Lock startLock,
                                                 final Condition startCondition,
                                                 final AtomicBoolean startedServing) {
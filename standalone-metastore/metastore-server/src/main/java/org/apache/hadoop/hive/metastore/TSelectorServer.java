@@ -0,0 +1,529 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.metastore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hive.metastore.metrics.Metrics;
+import org.apache.hadoop.hive.metastore.metrics.MetricsConstants;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.server.ServerContext;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.transport.TNonblockingServerTransport;
+import org.apache.thrift.transport.TNonblockingSocket;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A Thrift server that multiplexes the connections over a few selector threads and runs their
+ * calls on a bounded pool of worker threads, so that, unlike with TThreadPoolServer, the idle
+ * connections don't hold threads.
+ *
+ * The transport of a new connection is set up (e.g. the SASL negotiation is done) on one of a few
+ * handshake threads with blocking IO, so the usual transport factories and processors can be used,
+ * and slow or stalled clients can't take the worker threads from the calls. After that
+ * the connection is served with non-blocking IO, which needs every message to be preceded by its
+ * length on the wire; this is the case for the framed and the SASL transports. A call is read
+ * whole before it is run and the next one is read after its response is sent, so the calls of a
+ * connection run one at a time, but not always on the same thread. The event handler is called on
+ * the worker threads; processContext is given the socket transport of the connection.
+ */
+public class TSelectorServer extends TServer {
+  private static final Logger LOG = LoggerFactory.getLogger(TSelectorServer.class);
+
+  public static class Args extends AbstractServerArgs<Args> {
+    private int selectorThreads = 2;
+    private int workerThreads = 5;
+    private int handshakeThreads = 2;
+    private long handshakeTimeoutMs = 20000;
+    private long maxFrameSize = 100 * 1024 * 1024;
+    private boolean tcpKeepAlive = true;
+
+    public Args(TNonblockingServerTransport transport) {
+      super(transport);
+    }
+
+    public Args selectorThreads(int selectorThreads) {
+      this.selectorThreads = selectorThreads;
+      return this;
+    }
+
+    public Args workerThreads(int workerThreads) {
+      this.workerThreads = workerThreads;
+      return this;
+    }
+
+    public Args handshakeThreads(int handshakeThreads) {
+      this.handshakeThreads = handshakeThreads;
+      return this;
+    }
+
+    public Args handshakeTimeout(long timeout, TimeUnit unit) {
+      this.handshakeTimeoutMs = unit.toMillis(timeout);
+      return this;
+    }
+
+    public Args maxFrameSize(long maxFrameSize) {
+      this.maxFrameSize = maxFrameSize;
+      return this;
+    }
+
+    public Args tcpKeepAlive(boolean tcpKeepAlive) {
+      this.tcpKeepAlive = tcpKeepAlive;
+      return this;
+    }
+  }
+
+  private final Args args;
+  private final SelectorThread[] selectorThreads;
+  private final AtomicInteger nextSelectorThread = new AtomicInteger(0);
+  private ThreadPoolExecutor workers;
+  private ThreadPoolExecutor handshakers;
+  private Selector acceptSelector;
+  private AtomicInteger queuedCalls;
+  private Timer queueTimer;
+  private volatile boolean stopped = false;
+
+  public TSelectorServer(Args args) {
+    super(args);
+    this.args = args;
+    this.selectorThreads = new SelectorThread[args.selectorThreads];
+  }
+
+  @Override
+  public void serve() {
+    TNonblockingServerTransport serverTransport = (TNonblockingServerTransport) serverTransport_;
+    try {
+      serverTransport.listen();
+      acceptSelector = Selector.open();
+      serverTransport.registerSelector(acceptSelector);
+      for (int i = 0; i < selectorThreads.length; i++) {
+        selectorThreads[i] = new SelectorThread(i);
+      }
+    } catch (IOException | TTransportException e) {
+      LOG.error("Could not start the selector server", e);
+      return;
+    }
+    queuedCalls = Metrics.getOrCreateGauge(MetricsConstants.SERVER_QUEUED_CALLS);
+    queueTimer = Metrics.getOrCreateTimer(MetricsConstants.SERVER_QUEUE_TIME);
+    // The threads are created as they are needed, and never time out since they keep the RawStore.
+    workers = new ThreadPoolExecutor(args.workerThreads, args.workerThreads, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Metastore-Worker-%d").build());
+    // The handshakes don't use the RawStore, so their threads can time out.
+    handshakers = new ThreadPoolExecutor(args.handshakeThreads, args.handshakeThreads, 60L,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Metastore-Handshake-%d").build());
+    handshakers.allowCoreThreadTimeOut(true);
+    for (SelectorThread thread : selectorThreads) {
+      thread.start();
+    }
+    if (eventHandler_ != null) {
+      eventHandler_.preServe();
+    }
+    setServing(true);
+    while (!stopped) {
+      try {
+        acceptSelector.select();
+        Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isValid() && key.isAcceptable()) {
+            accept();
+          }
+        }
+      } catch (IOException e) {
+        LOG.warn("Got an IOException while accepting connections", e);
+      }
+    }
+    setServing(false);
+
+    serverTransport.close();
+    for (SelectorThread thread : selectorThreads) {
+      thread.selector.wakeup();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    handshakers.shutdownNow();
+    workers.shutdownNow();
+    try {
+      acceptSelector.close();
+    } catch (IOException e) {
+      LOG.warn("Could not close the accept selector", e);
+    }
+  }
+
+  @Override
+  public void stop() {
+    stopped = true;
+    if (acceptSelector != null) {
+      acceptSelector.wakeup();
+    }
+  }
+
+  private void accept() {
+    final TNonblockingSocket socket;
+    try {
+      socket = (TNonblockingSocket) serverTransport_.accept();
+    } catch (TTransportException e) {
+      LOG.warn("Could not accept a connection", e);
+      return;
+    }
+    final Connection connection = new Connection(socket.getSocketChannel());
+    try {
+      handshakers.execute(new Runnable() {
+        @Override
+        public void run() {
+          connection.setUp();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      connection.close();
+    }
+  }
+
+  private void runCall(final Connection connection) {
+    final long queuedNanos = System.nanoTime();
+    queuedCalls.incrementAndGet();
+    try {
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          queuedCalls.decrementAndGet();
+          if (queueTimer != null) {
+            queueTimer.update(System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS);
+          }
+          connection.process();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      queuedCalls.decrementAndGet();
+      connection.close();
+    }
+  }
+
+  /**
+   * The transport at the bottom of the stack of a connection. It uses the socket while the
+   * connection is set up; after that it reads the call it is given and buffers the response, and
+   * the selector threads do the IO.
+   */
+  private static final class ChannelTransport extends TSocket {
+    private final ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+    ChannelTransport(SocketChannel channel) throws TTransportException {
+      super(channel.socket());
+    }
+
+    /**
+     * Stops using the socket.
+     * @return the bytes that were read ahead from the socket.
+     */
+    byte[] detach() throws IOException {
+      outputStream_.flush();
+      byte[] readAhead = new byte[inputStream_.available()];
+      int length = 0;
+      while (length < readAhead.length) {
+        int read = inputStream_.read(readAhead, length, readAhead.length - length);
+        if (read < 0) {
+          throw new EOFException();
+        }
+        length += read;
+      }
+      inputStream_ = null;
+      outputStream_ = response;
+      return readAhead;
+    }
+
+    void setCall(byte[] call) {
+      inputStream_ = new ByteArrayInputStream(call);
+      response.reset();
+    }
+
+    byte[] getResponse() {
+      return response.toByteArray();
+    }
+  }
+
+  private final class Connection {
+    private final SocketChannel channel;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private ChannelTransport client;
+    private TProcessor processor;
+    private TTransport inputTransport, outputTransport;
+    private TProtocol inputProtocol, outputProtocol;
+    private ServerContext context;
+    private boolean hasContext = false;
+    private SelectorThread selectorThread;
+    private SelectionKey key;
+    /** The bytes that were read ahead while the connection was set up. */
+    private ByteBuffer readAhead;
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private ByteBuffer frame;
+    private ByteBuffer response;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    /** Sets up the transport of the connection with blocking IO; runs on a handshake thread. */
+    void setUp() {
+      byte[] pending;
+      try {
+        channel.configureBlocking(true);
+        channel.socket().setKeepAlive(args.tcpKeepAlive);
+        channel.socket().setSoTimeout((int) args.handshakeTimeoutMs);
+        client = new ChannelTransport(channel);
+        processor = processorFactory_.getProcessor(client);
+        // The SASL transport factories report the failed negotiations with RuntimeExceptions.
+        inputTransport = inputTransportFactory_.getTransport(client);
+        outputTransport = outputTransportFactory_.getTransport(client);
+        inputProtocol = inputProtocolFactory_.getProtocol(inputTransport);
+        outputProtocol = outputProtocolFactory_.getProtocol(outputTransport);
+        if (eventHandler_ != null) {
+          context = eventHandler_.createContext(inputProtocol, outputProtocol);
+          hasContext = true;
+        }
+        pending = client.detach();
+        channel.socket().setSoTimeout(0);
+        channel.configureBlocking(false);
+      } catch (Exception e) {
+        LOG.warn("Could not set up the connection from " + channel.socket().getRemoteSocketAddress(), e);
+        close();
+        return;
+      }
+      readAhead = ByteBuffer.wrap(pending);
+      selectorThread = selectorThreads[(nextSelectorThread.getAndIncrement() & Integer.MAX_VALUE)
+          % selectorThreads.length];
+      selectorThread.register(this);
+    }
+
+    /** Runs the call that was read; runs on a worker thread. */
+    void process() {
+      byte[] call = frame.array();
+      frame = null;
+      header.clear();
+      try {
+        client.setCall(call);
+        if (eventHandler_ != null) {
+          eventHandler_.processContext(context, client, client);
+        }
+        processor.process(inputProtocol, outputProtocol);
+        response = ByteBuffer.wrap(client.getResponse());
+      } catch (TTransportException e) {
+        LOG.debug("Closing the connection after a transport error", e);
+        close();
+        return;
+      } catch (Exception e) {
+        LOG.error("Error occurred during processing of message.", e);
+        close();
+        return;
+      }
+      selectorThread.respond(this);
+    }
+
+    /** Reads what is available; runs on the selector thread. */
+    void read() throws IOException {
+      if (frame == null) {
+        readInto(header);
+        if (header.hasRemaining()) {
+          return;
+        }
+        int size = header.getInt(0);
+        if (size < 0 || size > args.maxFrameSize) {
+          throw new IOException("Invalid frame size " + size + " from "
+              + channel.socket().getRemoteSocketAddress());
+        }
+        frame = ByteBuffer.allocate(4 + size);
+        frame.putInt(size);
+      }
+      readInto(frame);
+      if (!frame.hasRemaining()) {
+        // Don't read the next call until this one is answered.
+        key.interestOps(0);
+        runCall(this);
+      }
+    }
+
+    private void readInto(ByteBuffer buffer) throws IOException {
+      if (readAhead.hasRemaining()) {
+        int length = Math.min(readAhead.remaining(), buffer.remaining());
+        ByteBuffer slice = readAhead.slice();
+        slice.limit(length);
+        buffer.put(slice);
+        readAhead.position(readAhead.position() + length);
+      }
+      if (buffer.hasRemaining() && channel.read(buffer) < 0) {
+        throw new EOFException();
+      }
+    }
+
+    /** Writes the response; runs on the selector thread. */
+    void write() throws IOException {
+      channel.write(response);
+      if (response.hasRemaining()) {
+        key.interestOps(SelectionKey.OP_WRITE);
+        return;
+      }
+      response = null;
+      key.interestOps(SelectionKey.OP_READ);
+      if (readAhead.hasRemaining()) {
+        read();
+      }
+    }
+
+    void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.debug("Could not close the channel", e);
+      }
+      if (!hasContext && inputTransport == null) {
+        return;
+      }
+      Runnable cleanup = new Runnable() {
+        @Override
+        public void run() {
+          if (hasContext) {
+            eventHandler_.deleteContext(context, inputProtocol, outputProtocol);
+          }
+          if (inputTransport != null) {
+            inputTransport.close();
+          }
+        }
+      };
+      try {
+        workers.execute(cleanup);
+      } catch (RejectedExecutionException e) {
+        LOG.debug("Not cleaning up the connection after the server stopped");
+      }
+    }
+  }
+
+  private final class SelectorThread extends Thread {
+    private final Selector selector;
+    private final Queue<Connection> newConnections = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> responses = new ConcurrentLinkedQueue<>();
+
+    SelectorThread(int id) throws IOException {
+      super("Metastore-Selector-" + id);
+      setDaemon(true);
+      selector = Selector.open();
+    }
+
+    void register(Connection connection) {
+      newConnections.add(connection);
+      selector.wakeup();
+    }
+
+    void respond(Connection connection) {
+      responses.add(connection);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!stopped) {
+          selector.select();
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+              if (!key.isValid()) {
+                connection.close();
+              } else if (key.isReadable()) {
+                connection.read();
+              } else if (key.isWritable()) {
+                connection.write();
+              }
+            } catch (IOException | CancelledKeyException e) {
+              LOG.debug("Closing the connection after an IO error", e);
+              connection.close();
+            }
+          }
+          Connection connection;
+          while ((connection = newConnections.poll()) != null) {
+            try {
+              connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+              if (connection.readAhead.hasRemaining()) {
+                connection.read();
+              }
+            } catch (IOException e) {
+              LOG.debug("Closing the connection after an IO error", e);
+              connection.close();
+            }
+          }
+          while ((connection = responses.poll()) != null) {
+            try {
+              connection.write();
+            } catch (IOException | CancelledKeyException e) {
+              LOG.debug("Closing the connection after an IO error", e);
+              connection.close();
+            }
+          }
+        }
+      } catch (IOException e) {
+        LOG.error("Selector thread " + getName() + " failed", e);
+      } finally {
+        for (SelectionKey key : selector.keys()) {
+          ((Connection) key.attachment()).close();
+        }
+        try {
+          selector.close();
+        } catch (IOException e) {
+          LOG.warn("Could not close the selector", e);
+        }
+      }
+    }
+  }
+}
@@ -120,9 +120,13 @@ public class CachedStore implements RawStore, Configurable {
   private Configuration conf;
   private static boolean areTxnStatsSupported;
   private PartitionExpressionProxy expressionProxy = null;
+  // Tables changed in the open transaction, whose lazily cached partitions are invalidated on commit
+  private final List<String[]> lazyPartitionTablesToInvalidate = new ArrayList<>();
   private static String lock = "L";
   private static boolean sharedCacheInited = false;
   private static SharedCache sharedCache = new SharedCache();
+  // Partitions of the tables that are not in sharedCache, cached on demand; null if disabled
+  private static LazyPartitionCache lazyPartitionCache = null;
   private static boolean canUseEvents = false;
   private static long lastEventId;
 
@@ -206,6 +210,7 @@ private void initSharedCache(Configuration conf) {
       if (!sharedCacheInited) {
         sharedCacheInited = true;
         sharedCache.initialize(conf);
+        lazyPartitionCache = LazyPartitionCache.create(conf, sharedCache);
       }
     }
   }
@@ -311,6 +316,9 @@ private static void updateStatsForAlterTable(RawStore rawStore, Table tblBefore,
       String catalogName = event.getCatName() == null ? "" : event.getCatName().toLowerCase();
       String dbName = event.getDbName() == null ? "" : event.getDbName().toLowerCase();
       String tableName = event.getTableName() == null ? "" : event.getTableName().toLowerCase();
+      if (!tableName.isEmpty()) {
+        invalidateLazyPartitions(catalogName, dbName, tableName);
+      }
       if (!shouldCacheTable(catalogName, dbName, tableName)) {
         continue;
       }
@@ -979,7 +987,14 @@ private static void updateTableAggregatePartitionColStats(RawStore rawStore, Str
   }
 
   @Override public boolean commitTransaction() {
-    if (!rawStore.commitTransaction()) {
+    boolean committed = rawStore.commitTransaction();
+    if (!rawStore.isActiveTransaction()) {
+      for (String[] table : lazyPartitionTablesToInvalidate) {
+        invalidateLazyPartitions(table[0], table[1], table[2]);
+      }
+      lazyPartitionTablesToInvalidate.clear();
+    }
+    if (!committed) {
       return false;
     }
 
@@ -1008,6 +1023,9 @@ private static void updateTableAggregatePartitionColStats(RawStore rawStore, Str
 
   @Override public void rollbackTransaction() {
     rawStore.rollbackTransaction();
+    if (!rawStore.isActiveTransaction()) {
+      lazyPartitionTablesToInvalidate.clear();
+    }
   }
 
   @Override public void createCatalog(Catalog cat) throws MetaException {
@@ -1164,6 +1182,7 @@ private void validateTableType(Table tbl) {
   @Override public boolean dropTable(String catName, String dbName, String tblName)
       throws MetaException, NoSuchObjectException, InvalidObjectException, InvalidInputException {
     boolean succ = rawStore.dropTable(catName, dbName, tblName);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (succ && !canUseEvents) {
       catName = normalizeIdentifier(catName);
@@ -1231,6 +1250,8 @@ private void validateTableType(Table tbl) {
 
   @Override public boolean addPartition(Partition part) throws InvalidObjectException, MetaException {
     boolean succ = rawStore.addPartition(part);
+    invalidateLazyPartitionsOnCommit(part.isSetCatName() ? part.getCatName() : DEFAULT_CATALOG_NAME, part.getDbName(),
+        part.getTableName());
     // in case of event based cache update, cache will be updated during commit.
     if (succ && !canUseEvents) {
       String dbName = normalizeIdentifier(part.getDbName());
@@ -1247,6 +1268,7 @@ private void validateTableType(Table tbl) {
   @Override public boolean addPartitions(String catName, String dbName, String tblName, List<Partition> parts)
       throws InvalidObjectException, MetaException {
     boolean succ = rawStore.addPartitions(catName, dbName, tblName, parts);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (succ && !canUseEvents) {
       catName = normalizeIdentifier(catName);
@@ -1263,6 +1285,7 @@ private void validateTableType(Table tbl) {
   @Override public boolean addPartitions(String catName, String dbName, String tblName,
       PartitionSpecProxy partitionSpec, boolean ifNotExists) throws InvalidObjectException, MetaException {
     boolean succ = rawStore.addPartitions(catName, dbName, tblName, partitionSpec, ifNotExists);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (succ && !canUseEvents) {
       catName = normalizeIdentifier(catName);
@@ -1290,6 +1313,9 @@ private void validateTableType(Table tbl) {
     catName = normalizeIdentifier(catName);
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
+    if (validWriteIds == null && canUseLazyPartitions(catName, dbName, tblName)) {
+      return lazyPartitionCache.getPartition(catName, dbName, tblName, partVals, rawStore);
+    }
     if (!shouldCacheTable(catName, dbName, tblName) || (canUseEvents && rawStore.isActiveTransaction())) {
       return rawStore.getPartition(catName, dbName, tblName, partVals, validWriteIds);
     }
@@ -1330,6 +1356,7 @@ private void validateTableType(Table tbl) {
   @Override public boolean dropPartition(String catName, String dbName, String tblName, List<String> partVals)
       throws MetaException, NoSuchObjectException, InvalidObjectException, InvalidInputException {
     boolean succ = rawStore.dropPartition(catName, dbName, tblName, partVals);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (succ && !canUseEvents) {
       catName = normalizeIdentifier(catName);
@@ -1346,6 +1373,7 @@ private void validateTableType(Table tbl) {
   @Override public void dropPartitions(String catName, String dbName, String tblName, List<String> partNames)
       throws MetaException, NoSuchObjectException {
     rawStore.dropPartitions(catName, dbName, tblName, partNames);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (canUseEvents) {
       return;
@@ -1388,6 +1416,8 @@ private void validateTableType(Table tbl) {
   @Override public Table alterTable(String catName, String dbName, String tblName, Table newTable, String validWriteIds)
       throws InvalidObjectException, MetaException {
     newTable = rawStore.alterTable(catName, dbName, tblName, newTable, validWriteIds);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
+    invalidateLazyPartitionsOnCommit(catName, newTable.getDbName(), newTable.getTableName());
     // in case of event based cache update, cache will be updated during commit.
     if (canUseEvents) {
       return newTable;
@@ -1533,6 +1563,7 @@ public List<String> listPartitionNames(String catName, String dbName, String tbl
   @Override public Partition alterPartition(String catName, String dbName, String tblName, List<String> partVals,
       Partition newPart, String validWriteIds) throws InvalidObjectException, MetaException {
     newPart = rawStore.alterPartition(catName, dbName, tblName, partVals, newPart, validWriteIds);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (canUseEvents) {
       return newPart;
@@ -1551,6 +1582,7 @@ public List<String> listPartitionNames(String catName, String dbName, String tbl
       List<List<String>> partValsList, List<Partition> newParts, long writeId, String validWriteIds)
       throws InvalidObjectException, MetaException {
     newParts = rawStore.alterPartitions(catName, dbName, tblName, partValsList, newParts, writeId, validWriteIds);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache will be updated during commit.
     if (canUseEvents) {
       return newParts;
@@ -1660,6 +1692,9 @@ public List<Partition> getPartitionsByFilter(String catName, String dbName, Stri
     catName = StringUtils.normalizeIdentifier(catName);
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
+    if (canUseLazyPartitions(catName, dbName, tblName)) {
+      return lazyPartitionCache.getPartitionsByNames(catName, dbName, tblName, partNames, rawStore);
+    }
     if (!shouldCacheTable(catName, dbName, tblName) || (canUseEvents && rawStore.isActiveTransaction())) {
       return rawStore.getPartitionsByNames(catName, dbName, tblName, partNames);
     }
@@ -2085,6 +2120,9 @@ private static void updateTableColumnsStatsInternal(Configuration conf, ColumnSt
       throws NoSuchObjectException, MetaException, InvalidObjectException, InvalidInputException {
     Map<String, String> newParams =
         rawStore.updatePartitionColumnStatistics(colStats, partVals, validWriteIds, writeId);
+    ColumnStatisticsDesc statsDesc = colStats.getStatsDesc();
+    invalidateLazyPartitionsOnCommit(statsDesc.isSetCatName() ? statsDesc.getCatName() : DEFAULT_CATALOG_NAME,
+        statsDesc.getDbName(), statsDesc.getTableName());
     // in case of event based cache update, cache is updated during commit txn
     if (newParams != null && !canUseEvents) {
       String catName = colStats.getStatsDesc().isSetCatName() ? normalizeIdentifier(
@@ -2137,6 +2175,7 @@ private static void updateTableColumnsStatsInternal(Configuration conf, ColumnSt
       throw new RuntimeException("CachedStore can only be enabled for Hive engine");
     }
     boolean succ = rawStore.deletePartitionColumnStatistics(catName, dbName, tblName, partName, partVals, colName, engine);
+    invalidateLazyPartitionsOnCommit(catName, dbName, tblName);
     // in case of event based cache update, cache is updated during commit txn.
     if (succ && !canUseEvents) {
       catName = normalizeIdentifier(catName);
@@ -2808,6 +2847,11 @@ static void setBlacklistPattern(List<Pattern> patterns) {
     blacklistPatterns = patterns;
   }
 
+  // For testing
+  static void setLazyPartitionCache(LazyPartitionCache cache) {
+    lazyPartitionCache = cache;
+  }
+
   // Determines if we should cache a table (& its partitions, stats etc),
   // based on whitelist/blacklist
   static boolean shouldCacheTable(String catName, String dbName, String tblName) {
@@ -2822,6 +2866,39 @@ static boolean shouldCacheTable(String catName, String dbName, String tblName) {
     return true;
   }
 
+  /**
+   * Whether the partitions of a table can be served by lazyPartitionCache. They are cached only
+   * for the tables that sharedCache does not cache, and never from within a transaction, which
+   * may see its own uncommitted changes.
+   */
+  private boolean canUseLazyPartitions(String catName, String dbName, String tblName) {
+    return lazyPartitionCache != null && !shouldCacheTable(catName, dbName, tblName)
+        && !rawStore.isActiveTransaction();
+  }
+
+  /**
+   * Stops serving the cached partitions of a table changed through this store once the change is
+   * committed. Within a transaction this is deferred to the commit, as a concurrent reader could
+   * otherwise load the partitions before the commit and cache them under the new version.
+   */
+  private void invalidateLazyPartitionsOnCommit(String catName, String dbName, String tblName) {
+    if (lazyPartitionCache == null) {
+      return;
+    }
+    if (rawStore.isActiveTransaction()) {
+      lazyPartitionTablesToInvalidate.add(new String[] {catName, dbName, tblName});
+    } else {
+      invalidateLazyPartitions(catName, dbName, tblName);
+    }
+  }
+
+  private static void invalidateLazyPartitions(String catName, String dbName, String tblName) {
+    if (lazyPartitionCache != null) {
+      lazyPartitionCache.invalidateTable(normalizeIdentifier(catName), normalizeIdentifier(dbName),
+          normalizeIdentifier(tblName));
+    }
+  }
+
   static List<Pattern> createPatterns(String configStr) {
     List<String> patternStrs = Arrays.asList(configStr.split(","));
     List<Pattern> patterns = new ArrayList<Pattern>();
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.metastore.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.RawStore;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf.ConfVars;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches, on demand, the partitions of the tables that are not cached by SharedCache; these are
+ * typically the very large tables that are kept out of the prewarm with
+ * metastore.cached.rawstore.cached.object.blacklist. The partitions are loaded from the RawStore
+ * when they are first asked for, the least recently used ones are evicted when the estimated size
+ * of the cached partitions exceeds the limit, and each one is reloaded after a TTL so that the
+ * changes made through other metastore instances are picked up.
+ *
+ * The key of a partition includes the version of its table. A table is given a new version when
+ * its partitions are first loaded, and a write to the table drops that version, so the partitions
+ * cached before the write are not served anymore and age out of the cache; a load that runs
+ * concurrently with the write caches its result under the dropped version. Only the tables whose
+ * partitions have been loaded have a version, and the versions expire with the partitions.
+ */
+class LazyPartitionCache {
+  private static final Logger LOG = LoggerFactory.getLogger(LazyPartitionCache.class.getName());
+
+  private final Cache<String, Partition> partitionCache;
+  private final Cache<String, Long> tableVersions;
+  private final AtomicLong lastVersion = new AtomicLong(0);
+
+  /**
+   * Creates the cache if it is enabled; it relies on the size estimation of SharedCache, so the
+   * latter has to be initialized with memory estimation enabled.
+   */
+  static LazyPartitionCache create(Configuration conf, SharedCache sharedCache) {
+    long maxSizeInBytes = MetastoreConf.getSizeVar(conf, ConfVars.CACHED_RAW_STORE_LAZY_PARTITION_MAX_MEMORY);
+    if (maxSizeInBytes <= 0) {
+      return null;
+    }
+    if (MetastoreConf.getSizeVar(conf, ConfVars.CACHED_RAW_STORE_MAX_CACHE_MEMORY) <= 0) {
+      LOG.warn("Not caching partitions on demand since memory estimation is disabled by "
+          + ConfVars.CACHED_RAW_STORE_MAX_CACHE_MEMORY.getVarname());
+      return null;
+    }
+    long ttlMs = MetastoreConf.getTimeVar(conf, ConfVars.CACHED_RAW_STORE_LAZY_PARTITION_TTL, TimeUnit.MILLISECONDS);
+    LOG.info("Caching partitions on demand with max memory " + maxSizeInBytes + " and ttl " + ttlMs + "ms");
+    return new LazyPartitionCache(maxSizeInBytes, ttlMs, sharedCache);
+  }
+
+  @VisibleForTesting
+  LazyPartitionCache(long maxSizeInBytes, long ttlMs, SharedCache sharedCache) {
+    // SharedCache creates the estimator of a class on first use without locking, so create it
+    // here rather than from concurrent loads.
+    sharedCache.getObjectSize(Partition.class, new Partition());
+    partitionCache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeInBytes)
+        .weigher((String key, Partition part) -> 2 * key.length() + sharedCache.getObjectSize(Partition.class, part))
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .build();
+    // The partitions of a table are cached when its version is read, so once the version has not
+    // been read for the TTL, none of them are left.
+    tableVersions = CacheBuilder.newBuilder()
+        .expireAfterAccess(ttlMs, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  Partition getPartition(String catName, String dbName, String tblName, List<String> partVals, RawStore rawStore)
+      throws MetaException, NoSuchObjectException {
+    String key = buildTableVersionKey(catName, dbName, tblName) + CacheUtils.buildPartitionCacheKey(partVals);
+    Partition part = partitionCache.getIfPresent(key);
+    if (part != null) {
+      return part.deepCopy();
+    }
+    part = rawStore.getPartition(catName, dbName, tblName, partVals);
+    if (part != null) {
+      partitionCache.put(key, part.deepCopy());
+    }
+    return part;
+  }
+
+  /**
+   * Gets the partitions with the given names, loading the ones that are not cached with a single
+   * call to the RawStore. The partitions are returned in the order of the names.
+   */
+  List<Partition> getPartitionsByNames(String catName, String dbName, String tblName, List<String> partNames,
+      RawStore rawStore) throws MetaException, NoSuchObjectException {
+    String tableKey = buildTableVersionKey(catName, dbName, tblName);
+    List<String> keys = new ArrayList<>(partNames.size());
+    List<String> missingNames = new ArrayList<>();
+    Map<String, Partition> partsByKey = new HashMap<>();
+    for (String partName : partNames) {
+      String key = tableKey + CacheUtils.buildPartitionCacheKey(CachedStore.partNameToVals(partName));
+      keys.add(key);
+      Partition part = partitionCache.getIfPresent(key);
+      if (part != null) {
+        partsByKey.put(key, part.deepCopy());
+      } else {
+        missingNames.add(partName);
+      }
+    }
+    if (!missingNames.isEmpty()) {
+      LOG.debug("Loading {} of {} partitions of {}.{}", missingNames.size(), partNames.size(), dbName, tblName);
+      List<Partition> loaded = rawStore.getPartitionsByNames(catName, dbName, tblName, missingNames);
+      for (Partition part : loaded) {
+        String key = tableKey + CacheUtils.buildPartitionCacheKey(part.getValues());
+        partitionCache.put(key, part.deepCopy());
+        partsByKey.put(key, part);
+      }
+    }
+    List<Partition> result = new ArrayList<>(partsByKey.size());
+    for (String key : keys) {
+      Partition part = partsByKey.get(key);
+      if (part != null) {
+        result.add(part);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Stops serving the cached partitions of a table; called for any change of the table or of its
+   * partitions.
+   */
+  void invalidateTable(String catName, String dbName, String tblName) {
+    tableVersions.invalidate(CacheUtils.buildTableKey(catName, dbName, tblName));
+  }
+
+  @VisibleForTesting
+  long size() {
+    partitionCache.cleanUp();
+    return partitionCache.size();
+  }
+
+  @VisibleForTesting
+  long tableCount() {
+    tableVersions.cleanUp();
+    return tableVersions.size();
+  }
+
+  private String buildTableVersionKey(String catName, String dbName, String tblName) {
+    String tableKey = CacheUtils.buildTableKey(catName, dbName, tblName);
+    Long version = tableVersions.asMap().computeIfAbsent(tableKey, k -> lastVersion.incrementAndGet());
+    return CacheUtils.buildKey(tableKey, String.valueOf(version), "");
+  }
+}
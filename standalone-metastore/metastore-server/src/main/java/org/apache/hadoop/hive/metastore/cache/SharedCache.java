@@ -22,6 +22,7 @@
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -31,12 +32,14 @@
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.common.cache.Cache;
@@ -80,15 +83,17 @@
 import static org.apache.hadoop.hive.metastore.utils.StringUtils.normalizeIdentifier;
 
 public class SharedCache {
-  private static ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock(true);
+  // Serializes the writers of the catalog, database and table caches. The caches are concurrent
+  // maps that are updated in place or swapped as a whole, so the readers don't take it.
+  private static final ReentrantLock cacheLock = new ReentrantLock();
   private static final long MAX_DEFAULT_CACHE_SIZE = 1024 * 1024;
   private boolean isCatalogCachePrewarmed = false;
-  private Map<String, Catalog> catalogCache = new TreeMap<>();
+  private Map<String, Catalog> catalogCache = new ConcurrentSkipListMap<>();
   private HashSet<String> catalogsDeletedDuringPrewarm = new HashSet<>();
   private AtomicBoolean isCatalogCacheDirty = new AtomicBoolean(false);
 
   // For caching Database objects. Key is database name
-  private Map<String, Database> databaseCache = new TreeMap<>();
+  private volatile Map<String, Database> databaseCache = new ConcurrentSkipListMap<>();
   private boolean isDatabaseCachePrewarmed = false;
   private HashSet<String> databasesDeletedDuringPrewarm = new HashSet<>();
   private AtomicBoolean isDatabaseCacheDirty = new AtomicBoolean(false);
@@ -101,8 +106,18 @@ public class SharedCache {
   private boolean isTableCachePrewarmed = false;
   private HashSet<String> tablesDeletedDuringPrewarm = new HashSet<>();
   private AtomicBoolean isTableCacheDirty = new AtomicBoolean(false);
-  private Map<ByteArrayWrapper, StorageDescriptorWrapper> sdCache = new HashMap<>();
-  private static MessageDigest md;
+  private Map<ByteArrayWrapper, StorageDescriptorWrapper> sdCache = new ConcurrentHashMap<>();
+  // MessageDigest is not thread safe, and the wrappers are built concurrently.
+  private static final ThreadLocal<MessageDigest> md = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new RuntimeException("should not happen", e);
+      }
+    }
+  };
   private static final Logger LOG = LoggerFactory.getLogger(SharedCache.class.getName());
   private AtomicLong cacheUpdateCount = new AtomicLong(0);
   private long maxCacheSizeInBytes = -1;
@@ -129,14 +144,6 @@ private enum MemberName {
     TABLE_COL_STATS_CACHE, PARTITION_CACHE, PARTITION_COL_STATS_CACHE, AGGR_COL_STATS_CACHE
   }
 
-  static {
-    try {
-      md = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException("should not happen", e);
-    }
-  }
-
   static class TableWrapperSizeUpdater implements Runnable {
     private Set<String> setToUpdate;
     private Cache<String, TableWrapper> cache;
@@ -200,10 +207,7 @@ public void onRemoval(RemovalNotification<String, TableWrapper> notification) {
               TableWrapper tblWrapper = notification.getValue();
               RemovalCause cause = notification.getCause();
               if (cause.equals(RemovalCause.COLLECTED) || cause.equals(RemovalCause.EXPIRED)) {
-                byte[] sdHash = tblWrapper.getSdHash();
-                if (sdHash != null) {
-                  decrSd(sdHash);
-                }
+                tblWrapper.releaseSd(SharedCache.this);
               }
             }
           });
@@ -265,15 +269,17 @@ class TableWrapper {
     private int partitionCacheSize;
     private int partitionColStatsCacheSize;
     private int aggrColStatsCacheSize;
+    private boolean isSdReleased = false;
 
-    private ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock(true);
+    private ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
     // For caching column stats for an unpartitioned table
     // Key is column name and the value is the col stat object
     private Map<String, ColumnStatisticsObj> tableColStatsCache = new ConcurrentHashMap<String, ColumnStatisticsObj>();
     private AtomicBoolean isTableColStatsCacheDirty = new AtomicBoolean(false);
     // For caching partition objects
-    // Ket is partition values and the value is a wrapper around the partition object
-    private Map<String, PartitionWrapper> partitionCache = new ConcurrentHashMap<String, PartitionWrapper>();
+    // Ket is partition values and the value is a wrapper around the partition object.
+    // A refresh builds a new map and swaps it in, holding the table lock only for the swap.
+    private volatile Map<String, PartitionWrapper> partitionCache = new ConcurrentHashMap<String, PartitionWrapper>();
     private AtomicBoolean isPartitionCacheDirty = new AtomicBoolean(false);
     // For caching column stats for a partitioned table
     // Key is aggregate of partition values, column name and the value is the col stat object
@@ -344,6 +350,19 @@ public Table getTable() {
       return t;
     }
 
+    /**
+     * Assembles the table with its storage descriptor; the table lock keeps the descriptor
+     * referenced while it is copied. Returns null if the table was removed from the cache.
+     */
+    Table assembleTable(SharedCache sharedCache) {
+      try {
+        tableLock.readLock().lock();
+        return isSdReleased ? null : CacheUtils.assemble(this, sharedCache);
+      } finally {
+        tableLock.readLock().unlock();
+      }
+    }
+
     public void setTable(Table t) {
       this.t = t;
     }
@@ -610,32 +629,43 @@ public void alterPartitions(List<List<String>> partValsList, List<Partition> new
     }
 
     public void refreshPartitions(List<Partition> partitions, SharedCache sharedCache) {
-      Map<String, PartitionWrapper> newPartitionCache = new HashMap<String, PartitionWrapper>();
+      // Build the new partitions without the lock, so that the readers are not blocked meanwhile.
+      Map<String, PartitionWrapper> newPartitionCache = new ConcurrentHashMap<String, PartitionWrapper>();
+      int size = 0;
+      for (Partition part : partitions) {
+        PartitionWrapper wrapper = makePartitionWrapper(part, sharedCache);
+        PartitionWrapper oldWrapper =
+            newPartitionCache.put(CacheUtils.buildPartitionCacheKey(part.getValues()), wrapper);
+        if (oldWrapper != null) {
+          releasePartitionSds(Collections.singleton(oldWrapper), sharedCache);
+        }
+        size += getObjectSize(PartitionWrapper.class, wrapper);
+      }
+      Map<String, PartitionWrapper> oldPartitionCache;
       try {
         tableLock.writeLock().lock();
-        int size = 0;
-        for (Partition part : partitions) {
-          if (isPartitionCacheDirty.compareAndSet(true, false)) {
-            LOG.debug("Skipping partition cache update for table: " + getTable().getTableName()
-                + "; the partition list we have is dirty.");
-            return;
-          }
-          String key = CacheUtils.buildPartitionCacheKey(part.getValues());
-          PartitionWrapper wrapper = partitionCache.get(key);
-          if (wrapper != null) {
-            if (wrapper.getSdHash() != null) {
-              sharedCache.decrSd(wrapper.getSdHash());
-            }
-          }
-          wrapper = makePartitionWrapper(part, sharedCache);
-          newPartitionCache.put(key, wrapper);
-          size += getObjectSize(PartitionWrapper.class, wrapper);
+        if (isPartitionCacheDirty.compareAndSet(true, false)) {
+          LOG.debug("Skipping partition cache update for table: " + getTable().getTableName()
+              + "; the partition list we have is dirty.");
+          oldPartitionCache = newPartitionCache;
+        } else {
+          oldPartitionCache = partitionCache;
+          partitionCache = newPartitionCache;
+          updateMemberSize(MemberName.PARTITION_CACHE, size, SizeMode.Snapshot);
         }
-        partitionCache = newPartitionCache;
-        updateMemberSize(MemberName.PARTITION_CACHE, size, SizeMode.Snapshot);
       } finally {
         tableLock.writeLock().unlock();
       }
+      // The readers of the old partitions have released the read lock by now.
+      releasePartitionSds(oldPartitionCache.values(), sharedCache);
+    }
+
+    private void releasePartitionSds(Collection<PartitionWrapper> wrappers, SharedCache sharedCache) {
+      for (PartitionWrapper wrapper : wrappers) {
+        if (wrapper.getSdHash() != null) {
+          sharedCache.decrSd(wrapper.getSdHash());
+        }
+      }
     }
 
     public boolean updateTableColStats(List<ColumnStatisticsObj> colStatsForTable) {
@@ -1044,30 +1074,45 @@ public void refreshAggrPartitionColStats(AggrStats aggrStatsAllPartitions,
     }
 
     private void updateTableObj(Table newTable, SharedCache sharedCache) {
-      byte[] sdHash = getSdHash();
-      // Remove old table object's sd hash
-      if (sdHash != null) {
-        sharedCache.decrSd(sdHash);
-      }
       Table tblCopy = newTable.deepCopy();
       if (tblCopy.getPartitionKeys() != null) {
         for (FieldSchema fs : tblCopy.getPartitionKeys()) {
           fs.setName(StringUtils.normalizeIdentifier(fs.getName()));
         }
       }
-      setTable(tblCopy);
-      if (tblCopy.getSd() != null) {
-        sdHash = MetaStoreServerUtils.hashStorageDescriptor(tblCopy.getSd(), md);
-        StorageDescriptor sd = tblCopy.getSd();
-        sharedCache.increSd(sd, sdHash);
+      // Reference the new sd before releasing the old one, so that a shared sd is not dropped
+      // from the cache in between.
+      byte[] newSdHash = null;
+      StorageDescriptor sd = tblCopy.getSd();
+      if (sd != null) {
+        newSdHash = MetaStoreServerUtils.hashStorageDescriptor(sd, md.get());
+        sharedCache.increSd(sd, newSdHash);
         tblCopy.setSd(null);
-        setSdHash(sdHash);
-        setLocation(sd.getLocation());
-        setParameters(sd.getParameters());
-      } else {
-        setSdHash(null);
-        setLocation(null);
-        setParameters(null);
+      }
+      try {
+        tableLock.writeLock().lock();
+        byte[] oldSdHash = getSdHash();
+        setTable(tblCopy);
+        setSdHash(newSdHash);
+        setLocation(sd == null ? null : sd.getLocation());
+        setParameters(sd == null ? null : sd.getParameters());
+        if (oldSdHash != null) {
+          sharedCache.decrSd(oldSdHash);
+        }
+      } finally {
+        tableLock.writeLock().unlock();
+      }
+    }
+
+    private void releaseSd(SharedCache sharedCache) {
+      try {
+        tableLock.writeLock().lock();
+        if (sdHash != null && !isSdReleased) {
+          sharedCache.decrSd(sdHash);
+        }
+        isSdReleased = true;
+      } finally {
+        tableLock.writeLock().unlock();
       }
     }
 
@@ -1075,7 +1120,7 @@ private PartitionWrapper makePartitionWrapper(Partition part, SharedCache shared
       Partition partCopy = part.deepCopy();
       PartitionWrapper wrapper;
       if (part.getSd() != null) {
-        byte[] sdHash = MetaStoreServerUtils.hashStorageDescriptor(part.getSd(), md);
+        byte[] sdHash = MetaStoreServerUtils.hashStorageDescriptor(part.getSd(), md.get());
         StorageDescriptor sd = part.getSd();
         sharedCache.increSd(sd, sdHash);
         partCopy.setSd(null);
@@ -1159,7 +1204,7 @@ public void populateCatalogsInCache(Collection<Catalog> catalogs) {
       // ObjectStore also stores db name in lowercase
       catCopy.setName(catCopy.getName().toLowerCase());
       try {
-        cacheLock.writeLock().lock();
+        cacheLock.lock();
         // Since we allow write operations on cache while prewarm is happening:
         // 1. Don't add databases that were deleted while we were preparing list for prewarm
         // 2. Skip overwriting exisiting db object
@@ -1171,51 +1216,48 @@ public void populateCatalogsInCache(Collection<Catalog> catalogs) {
         catalogsDeletedDuringPrewarm.clear();
         isCatalogCachePrewarmed = true;
       } finally {
-        cacheLock.writeLock().unlock();
+        cacheLock.unlock();
       }
     }
   }
 
   public Catalog getCatalogFromCache(String name) {
-    Catalog cat = null;
-    try {
-      cacheLock.readLock().lock();
-      if (catalogCache.get(name) != null) {
-        cat = catalogCache.get(name).deepCopy();
-      }
-    } finally {
-      cacheLock.readLock().unlock();
-    }
-    return cat;
+    // Read the entry once; a writer may replace or remove it meanwhile.
+    Catalog cat = catalogCache.get(name);
+    return cat == null ? null : cat.deepCopy();
   }
 
   public void addCatalogToCache(Catalog cat) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       Catalog catCopy = cat.deepCopy();
       // ObjectStore also stores db name in lowercase
       catCopy.setName(catCopy.getName().toLowerCase());
       catalogCache.put(cat.getName(), catCopy);
       isCatalogCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public void alterCatalogInCache(String catName, Catalog newCat) {
     try {
-      cacheLock.writeLock().lock();
-      removeCatalogFromCache(catName);
-      addCatalogToCache(newCat.deepCopy());
+      cacheLock.lock();
+      // Replace the entry in place, so that the readers always find the catalog.
+      addCatalogToCache(newCat);
+      String oldName = normalizeIdentifier(catName);
+      if (!oldName.equals(newCat.getName())) {
+        removeCatalogFromCache(oldName);
+      }
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public void removeCatalogFromCache(String name) {
     name = normalizeIdentifier(name);
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       // If db cache is not yet prewarmed, add this to a set which the prewarm thread can check
       // so that the prewarm thread does not add it back
       if (!isCatalogCachePrewarmed) {
@@ -1225,17 +1267,12 @@ public void removeCatalogFromCache(String name) {
         isCatalogCacheDirty.set(true);
       }
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public List<String> listCachedCatalogs() {
-    try {
-      cacheLock.readLock().lock();
-      return new ArrayList<>(catalogCache.keySet());
-    } finally {
-      cacheLock.readLock().unlock();
-    }
+    return new ArrayList<>(catalogCache.keySet());
   }
 
   public boolean isCatalogCachePrewarmed() {
@@ -1243,17 +1280,9 @@ public boolean isCatalogCachePrewarmed() {
   }
 
   public Database getDatabaseFromCache(String catName, String name) {
-    Database db = null;
-    try {
-      cacheLock.readLock().lock();
-      String key = CacheUtils.buildDbKey(catName, name);
-      if (databaseCache.get(key) != null) {
-        db = databaseCache.get(key).deepCopy();
-      }
-    } finally {
-      cacheLock.readLock().unlock();
-    }
-    return db;
+    // Read the entry once; a writer may replace or remove it meanwhile.
+    Database db = databaseCache.get(CacheUtils.buildDbKey(catName, name));
+    return db == null ? null : db.deepCopy();
   }
 
   public void populateDatabasesInCache(List<Database> databases) {
@@ -1262,7 +1291,7 @@ public void populateDatabasesInCache(List<Database> databases) {
       // ObjectStore also stores db name in lowercase
       dbCopy.setName(dbCopy.getName().toLowerCase());
       try {
-        cacheLock.writeLock().lock();
+        cacheLock.lock();
         // Since we allow write operations on cache while prewarm is happening:
         // 1. Don't add databases that were deleted while we were preparing list for prewarm
         // 2. Skip overwriting exisiting db object
@@ -1275,7 +1304,7 @@ public void populateDatabasesInCache(List<Database> databases) {
         databasesDeletedDuringPrewarm.clear();
         isDatabaseCachePrewarmed = true;
       } finally {
-        cacheLock.writeLock().unlock();
+        cacheLock.unlock();
       }
     }
   }
@@ -1286,7 +1315,7 @@ public boolean isDatabaseCachePrewarmed() {
 
   public void addDatabaseToCache(Database db) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       Database dbCopy = db.deepCopy();
       // ObjectStore also stores db name in lowercase
       dbCopy.setName(dbCopy.getName().toLowerCase());
@@ -1294,13 +1323,13 @@ public void addDatabaseToCache(Database db) {
       databaseCache.put(CacheUtils.buildDbKey(dbCopy.getCatalogName(), dbCopy.getName()), dbCopy);
       isDatabaseCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public void removeDatabaseFromCache(String catName, String dbName) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       // If db cache is not yet prewarmed, add this to a set which the prewarm thread can check
       // so that the prewarm thread does not add it back
       String key = CacheUtils.buildDbKey(catName, dbName);
@@ -1311,41 +1340,31 @@ public void removeDatabaseFromCache(String catName, String dbName) {
         isDatabaseCacheDirty.set(true);
       }
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public List<String> listCachedDatabases(String catName) {
     List<String> results = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (String pair : databaseCache.keySet()) {
-        String[] n = CacheUtils.splitDbName(pair);
-        if (catName.equals(n[0])) {
-          results.add(n[1]);
-        }
+    for (String pair : databaseCache.keySet()) {
+      String[] n = CacheUtils.splitDbName(pair);
+      if (catName.equals(n[0])) {
+        results.add(n[1]);
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return results;
   }
 
   public List<String> listCachedDatabases(String catName, String pattern) {
     List<String> results = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (String pair : databaseCache.keySet()) {
-        String[] n = CacheUtils.splitDbName(pair);
-        if (catName.equals(n[0])) {
-          n[1] = StringUtils.normalizeIdentifier(n[1]);
-          if (CacheUtils.matches(n[1], pattern)) {
-            results.add(n[1]);
-          }
+    for (String pair : databaseCache.keySet()) {
+      String[] n = CacheUtils.splitDbName(pair);
+      if (catName.equals(n[0])) {
+        n[1] = StringUtils.normalizeIdentifier(n[1]);
+        if (CacheUtils.matches(n[1], pattern)) {
+          results.add(n[1]);
         }
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return results;
   }
@@ -1356,12 +1375,17 @@ public List<String> listCachedDatabases(String catName, String pattern) {
    */
   public void alterDatabaseInCache(String catName, String dbName, Database newDb) {
     try {
-      cacheLock.writeLock().lock();
-      removeDatabaseFromCache(catName, dbName);
-      addDatabaseToCache(newDb.deepCopy());
+      cacheLock.lock();
+      // Replace the entry in place, so that the readers always find the database.
+      addDatabaseToCache(newDb);
+      String oldKey = CacheUtils.buildDbKey(catName, dbName);
+      if (!oldKey.equals(CacheUtils.buildDbKey(newDb.getCatalogName().toLowerCase(),
+          newDb.getName().toLowerCase()))) {
+        removeDatabaseFromCache(catName, dbName);
+      }
       isDatabaseCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
@@ -1370,25 +1394,25 @@ public boolean refreshDatabasesInCache(List<Database> databases) {
       LOG.debug("Skipping database cache update; the database list we have is dirty.");
       return false;
     }
+    Map<String, Database> newDatabaseCache = new ConcurrentSkipListMap<>();
+    for (Database db : databases) {
+      Database dbCopy = db.deepCopy();
+      // ObjectStore also stores db name in lowercase
+      dbCopy.setName(dbCopy.getName().toLowerCase());
+      dbCopy.setCatalogName(dbCopy.getCatalogName().toLowerCase());
+      newDatabaseCache.put(CacheUtils.buildDbKey(dbCopy.getCatalogName(), dbCopy.getName()), dbCopy);
+    }
     try {
-      cacheLock.writeLock().lock();
-      databaseCache.clear();
-      for (Database db : databases) {
-        addDatabaseToCache(db);
-      }
+      cacheLock.lock();
+      databaseCache = newDatabaseCache;
       return true;
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public int getCachedDatabaseCount() {
-    try {
-      cacheLock.readLock().lock();
-      return databaseCache.size();
-    } finally {
-      cacheLock.readLock().unlock();
-    }
+    return databaseCache.size();
   }
 
   public boolean populateTableInCache(Table table, ColumnStatistics tableColStats, List<Partition> partitions,
@@ -1435,49 +1459,44 @@ public boolean populateTableInCache(Table table, ColumnStatistics tableColStats,
     tblWrapper.isPartitionColStatsCacheDirty.set(false);
     tblWrapper.isAggrPartitionColStatsCacheDirty.set(false);
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       // 2. Skip overwriting exisiting table object
       // (which is present because it was added after prewarm started)
       tableCache.put(CacheUtils.buildTableKey(catName, dbName, tableName), tblWrapper);
       return true;
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public void completeTableCachePrewarm() {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       tablesDeletedDuringPrewarm.clear();
       isTableCachePrewarmed = true;
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public Table getTableFromCache(String catName, String dbName, String tableName) {
     Table t = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
-      if (tblWrapper != null) {
-        t = CacheUtils.assemble(tblWrapper, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
+    if (tblWrapper != null) {
+      t = tblWrapper.assembleTable(this);
     }
     return t;
   }
 
   public TableWrapper addTableToCache(String catName, String dbName, String tblName, Table tbl) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       TableWrapper wrapper = createTableWrapper(catName, dbName, tblName, tbl);
       tableCache.put(CacheUtils.buildTableKey(catName, dbName, tblName), wrapper);
       isTableCacheDirty.set(true);
       return wrapper;
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
@@ -1493,7 +1512,7 @@ private TableWrapper createTableWrapper(String catName, String dbName, String tb
       }
     }
     if (tbl.getSd() != null) {
-      byte[] sdHash = MetaStoreServerUtils.hashStorageDescriptor(tbl.getSd(), md);
+      byte[] sdHash = MetaStoreServerUtils.hashStorageDescriptor(tbl.getSd(), md.get());
       StorageDescriptor sd = tbl.getSd();
       increSd(sd, sdHash);
       tblCopy.setSd(null);
@@ -1506,7 +1525,7 @@ private TableWrapper createTableWrapper(String catName, String dbName, String tb
 
   public void removeTableFromCache(String catName, String dbName, String tblName) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       // If table cache is not yet prewarmed, add this to a set which the prewarm thread can check
       // so that the prewarm thread does not add it back
       if (!isTableCachePrewarmed) {
@@ -1519,20 +1538,17 @@ public void removeTableFromCache(String catName, String dbName, String tblName)
         return;
       }
 
-      byte[] sdHash = tblWrapper.getSdHash();
-      if (sdHash != null) {
-        decrSd(sdHash);
-      }
       tableCache.invalidate(tblKey);
+      tblWrapper.releaseSd(this);
       isTableCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public void alterTableInCache(String catName, String dbName, String tblName, Table newTable) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.updateTableObj(newTable, this);
@@ -1542,14 +1558,14 @@ public void alterTableInCache(String catName, String dbName, String tblName, Tab
         isTableCacheDirty.set(true);
       }
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public void alterTableAndStatsInCache(String catName, String dbName, String tblName, long writeId,
       List<ColumnStatisticsObj> colStatsObjs, Map<String, String> newParams) {
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
       TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper == null) {
         LOG.info("Table " + tblName + " is missing from cache. Cannot update table stats in cache");
@@ -1565,54 +1581,42 @@ public void alterTableAndStatsInCache(String catName, String dbName, String tblN
       tableCache.put(CacheUtils.buildTableKey(catName, newDbName, newTblName), tblWrapper);
       isTableCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public List<Table> listCachedTables(String catName, String dbName) {
     List<Table> tables = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (TableWrapper wrapper : tableCache.asMap().values()) {
-        if (wrapper.sameDatabase(catName, dbName)) {
-          tables.add(CacheUtils.assemble(wrapper, this));
+    for (TableWrapper wrapper : tableCache.asMap().values()) {
+      if (wrapper.sameDatabase(catName, dbName)) {
+        Table tbl = wrapper.assembleTable(this);
+        if (tbl != null) {
+          tables.add(tbl);
         }
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tables;
   }
 
   public List<String> listCachedTableNames(String catName, String dbName) {
     List<String> tableNames = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (TableWrapper wrapper : tableCache.asMap().values()) {
-        if (wrapper.sameDatabase(catName, dbName)) {
-          tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
-        }
+    for (TableWrapper wrapper : tableCache.asMap().values()) {
+      if (wrapper.sameDatabase(catName, dbName)) {
+        tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableNames;
   }
 
   public List<String> listCachedTableNames(String catName, String dbName, String pattern, int maxTables) {
     List<String> tableNames = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      int count = 0;
-      for (TableWrapper wrapper : tableCache.asMap().values()) {
-        if (wrapper.sameDatabase(catName, dbName) && CacheUtils.matches(wrapper.getTable().getTableName(), pattern) && (
-            maxTables == -1 || count < maxTables)) {
-          tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
-          count++;
-        }
+    int count = 0;
+    for (TableWrapper wrapper : tableCache.asMap().values()) {
+      if (wrapper.sameDatabase(catName, dbName) && CacheUtils.matches(wrapper.getTable().getTableName(), pattern) && (
+          maxTables == -1 || count < maxTables)) {
+        tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
+        count++;
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableNames;
   }
@@ -1620,18 +1624,13 @@ public List<String> listCachedTableNames(String catName, String dbName, String p
   public List<String> listCachedTableNames(String catName, String dbName, String pattern, TableType tableType,
       int limit) {
     List<String> tableNames = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      int count = 0;
-      for (TableWrapper wrapper : tableCache.asMap().values()) {
-        if (wrapper.sameDatabase(catName, dbName) && CacheUtils.matches(wrapper.getTable().getTableName(), pattern)
-            && wrapper.getTable().getTableType().equals(tableType.toString()) && (limit == -1 || count < limit)) {
-          tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
-          count++;
-        }
+    int count = 0;
+    for (TableWrapper wrapper : tableCache.asMap().values()) {
+      if (wrapper.sameDatabase(catName, dbName) && CacheUtils.matches(wrapper.getTable().getTableName(), pattern)
+          && wrapper.getTable().getTableType().equals(tableType.toString()) && (limit == -1 || count < limit)) {
+        tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
+        count++;
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableNames;
   }
@@ -1653,323 +1652,215 @@ public boolean refreshTablesInCache(String catName, String dbName, List<Table> t
       newCacheForDB.put(CacheUtils.buildTableKey(catName, dbName, tblName), tblWrapper);
     }
     try {
-      cacheLock.writeLock().lock();
+      cacheLock.lock();
+      // Put the new tables before removing the dropped ones, so that the readers always see them.
+      tableCache.putAll(newCacheForDB);
       Iterator<Entry<String, TableWrapper>> entryIterator = tableCache.asMap().entrySet().iterator();
       while (entryIterator.hasNext()) {
         String key = entryIterator.next().getKey();
-        if (key.startsWith(CacheUtils.buildDbKeyWithDelimiterSuffix(catName, dbName))) {
+        if (key.startsWith(CacheUtils.buildDbKeyWithDelimiterSuffix(catName, dbName))
+            && !newCacheForDB.containsKey(key)) {
           entryIterator.remove();
         }
       }
-      tableCache.putAll(newCacheForDB);
       return true;
     } finally {
-      cacheLock.writeLock().unlock();
+      cacheLock.unlock();
     }
   }
 
   public ColumnStatistics getTableColStatsFromCache(String catName, String dbName, String tblName,
       List<String> colNames, String validWriteIds, boolean areTxnStatsSupported) throws MetaException {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper == null) {
-        LOG.info("Table " + tblName + " is missing from cache.");
-        return null;
-      }
-      ColumnStatisticsDesc csd = new ColumnStatisticsDesc(true, dbName, tblName);
-      return tblWrapper.getCachedTableColStats(csd, colNames, validWriteIds, areTxnStatsSupported);
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper == null) {
+      LOG.info("Table " + tblName + " is missing from cache.");
+      return null;
     }
+    ColumnStatisticsDesc csd = new ColumnStatisticsDesc(true, dbName, tblName);
+    return tblWrapper.getCachedTableColStats(csd, colNames, validWriteIds, areTxnStatsSupported);
   }
 
   public void removeTableColStatsFromCache(String catName, String dbName, String tblName, String colName) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.removeTableColStats(colName);
-      } else {
-        LOG.info("Table " + tblName + " is missing from cache.");
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.removeTableColStats(colName);
+    } else {
+      LOG.info("Table " + tblName + " is missing from cache.");
     }
   }
 
   public void removeAllTableColStatsFromCache(String catName, String dbName, String tblName) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.removeAllTableColStats();
-      } else {
-        LOG.info("Table " + tblName + " is missing from cache.");
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.removeAllTableColStats();
+    } else {
+      LOG.info("Table " + tblName + " is missing from cache.");
     }
   }
 
   public void updateTableColStatsInCache(String catName, String dbName, String tableName,
       List<ColumnStatisticsObj> colStatsForTable) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
-      if (tblWrapper != null) {
-        tblWrapper.updateTableColStats(colStatsForTable);
-      } else {
-        LOG.info("Table " + tableName + " is missing from cache.");
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
+    if (tblWrapper != null) {
+      tblWrapper.updateTableColStats(colStatsForTable);
+    } else {
+      LOG.info("Table " + tableName + " is missing from cache.");
     }
   }
 
   public void refreshTableColStatsInCache(String catName, String dbName, String tableName,
       List<ColumnStatisticsObj> colStatsForTable) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
-      if (tblWrapper != null) {
-        tblWrapper.refreshTableColStats(colStatsForTable);
-      } else {
-        LOG.info("Table " + tableName + " is missing from cache.");
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
+    if (tblWrapper != null) {
+      tblWrapper.refreshTableColStats(colStatsForTable);
+    } else {
+      LOG.info("Table " + tableName + " is missing from cache.");
     }
   }
 
   public int getCachedTableCount() {
-    try {
-      cacheLock.readLock().lock();
-      return tableCache.asMap().size();
-    } finally {
-      cacheLock.readLock().unlock();
-    }
+    return tableCache.asMap().size();
   }
 
   public List<TableMeta> getTableMeta(String catName, String dbNames, String tableNames, List<String> tableTypes) {
     List<TableMeta> tableMetas = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (String dbName : listCachedDatabases(catName)) {
-        if (CacheUtils.matches(dbName, dbNames)) {
-          for (Table table : listCachedTables(catName, dbName)) {
-            if (CacheUtils.matches(table.getTableName(), tableNames)) {
-              if (tableTypes == null || tableTypes.contains(table.getTableType())) {
-                TableMeta metaData = new TableMeta(dbName, table.getTableName(), table.getTableType());
-                metaData.setCatName(catName);
-                metaData.setComments(table.getParameters().get("comment"));
-                tableMetas.add(metaData);
-              }
+    for (String dbName : listCachedDatabases(catName)) {
+      if (CacheUtils.matches(dbName, dbNames)) {
+        for (Table table : listCachedTables(catName, dbName)) {
+          if (CacheUtils.matches(table.getTableName(), tableNames)) {
+            if (tableTypes == null || tableTypes.contains(table.getTableType())) {
+              TableMeta metaData = new TableMeta(dbName, table.getTableName(), table.getTableType());
+              metaData.setCatName(catName);
+              metaData.setComments(table.getParameters().get("comment"));
+              tableMetas.add(metaData);
             }
           }
         }
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableMetas;
   }
 
   public void addPartitionToCache(String catName, String dbName, String tblName, Partition part) {
-    try {
-      cacheLock.readLock().lock();
-      String tblKey = CacheUtils.buildTableKey(catName, dbName, tblName);
-      TableWrapper tblWrapper = tableCache.getIfPresent(tblKey);
-      if (tblWrapper != null) {
-        tblWrapper.cachePartition(part, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    String tblKey = CacheUtils.buildTableKey(catName, dbName, tblName);
+    TableWrapper tblWrapper = tableCache.getIfPresent(tblKey);
+    if (tblWrapper != null) {
+      tblWrapper.cachePartition(part, this);
     }
   }
 
   public void addPartitionsToCache(String catName, String dbName, String tblName, Iterable<Partition> parts) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.cachePartitions(parts, this, false);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.cachePartitions(parts, this, false);
     }
   }
 
   public Partition getPartitionFromCache(String catName, String dbName, String tblName, List<String> partVals) {
     Partition part = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        part = tblWrapper.getPartition(partVals, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      part = tblWrapper.getPartition(partVals, this);
     }
     return part;
   }
 
   public boolean existPartitionFromCache(String catName, String dbName, String tblName, List<String> partVals) {
     boolean existsPart = false;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        existsPart = tblWrapper.containsPartition(partVals);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      existsPart = tblWrapper.containsPartition(partVals);
     }
     return existsPart;
   }
 
   public Partition removePartitionFromCache(String catName, String dbName, String tblName, List<String> partVals) {
     Partition part = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        part = tblWrapper.removePartition(partVals, this);
-      } else {
-        LOG.warn("This is abnormal");
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      part = tblWrapper.removePartition(partVals, this);
+    } else {
+      LOG.warn("This is abnormal");
     }
     return part;
   }
 
   public void removePartitionsFromCache(String catName, String dbName, String tblName, List<List<String>> partVals) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.removePartitions(partVals, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.removePartitions(partVals, this);
     }
   }
 
   public List<Partition> listCachedPartitions(String catName, String dbName, String tblName, int max) {
     List<Partition> parts = new ArrayList<Partition>();
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        parts = tblWrapper.listPartitions(max, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      parts = tblWrapper.listPartitions(max, this);
     }
     return parts;
   }
 
   public void alterPartitionInCache(String catName, String dbName, String tblName, List<String> partVals,
       Partition newPart) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.alterPartition(partVals, newPart, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.alterPartition(partVals, newPart, this);
     }
   }
 
   public void alterPartitionAndStatsInCache(String catName, String dbName, String tblName, long writeId,
       List<String> partVals, Map<String, String> parameters, List<ColumnStatisticsObj> colStatsObjs) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.alterPartitionAndStats(partVals, this, writeId, parameters, colStatsObjs);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.alterPartitionAndStats(partVals, this, writeId, parameters, colStatsObjs);
     }
   }
 
   public void alterPartitionsInCache(String catName, String dbName, String tblName, List<List<String>> partValsList,
       List<Partition> newParts) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.alterPartitions(partValsList, newParts, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.alterPartitions(partValsList, newParts, this);
     }
   }
 
   public void refreshPartitionsInCache(String catName, String dbName, String tblName, List<Partition> partitions) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.refreshPartitions(partitions, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.refreshPartitions(partitions, this);
     }
   }
 
   public void removePartitionColStatsFromCache(String catName, String dbName, String tblName, List<String> partVals,
       String colName) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.removePartitionColStats(partVals, colName);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.removePartitionColStats(partVals, colName);
     }
   }
 
   public void removeAllPartitionColStatsFromCache(String catName, String dbName, String tblName) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.removeAllPartitionColStats();
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.removeAllPartitionColStats();
     }
   }
 
   public void updatePartitionColStatsInCache(String catName, String dbName, String tableName, List<String> partVals,
       List<ColumnStatisticsObj> colStatsObjs) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
-      if (tblWrapper != null) {
-        tblWrapper.updatePartitionColStats(partVals, colStatsObjs);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tableName));
+    if (tblWrapper != null) {
+      tblWrapper.updatePartitionColStats(partVals, colStatsObjs);
     }
   }
 
   public ColumStatsWithWriteId getPartitionColStatsFromCache(String catName, String dbName, String tblName,
       List<String> partVal, String colName, String writeIdList) {
     ColumStatsWithWriteId colStatObj = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        colStatObj = tblWrapper.getPartitionColStats(partVal, colName, writeIdList);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      colStatObj = tblWrapper.getPartitionColStats(partVal, colName, writeIdList);
     }
     return colStatObj;
   }
@@ -1978,96 +1869,70 @@ public List<ColumnStatistics> getPartitionColStatsListFromCache(String catName,
       List<String> partNames, List<String> colNames, String writeIdList, boolean txnStatSupported) {
     List<ColumnStatistics> colStatObjs = null;
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         colStatObjs = tblWrapper.getPartColStatsList(partNames, colNames, writeIdList, txnStatSupported);
       }
     } catch (MetaException e) {
       LOG.warn("Failed to get partition column statistics");
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return colStatObjs;
   }
 
   public void refreshPartitionColStatsInCache(String catName, String dbName, String tblName,
       List<ColumnStatistics> partitionColStats) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.refreshPartitionColStats(partitionColStats);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.refreshPartitionColStats(partitionColStats);
     }
   }
 
   public List<ColumnStatisticsObj> getAggrStatsFromCache(String catName, String dbName, String tblName,
       List<String> colNames, StatsType statsType) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        return tblWrapper.getAggrPartitionColStats(colNames, statsType);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      return tblWrapper.getAggrPartitionColStats(colNames, statsType);
     }
     return null;
   }
 
   public void addAggregateStatsToCache(String catName, String dbName, String tblName, AggrStats aggrStatsAllPartitions,
       AggrStats aggrStatsAllButDefaultPartition) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.cacheAggrPartitionColStats(aggrStatsAllPartitions, aggrStatsAllButDefaultPartition);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.cacheAggrPartitionColStats(aggrStatsAllPartitions, aggrStatsAllButDefaultPartition);
     }
   }
 
   public void refreshAggregateStatsInCache(String catName, String dbName, String tblName,
       AggrStats aggrStatsAllPartitions, AggrStats aggrStatsAllButDefaultPartition,
       Map<List<String>, Long> partNameToWriteId) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.refreshAggrPartitionColStats(aggrStatsAllPartitions, aggrStatsAllButDefaultPartition, this,
-            partNameToWriteId);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.getIfPresent(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      tblWrapper.refreshAggrPartitionColStats(aggrStatsAllPartitions, aggrStatsAllButDefaultPartition, this,
+          partNameToWriteId);
     }
   }
 
-  public synchronized void increSd(StorageDescriptor sd, byte[] sdHash) {
-    ByteArrayWrapper byteArray = new ByteArrayWrapper(sdHash);
-    if (sdCache.containsKey(byteArray)) {
-      sdCache.get(byteArray).refCount++;
-    } else {
+  public void increSd(StorageDescriptor sd, byte[] sdHash) {
+    sdCache.compute(new ByteArrayWrapper(sdHash), (key, sdWrapper) -> {
+      if (sdWrapper != null) {
+        sdWrapper.refCount++;
+        return sdWrapper;
+      }
       StorageDescriptor sdToCache = sd.deepCopy();
       sdToCache.setLocation(null);
       sdToCache.setParameters(null);
-      sdCache.put(byteArray, new StorageDescriptorWrapper(sdToCache, 1));
-    }
+      return new StorageDescriptorWrapper(sdToCache, 1);
+    });
   }
 
-  public synchronized void decrSd(byte[] sdHash) {
-    ByteArrayWrapper byteArray = new ByteArrayWrapper(sdHash);
-    StorageDescriptorWrapper sdWrapper = sdCache.get(byteArray);
-    sdWrapper.refCount--;
-    if (sdWrapper.getRefCount() == 0) {
-      sdCache.remove(byteArray);
-    }
+  public void decrSd(byte[] sdHash) {
+    sdCache.computeIfPresent(new ByteArrayWrapper(sdHash),
+        (key, sdWrapper) -> --sdWrapper.refCount == 0 ? null : sdWrapper);
   }
 
-  public synchronized StorageDescriptor getSdFromCache(byte[] sdHash) {
+  public StorageDescriptor getSdFromCache(byte[] sdHash) {
     StorageDescriptorWrapper sdWrapper = sdCache.get(new ByteArrayWrapper(sdHash));
     return sdWrapper.getSd();
   }
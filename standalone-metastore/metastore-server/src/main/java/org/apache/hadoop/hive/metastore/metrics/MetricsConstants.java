@@ -35,6 +35,8 @@ public class MetricsConstants {
 
   public static final String DIRECTSQL_ERRORS = "directsql_errors";
 
+  public static final String LOCK_WAIT_TIME = "lock_wait_time";
+
   public static final String JVM_PAUSE_INFO = "jvm.pause.info-threshold";
   public static final String JVM_PAUSE_WARN = "jvm.pause.warn-threshold";
   public static final String JVM_EXTRA_SLEEP = "jvm.pause.extraSleepTime";
@@ -44,6 +46,9 @@ public class MetricsConstants {
 
   public static final String OPEN_CONNECTIONS = "open_connections";
 
+  public static final String SERVER_QUEUED_CALLS = "server_queued_calls";
+  public static final String SERVER_QUEUE_TIME = "server_queue_time";
+
   public static final String TOTAL_DATABASES = "total_count_dbs";
   public static final String TOTAL_TABLES = "total_count_tables";
   public static final String TOTAL_PARTITIONS = "total_count_partitions";
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.metastore.txn;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges concurrent calls of the same kind into groups that are written to the metastore DB in one
+ * transaction. While a group is written, the calls that arrive queue up, and one of them writes them
+ * all as the next group once the previous one is done. So under load the number of DB transactions
+ * stays bounded by the DB latency instead of growing with the number of callers, and a lone call is
+ * written right away.
+ *
+ * A call either gets a result or a failure from the group it was written with, or is left unwritten
+ * (e.g. when the whole group failed, or the writer threw), in which case the caller has to run it on
+ * its own.
+ */
+class GroupCommit<Q, R> {
+  private static final Logger LOG = LoggerFactory.getLogger(GroupCommit.class);
+
+  /**
+   * Writes a group of calls. It has to set the result or the failure of the calls it writes; the
+   * others are run by their callers.
+   */
+  interface Writer<Q, R> {
+    void write(List<Call<Q, R>> group);
+  }
+
+  static final class Call<Q, R> {
+    private final Q request;
+    private R result;
+    private Exception failure;
+    private boolean written;
+    // Set under the GroupCommit lock once the group of the call is written
+    private boolean done;
+
+    private Call(Q request) {
+      this.request = request;
+    }
+
+    Q getRequest() {
+      return request;
+    }
+
+    void succeeded(R result) {
+      this.result = result;
+      written = true;
+    }
+
+    void failed(Exception failure) {
+      this.failure = failure;
+      written = true;
+    }
+
+    boolean isWritten() {
+      return written;
+    }
+
+    R getResult() {
+      return result;
+    }
+
+    Exception getFailure() {
+      return failure;
+    }
+  }
+
+  private final int maxGroupSize;
+  private final long windowMillis;
+  private final Deque<Call<Q, R>> pending = new ArrayDeque<>();
+  private boolean writing = false;
+
+  GroupCommit(int maxGroupSize, long windowMillis) {
+    this.maxGroupSize = maxGroupSize;
+    this.windowMillis = windowMillis;
+  }
+
+  /**
+   * Writes the request with the other calls that are pending, or waits until another caller did so.
+   * @param request the request of the call
+   * @param writer writes the group, if this caller is the one to do it
+   * @return the call, which is left unwritten if the caller has to run it on its own
+   */
+  Call<Q, R> submit(Q request, Writer<Q, R> writer) {
+    Call<Q, R> call = new Call<>(request);
+    boolean interrupted = false;
+    synchronized (this) {
+      pending.add(call);
+      while (writing && !call.done) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          if (pending.remove(call)) {
+            Thread.currentThread().interrupt();
+            return call;
+          }
+          // The call is being written already, wait for it
+          interrupted = true;
+        }
+      }
+      if (call.done) {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        return call;
+      }
+      writing = true;
+    }
+
+    List<Call<Q, R>> group = new ArrayList<>();
+    try {
+      if (windowMillis > 0) {
+        try {
+          Thread.sleep(windowMillis);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      synchronized (this) {
+        pending.remove(call);
+        group.add(call);
+        while (group.size() < maxGroupSize && !pending.isEmpty()) {
+          group.add(pending.poll());
+        }
+      }
+      writer.write(group);
+    } catch (RuntimeException e) {
+      // The unwritten calls are run by their callers, which get their own failures
+      LOG.warn("Unable to write a group of " + group.size() + " calls", e);
+    } finally {
+      synchronized (this) {
+        for (Call<Q, R> groupCall : group) {
+          groupCall.done = true;
+        }
+        writing = false;
+        notifyAll();
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return call;
+  }
+}
@@ -43,6 +43,7 @@
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
@@ -155,7 +156,12 @@
 import static org.apache.hadoop.hive.metastore.utils.StringUtils.normalizeIdentifier;
 
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
 
 /**
  * A handler to answer transaction related calls that come into the metastore
@@ -305,7 +311,40 @@ abstract class TxnHandler implements TxnStore, TxnStore.MutexAPI {
    * (e.g. via Compactor services)
    */
   private final static ConcurrentHashMap<String, Semaphore> derbyKey2Lock = new ConcurrentHashMap<>();
+  private static final int MAX_MEASURED_LOCK_WAITS = 10000;
+  /**
+   * The locks enqueued through this metastore, by extLockId, while they are not acquired; used to
+   * report the lock wait times.  The locks that are checked through another metastore are not
+   * measured.
+   */
+  private static final Cache<Long, LockWait> lockWaits =
+      CacheBuilder.newBuilder().maximumSize(MAX_MEASURED_LOCK_WAITS).build();
+  private static final int MAX_LOCK_WAIT_TIMERS = 100;
+  /**
+   * The timer names of the databases and tables whose locks waited most recently.  Only these have
+   * a lock wait timer of their own; the timer of one that drops out is removed, so that the number
+   * of metrics stays bounded.
+   */
+  private static final Cache<String, String> lockWaitTimerNames =
+      CacheBuilder.newBuilder().maximumSize(MAX_LOCK_WAIT_TIMERS)
+          .removalListener((RemovalNotification<String, String> notification) -> {
+            MetricRegistry registry = Metrics.getRegistry();
+            if (notification.wasEvicted() && registry != null) {
+              registry.remove(notification.getValue());
+            }
+          }).build();
   private static final String hostname = JavaUtils.hostname();
+  /**
+   * The maximum number of tables of a database listed when the earlier locks are filtered in
+   * checkLock(); beyond it all the locks of the database are checked.
+   */
+  private static final int MAX_TABLES_IN_LOCK_FILTER = 100;
+  /**
+   * Merge the concurrent openTxns and commitTxn calls, when enabled by
+   * {@link ConfVars#TXN_GROUP_COMMIT_MAX_BATCH}.
+   */
+  private static volatile GroupCommit<OpenTxnRequest, OpenTxnsResponse> openTxnsGroupCommit;
+  private static volatile GroupCommit<CommitTxnRequest, Void> commitTxnGroupCommit;
 
   // Private methods should never catch SQLException and then throw MetaException.  The public
   // methods depend on SQLException coming back so they can detect and handle deadlocks.  Private
@@ -358,6 +397,18 @@ public void setConf(Configuration conf){
       }
     }
 
+    synchronized (TxnHandler.class) {
+      int maxGroupSize = MetastoreConf.getIntVar(conf, ConfVars.TXN_GROUP_COMMIT_MAX_BATCH);
+      if (maxGroupSize <= 1) {
+        openTxnsGroupCommit = null;
+        commitTxnGroupCommit = null;
+      } else if (openTxnsGroupCommit == null) {
+        long windowMillis = MetastoreConf.getTimeVar(conf, ConfVars.TXN_GROUP_COMMIT_WINDOW, TimeUnit.MILLISECONDS);
+        openTxnsGroupCommit = new GroupCommit<>(maxGroupSize, windowMillis);
+        commitTxnGroupCommit = new GroupCommit<>(maxGroupSize, windowMillis);
+      }
+    }
+
     numOpenTxns = Metrics.getOrCreateGauge(MetricsConstants.NUM_OPEN_TXNS);
 
     timeout = MetastoreConf.getTimeVar(conf, ConfVars.TXN_TIMEOUT, TimeUnit.MILLISECONDS);
@@ -504,6 +555,14 @@ public OpenTxnsResponse openTxns(OpenTxnRequest rqst) throws MetaException {
       throw new MetaException("Invalid input for number of txns: " + numTxns);
     }
 
+    GroupCommit<OpenTxnRequest, OpenTxnsResponse> groupCommit = openTxnsGroupCommit;
+    if (groupCommit != null && !rqst.isSetReplPolicy()) {
+      GroupCommit.Call<OpenTxnRequest, OpenTxnsResponse> call = groupCommit.submit(rqst, this::openTxnsInGroup);
+      if (call.isWritten()) {
+        return call.getResult();
+      }
+    }
+
     try {
       Connection dbConn = null;
       Statement stmt = null;
@@ -587,6 +646,69 @@ public OpenTxnsResponse openTxns(OpenTxnRequest rqst) throws MetaException {
     }
   }
 
+  /**
+   * Opens the transactions of a group of {@link #openTxns(OpenTxnRequest)} calls in one transaction of the
+   * metastore DB, with the same locking and timeout as for a single call. The calls that fail, or all of
+   * them if the group fails, are left to be run one by one.
+   */
+  @VisibleForTesting
+  void openTxnsInGroup(List<GroupCommit.Call<OpenTxnRequest, OpenTxnsResponse>> group) {
+    Connection dbConn = null;
+    Statement stmt = null;
+    try {
+      dbConn = getDbConn(Connection.TRANSACTION_READ_COMMITTED);
+      stmt = dbConn.createStatement();
+      acquireTxnLock(stmt, true);
+      StopWatch generateTransactionWatch = new StopWatch();
+      generateTransactionWatch.start();
+
+      // The ids of the transactions opened for each call, null for the calls left to their callers
+      List<List<Long>> txnIds = new ArrayList<>(group.size());
+      for (GroupCommit.Call<OpenTxnRequest, OpenTxnsResponse> call : group) {
+        Savepoint savepoint = dbConn.setSavepoint();
+        try {
+          txnIds.add(openTxns(dbConn, call.getRequest()));
+        } catch (MetaException | RuntimeException e) {
+          LOG.info("Unable to open transactions for " + call.getRequest() + " with other calls, opening them " +
+              "on their own: " + e.getMessage());
+          dbConn.rollback(savepoint);
+          txnIds.add(null);
+        }
+      }
+
+      LOG.debug("Going to commit {} openTxns calls", group.size());
+      dbConn.commit();
+      generateTransactionWatch.stop();
+      long elapsedMillis = generateTransactionWatch.getTime(TimeUnit.MILLISECONDS);
+      List<Long> invalidTxnIds = new ArrayList<>();
+      for (int i = 0; i < group.size(); i++) {
+        if (txnIds.get(i) == null) {
+          continue;
+        }
+        OpenTxnRequest rqst = group.get(i).getRequest();
+        TxnType txnType = rqst.isSetTxn_type() ? rqst.getTxn_type() : TxnType.DEFAULT;
+        if (txnType != TxnType.READ_ONLY && elapsedMillis >= openTxnTimeOutMillis) {
+          // Too slow, the call has to be retried, see openTxns(OpenTxnRequest)
+          invalidTxnIds.addAll(txnIds.get(i));
+        } else {
+          group.get(i).succeeded(new OpenTxnsResponse(txnIds.get(i)));
+        }
+      }
+      if (!invalidTxnIds.isEmpty()) {
+        LOG.error("OpenTxnTimeOut exceeded commit duration {}, deleting transactionIds: {}", elapsedMillis,
+            invalidTxnIds);
+        deleteInvalidOpenTransactions(dbConn, invalidTxnIds);
+        dbConn.commit();
+      }
+    } catch (SQLException | MetaException e) {
+      LOG.info("Unable to open the transactions of " + group.size() + " calls together, opening them " +
+          "one by one: " + e.getMessage());
+      rollbackDBConn(dbConn);
+    } finally {
+      close(null, stmt, dbConn);
+    }
+  }
+
   private List<Long> openTxns(Connection dbConn, OpenTxnRequest rqst)
           throws SQLException, MetaException {
     int numTxns = rqst.getNum_txns();
@@ -1195,195 +1317,291 @@ private void updateReplId(Connection dbConn, ReplLastIdInfo replLastIdInfo) thro
   @RetrySemantics.Idempotent("No-op if already committed")
   public void commitTxn(CommitTxnRequest rqst)
     throws NoSuchTxnException, TxnAbortedException, MetaException {
-    char isUpdateDelete = 'N';
-    long txnid = rqst.getTxnid();
-    long sourceTxnId = -1;
+    GroupCommit<CommitTxnRequest, Void> groupCommit = commitTxnGroupCommit;
+    if (groupCommit != null && !rqst.isSetReplPolicy() && !rqst.isSetReplLastIdInfo()) {
+      GroupCommit.Call<CommitTxnRequest, Void> call = groupCommit.submit(rqst, this::commitTxnsInGroup);
+      if (call.isWritten()) {
+        if (call.getFailure() instanceof NoSuchTxnException) {
+          throw (NoSuchTxnException) call.getFailure();
+        }
+        if (call.getFailure() instanceof TxnAbortedException) {
+          throw (TxnAbortedException) call.getFailure();
+        }
+        return;
+      }
+    }
 
     try {
       Connection dbConn = null;
       Statement stmt = null;
-      Long commitId = null;
       try {
         lockInternal();
         dbConn = getDbConn(Connection.TRANSACTION_READ_COMMITTED);
         stmt = dbConn.createStatement();
 
-        if (rqst.isSetReplLastIdInfo()) {
-          updateReplId(dbConn, rqst.getReplLastIdInfo());
+        boolean isCommitNeeded;
+        try {
+          isCommitNeeded = commitTxn(dbConn, stmt, rqst);
+        } catch (WriteConflictException e) {
+          abortTxnOnWriteConflict(dbConn, e);
+          dbConn.commit();
+          throw new TxnAbortedException(e.getMessage());
         }
+        if (isCommitNeeded) {
+          LOG.debug("Going to commit");
+          dbConn.commit();
+        }
+      } catch (SQLException e) {
+        LOG.debug("Going to rollback");
+        rollbackDBConn(dbConn);
+        checkRetryable(dbConn, e, "commitTxn(" + rqst + ")");
+        throw new MetaException("Unable to update transaction database "
+          + StringUtils.stringifyException(e));
+      } finally {
+        close(null, stmt, dbConn);
+        unlockInternal();
+      }
+    } catch (RetryException e) {
+      commitTxn(rqst);
+    }
+  }
+
+  /**
+   * Commits a transaction, see {@link #commitTxn(CommitTxnRequest)}, without committing the transaction
+   * of the metastore DB.
+   * @return whether there is anything to commit in the metastore DB
+   * @throws WriteConflictException if the transaction has to be aborted; it is left to the caller
+   */
+  private boolean commitTxn(Connection dbConn, Statement stmt, CommitTxnRequest rqst)
+      throws SQLException, NoSuchTxnException, TxnAbortedException, MetaException, WriteConflictException {
+    char isUpdateDelete = 'N';
+    long txnid = rqst.getTxnid();
+    long sourceTxnId = -1;
+    Long commitId = null;
+
+    if (rqst.isSetReplLastIdInfo()) {
+      updateReplId(dbConn, rqst.getReplLastIdInfo());
+    }
+
+    if (rqst.isSetReplPolicy()) {
+      sourceTxnId = rqst.getTxnid();
+      List<Long> targetTxnIds = getTargetTxnIdList(rqst.getReplPolicy(),
+              Collections.singletonList(sourceTxnId), dbConn);
+      if (targetTxnIds.isEmpty()) {
+        // Idempotent case where txn was already closed or commit txn event received without
+        // corresponding open txn event.
+        LOG.info("Target txn id is missing for source txn id : " + sourceTxnId +
+                " and repl policy " + rqst.getReplPolicy());
+        return false;
+      }
+      assert targetTxnIds.size() == 1;
+      txnid = targetTxnIds.get(0);
+    }
 
+    /**
+     * Runs at READ_COMMITTED with S4U on TXNS row for "txnid".  S4U ensures that no other
+     * operation can change this txn (such acquiring locks). While lock() and commitTxn()
+     * should not normally run concurrently (for same txn) but could due to bugs in the client
+     * which could then corrupt internal transaction manager state.  Also competes with abortTxn().
+     */
+    TxnRecord txnRecord = lockTransactionRecord(stmt, txnid, TxnStatus.OPEN);
+    if (txnRecord == null) {
+      //if here, txn was not found (in expected state)
+      TxnStatus actualTxnStatus = findTxnState(txnid, stmt);
+      if (actualTxnStatus == TxnStatus.COMMITTED) {
         if (rqst.isSetReplPolicy()) {
-          sourceTxnId = rqst.getTxnid();
-          List<Long> targetTxnIds = getTargetTxnIdList(rqst.getReplPolicy(),
-                  Collections.singletonList(sourceTxnId), dbConn);
-          if (targetTxnIds.isEmpty()) {
-            // Idempotent case where txn was already closed or commit txn event received without
-            // corresponding open txn event.
-            LOG.info("Target txn id is missing for source txn id : " + sourceTxnId +
-                    " and repl policy " + rqst.getReplPolicy());
-            return;
-          }
-          assert targetTxnIds.size() == 1;
-          txnid = targetTxnIds.get(0);
+          // in case of replication, idempotent is taken care by getTargetTxnId
+          LOG.warn("Invalid state COMMITTED for transactions started using replication replay task");
         }
-
         /**
-         * Runs at READ_COMMITTED with S4U on TXNS row for "txnid".  S4U ensures that no other
-         * operation can change this txn (such acquiring locks). While lock() and commitTxn()
-         * should not normally run concurrently (for same txn) but could due to bugs in the client
-         * which could then corrupt internal transaction manager state.  Also competes with abortTxn().
+         * This makes the operation idempotent
+         * (assume that this is most likely due to retry logic)
          */
-        TxnRecord txnRecord = lockTransactionRecord(stmt, txnid, TxnStatus.OPEN);
-        if (txnRecord == null) {
-          //if here, txn was not found (in expected state)
-          TxnStatus actualTxnStatus = findTxnState(txnid, stmt);
-          if (actualTxnStatus == TxnStatus.COMMITTED) {
-            if (rqst.isSetReplPolicy()) {
-              // in case of replication, idempotent is taken care by getTargetTxnId
-              LOG.warn("Invalid state COMMITTED for transactions started using replication replay task");
-            }
-            /**
-             * This makes the operation idempotent
-             * (assume that this is most likely due to retry logic)
-             */
-            LOG.info("Nth commitTxn(" + JavaUtils.txnIdToString(txnid) + ") msg");
-            return;
-          }
-          raiseTxnUnexpectedState(actualTxnStatus, txnid);
-        }
+        LOG.info("Nth commitTxn(" + JavaUtils.txnIdToString(txnid) + ") msg");
+        return false;
+      }
+      raiseTxnUnexpectedState(actualTxnStatus, txnid);
+    }
 
-        String conflictSQLSuffix = "FROM \"TXN_COMPONENTS\" WHERE \"TC_TXNID\"=" + txnid + " AND \"TC_OPERATION_TYPE\" IN(" +
-                OperationType.UPDATE + "," + OperationType.DELETE + ")";
+    String conflictSQLSuffix = "FROM \"TXN_COMPONENTS\" WHERE \"TC_TXNID\"=" + txnid + " AND \"TC_OPERATION_TYPE\" IN(" +
+            OperationType.UPDATE + "," + OperationType.DELETE + ")";
 
-        long tempCommitId = generateTemporaryId();
-        if (txnRecord.type != TxnType.READ_ONLY
-                && !rqst.isSetReplPolicy()
-                && isUpdateOrDelete(stmt, conflictSQLSuffix)) {
+    long tempCommitId = generateTemporaryId();
+    if (txnRecord.type != TxnType.READ_ONLY
+            && !rqst.isSetReplPolicy()
+            && isUpdateOrDelete(stmt, conflictSQLSuffix)) {
 
-          isUpdateDelete = 'Y';
-          //if here it means currently committing txn performed update/delete and we should check WW conflict
-          /**
-           * "select distinct" is used below because
-           * 1. once we get to multi-statement txns, we only care to record that something was updated once
-           * 2. if {@link #addDynamicPartitions(AddDynamicPartitions)} is retried by caller it may create
-           *  duplicate entries in TXN_COMPONENTS
-           * but we want to add a PK on WRITE_SET which won't have unique rows w/o this distinct
-           * even if it includes all of its columns
-           *
-           * First insert into write_set using a temporary commitID, which will be updated in a separate call,
-           * see: {@link #updateWSCommitIdAndCleanUpMetadata(Statement, long, TxnType, Long, long)}}.
-           * This should decrease the scope of the S4U lock on the next_txn_id table.
-           */
-          Savepoint undoWriteSetForCurrentTxn = dbConn.setSavepoint();
-          stmt.executeUpdate("INSERT INTO \"WRITE_SET\" (\"WS_DATABASE\", \"WS_TABLE\", \"WS_PARTITION\", \"WS_TXNID\", \"WS_COMMIT_ID\", \"WS_OPERATION_TYPE\")" +
-                          " SELECT DISTINCT \"TC_DATABASE\", \"TC_TABLE\", \"TC_PARTITION\", \"TC_TXNID\", " + tempCommitId + ", \"TC_OPERATION_TYPE\" " + conflictSQLSuffix);
+      isUpdateDelete = 'Y';
+      //if here it means currently committing txn performed update/delete and we should check WW conflict
+      /**
+       * "select distinct" is used below because
+       * 1. once we get to multi-statement txns, we only care to record that something was updated once
+       * 2. if {@link #addDynamicPartitions(AddDynamicPartitions)} is retried by caller it may create
+       *  duplicate entries in TXN_COMPONENTS
+       * but we want to add a PK on WRITE_SET which won't have unique rows w/o this distinct
+       * even if it includes all of its columns
+       *
+       * First insert into write_set using a temporary commitID, which will be updated in a separate call,
+       * see: {@link #updateWSCommitIdAndCleanUpMetadata(Statement, long, TxnType, Long, long)}}.
+       * This should decrease the scope of the S4U lock on the next_txn_id table.
+       */
+      Savepoint undoWriteSetForCurrentTxn = dbConn.setSavepoint();
+      stmt.executeUpdate("INSERT INTO \"WRITE_SET\" (\"WS_DATABASE\", \"WS_TABLE\", \"WS_PARTITION\", \"WS_TXNID\", \"WS_COMMIT_ID\", \"WS_OPERATION_TYPE\")" +
+                      " SELECT DISTINCT \"TC_DATABASE\", \"TC_TABLE\", \"TC_PARTITION\", \"TC_TXNID\", " + tempCommitId + ", \"TC_OPERATION_TYPE\" " + conflictSQLSuffix);
 
-          /**
-           * This S4U will mutex with other commitTxn() and openTxns().
-           * -1 below makes txn intervals look like [3,3] [4,4] if all txns are serial
-           * Note: it's possible to have several txns have the same commit id.  Suppose 3 txns start
-           * at the same time and no new txns start until all 3 commit.
-           * We could've incremented the sequence for commitId as well but it doesn't add anything functionally.
-           */
-          acquireTxnLock(stmt, false);
-          commitId = getHighWaterMark(stmt);
-          /**
-           * see if there are any overlapping txns that wrote the same element, i.e. have a conflict
-           * Since entire commit operation is mutexed wrt other start/commit ops,
-           * committed.ws_commit_id <= current.ws_commit_id for all txns
-           * thus if committed.ws_commit_id < current.ws_txnid, transactions do NOT overlap
-           * For example, [17,20] is committed, [6,80] is being committed right now - these overlap
-           * [17,20] committed and [21,21] committing now - these do not overlap.
-           * [17,18] committed and [18,19] committing now - these overlap  (here 18 started while 17 was still running)
-           */
-          try (ResultSet rs = checkForWriteConflict(stmt, txnid)) {
-            if (rs.next()) {
-              //found a conflict, so let's abort the txn
-              String committedTxn = "[" + JavaUtils.txnIdToString(rs.getLong(1)) + "," + rs.getLong(2) + "]";
-              StringBuilder resource = new StringBuilder(rs.getString(3)).append("/").append(rs.getString(4));
-              String partitionName = rs.getString(5);
-              if (partitionName != null) {
-                resource.append('/').append(partitionName);
-              }
-              String msg = "Aborting [" + JavaUtils.txnIdToString(txnid) + "," + commitId + "]" + " due to a write conflict on " + resource +
-                      " committed by " + committedTxn + " " + rs.getString(7) + "/" + rs.getString(8);
-              //remove WRITE_SET info for current txn since it's about to abort
-              dbConn.rollback(undoWriteSetForCurrentTxn);
-              LOG.info(msg);
-              //todo: should make abortTxns() write something into TXNS.TXN_META_INFO about this
-              if (abortTxns(dbConn, Collections.singletonList(txnid), false) != 1) {
-                throw new IllegalStateException(msg + " FAILED!");
-              }
-              dbConn.commit();
-              throw new TxnAbortedException(msg);
-            }
+      /**
+       * This S4U will mutex with other commitTxn() and openTxns().
+       * -1 below makes txn intervals look like [3,3] [4,4] if all txns are serial
+       * Note: it's possible to have several txns have the same commit id.  Suppose 3 txns start
+       * at the same time and no new txns start until all 3 commit.
+       * We could've incremented the sequence for commitId as well but it doesn't add anything functionally.
+       */
+      acquireTxnLock(stmt, false);
+      commitId = getHighWaterMark(stmt);
+      /**
+       * see if there are any overlapping txns that wrote the same element, i.e. have a conflict
+       * Since entire commit operation is mutexed wrt other start/commit ops,
+       * committed.ws_commit_id <= current.ws_commit_id for all txns
+       * thus if committed.ws_commit_id < current.ws_txnid, transactions do NOT overlap
+       * For example, [17,20] is committed, [6,80] is being committed right now - these overlap
+       * [17,20] committed and [21,21] committing now - these do not overlap.
+       * [17,18] committed and [18,19] committing now - these overlap  (here 18 started while 17 was still running)
+       */
+      try (ResultSet rs = checkForWriteConflict(stmt, txnid)) {
+        if (rs.next()) {
+          //found a conflict, so let's abort the txn
+          String committedTxn = "[" + JavaUtils.txnIdToString(rs.getLong(1)) + "," + rs.getLong(2) + "]";
+          StringBuilder resource = new StringBuilder(rs.getString(3)).append("/").append(rs.getString(4));
+          String partitionName = rs.getString(5);
+          if (partitionName != null) {
+            resource.append('/').append(partitionName);
           }
-        } else {
-          /*
-           * current txn didn't update/delete anything (may have inserted), so just proceed with commit
-           *
-           * We only care about commit id for write txns, so for RO (when supported) txns we don't
-           * have to mutex on NEXT_TXN_ID.
-           * Consider: if RO txn is after a W txn, then RO's openTxns() will be mutexed with W's
-           * commitTxn() because both do S4U on NEXT_TXN_ID and thus RO will see result of W txn.
-           * If RO < W, then there is no reads-from relationship.
-           * In replication flow we don't expect any write write conflict as it should have been handled at source.
-           */
-          assert true;
-        }
-
-        if (txnRecord.type != TxnType.READ_ONLY && !rqst.isSetReplPolicy()) {
-          moveTxnComponentsToCompleted(stmt, txnid, isUpdateDelete);
-        } else if (rqst.isSetReplPolicy()) {
-          if (rqst.isSetWriteEventInfos()) {
-            String sql = String.format(COMPL_TXN_COMPONENTS_INSERT_QUERY, txnid, quoteChar(isUpdateDelete));
-            try (PreparedStatement pstmt = dbConn.prepareStatement(sql)) {
-              int insertCounter = 0;
-              for (WriteEventInfo writeEventInfo : rqst.getWriteEventInfos()) {
-                pstmt.setString(1, writeEventInfo.getDatabase());
-                pstmt.setString(2, writeEventInfo.getTable());
-                pstmt.setString(3, writeEventInfo.getPartition());
-                pstmt.setLong(4, writeEventInfo.getWriteId());
-
-                pstmt.addBatch();
-                insertCounter++;
-                if (insertCounter % maxBatchSize == 0) {
-                  LOG.debug("Executing a batch of <" + sql + "> queries. Batch size: " + maxBatchSize);
-                  pstmt.executeBatch();
-                }
-              }
-              if (insertCounter % maxBatchSize != 0) {
-                LOG.debug("Executing a batch of <" + sql + "> queries. Batch size: " + insertCounter % maxBatchSize);
-                pstmt.executeBatch();
-              }
+          String msg = "Aborting [" + JavaUtils.txnIdToString(txnid) + "," + commitId + "]" + " due to a write conflict on " + resource +
+                  " committed by " + committedTxn + " " + rs.getString(7) + "/" + rs.getString(8);
+          //remove WRITE_SET info for current txn since it's about to abort
+          dbConn.rollback(undoWriteSetForCurrentTxn);
+          LOG.info(msg);
+          throw new WriteConflictException(txnid, msg);
+        }
+      }
+    } else {
+      /*
+       * current txn didn't update/delete anything (may have inserted), so just proceed with commit
+       *
+       * We only care about commit id for write txns, so for RO (when supported) txns we don't
+       * have to mutex on NEXT_TXN_ID.
+       * Consider: if RO txn is after a W txn, then RO's openTxns() will be mutexed with W's
+       * commitTxn() because both do S4U on NEXT_TXN_ID and thus RO will see result of W txn.
+       * If RO < W, then there is no reads-from relationship.
+       * In replication flow we don't expect any write write conflict as it should have been handled at source.
+       */
+      assert true;
+    }
+
+    if (txnRecord.type != TxnType.READ_ONLY && !rqst.isSetReplPolicy()) {
+      moveTxnComponentsToCompleted(stmt, txnid, isUpdateDelete);
+    } else if (rqst.isSetReplPolicy()) {
+      if (rqst.isSetWriteEventInfos()) {
+        String sql = String.format(COMPL_TXN_COMPONENTS_INSERT_QUERY, txnid, quoteChar(isUpdateDelete));
+        try (PreparedStatement pstmt = dbConn.prepareStatement(sql)) {
+          int insertCounter = 0;
+          for (WriteEventInfo writeEventInfo : rqst.getWriteEventInfos()) {
+            pstmt.setString(1, writeEventInfo.getDatabase());
+            pstmt.setString(2, writeEventInfo.getTable());
+            pstmt.setString(3, writeEventInfo.getPartition());
+            pstmt.setLong(4, writeEventInfo.getWriteId());
+
+            pstmt.addBatch();
+            insertCounter++;
+            if (insertCounter % maxBatchSize == 0) {
+              LOG.debug("Executing a batch of <" + sql + "> queries. Batch size: " + maxBatchSize);
+              pstmt.executeBatch();
             }
           }
-          deleteReplTxnMapEntry(dbConn, sourceTxnId, rqst.getReplPolicy());
-        }
-        updateWSCommitIdAndCleanUpMetadata(stmt, txnid, txnRecord.type, commitId, tempCommitId);
-        if (rqst.isSetKeyValue()) {
-          updateKeyValueAssociatedWithTxn(rqst, stmt);
+          if (insertCounter % maxBatchSize != 0) {
+            LOG.debug("Executing a batch of <" + sql + "> queries. Batch size: " + insertCounter % maxBatchSize);
+            pstmt.executeBatch();
+          }
         }
+      }
+      deleteReplTxnMapEntry(dbConn, sourceTxnId, rqst.getReplPolicy());
+    }
+    updateWSCommitIdAndCleanUpMetadata(stmt, txnid, txnRecord.type, commitId, tempCommitId);
+    if (rqst.isSetKeyValue()) {
+      updateKeyValueAssociatedWithTxn(rqst, stmt);
+    }
 
-        if (transactionalListeners != null) {
-          MetaStoreListenerNotifier.notifyEventWithDirectSql(transactionalListeners,
-                  EventMessage.EventType.COMMIT_TXN, new CommitTxnEvent(txnid, txnRecord.type), dbConn, sqlGenerator);
-        }
+    if (transactionalListeners != null) {
+      MetaStoreListenerNotifier.notifyEventWithDirectSql(transactionalListeners,
+              EventMessage.EventType.COMMIT_TXN, new CommitTxnEvent(txnid, txnRecord.type), dbConn, sqlGenerator);
+    }
 
-        LOG.debug("Going to commit");
-        dbConn.commit();
-      } catch (SQLException e) {
-        LOG.debug("Going to rollback");
-        rollbackDBConn(dbConn);
-        checkRetryable(dbConn, e, "commitTxn(" + rqst + ")");
-        throw new MetaException("Unable to update transaction database "
-          + StringUtils.stringifyException(e));
-      } finally {
-        close(null, stmt, dbConn);
-        unlockInternal();
+    return true;
+  }
+
+  /**
+   * Aborts a transaction that has a write conflict, without committing the transaction of the metastore DB.
+   */
+  private void abortTxnOnWriteConflict(Connection dbConn, WriteConflictException e)
+      throws SQLException, MetaException {
+    //todo: should make abortTxns() write something into TXNS.TXN_META_INFO about this
+    if (abortTxns(dbConn, Collections.singletonList(e.txnid), false) != 1) {
+      throw new IllegalStateException(e.getMessage() + " FAILED!");
+    }
+  }
+
+  /**
+   * Commits the transactions of a group of {@link #commitTxn(CommitTxnRequest)} calls in one transaction
+   * of the metastore DB. A call that fails on its transaction gets the failure; the calls that fail
+   * otherwise, or all of them if they can not be committed together, are left to be committed one by one.
+   * The transactions aborted on a write conflict are aborted in the same transaction of the metastore DB.
+   */
+  @VisibleForTesting
+  void commitTxnsInGroup(List<GroupCommit.Call<CommitTxnRequest, Void>> group) {
+    List<GroupCommit.Call<CommitTxnRequest, Void>> committed = new ArrayList<>(group.size());
+    Map<GroupCommit.Call<CommitTxnRequest, Void>, TxnAbortedException> aborted = new HashMap<>();
+    Connection dbConn = null;
+    Statement stmt = null;
+    try {
+      lockInternal();
+      dbConn = getDbConn(Connection.TRANSACTION_READ_COMMITTED);
+      stmt = dbConn.createStatement();
+      for (GroupCommit.Call<CommitTxnRequest, Void> call : group) {
+        Savepoint savepoint = dbConn.setSavepoint();
+        try {
+          try {
+            commitTxn(dbConn, stmt, call.getRequest());
+            committed.add(call);
+          } catch (WriteConflictException e) {
+            // Only undo this call, and abort its transaction along with the group
+            dbConn.rollback(savepoint);
+            abortTxnOnWriteConflict(dbConn, e);
+            aborted.put(call, new TxnAbortedException(e.getMessage()));
+          }
+        } catch (NoSuchTxnException | TxnAbortedException e) {
+          call.failed(e);
+        } catch (MetaException | RuntimeException e) {
+          // Left to its caller, which gets the failure if it happens again
+          LOG.info("Unable to commit " + JavaUtils.txnIdToString(call.getRequest().getTxnid()) +
+              " with other transactions, committing it on its own: " + e.getMessage());
+          dbConn.rollback(savepoint);
+        }
       }
-    } catch (RetryException e) {
-      commitTxn(rqst);
+      LOG.debug("Going to commit {} transactions", committed.size());
+      dbConn.commit();
+      for (GroupCommit.Call<CommitTxnRequest, Void> call : committed) {
+        call.succeeded(null);
+      }
+      for (Map.Entry<GroupCommit.Call<CommitTxnRequest, Void>, TxnAbortedException> e : aborted.entrySet()) {
+        e.getKey().failed(e.getValue());
+      }
+    } catch (SQLException e) {
+      LOG.info("Unable to commit " + group.size() + " transactions together, committing them one by one: " +
+          e.getMessage());
+      rollbackDBConn(dbConn);
+    } finally {
+      close(null, stmt, dbConn);
+      unlockInternal();
     }
   }
 
@@ -2411,6 +2629,9 @@ public long cleanupMaterializationRebuildLocks(ValidTxnList validTxnList, long t
   @RetrySemantics.CannotRetry
   public LockResponse lock(LockRequest rqst) throws NoSuchTxnException, TxnAbortedException, MetaException {
     ConnectionLockIdPair connAndLockId = enqueueLockWithRetry(rqst);
+    if (Metrics.getRegistry() != null) {
+      lockWaits.put(connAndLockId.extLockId, new LockWait(System.currentTimeMillis()));
+    }
     try {
       return checkLockWithRetry(connAndLockId.dbConn, connAndLockId.extLockId, rqst.getTxnid(),
           rqst.isZeroWaitReadEnabled());
@@ -2420,6 +2641,19 @@ public LockResponse lock(LockRequest rqst) throws NoSuchTxnException, TxnAborted
       throw new MetaException("Couldn't find a lock we just created! " + e.getMessage());
     }
   }
+  /**
+   * Thrown by {@link #commitTxn(Connection, Statement, CommitTxnRequest)} when the transaction has a write
+   * conflict, so that the caller aborts it as part of its own transaction of the metastore DB.
+   */
+  private static final class WriteConflictException extends Exception {
+    private final long txnid;
+
+    WriteConflictException(long txnid, String msg) {
+      super(msg);
+      this.txnid = txnid;
+    }
+  }
+
   private static final class ConnectionLockIdPair {
     private final Connection dbConn;
     private final long extLockId;
@@ -4438,7 +4672,7 @@ private LockResponse checkLock(Connection dbConn, long extLockId, long txnId, bo
         " \"EX\".*, \"REQ\".\"HL_LOCK_INT_ID\" \"LOCK_INT_ID\", \"REQ\".\"HL_LOCK_TYPE\" \"LOCK_TYPE\" FROM (" +
             " SELECT \"HL_LOCK_EXT_ID\", \"HL_LOCK_INT_ID\", \"HL_TXNID\", \"HL_DB\", \"HL_TABLE\", \"HL_PARTITION\"," +
                 " \"HL_LOCK_STATE\", \"HL_LOCK_TYPE\" FROM \"HIVE_LOCKS\"" +
-            " WHERE \"HL_LOCK_EXT_ID\" < " + extLockId + ") \"EX\"" +
+            " WHERE \"HL_LOCK_EXT_ID\" < " + extLockId + getLockFilter(locksBeingChecked) + ") \"EX\"" +
         " INNER JOIN (" +
             " SELECT \"HL_LOCK_INT_ID\", \"HL_TXNID\", \"HL_DB\", \"HL_TABLE\", \"HL_PARTITION\"," +
                 " \"HL_LOCK_TYPE\" FROM \"HIVE_LOCKS\"" +
@@ -4504,6 +4738,7 @@ is performed on that db (e.g. show tables, created table, etc).
             LOG.debug("Going to execute query: <" + cleanupQuery + ">");
             stmt.executeUpdate(cleanupQuery);
             dbConn.commit();
+            lockWaits.invalidate(extLockId);
 
             response.setErrorMessage(String.format(
                 "Unable to acquire read lock due to an exclusive lock {%s}", blockedBy));
@@ -4525,6 +4760,10 @@ is performed on that db (e.g. show tables, created table, etc).
           shouldNeverHappen(txnId, extLockId, intLockId);
         }
         dbConn.commit();
+        LockWait lockWait = lockWaits.getIfPresent(extLockId);
+        if (lockWait != null) {
+          lockWait.waited = true;
+        }
 
         response.setState(LockState.WAITING);
         return response;
@@ -4536,12 +4775,94 @@ is performed on that db (e.g. show tables, created table, etc).
       LOG.debug("Successfully acquired locks: " + locksBeingChecked);
       dbConn.commit();
       response.setState(LockState.ACQUIRED);
+      recordLockWait(extLockId, locksBeingChecked);
     } finally {
       close(rs, stmt, null);
     }
     return response;
   }
 
+  /**
+   * Gets the condition that restricts the earlier locks checked for conflicts to the databases and
+   * tables of the given locks, so that the checks can use the HIVE_LOCKS (HL_DB, HL_TABLE) index
+   * and the locks of unrelated tables don't have to be scanned.  A lock on a database conflicts
+   * with the locks on any of its tables, otherwise only the locks on the same table or on the
+   * whole database can conflict; the join in checkLock() applies the exact rules.
+   */
+  private static String getLockFilter(List<LockInfo> locks) {
+    // The tables to check in each database; null means all of them.
+    Map<String, Set<String>> tablesByDb = new TreeMap<>();
+    for (LockInfo info : locks) {
+      if (info.table == null) {
+        tablesByDb.put(info.db, null);
+      } else if (!tablesByDb.containsKey(info.db)) {
+        tablesByDb.put(info.db, new TreeSet<>(Collections.singleton(info.table)));
+      } else if (tablesByDb.get(info.db) != null) {
+        tablesByDb.get(info.db).add(info.table);
+      }
+    }
+    return getLockFilter(tablesByDb);
+  }
+
+  @VisibleForTesting
+  static String getLockFilter(Map<String, Set<String>> tablesByDb) {
+    StringBuilder sb = new StringBuilder(" AND (");
+    for (Map.Entry<String, Set<String>> entry : tablesByDb.entrySet()) {
+      Set<String> tables = entry.getValue();
+      sb.append("(\"HL_DB\" = ").append(quoteString(entry.getKey()));
+      if (tables != null && tables.size() <= MAX_TABLES_IN_LOCK_FILTER) {
+        sb.append(" AND (\"HL_TABLE\" IS NULL OR \"HL_TABLE\" IN (")
+          .append(tables.stream().map(TxnHandler::quoteString).collect(Collectors.joining(",")))
+          .append("))");
+      }
+      sb.append(") OR ");
+    }
+    sb.setLength(sb.length() - 4);//nuke trailing " OR "
+    return sb.append(")").toString();
+  }
+
+  private static final class LockWait {
+    private final long enqueuedAtMs;
+    private volatile boolean waited = false;
+
+    private LockWait(long enqueuedAtMs) {
+      this.enqueuedAtMs = enqueuedAtMs;
+    }
+  }
+
+  /**
+   * Reports the time the given locks, which were just acquired, waited since they were enqueued.
+   * The wait is reported for all the locks, and for each of their tables when they had to wait,
+   * as long as the table is one of the {@link #MAX_LOCK_WAIT_TIMERS} that waited most recently.
+   */
+  private static void recordLockWait(long extLockId, List<LockInfo> locks) {
+    LockWait lockWait = lockWaits.getIfPresent(extLockId);
+    if (lockWait == null) {
+      return;
+    }
+    lockWaits.invalidate(extLockId);
+    long waitMs = System.currentTimeMillis() - lockWait.enqueuedAtMs;
+    Timer timer = Metrics.getOrCreateTimer(MetricsConstants.LOCK_WAIT_TIME);
+    if (timer != null) {
+      timer.update(waitMs, TimeUnit.MILLISECONDS);
+    }
+    if (!lockWait.waited) {
+      return;
+    }
+    Set<String> resources = new TreeSet<>();
+    for (LockInfo info : locks) {
+      resources.add(info.table == null ? info.db : info.db + "." + info.table);
+    }
+    for (String resource : resources) {
+      String timerName = MetricsConstants.LOCK_WAIT_TIME + "_" + resource;
+      lockWaitTimerNames.put(resource, timerName);
+      timer = Metrics.getOrCreateTimer(timerName);
+      if (timer != null) {
+        timer.update(waitMs, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
   private void acquire(Connection dbConn, Statement stmt, List<LockInfo> locksBeingChecked)
     throws SQLException, NoSuchLockException, MetaException {
     if (locksBeingChecked == null || locksBeingChecked.isEmpty()) {
@@ -1086,6 +1086,8 @@ PRIMARY KEY CLUSTERED
 )
 );
 
+CREATE INDEX HL_DB_TABLE_INDEX ON HIVE_LOCKS (HL_DB, HL_TABLE);
+
 CREATE TABLE NEXT_COMPACTION_QUEUE_ID(
 	NCQ_NEXT bigint NOT NULL
 );
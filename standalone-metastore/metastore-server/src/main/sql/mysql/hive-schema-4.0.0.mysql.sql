@@ -1056,6 +1056,8 @@ CREATE TABLE HIVE_LOCKS (
 
 CREATE INDEX HL_TXNID_IDX ON HIVE_LOCKS (HL_TXNID);
 
+CREATE INDEX HL_DB_TABLE_IDX ON HIVE_LOCKS (HL_DB, HL_TABLE);
+
 CREATE TABLE NEXT_LOCK_ID (
   NL_NEXT bigint NOT NULL
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
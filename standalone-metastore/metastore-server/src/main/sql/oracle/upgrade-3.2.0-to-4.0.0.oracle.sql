@@ -106,6 +106,9 @@ CREATE TABLE "REPLICATION_METRICS" (
 CREATE INDEX POLICY_IDX ON "REPLICATION_METRICS" ("RM_POLICY");
 CREATE INDEX DUMP_IDX ON "REPLICATION_METRICS" ("RM_DUMP_EXECUTION_ID");
 
+-- Index for the lock checks, which only look at the locks of the same tables
+CREATE INDEX HL_DB_TABLE_INDEX ON HIVE_LOCKS (HL_DB, HL_TABLE);
+
 -- These lines need to be last.  Insert any changes above.
 UPDATE VERSION SET SCHEMA_VERSION='4.0.0', VERSION_COMMENT='Hive release version 4.0.0' where VER_ID=1;
 SELECT 'Finished upgrading MetaStore schema from 3.2.0 to 4.0.0' AS Status from dual;
@@ -1722,6 +1722,8 @@ CREATE TABLE "HIVE_LOCKS" (
 
 CREATE INDEX HL_TXNID_INDEX ON "HIVE_LOCKS" USING hash ("HL_TXNID");
 
+CREATE INDEX HL_DB_TABLE_INDEX ON "HIVE_LOCKS" ("HL_DB", "HL_TABLE");
+
 CREATE TABLE "NEXT_LOCK_ID" (
   "NL_NEXT" bigint NOT NULL
 );
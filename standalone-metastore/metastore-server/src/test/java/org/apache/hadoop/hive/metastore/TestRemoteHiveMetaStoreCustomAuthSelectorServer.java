@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.metastore;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hive.metastore.annotation.MetastoreCheckinTest;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Runs the remote metastore tests with SASL authentication against the selector server.
+ */
+@Category(MetastoreCheckinTest.class)
+public class TestRemoteHiveMetaStoreCustomAuthSelectorServer extends TestRemoteHiveMetaStoreCustomAuth {
+
+  public TestRemoteHiveMetaStoreCustomAuthSelectorServer() {
+    super();
+    System.setProperty(MetastoreConf.ConfVars.SERVER_TYPE.toString(), "selector");
+  }
+
+  @Test
+  public void testStalledHandshakes() throws Exception {
+    // Connections that never complete the SASL negotiation hold all the handshake threads
+    int handshakeThreads = MetastoreConf.getIntVar(conf, MetastoreConf.ConfVars.SERVER_SELECTOR_HANDSHAKE_THREADS);
+    List<Socket> stalled = new ArrayList<>();
+    try {
+      for (int i = 0; i < handshakeThreads + 1; i++) {
+        stalled.add(new Socket("localhost", port));
+      }
+      // The calls of the connections that are set up already still run
+      Assert.assertTrue(client.getAllDatabases().contains(Warehouse.DEFAULT_DATABASE_NAME));
+    } finally {
+      for (Socket socket : stalled) {
+        socket.close();
+      }
+    }
+  }
+}
@@ -25,7 +25,9 @@
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.common.ndv.hll.HyperLogLog;
@@ -39,6 +41,7 @@
 import org.apache.hadoop.hive.metastore.api.AggrStats;
 import org.apache.hadoop.hive.metastore.api.BinaryColumnStatsData;
 import org.apache.hadoop.hive.metastore.api.BooleanColumnStatsData;
+import org.apache.hadoop.hive.metastore.api.Catalog;
 import org.apache.hadoop.hive.metastore.api.ColumnStatistics;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsData;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsDesc;
@@ -1314,6 +1317,55 @@ public Object call() {
     cachedStore.shutdown();
   }
 
+  @Test public void testConcurrentReadsWithAlterAndRefresh() throws Exception {
+    Configuration conf = MetastoreConf.newMetastoreConf();
+    MetastoreConf.setBoolVar(conf, MetastoreConf.ConfVars.HIVE_IN_TEST, true);
+    MetastoreConf.setVar(conf, MetastoreConf.ConfVars.CACHED_RAW_STORE_MAX_CACHE_MEMORY, "-1Kb");
+    MetaStoreTestUtils.setConfForStandloneMode(conf);
+    CachedStore cachedStore = new CachedStore();
+    CachedStore.clearSharedCache();
+    cachedStore.setConfForTest(conf);
+    SharedCache sharedCache = CachedStore.getSharedCache();
+
+    sharedCache.addCatalogToCache(new Catalog("cat1", "file:/tmp/cat1"));
+    sharedCache.addDatabaseToCache(createDatabaseObject("db1", "user1"));
+    AtomicBoolean isDone = new AtomicBoolean(false);
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    List<Future<?>> readers = new ArrayList<>();
+    // The readers must always find the entries, whatever the writers are doing.
+    for (int i = 0; i < 4; i++) {
+      readers.add(executor.submit(() -> {
+        while (!isDone.get()) {
+          Assert.assertNotNull(sharedCache.getCatalogFromCache("cat1"));
+          Assert.assertNotNull(sharedCache.getDatabaseFromCache(DEFAULT_CATALOG_NAME, "db1"));
+        }
+      }));
+    }
+    Future<?> writer = executor.submit(() -> {
+      for (int i = 0; i < 10000; i++) {
+        Database db = createDatabaseObject("db1", "user" + i);
+        sharedCache.alterDatabaseInCache(DEFAULT_CATALOG_NAME, "db1", db);
+        // The alter marks the cache dirty, so every other refresh is applied.
+        sharedCache.refreshDatabasesInCache(Arrays.asList(db));
+        sharedCache.refreshDatabasesInCache(Arrays.asList(db));
+        sharedCache.alterCatalogInCache("cat1", new Catalog("cat1", "file:/tmp/cat1_" + i));
+      }
+    });
+    try {
+      writer.get();
+    } finally {
+      isDone.set(true);
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+      executor.shutdown();
+    }
+    Assert.assertEquals("user9999",
+        sharedCache.getDatabaseFromCache(DEFAULT_CATALOG_NAME, "db1").getOwnerName());
+    Assert.assertEquals("file:/tmp/cat1_9999", sharedCache.getCatalogFromCache("cat1").getLocationUri());
+    cachedStore.shutdown();
+  }
+
   @Test public void testPartitionSize() {
     Configuration conf = MetastoreConf.newMetastoreConf();
     MetastoreConf.setBoolVar(conf, MetastoreConf.ConfVars.HIVE_IN_TEST, true);
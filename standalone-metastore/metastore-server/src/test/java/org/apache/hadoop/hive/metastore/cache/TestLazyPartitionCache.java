@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.metastore.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.RawStore;
+import org.apache.hadoop.hive.metastore.annotation.MetastoreUnitTest;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+/**
+ * Tests the partitions cached on demand for the tables that are not in SharedCache.
+ */
+@Category(MetastoreUnitTest.class)
+public class TestLazyPartitionCache {
+  private static final String CAT = "hive";
+  private static final String DB = "db";
+  private static final String TBL = "tbl";
+
+  private SharedCache sharedCache;
+  private RawStore rawStore;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = MetastoreConf.newMetastoreConf();
+    sharedCache = new SharedCache();
+    sharedCache.initialize(conf);
+    rawStore = Mockito.mock(RawStore.class);
+    for (int i = 0; i < 10; i++) {
+      List<String> vals = Collections.singletonList(String.valueOf(i));
+      Mockito.when(rawStore.getPartition(CAT, DB, TBL, vals)).thenAnswer(invocation -> createPartition(vals));
+    }
+    Mockito.when(rawStore.getPartitionsByNames(Mockito.eq(CAT), Mockito.eq(DB), Mockito.eq(TBL), Mockito.anyList()))
+        .thenAnswer(invocation -> {
+          List<String> names = invocation.getArgument(3);
+          Partition[] parts = new Partition[names.size()];
+          for (int i = 0; i < parts.length; i++) {
+            parts[i] = createPartition(CachedStore.partNameToVals(names.get(i)));
+          }
+          return Arrays.asList(parts);
+        });
+  }
+
+  private static Partition createPartition(List<String> vals) {
+    Partition part = new Partition();
+    part.setCatName(CAT);
+    part.setDbName(DB);
+    part.setTableName(TBL);
+    part.setValues(vals);
+    part.putToParameters("key", "value");
+    return part;
+  }
+
+  @Test
+  public void testLoadAndInvalidate() throws Exception {
+    LazyPartitionCache cache = new LazyPartitionCache(1024 * 1024, 60000, sharedCache);
+    List<String> vals = Collections.singletonList("1");
+    Assert.assertEquals(vals, cache.getPartition(CAT, DB, TBL, vals, rawStore).getValues());
+    // A cached partition is a copy that the callers can modify.
+    cache.getPartition(CAT, DB, TBL, vals, rawStore).getParameters().put("key", "changed");
+    Assert.assertEquals("value", cache.getPartition(CAT, DB, TBL, vals, rawStore).getParameters().get("key"));
+    Mockito.verify(rawStore, Mockito.times(1)).getPartition(CAT, DB, TBL, vals);
+
+    cache.invalidateTable(CAT, DB, TBL);
+    cache.getPartition(CAT, DB, TBL, vals, rawStore);
+    Mockito.verify(rawStore, Mockito.times(2)).getPartition(CAT, DB, TBL, vals);
+  }
+
+  @Test
+  public void testGetPartitionsByNames() throws Exception {
+    LazyPartitionCache cache = new LazyPartitionCache(1024 * 1024, 60000, sharedCache);
+    cache.getPartition(CAT, DB, TBL, Collections.singletonList("2"), rawStore);
+
+    List<Partition> parts =
+        cache.getPartitionsByNames(CAT, DB, TBL, Arrays.asList("p=3", "p=2", "p=1"), rawStore);
+    Assert.assertEquals(3, parts.size());
+    Assert.assertEquals(Collections.singletonList("3"), parts.get(0).getValues());
+    Assert.assertEquals(Collections.singletonList("2"), parts.get(1).getValues());
+    Assert.assertEquals(Collections.singletonList("1"), parts.get(2).getValues());
+    // Only the partitions that were not cached are loaded.
+    Mockito.verify(rawStore).getPartitionsByNames(CAT, DB, TBL, Arrays.asList("p=3", "p=1"));
+
+    cache.getPartitionsByNames(CAT, DB, TBL, Arrays.asList("p=1", "p=2", "p=3"), rawStore);
+    Mockito.verify(rawStore, Mockito.times(1))
+        .getPartitionsByNames(Mockito.eq(CAT), Mockito.eq(DB), Mockito.eq(TBL), Mockito.anyList());
+  }
+
+  @Test
+  public void testSizeBound() throws Exception {
+    int partSize = sharedCache.getObjectSize(Partition.class, createPartition(Collections.singletonList("0")));
+    Assert.assertTrue(partSize > 0);
+    LazyPartitionCache cache = new LazyPartitionCache(4L * (partSize + 100), 60000, sharedCache);
+    for (int i = 0; i < 10; i++) {
+      cache.getPartition(CAT, DB, TBL, Collections.singletonList(String.valueOf(i)), rawStore);
+    }
+    Assert.assertTrue("" + cache.size(), cache.size() < 10);
+    // The most recently used partition is kept.
+    cache.getPartition(CAT, DB, TBL, Collections.singletonList("9"), rawStore);
+    Mockito.verify(rawStore, Mockito.times(1)).getPartition(CAT, DB, TBL, Collections.singletonList("9"));
+  }
+
+  @Test
+  public void testTableVersions() throws Exception {
+    LazyPartitionCache cache = new LazyPartitionCache(1024 * 1024, 60000, sharedCache);
+    // Only the tables whose partitions are cached have a version.
+    cache.invalidateTable(CAT, DB, "other");
+    Assert.assertEquals(0, cache.tableCount());
+    cache.getPartition(CAT, DB, TBL, Collections.singletonList("1"), rawStore);
+    Assert.assertEquals(1, cache.tableCount());
+    cache.invalidateTable(CAT, DB, TBL);
+    Assert.assertEquals(0, cache.tableCount());
+  }
+
+  @Test
+  public void testInvalidateOnCommit() throws Exception {
+    LazyPartitionCache cache = new LazyPartitionCache(1024 * 1024, 60000, sharedCache);
+    CachedStore.setWhitelistPattern(CachedStore.createPatterns(".*"));
+    CachedStore.setBlacklistPattern(CachedStore.createPatterns(CAT + "." + DB + "." + TBL));
+    CachedStore.setLazyPartitionCache(cache);
+    try {
+      CachedStore reader = new CachedStore();
+      reader.setRawStore(rawStore);
+      RawStore writerRawStore = Mockito.mock(RawStore.class);
+      CachedStore writer = new CachedStore();
+      writer.setRawStore(writerRawStore);
+      List<String> vals = Collections.singletonList("1");
+      Partition newPart = createPartition(vals);
+      Mockito.when(writerRawStore.alterPartition(CAT, DB, TBL, vals, newPart, null)).thenReturn(newPart);
+
+      reader.getPartition(CAT, DB, TBL, vals);
+      Mockito.when(writerRawStore.isActiveTransaction()).thenReturn(true);
+      writer.alterPartition(CAT, DB, TBL, vals, newPart, null);
+      // Until the commit, the readers may still see the old partition, and cache it.
+      reader.getPartition(CAT, DB, TBL, vals);
+      Mockito.verify(rawStore, Mockito.times(1)).getPartition(CAT, DB, TBL, vals);
+
+      Mockito.when(writerRawStore.commitTransaction()).thenReturn(true);
+      Mockito.when(writerRawStore.isActiveTransaction()).thenReturn(false);
+      writer.commitTransaction();
+      reader.getPartition(CAT, DB, TBL, vals);
+      Mockito.verify(rawStore, Mockito.times(2)).getPartition(CAT, DB, TBL, vals);
+
+      // A change that is rolled back does not invalidate the partitions.
+      Mockito.when(writerRawStore.isActiveTransaction()).thenReturn(true);
+      writer.alterPartition(CAT, DB, TBL, vals, newPart, null);
+      Mockito.when(writerRawStore.isActiveTransaction()).thenReturn(false);
+      writer.rollbackTransaction();
+      reader.getPartition(CAT, DB, TBL, vals);
+      Mockito.verify(rawStore, Mockito.times(2)).getPartition(CAT, DB, TBL, vals);
+    } finally {
+      CachedStore.setLazyPartitionCache(null);
+      CachedStore.setBlacklistPattern(CachedStore.createPatterns(""));
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.metastore.txn;
+
+import org.apache.hadoop.hive.metastore.annotation.MetastoreUnitTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests the grouping of the calls in GroupCommit.
+ */
+@Category(MetastoreUnitTest.class)
+public class TestGroupCommit {
+
+  @Test
+  public void testCallsGroupedWhileWriting() throws Exception {
+    GroupCommit<Integer, Integer> groupCommit = new GroupCommit<>(3, 0);
+    List<Integer> groupSizes = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    GroupCommit.Writer<Integer, Integer> writer = group -> {
+      groupSizes.add(group.size());
+      writing.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      for (GroupCommit.Call<Integer, Integer> call : group) {
+        call.succeeded(call.getRequest() * 2);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    CompletableFuture<GroupCommit.Call<Integer, Integer>> first =
+        CompletableFuture.supplyAsync(() -> groupCommit.submit(0, writer), executor);
+    writing.await();
+    List<CompletableFuture<GroupCommit.Call<Integer, Integer>>> others = new ArrayList<>();
+    for (int i = 1; i <= 4; i++) {
+      int request = i;
+      others.add(CompletableFuture.supplyAsync(() -> groupCommit.submit(request, writer), executor));
+    }
+    // Let the other calls queue up behind the first one
+    Thread.sleep(500);
+    release.countDown();
+
+    Assert.assertEquals(0, (int) first.get().getResult());
+    for (int i = 1; i <= 4; i++) {
+      GroupCommit.Call<Integer, Integer> call = others.get(i - 1).get();
+      Assert.assertTrue(call.isWritten());
+      Assert.assertEquals(i * 2, (int) call.getResult());
+    }
+    Assert.assertEquals(Arrays.asList(1, 3, 1), groupSizes);
+    executor.shutdown();
+  }
+
+  @Test
+  public void testUnwrittenAndFailedCalls() {
+    GroupCommit<Integer, Integer> groupCommit = new GroupCommit<>(10, 0);
+    GroupCommit.Call<Integer, Integer> call = groupCommit.submit(1, group -> { });
+    Assert.assertFalse(call.isWritten());
+
+    Exception failure = new Exception("failed");
+    call = groupCommit.submit(1, group -> group.get(0).failed(failure));
+    Assert.assertTrue(call.isWritten());
+    Assert.assertSame(failure, call.getFailure());
+
+    // A writer that throws leaves the calls to their callers, and does not block the next calls
+    call = groupCommit.submit(1, group -> {
+      throw new IllegalStateException();
+    });
+    Assert.assertFalse(call.isWritten());
+    call = groupCommit.submit(2, group -> group.get(0).succeeded(4));
+    Assert.assertEquals(4, (int) call.getResult());
+  }
+}
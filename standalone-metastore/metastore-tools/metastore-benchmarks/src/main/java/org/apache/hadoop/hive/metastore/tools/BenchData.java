@@ -17,17 +17,23 @@
  */
 package org.apache.hadoop.hive.metastore.tools;
 
+import java.net.URI;
+
 /**
  * Container for all data needed for running a benchmark.
  */
 final class BenchData {
   private HMSClient client;
+  // Another server on the same backing database, or null
+  private URI writerUri;
   final String dbName;
   final String tableName;
+  final String confDir;
 
-  BenchData(String dbName, String tableName) {
+  BenchData(String dbName, String tableName, String confDir) {
     this.dbName = dbName;
     this.tableName = tableName;
+    this.confDir = confDir;
   }
 
   HMSClient getClient() {
@@ -37,5 +43,13 @@ HMSClient getClient() {
   void setClient(HMSClient client) {
     this.client = client;
   }
+
+  URI getWriterUri() {
+    return writerUri;
+  }
+
+  void setWriterUri(URI writerUri) {
+    this.writerUri = writerUri;
+  }
 }
 
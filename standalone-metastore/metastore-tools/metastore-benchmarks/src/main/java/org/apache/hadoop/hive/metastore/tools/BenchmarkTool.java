@@ -62,6 +62,11 @@ public class BenchmarkTool implements Runnable {
   @Option(names = {"-P", "--port"}, description = "HMS Server port")
   private Integer port = HMS_DEFAULT_PORT;
 
+  @Option(names = {"--writer"},
+      description = "HMS Host sharing the backing database, used to alter objects behind the cache",
+      paramLabel = "URI")
+  private String writerHost;
+
   @Option(names = {"-d", "--db"}, description = "database name")
   private String dbName = "bench_" + System.getProperty("user.name");
 
@@ -148,7 +153,7 @@ public void run() {
         " spin " + spinCount + " nparams " + nParameters + " threads " + nThreads);
 
     StringBuilder sb = new StringBuilder();
-    BenchData bData = new BenchData(dbName, tableName);
+    BenchData bData = new BenchData(dbName, tableName, confDir);
 
     MicroBenchmark bench = new MicroBenchmark(warmup, spinCount);
     BenchmarkSuite suite = new BenchmarkSuite();
@@ -189,6 +194,8 @@ public void run() {
               () -> benchmarkListManyPartitions(bench, bData, howMany))
           .add("getPartitions" + '.' + howMany,
               () -> benchmarkGetPartitions(bench, bData, howMany))
+          .add("getPartitionsUnderRefresh" + '.' + howMany,
+              () -> benchmarkGetPartitionsUnderRefresh(bench, bData, howMany, nThreads))
           .add("getPartitionNames" + '.' + howMany,
               () -> benchmarkGetPartitionNames(bench, bData, howMany))
           .add("getPartitionsByNames" + '.' + howMany,
@@ -214,6 +221,9 @@ public void run() {
 
     try (HMSClient client = new HMSClient(getServerUri(host, String.valueOf(port)), confDir)) {
       bData.setClient(client);
+      if (writerHost != null) {
+        bData.setWriterUri(getServerUri(writerHost, String.valueOf(port)));
+      }
       if (!client.dbExists(dbName)) {
         client.createDatabase(dbName);
       }
@@ -37,6 +37,8 @@
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
 import static org.apache.hadoop.hive.metastore.tools.Util.addManyPartitions;
@@ -244,6 +246,86 @@ static DescriptiveStatistics benchmarkGetPartitions(@NotNull MicroBenchmark benc
     }
   }
 
+  /**
+   * Measures getPartitions() from several clients while the cached store of the server keeps
+   * refreshing the partitions from the backing database. Set
+   * metastore.cached.rawstore.cache.update.frequency low on the server so that the refreshes
+   * overlap the measurements. If a writer server sharing the same backing database is given, a
+   * client keeps altering all the partitions through it, so that every refresh brings changes; the
+   * alters do not go through the measured server, whose cache would otherwise skip the refresh of
+   * the partitions it has just altered. Each sample is the time for all the readers to get the
+   * partitions once; the throughput is nThreads / sample.
+   */
+  static DescriptiveStatistics benchmarkGetPartitionsUnderRefresh(@NotNull MicroBenchmark bench,
+                                                                  @NotNull BenchData data,
+                                                                  int howMany,
+                                                                  int nThreads) {
+    final HMSClient client = data.getClient();
+    String dbName = data.dbName;
+    String tableName = data.tableName;
+    URI writerUri = data.getWriterUri();
+
+    createPartitionedTable(client, dbName, tableName);
+    // One connection per reader, and one for the writer
+    List<HMSClient> clients = new ArrayList<>(nThreads + 1);
+    ExecutorService executor = newFixedThreadPool(nThreads + 1);
+    AtomicBoolean isDone = new AtomicBoolean(false);
+    AtomicLong alterCount = new AtomicLong(0);
+    try {
+      addManyPartitions(client, dbName, tableName, null, Collections.singletonList("d"), howMany);
+      for (int i = 0; i < nThreads; i++) {
+        clients.add(throwingSupplierWrapper(() -> new HMSClient(client.getServerURI(), data.confDir)));
+      }
+      Future<?> writerResult = null;
+      if (writerUri != null) {
+        final HMSClient writer = throwingSupplierWrapper(() -> new HMSClient(writerUri, data.confDir));
+        clients.add(writer);
+        writerResult = executor.submit(() -> {
+          while (!isDone.get()) {
+            List<Partition> partitions = throwingSupplierWrapper(() ->
+                writer.getPartitions(dbName, tableName));
+            String value = PARAM_VALUE + alterCount.incrementAndGet();
+            partitions.forEach(p -> p.putToParameters(PARAM_KEY, value));
+            throwingSupplierWrapper(() -> {
+              writer.alterPartitions(dbName, tableName, partitions);
+              return true;
+            });
+          }
+        });
+      }
+
+      DescriptiveStatistics stats = bench.measure(() -> {
+        List<Future<List<Partition>>> results = new ArrayList<>(nThreads);
+        for (int i = 0; i < nThreads; i++) {
+          final HMSClient reader = clients.get(i);
+          results.add(executor.submit(() -> reader.getPartitions(dbName, tableName)));
+        }
+        for (Future<List<Partition>> result : results) {
+          throwingSupplierWrapper(result::get);
+        }
+      });
+      isDone.set(true);
+      if (writerResult != null) {
+        throwingSupplierWrapper(writerResult::get);
+        LOG.debug("Altered the partitions {} times", alterCount.get());
+      }
+      return stats;
+    } catch (TException e) {
+      e.printStackTrace();
+      return new DescriptiveStatistics();
+    } finally {
+      isDone.set(true);
+      executor.shutdownNow();
+      for (HMSClient c : clients) {
+        throwingSupplierWrapper(() -> {
+          c.close();
+          return true;
+        });
+      }
+      throwingSupplierWrapper(() -> client.dropTable(dbName, tableName));
+    }
+  }
+
   static DescriptiveStatistics benchmarkDropPartition(@NotNull MicroBenchmark bench,
                                                       @NotNull BenchData data) {
     final HMSClient client = data.getClient();
@@ -21,6 +21,7 @@
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
@@ -306,7 +307,8 @@ public String partitionDescToString() {
 
     @Override
     public Map<String, String> getPartitionDescMap() {
-      Map<String, String> result = new HashMap<>();
+      // Keeps the partition levels in order, so that the map can be used to rebuild this tag.
+      Map<String, String> result = new LinkedHashMap<>();
       for (String partDesc : partitionDesc) {
         String[] partition = CacheTag.decodePartDesc(partDesc);
         result.put(partition[0], partition[1]);